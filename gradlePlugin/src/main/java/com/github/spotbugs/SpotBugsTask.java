@@ -70,6 +70,8 @@ public class SpotBugsTask extends SourceTask implements VerificationTask, Report
 
     private String maxHeapSize;
 
+    private File daemonPortFile;
+
     private Collection<String> visitors = new ArrayList<>();
 
     private Collection<String> omitVisitors = new ArrayList<>();
@@ -243,6 +245,7 @@ public class SpotBugsTask extends SourceTask implements VerificationTask, Report
                 .withEffort(getEffort())
                 .withReportLevel(getReportLevel())
                 .withMaxHeapSize(getMaxHeapSize())
+                .withDaemonPortFile(getDaemonPortFile())
                 .withVisitors(getVisitors())
                 .withOmitVisitors(getOmitVisitors())
                 .withExcludeFilter(getExcludeFilter())
@@ -452,6 +455,26 @@ public class SpotBugsTask extends SourceTask implements VerificationTask, Report
         this.maxHeapSize = maxHeapSize;
     }
 
+    /**
+     * The port file of a running SpotBugs analysis daemon. If set, the analysis is run in the daemon instead of a
+     * forked worker process, so it does not pay for starting the JVM and loading the plugins. The daemon runs the
+     * SpotBugs version it was started with, and the {@code maxHeapSize} does not apply to it.
+     *
+     * @return port file of the analysis daemon, or null to run SpotBugs in a worker process
+     */
+    @Internal
+    public File getDaemonPortFile() {
+        return daemonPortFile;
+    }
+
+    /**
+     * @param daemonPortFile
+     *            port file of the analysis daemon
+     */
+    public void setDaemonPortFile(File daemonPortFile) {
+        this.daemonPortFile = daemonPortFile;
+    }
+
     /**
      * The bug detectors which should be run. The bug detectors are specified by their class names, without any package
      * qualification. By default, all detectors which are not disabled by default are run.
@@ -1,5 +1,6 @@
 package com.github.spotbugs.internal.spotbugs;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.List;
 
@@ -9,11 +10,13 @@ public class SpotBugsSpec implements Serializable {
   private static final long serialVersionUID = 1L;
   private List<String> arguments;
   private String maxHeapSize;
+  private File daemonPortFile;
   private boolean debugEnabled;
 
-  public SpotBugsSpec(List<String> arguments, String maxHeapSize, boolean debugEnabled) {
+  public SpotBugsSpec(List<String> arguments, String maxHeapSize, File daemonPortFile, boolean debugEnabled) {
       this.debugEnabled = debugEnabled;
       this.maxHeapSize = maxHeapSize;
+      this.daemonPortFile = daemonPortFile;
       this.arguments = arguments;
   }
 
@@ -25,6 +28,10 @@ public class SpotBugsSpec implements Serializable {
       return maxHeapSize;
   }
 
+  public File getDaemonPortFile() {
+      return daemonPortFile;
+  }
+
   public boolean isDebugEnabled() {
       return debugEnabled;
   }
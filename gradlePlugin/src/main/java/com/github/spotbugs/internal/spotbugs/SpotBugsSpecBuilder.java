@@ -30,6 +30,7 @@ public class SpotBugsSpecBuilder {
     private String effort;
     private String reportLevel;
     private String maxHeapSize;
+    private File daemonPortFile;
     private Collection<String> visitors;
     private Collection<String> omitVisitors;
     private File excludeFilter;
@@ -87,6 +88,11 @@ public class SpotBugsSpecBuilder {
         return this;
     }
 
+    public SpotBugsSpecBuilder withDaemonPortFile(File daemonPortFile) {
+        this.daemonPortFile = daemonPortFile;
+        return this;
+    }
+
     public SpotBugsSpecBuilder withVisitors(Collection<String> visitors) {
         this.visitors = visitors;
         return this;
@@ -227,7 +233,7 @@ public class SpotBugsSpecBuilder {
             args.add(classFile.getAbsolutePath());
         }
 
-        return new SpotBugsSpec(args, maxHeapSize, debugEnabled);
+        return new SpotBugsSpec(args, maxHeapSize, daemonPortFile, debugEnabled);
     }
 
     private boolean has(String str) {
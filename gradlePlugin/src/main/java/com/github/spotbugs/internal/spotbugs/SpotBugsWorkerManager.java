@@ -4,17 +4,32 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 
+import org.gradle.api.GradleException;
 import org.gradle.api.file.FileCollection;
 import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.worker.SingleRequestWorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 
+import edu.umd.cs.findbugs.AnalysisDaemonClient;
+
 public class SpotBugsWorkerManager {
   public SpotBugsResult runWorker(File workingDir, WorkerProcessFactory workerFactory, FileCollection findBugsClasspath, SpotBugsSpec spec) throws IOException, InterruptedException {
+      if (spec.getDaemonPortFile() != null) {
+          return runInDaemon(spec);
+      }
       SpotBugsWorker worker = createWorkerProcess(workingDir, workerFactory, findBugsClasspath, spec);
       return worker.runSpotbugs(spec);
   }
 
+  private SpotBugsResult runInDaemon(SpotBugsSpec spec) throws IOException {
+      AnalysisDaemonClient client = new AnalysisDaemonClient(spec.getDaemonPortFile());
+      AnalysisDaemonClient.Result result = client.analyze(spec.getArguments(), System.out, System.err);
+      if (result.getFailure() != null) {
+          return new SpotBugsResult(0, 0, 0, new GradleException(result.getFailure()));
+      }
+      return new SpotBugsResult(result.getBugCount(), result.getMissingClassCount(), result.getErrorCount());
+  }
+
   private SpotBugsWorker createWorkerProcess(File workingDir, WorkerProcessFactory workerFactory, FileCollection findBugsClasspath, SpotBugsSpec spec) {
       SingleRequestWorkerProcessBuilder<SpotBugsWorker> builder = workerFactory.singleRequestWorker(SpotBugsWorker.class, SpotBugsExecuter.class);
       builder.setBaseName("Gradle SpotBugs Worker");
@@ -25,4 +40,4 @@ public class SpotBugsWorkerManager {
       javaCommand.setMaxHeapSize(spec.getMaxHeapSize());
       return builder.build();
   }
-}
\ No newline at end of file
+}
@@ -48,6 +48,8 @@ import edu.umd.cs.findbugs.ExitCodes;
  * <li>class (class, jar, zip or directory containing classes to analyze)</li>
  * <li>classpath (classpath for running FindBugs)</li>
  * <li>conserveSpace (boolean - default false)</li>
+ * <li>daemonPortFile (port file of an analysis daemon to run the analysis
+ * in)</li>
  * <li>debug (boolean default false)</li>
  * <li>effort (enum min|default|max)</li>
  * <li>excludeFilter (filter filename)</li>
@@ -171,6 +173,8 @@ public class FindBugsTask extends AbstractFindBugsTask {
 
     private boolean setExitCode = true;
 
+    private File daemonPortFile;
+
     private final List<FileSet> filesets = new ArrayList<>();
 
     private final List<DirSet> dirsets = new ArrayList<>();
@@ -476,6 +480,19 @@ public class FindBugsTask extends AbstractFindBugsTask {
         this.projectFile = projectFile;
     }
 
+    /**
+     * Run the analysis in an analysis daemon instead of a new SpotBugs
+     * process. The daemon runs the SpotBugs version and plugins it was
+     * started with; jvmargs and systemProperty elements do not apply to it.
+     *
+     * @param daemonPortFile
+     *            the port file written by the daemon
+     * @see edu.umd.cs.findbugs.AnalysisDaemon
+     */
+    public void setDaemonPortFile(File daemonPortFile) {
+        this.daemonPortFile = daemonPortFile;
+    }
+
     /**
      * Set the user preferences file
      *
@@ -746,6 +763,22 @@ public class FindBugsTask extends AbstractFindBugsTask {
         dirsets.add(fs);
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * edu.umd.cs.findbugs.anttask.AbstractFindBugsTask#createFindbugsEngine()
+     */
+    @Override
+    protected void createFindbugsEngine() {
+        super.createFindbugsEngine();
+        if (daemonPortFile != null) {
+            getFindbugsEngine().setClassname("edu.umd.cs.findbugs.AnalysisDaemonClient");
+            addArg("-portFile");
+            addArg(daemonPortFile.getPath());
+        }
+    }
+
     /**
      * Check that all required attributes have been set
      */
@@ -0,0 +1,216 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.bcel.generic.MethodGen;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.BugRanker;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.NoOpFindBugsProgress;
+import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.IClassPathBuilder;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * Analysis cache and AnalysisContext over one of the benchmark corpora, set
+ * up the way FindBugs2 does it before running detectors. The path of each
+ * corpus is given by the system property
+ * <code>spotbugs.benchmarks.&lt;corpus&gt;</code>, and the aux classpath by
+ * <code>spotbugs.benchmarks.auxclasspath</code>; the Gradle build sets them.
+ */
+@State(Scope.Benchmark)
+public class AnalysisFixture {
+    @Param({ "spotbugsTestCases", "commons-lang" })
+    public String corpus;
+
+    private IClassPath classPath;
+
+    private IAnalysisCache analysisCache;
+
+    private AnalysisContext analysisContext;
+
+    private DescriptorFactory descriptorFactory;
+
+    private List<ClassDescriptor> appClasses;
+
+    private List<MethodDescriptor> methods;
+
+    static String getCorpusPath(String corpus) {
+        String path = System.getProperty("spotbugs.benchmarks." + corpus);
+        if (path == null || !new File(path).canRead()) {
+            throw new IllegalStateException("Cannot read corpus " + corpus + " from " + path
+                    + ", run the benchmarks with gradle :spotbugs-benchmarks:jmh");
+        }
+        return path;
+    }
+
+    static List<String> getAuxClasspath() {
+        String auxClasspath = System.getProperty("spotbugs.benchmarks.auxclasspath", "");
+        List<String> result = new ArrayList<>();
+        for (String path : auxClasspath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run the default detectors at low priority on a corpus.
+     *
+     * @return the warnings
+     */
+    static SortedBugCollection findBugs(String corpus) throws Exception {
+        Project project = new Project();
+        project.addFile(getCorpusPath(corpus));
+        for (String auxPath : getAuxClasspath()) {
+            project.addAuxClasspathEntry(auxPath);
+        }
+
+        FindBugs2 engine = new FindBugs2();
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        bugReporter.setRankThreshold(BugRanker.VISIBLE_RANK_MAX);
+        engine.setBugReporter(bugReporter);
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.getFilterSettings().clearAllCategories();
+        engine.setUserPreferences(preferences);
+        engine.execute();
+        return (SortedBugCollection) bugReporter.getBugCollection();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String path = getCorpusPath(corpus);
+        Project project = new Project();
+        project.addFile(path);
+        for (String auxPath : getAuxClasspath()) {
+            project.addAuxClasspathEntry(auxPath);
+        }
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        IClassPathBuilder builder = classFactory.createClassPathBuilder(bugReporter);
+        builder.addCodeBase(classFactory.createFilesystemCodeBaseLocator(path), true);
+        for (String auxPath : project.getAuxClasspathEntryList()) {
+            builder.addCodeBase(classFactory.createFilesystemCodeBaseLocator(auxPath), false);
+        }
+
+        analysisCache = classFactory.createAnalysisCache(classPath, bugReporter);
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        analysisCache.eagerlyPutDatabase(DetectorFactoryCollection.class, DetectorFactoryCollection.instance());
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+
+        builder.build(classPath, new NoOpFindBugsProgress());
+        appClasses = Collections.unmodifiableList(builder.getAppClassList());
+        FindBugs2.setAppClassList(appClasses);
+        analysisContext = AnalysisContext.currentAnalysisContext();
+        descriptorFactory = DescriptorFactory.instance();
+
+        // Methods whose bytecode can be analyzed
+        List<MethodDescriptor> analyzable = new ArrayList<>();
+        for (ClassDescriptor classDescriptor : appClasses) {
+            XClass xclass = analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+            for (XMethod xmethod : xclass.getXMethods()) {
+                MethodDescriptor methodDescriptor = xmethod.getMethodDescriptor();
+                try {
+                    if (analysisCache.getMethodAnalysis(MethodGen.class, methodDescriptor) != null) {
+                        analyzable.add(methodDescriptor);
+                    }
+                } catch (CheckedAnalysisException e) {
+                    // abstract, native or too large
+                }
+            }
+        }
+        methods = Collections.unmodifiableList(analyzable);
+    }
+
+    /**
+     * JMH may call the benchmark methods on another thread than the one which
+     * set the fixture up, so make the analysis available to the current thread
+     * before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void bindToCurrentThread() {
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        AnalysisContext.setCurrentAnalysisContext(analysisContext);
+        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        DescriptorFactory.clearInstance();
+        classPath.close();
+    }
+
+    public IAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public AnalysisContext getAnalysisContext() {
+        return analysisContext;
+    }
+
+    /**
+     * @return the application classes of the corpus
+     */
+    public List<ClassDescriptor> getAppClasses() {
+        return appClasses;
+    }
+
+    /**
+     * @return the methods of the application classes which have bytecode
+     */
+    public List<MethodDescriptor> getMethods() {
+        return methods;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.dom4j.DocumentException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+/**
+ * Writes and reads back the XML of the warnings reported on the corpus, with
+ * the default detectors at low priority.
+ */
+@State(Scope.Benchmark)
+public class BugCollectionXMLBenchmark {
+    @Param({ "spotbugsTestCases", "commons-lang" })
+    public String corpus;
+
+    private SortedBugCollection bugCollection;
+
+    private byte[] xml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        bugCollection = AnalysisFixture.findBugs(corpus);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bugCollection.writeXML(out);
+        xml = out.toByteArray();
+    }
+
+    @Benchmark
+    public int writeXML() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(xml.length);
+        bugCollection.writeXML(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int readXML() throws IOException, DocumentException {
+        SortedBugCollection result = new SortedBugCollection();
+        result.readXML(new ByteArrayInputStream(xml));
+        return result.getCollection().size();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import org.apache.bcel.generic.MethodGen;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import edu.umd.cs.findbugs.ba.BetterCFGBuilder2;
+import edu.umd.cs.findbugs.ba.CFGBuilder;
+import edu.umd.cs.findbugs.ba.IndexedCFGBuilder;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * Builds the raw control flow graph of every method of the corpus, without
+ * pruning infeasible exception edges.
+ */
+public class CFGBuilderBenchmark {
+
+    @Benchmark
+    public int buildCFGs(AnalysisFixture fixture) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        int blocks = 0;
+        for (MethodDescriptor method : fixture.getMethods()) {
+            MethodGen methodGen = analysisCache.getMethodAnalysis(MethodGen.class, method);
+            BetterCFGBuilder2 builder = new BetterCFGBuilder2(method, methodGen);
+            builder.build();
+            blocks += builder.getCFG().getNumBasicBlocks();
+        }
+        return blocks;
+    }
+
+    @Benchmark
+    public int buildIndexedCFGs(AnalysisFixture fixture) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        int blocks = 0;
+        for (MethodDescriptor method : fixture.getMethods()) {
+            MethodGen methodGen = analysisCache.getMethodAnalysis(MethodGen.class, method);
+            CFGBuilder builder = IndexedCFGBuilder.hasSubroutines(methodGen) ? new BetterCFGBuilder2(method, methodGen)
+                    : new IndexedCFGBuilder(method, methodGen);
+            builder.build();
+            blocks += builder.getCFG().getNumBasicBlocks();
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.umd.cs.findbugs.ba.npe.IsNullValueDataflow;
+import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.engine.bcel.IsNullValueDataflowFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.ValueNumberDataflowFactory;
+
+/**
+ * Runs the value number and null value dataflow analyses on every method of
+ * the corpus. The analyses they depend on, such as the CFG, are taken from
+ * the analysis cache, so each benchmark only measures its own analysis.
+ */
+@State(Scope.Benchmark)
+public class DataflowBenchmark {
+    private final ValueNumberDataflowFactory valueNumberDataflowFactory = new ValueNumberDataflowFactory();
+
+    private final IsNullValueDataflowFactory isNullValueDataflowFactory = new IsNullValueDataflowFactory();
+
+    private List<MethodDescriptor> methods;
+
+    /**
+     * Keep the methods both analyses succeed on, and fill the analysis cache
+     * with what they depend on.
+     */
+    @Setup(Level.Trial)
+    public void setUp(AnalysisFixture fixture) {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        methods = new ArrayList<>();
+        for (MethodDescriptor method : fixture.getMethods()) {
+            try {
+                analysisCache.getMethodAnalysis(ValueNumberDataflow.class, method);
+                analysisCache.getMethodAnalysis(IsNullValueDataflow.class, method);
+                methods.add(method);
+            } catch (CheckedAnalysisException e) {
+                // not analyzed by detectors either
+            }
+        }
+    }
+
+    @Benchmark
+    public int valueNumberDataflow(AnalysisFixture fixture) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        int iterations = 0;
+        for (MethodDescriptor method : methods) {
+            iterations += valueNumberDataflowFactory.analyze(analysisCache, method).getNumIterations();
+        }
+        return iterations;
+    }
+
+    @Benchmark
+    public int isNullValueDataflow(AnalysisFixture fixture) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        int iterations = 0;
+        for (MethodDescriptor method : methods) {
+            iterations += isNullValueDataflowFactory.analyze(analysisCache, method).getNumIterations();
+        }
+        return iterations;
+    }
+}
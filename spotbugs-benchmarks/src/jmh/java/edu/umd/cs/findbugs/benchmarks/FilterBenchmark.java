@@ -0,0 +1,130 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.MethodAnnotation;
+import edu.umd.cs.findbugs.filter.Filter;
+import edu.umd.cs.findbugs.filter.Matcher;
+import edu.umd.cs.findbugs.util.Strings;
+
+/**
+ * Parses a generated exclude filter and matches the warnings reported on the
+ * corpus against it, with the index of the filter and by evaluating its
+ * matchers in turn. One in ten of the generated <code>&lt;Match&gt;</code>
+ * clauses names the class, method and pattern of a warning, the others name
+ * classes and packages outside of the corpus, as in the shared filter of a
+ * larger code base.
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({ "spotbugsTestCases", "commons-lang" })
+    public String corpus;
+
+    @Param({ "1000", "25000" })
+    public int clauses;
+
+    private List<BugInstance> bugs;
+
+    private byte[] xml;
+
+    private Filter filter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        bugs = new ArrayList<>(AnalysisFixture.findBugs(corpus).getCollection());
+        Random random = new Random(42);
+        StringBuilder matches = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<FindBugsFilter>\n");
+        for (int i = 0; i < clauses; i++) {
+            BugInstance bug = bugs.get(random.nextInt(bugs.size()));
+            // Other classes of a larger code base
+            String packageName = "generated.p" + random.nextInt(100);
+            String className = packageName + ".Class" + i;
+            switch (random.nextInt(10)) {
+            case 0:
+                className = bug.getPrimaryClass().getClassName();
+                matches.append("<Match><Class name=\"").append(className).append("\"/>");
+                MethodAnnotation method = bug.getPrimaryMethod();
+                if (method != null) {
+                    matches.append("<Method name=\"").append(Strings.escapeXml(method.getMethodName())).append("\"/>");
+                }
+                matches.append("<Bug code=\"").append(bug.getAbbrev()).append("\"/></Match>\n");
+                break;
+            case 1:
+                matches.append("<Match><Package name=\"").append(packageName).append("\"/><Bug pattern=\"")
+                        .append(bug.getType()).append("\"/></Match>\n");
+                break;
+            default:
+                matches.append("<Match><Class name=\"").append(className).append("\"/><Bug pattern=\"")
+                        .append(bug.getType()).append("\"/></Match>\n");
+                break;
+            }
+        }
+        matches.append("</FindBugsFilter>\n");
+        xml = matches.toString().getBytes(StandardCharsets.UTF_8);
+        filter = new Filter(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public Filter parse() throws IOException {
+        return new Filter(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public int matchIndexed() {
+        int matched = 0;
+        for (BugInstance bug : bugs) {
+            if (filter.match(bug)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int matchLinearly() {
+        int matched = 0;
+        for (BugInstance bug : bugs) {
+            Iterator<Matcher> i = filter.childIterator();
+            while (i.hasNext()) {
+                Matcher child = i.next();
+                if (filter.isEnabled(child) && child.match(bug)) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+}
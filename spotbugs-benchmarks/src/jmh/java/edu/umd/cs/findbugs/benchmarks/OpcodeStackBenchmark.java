@@ -0,0 +1,54 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+
+/**
+ * Visits every class of the corpus with a detector which only lets the
+ * OpcodeStack model each instruction. The jump information of the methods is
+ * computed once and kept in the analysis cache, like during an analysis.
+ */
+public class OpcodeStackBenchmark {
+
+    private static class CountingDetector extends OpcodeStackDetector {
+        int opcodes;
+
+        @Override
+        public void sawOpcode(int seen) {
+            opcodes++;
+        }
+    }
+
+    @Benchmark
+    public int visitClasses(AnalysisFixture fixture) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = fixture.getAnalysisCache();
+        CountingDetector detector = new CountingDetector();
+        for (ClassDescriptor classDescriptor : fixture.getAppClasses()) {
+            detector.visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, classDescriptor));
+        }
+        return detector.opcodes;
+    }
+}
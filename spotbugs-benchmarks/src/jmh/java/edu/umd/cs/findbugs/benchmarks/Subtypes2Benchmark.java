@@ -0,0 +1,81 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.bcel.generic.ObjectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.umd.cs.findbugs.ba.ObjectTypeFactory;
+import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * Subtype and common superclass queries between the classes of the corpus.
+ * Class number i is paired with class number i * 31 modulo the number of
+ * classes, so that the pairs are the same in every run. The inheritance graph
+ * and the supertype sets are built in the first iteration, like during an
+ * analysis.
+ */
+@State(Scope.Benchmark)
+public class Subtypes2Benchmark {
+    private List<ObjectType> types;
+
+    private List<ObjectType> superTypes;
+
+    @Setup(Level.Trial)
+    public void setUp(AnalysisFixture fixture) {
+        types = new ArrayList<>();
+        superTypes = new ArrayList<>();
+        for (ClassDescriptor classDescriptor : fixture.getAppClasses()) {
+            types.add(ObjectTypeFactory.getInstance(classDescriptor.toDottedClassName()));
+        }
+        for (int i = 0; i < types.size(); i++) {
+            superTypes.add(types.get(i * 31 % types.size()));
+        }
+    }
+
+    @Benchmark
+    public int isSubtype(AnalysisFixture fixture) throws ClassNotFoundException {
+        Subtypes2 subtypes2 = fixture.getAnalysisContext().getSubtypes2();
+        int subtypes = 0;
+        for (int i = 0; i < types.size(); i++) {
+            if (subtypes2.isSubtype(types.get(i), superTypes.get(i))) {
+                subtypes++;
+            }
+        }
+        return subtypes;
+    }
+
+    @Benchmark
+    public int getFirstCommonSuperclass(AnalysisFixture fixture) throws ClassNotFoundException {
+        Subtypes2 subtypes2 = fixture.getAnalysisContext().getSubtypes2();
+        int hash = 0;
+        for (int i = 0; i < types.size(); i++) {
+            hash += subtypes2.getFirstCommonSuperclass(types.get(i), superTypes.get(i)).hashCode();
+        }
+        return hash;
+    }
+}
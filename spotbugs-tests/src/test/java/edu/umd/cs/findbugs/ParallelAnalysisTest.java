@@ -0,0 +1,121 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * The warnings of an analysis using worker threads are the same as those of a
+ * single threaded analysis, in the same order.
+ */
+public class ParallelAnalysisTest {
+
+    /**
+     * Packages of the test cases which query the class hierarchy, type
+     * qualifiers and annotation databases a lot
+     */
+    private static final String[] PACKAGES = { "bugIdeas", "equals", "jsr305", "npe", "nonnull", "gcUnrelatedTypes" };
+
+    private static List<Path> getClassFiles() throws IOException {
+        File classes = new File(SystemProperties.getProperty("spotbugsTestCases.home", "../spotbugsTestCases"),
+                "build/classes/java/main");
+        Assume.assumeTrue(classes.isDirectory());
+        List<Path> result = new ArrayList<>();
+        for (String pkg : PACKAGES) {
+            Path dir = new File(classes, pkg).toPath();
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                result.addAll(files.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList()));
+            }
+        }
+        Assume.assumeFalse(result.isEmpty());
+        return result;
+    }
+
+    /**
+     * @return the warnings, in the order of the bug collection
+     */
+    private static List<String> analyze(List<Path> classFiles, int threads) throws Exception {
+        DetectorFactoryCollection.resetInstance(new DetectorFactoryCollection());
+        FindBugs2 engine = new FindBugs2();
+        Project project = new Project();
+        project.setProjectName("parallel");
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        bugReporter.setRankThreshold(BugRanker.VISIBLE_RANK_MAX);
+        engine.setBugReporter(bugReporter);
+
+        UserPreferences preferences = UserPreferences.createDefaultUserPreferences();
+        preferences.getFilterSettings().clearAllCategories();
+        preferences.enableAllDetectors(true);
+        engine.setUserPreferences(preferences);
+        engine.setThreads(threads);
+
+        for (Path file : classFiles) {
+            project.addFile(file.toAbsolutePath().toString());
+        }
+        String auxClasspath = System.getProperty("AUX_CLASSPATH");
+        if (auxClasspath != null) {
+            for (String entry : auxClasspath.split(",")) {
+                if (new File(entry).canRead()) {
+                    project.addAuxClasspathEntry(entry);
+                }
+            }
+        }
+
+        engine.execute();
+
+        List<String> result = new ArrayList<>();
+        for (BugInstance bug : bugReporter.getBugCollection()) {
+            result.add(bug.getPriorityTypeAbbreviation() + " " + bug.getType() + " " + bug.getInstanceKey() + " "
+                    + bug.getPrimarySourceLineAnnotation());
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameWarningsWithThreads() throws Exception {
+        List<Path> classFiles = getClassFiles();
+        List<String> expected = analyze(classFiles, 1);
+        assertFalse("No bugs were reported. Something is wrong with the configuration", expected.isEmpty());
+        assertEquals(expected, analyze(classFiles, 4));
+        // Again, since the threads pick up classes in a different order
+        assertEquals(expected, analyze(classFiles, 4));
+    }
+}
@@ -28,6 +28,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
@@ -66,8 +68,28 @@ public class BugSet implements Iterable<BugLeafNode> {
 
     private HashMap<Sortables, String[]> sortablesToStrings;
 
+    /**
+     * For each Sortables, the bugs of mainList grouped by their value, in the
+     * order of mainList. Built in a single pass the first time the bugs are
+     * queried by a value of the Sortables, instead of scanning all the bugs
+     * for each value.
+     */
+    private HashMap<Sortables, HashMap<String, ArrayList<BugLeafNode>>> valueIndex = new HashMap<>();
+
+    private HashMap<Sortables, List<SortableValue>> sortablesToValues;
+
+    private HashMap<Sortables, HashMap<SortableValue, Integer>> sortablesToValueIndexes;
+
+    private HashMap<BugLeafNode, Integer> leafIndexes;
+
     private static BugSet mainBugSet = null;
 
+    /**
+     * Decides which bugs are displayed: the filters of the main frame, unless
+     * a test replaces it
+     */
+    static Predicate<BugInstance> displayed = bug -> MainFrame.getInstance().shouldDisplayIssue(bug);
+
     /**
      * mainBugSet should probably always be the same as the data field in the
      * current BugTreeModel we haven't run into any issues where it isn't, but
@@ -127,7 +149,7 @@ public class BugSet implements Iterable<BugLeafNode> {
     }
 
     static boolean suppress(BugLeafNode p) {
-        return !MainFrame.getInstance().shouldDisplayIssue(p.getBug());
+        return !displayed.test(p.getBug());
     }
 
     /**
@@ -138,6 +160,26 @@ public class BugSet implements Iterable<BugLeafNode> {
      */
     void cacheSortables() {
         sortablesToStrings = new HashMap<>();
+        sortablesToValues = new HashMap<>();
+        sortablesToValueIndexes = new HashMap<>();
+    }
+
+    private HashMap<String, ArrayList<BugLeafNode>> getValueIndex(Sortables key) {
+        HashMap<String, ArrayList<BugLeafNode>> index = valueIndex.get(key);
+        if (index == null) {
+            index = new HashMap<>();
+            for (BugLeafNode p : mainList) {
+                String value = key.getFrom(p.getBug());
+                ArrayList<BugLeafNode> bugs = index.get(value);
+                if (bugs == null) {
+                    bugs = new ArrayList<>();
+                    index.put(value, bugs);
+                }
+                bugs.add(p);
+            }
+            valueIndex.put(key, index);
+        }
+        return index;
     }
 
     String[] getDistinctValues(Sortables key) {
@@ -159,15 +201,13 @@ public class BugSet implements Iterable<BugLeafNode> {
 
         Collection<String> list = new HashSet<>();
 
-        for (BugLeafNode p : mainList) {
-            if (suppress(p)) {
-                continue;
+        for (Map.Entry<String, ArrayList<BugLeafNode>> e : getValueIndex(key).entrySet()) {
+            for (BugLeafNode p : e.getValue()) {
+                if (!suppress(p)) {
+                    list.add(e.getKey());
+                    break;
+                }
             }
-            BugInstance bug = p.getBug();
-
-            String value = key.getFrom(bug);
-            list.add(value);
-
         }
         String result[] = list.toArray(new String[list.size()]);
         Collections.sort(Arrays.asList(result), new SortableStringComparator(key));
@@ -175,6 +215,44 @@ public class BugSet implements Iterable<BugLeafNode> {
 
     }
 
+    /**
+     * Gets the values of the sortable which occur in the displayed bugs of the
+     * set, as branches of the tree: in the same order as
+     * {@link #getDistinctValues(Sortables)}, and cached like it.
+     */
+    List<SortableValue> getDistinctSortableValues(Sortables key) {
+        List<SortableValue> result = sortablesToValues.get(key);
+        if (result == null) {
+            String[] all = key.getAll(this);
+            result = new ArrayList<>(all.length);
+            for (String value : all) {
+                result.add(new SortableValue(key, value));
+            }
+            result = Collections.unmodifiableList(result);
+            sortablesToValues.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the value in
+     *         {@link #getDistinctSortableValues(Sortables)}, or -1 if it does
+     *         not occur there
+     */
+    int indexOfDistinctValue(Sortables key, SortableValue value) {
+        HashMap<SortableValue, Integer> indexes = sortablesToValueIndexes.get(key);
+        if (indexes == null) {
+            List<SortableValue> values = getDistinctSortableValues(key);
+            indexes = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                indexes.put(values.get(i), i);
+            }
+            sortablesToValueIndexes.put(key, indexes);
+        }
+        Integer index = indexes.get(value);
+        return index == null ? -1 : index;
+    }
+
     /**
      * used to update the status bar in mainframe with the number of bugs that
      * are filtered out
@@ -219,15 +297,9 @@ public class BugSet implements Iterable<BugLeafNode> {
         if (doneMap.containsKey(keyValuePair)) {
             return doneMap.get(keyValuePair);
         }
-        ArrayList<BugLeafNode> bugs = new ArrayList<>();
-
-        for (BugLeafNode b : mainList) {
-            if (b.matches(keyValuePair)) {
-                bugs.add(b);
-            }
-        }
+        ArrayList<BugLeafNode> bugs = getValueIndex(keyValuePair.key).get(keyValuePair.value);
 
-        BugSet temp = new BugSet(bugs);
+        BugSet temp = new BugSet(bugs == null ? Collections.<BugLeafNode> emptyList() : bugs);
         doneMap.put(keyValuePair, temp);
         return temp;
     }
@@ -237,9 +309,13 @@ public class BugSet implements Iterable<BugLeafNode> {
      * divider, if any.
      */
     void sortList() {
+        sortList(MainFrame.getInstance().getSorter().getOrderAfterDivider());
+    }
 
-        final List<Sortables> order = MainFrame.getInstance().getSorter().getOrderAfterDivider();
-
+    /*
+     * Sort the contents of the list by the given Sortables.
+     */
+    void sortList(final List<Sortables> order) {
         Comparator<BugLeafNode> comparator = new Comparator<BugLeafNode>() {
             int compare(int one, int two) {
                 if (one > two) {
@@ -294,6 +370,11 @@ public class BugSet implements Iterable<BugLeafNode> {
         ArrayList<BugLeafNode> copy = new ArrayList<>(mainList);
         Collections.sort(copy, comparator);
         mainList = copy;
+        // All depend on the order of mainList
+        valueIndex = new HashMap<>();
+        leafIndexes = null;
+        doneMap.clear();
+        clearCache();
 
         if (SystemProperties.ASSERTIONS_ENABLED) {
             for(int i = 0; i < mainList.size(); i++) {
@@ -352,7 +433,18 @@ public class BugSet implements Iterable<BugLeafNode> {
     }
 
     public int indexOfUnfiltered(BugLeafNode p) {
-        return mainList.indexOf(p);
+        if (leafIndexes == null) {
+            HashMap<BugLeafNode, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < mainList.size(); i++) {
+                BugLeafNode node = mainList.get(i);
+                if (!indexes.containsKey(node)) {
+                    indexes.put(node, i);
+                }
+            }
+            leafIndexes = indexes;
+        }
+        Integer index = leafIndexes.get(p);
+        return index == null ? -1 : index;
     }
 
     public BugLeafNode getUnfiltered(int index) {
@@ -388,8 +480,19 @@ public class BugSet implements Iterable<BugLeafNode> {
 
     BugSet cache = null;
 
+    /**
+     * Forget which bugs are displayed, in this set and in the sets of its
+     * queries, after the filters changed. The order of the bugs, the sets of
+     * the queries and the grouping of the bugs by sort value do not depend on
+     * the filters, and are kept.
+     */
     public void clearCache() {
         cache = null;
+        doneContainsMap.clear();
+        cacheSortables();
+        for (BugSet queried : doneMap.values()) {
+            queried.clearCache();
+        }
     }
 
     private BugSet filteredBugsCached() {
@@ -240,39 +240,36 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
     }
 
     /*
-     * This contract has been changed to return a HashList of Stringpair, our
-     * own data structure in which finding the index of an object in the list is
-     * very fast
+     * The values are cached by the queried BugSet, so getting the children of
+     * a branch one at a time doesn't build the list of values again for each
+     * child
      */
 
     private @Nonnull List<SortableValue> enumsThatExist(BugAspects a) {
-        List<Sortables> orderBeforeDivider = st.getOrderBeforeDivider();
-        if (orderBeforeDivider.size() == 0) {
+        Sortables key = childSortable(a);
+        if (key == null) {
             List<SortableValue> result = Collections.emptyList();
             assert false;
             return result;
         }
+        return bugSet.query(a).getDistinctSortableValues(key);
+    }
 
-        Sortables key;
-        if (a.size() == 0) {
-            key = orderBeforeDivider.get(0);
-        } else {
-            Sortables lastKey = a.last().key;
-            int index = orderBeforeDivider.indexOf(lastKey);
-            if (index + 1 < orderBeforeDivider.size()) {
-                key = orderBeforeDivider.get(index + 1);
-            } else {
-                key = lastKey;
-            }
+    private Sortables childSortable(BugAspects a) {
+        List<Sortables> orderBeforeDivider = st.getOrderBeforeDivider();
+        if (orderBeforeDivider.size() == 0) {
+            return null;
         }
 
-        String[] all = key.getAll(bugSet.query(a));
-        ArrayList<SortableValue> result = new ArrayList<>(all.length);
-        for (String i : all) {
-            result.add(new SortableValue(key, i));
+        if (a.size() == 0) {
+            return orderBeforeDivider.get(0);
         }
-        return result;
-
+        Sortables lastKey = a.last().key;
+        int index = orderBeforeDivider.indexOf(lastKey);
+        if (index + 1 < orderBeforeDivider.size()) {
+            return orderBeforeDivider.get(index + 1);
+        }
+        return lastKey;
     }
 
     @Override
@@ -293,8 +290,11 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
         if (isLeaf(child)) {
             return bugSet.query((BugAspects) parent).indexOf((BugLeafNode) child);
         } else {
-            List<SortableValue> stringPairs = enumsThatExist((BugAspects) parent);
-            return stringPairs.indexOf(((BugAspects) child).last());
+            Sortables key = childSortable((BugAspects) parent);
+            if (key == null) {
+                return -1;
+            }
+            return bugSet.query((BugAspects) parent).indexOfDistinctValue(key, ((BugAspects) child).last());
 
         }
     }
@@ -463,7 +463,7 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
         if (TRACE) {
             System.out.println("Reseting data in bug tree model");
         }
-        bugSet = new BugSet(bugSet);
+        bugSet.clearCache();
     }
 
     FilterListener bugTreeFilterListener = new MyFilterListener();
@@ -474,14 +474,35 @@ public class BugTreeModel implements TreeModel, TableColumnModelListener, TreeEx
             if (TRACE) {
                 System.out.println("clearing cache in bug tree model");
             }
+            if (!SwingUtilities.isEventDispatchThread()) {
+                SwingUtilities.invokeLater(this::clearCache);
+                return;
+            }
+            if (rebuildingThread != null) {
+                // The model being built replaces this one
+                rebuild();
+                return;
+            }
+            // The filters only change which bugs are displayed: the sorted
+            // bugs and their grouping by sort value are kept, and the
+            // branches are recomputed in place instead of building a new
+            // model and tree
+            NewFilterFromBug.closeAll();
+            setOldSelectedBugs();
             resetData();
-            BugSet.setAsRootAndCache(bugSet);// FIXME: Should this be in
-            // resetData? Does this allow our
-            // main list to not be the same as
-            // the data in our tree?
+            BugSet mainBugSet = BugSet.getMainBugSet();
+            if (mainBugSet != null && mainBugSet != bugSet) {
+                mainBugSet.clearCache();
+            }
             root.setCount(bugSet.size());
 
-            rebuild();
+            TreeModelEvent event = new TreeModelEvent(BugTreeModel.this, new TreePath(root));
+            for (TreeModelListener l : listeners) {
+                l.treeStructureChanged(event);
+            }
+            openPreviouslySelected(getOldSelectedBugs());
+            mainFrame.mainFrameTree.expandTree(10);
+            mainFrame.mainFrameTree.expandToFirstLeaf(14);
         }
 
     }
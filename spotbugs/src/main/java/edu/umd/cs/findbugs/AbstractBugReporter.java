@@ -224,7 +224,7 @@ public abstract class AbstractBugReporter implements BugReporter {
     }
 
     @Override
-    public void reportMissingClass(ClassNotFoundException ex) {
+    public synchronized void reportMissingClass(ClassNotFoundException ex) {
         if (DEBUG_MISSING_CLASSES) {
             System.out.println("Missing class: " + ex.toString());
             ex.printStackTrace(System.out);
@@ -276,7 +276,7 @@ public abstract class AbstractBugReporter implements BugReporter {
      * .cs.findbugs.classfile.ClassDescriptor)
      */
     @Override
-    public void reportMissingClass(ClassDescriptor classDescriptor) {
+    public synchronized void reportMissingClass(ClassDescriptor classDescriptor) {
         if (DEBUG_MISSING_CLASSES) {
             System.out.println("Missing class: " + classDescriptor);
             new Throwable().printStackTrace(System.out);
@@ -310,7 +310,7 @@ public abstract class AbstractBugReporter implements BugReporter {
     }
 
     @Override
-    public void logError(String message) {
+    public synchronized void logError(String message) {
         if (verbosityLevel == SILENT) {
             return;
         }
@@ -336,7 +336,7 @@ public abstract class AbstractBugReporter implements BugReporter {
     }
 
     @Override
-    public void logError(String message, Throwable e) {
+    public synchronized void logError(String message, Throwable e) {
 
         if (e instanceof MethodUnprofitableException) {
             // TODO: log this
@@ -0,0 +1,571 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import edu.umd.cs.findbugs.config.CommandLine;
+import edu.umd.cs.findbugs.config.CommandLine.HelpRequestedException;
+import edu.umd.cs.findbugs.filter.FilterException;
+
+/**
+ * A long-lived SpotBugs process which runs the analyses requested by build
+ * tools, so that they do not pay for starting a JVM, loading the plugins and
+ * warming up the JIT compiler for every module they analyze.
+ * <p>
+ * The daemon listens on a port of the loopback interface. It writes the port,
+ * and a random token that clients must send with every request, to a port
+ * file only the current user can read. A request holds the same arguments as
+ * the command line of {@link FindBugs2}; paths in it should be absolute, since
+ * relative ones are resolved in the working directory of the daemon. The output
+ * of each analysis is sent back to the client that requested it.
+ * {@link AnalysisDaemonClient} sends requests.
+ * <p>
+ * The daemon handles one request at a time: an analysis redirects
+ * <code>System.out</code> and <code>System.err</code>, and its options change
+ * plugins, detectors and bug patterns for the whole process. Clients connecting
+ * while an analysis runs wait in the backlog of the server socket until the
+ * requests before them are done, so build tools that analyze modules in
+ * parallel should start one daemon per worker.
+ * <p>
+ * Each request is analyzed by a new engine, and the changes the command line
+ * options make to plugins, detectors and bug patterns are undone after it, so
+ * its results are the same as those of a command line run. Plugins loaded with
+ * <code>-pluginList</code> are kept between requests, but only take part in
+ * the requests that list them. The least recently used ones are dropped when
+ * more than <code>-maxPlugins</code> are kept, and a plugin is loaded again
+ * when its jar file changes. The daemon stops when it gets no request for
+ * <code>-idleTimeout</code> minutes.
+ */
+public class AnalysisDaemon {
+    static final int PROTOCOL_VERSION = 1;
+
+    /** Frame holding bytes the analysis wrote to System.out */
+    static final int OUTPUT_FRAME = 1;
+
+    /** Frame holding bytes the analysis wrote to System.err */
+    static final int ERROR_FRAME = 2;
+
+    /** Last frame of a response, holding the result of the analysis */
+    static final int RESULT_FRAME = 3;
+
+    static final String PORT_PROPERTY = "port";
+
+    static final String TOKEN_PROPERTY = "token";
+
+    private static final Logger LOG = Logger.getLogger(AnalysisDaemon.class.getName());
+
+    /** Milliseconds a connected client may take to send its request */
+    private static final int REQUEST_TIMEOUT = 60 * 1000;
+
+    private final ServerSocket serverSocket;
+
+    private final File portFile;
+
+    private final String token;
+
+    private final int maxPlugins;
+
+    /** Whether the plugins loaded when the daemon started are enabled */
+    private final Map<Plugin, Boolean> initialPlugins = new HashMap<>();
+
+    /**
+     * The plugins loaded by requests, least recently used first, with the
+     * stamp of their jar file when they were loaded
+     */
+    private final LinkedHashMap<Plugin, String> customPlugins = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Start a daemon, and write its port file.
+     *
+     * @param portFile
+     *            the file to write the port and token of the daemon to
+     * @param idleTimeout
+     *            milliseconds without requests after which the daemon stops,
+     *            or 0 to never stop; at most {@link Integer#MAX_VALUE}
+     *            milliseconds are waited
+     * @param maxPlugins
+     *            the maximum number of plugins loaded by requests to keep
+     */
+    public AnalysisDaemon(File portFile, long idleTimeout, int maxPlugins) throws IOException {
+        this.portFile = portFile;
+        this.maxPlugins = maxPlugins;
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder buf = new StringBuilder();
+        for (byte b : secret) {
+            buf.append(String.format("%02x", b & 0xff));
+        }
+        token = buf.toString();
+
+        for (Plugin plugin : DetectorFactoryCollection.instance().plugins()) {
+            initialPlugins.put(plugin, plugin.isGloballyEnabled());
+        }
+
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout((int) Math.min(idleTimeout, Integer.MAX_VALUE));
+        try {
+            writePortFile();
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    private void writePortFile() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT_PROPERTY, Integer.toString(serverSocket.getLocalPort()));
+        properties.setProperty(TOKEN_PROPERTY, token);
+
+        Path target = portFile.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        Path temp;
+        if (target.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            temp = Files.createTempFile(target.getParent(), portFile.getName(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            temp = Files.createTempFile(target.getParent(), portFile.getName(), ".tmp");
+        }
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(out, "SpotBugs analysis daemon");
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the port the daemon listens on
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serve requests until the daemon has been idle for too long, or
+     * {@link #stop()} is called.
+     */
+    public void run() throws IOException {
+        try {
+            while (true) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    LOG.info("No analysis requested for a while, stopping");
+                    return;
+                } catch (SocketException e) {
+                    if (serverSocket.isClosed()) {
+                        return;
+                    }
+                    throw e;
+                }
+                try (Socket s = socket) {
+                    handle(s);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Failed to answer an analysis request", e);
+                }
+            }
+        } finally {
+            serverSocket.close();
+            Files.deleteIfExists(portFile.toPath());
+        }
+    }
+
+    /**
+     * Stop accepting requests. The request being handled, if any, is
+     * completed before {@link #run()} returns.
+     */
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        int version = in.readInt();
+        String requestToken = readString(in);
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8))) {
+            LOG.warning("Rejected an analysis request with a wrong token");
+            return;
+        }
+        if (version != PROTOCOL_VERSION) {
+            writeResult(out, new AnalysisDaemonClient.Result(1, 0, 0, 0, "Unsupported protocol version " + version
+                    + ", the daemon speaks version " + PROTOCOL_VERSION));
+            return;
+        }
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in);
+        }
+        socket.setSoTimeout(0);
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream requestOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, OUTPUT_FRAME)), true);
+        PrintStream requestErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, ERROR_FRAME)), true);
+        AnalysisDaemonClient.Result result;
+        System.setOut(requestOut);
+        System.setErr(requestErr);
+        try {
+            result = analyze(args);
+        } finally {
+            requestOut.flush();
+            requestErr.flush();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        writeResult(out, result);
+    }
+
+    private static void writeResult(DataOutputStream out, AnalysisDaemonClient.Result result) throws IOException {
+        out.writeByte(RESULT_FRAME);
+        out.writeInt(result.getExitCode());
+        out.writeInt(result.getBugCount());
+        out.writeInt(result.getMissingClassCount());
+        out.writeInt(result.getErrorCount());
+        String failure = result.getFailure();
+        out.writeBoolean(failure != null);
+        if (failure != null) {
+            writeString(out, failure);
+        }
+        out.flush();
+    }
+
+    /**
+     * Run the analysis requested with the given command line, like
+     * {@link FindBugs2#main(String[])} does, and undo the changes its options
+     * made to the loaded plugins.
+     */
+    private AnalysisDaemonClient.Result analyze(String[] args) {
+        unloadChangedPlugins();
+        GlobalSettings settings = new GlobalSettings();
+        try {
+            return analyze0(args);
+        } finally {
+            settings.restore();
+            unloadCustomPlugins();
+        }
+    }
+
+    private AnalysisDaemonClient.Result analyze0(String[] args) {
+        FindBugs2 findBugs = new FindBugs2();
+        TextUICommandLine commandLine = new TextUICommandLine();
+        try {
+            String[] argv = commandLine.expandOptionFiles(args, true, true);
+            if (Arrays.asList(argv).contains("-showPlugins")) {
+                return failure(1, "-showPlugins cannot be used with the analysis daemon");
+            }
+            int argCount = commandLine.parse(argv);
+            Project project = commandLine.getProject();
+            for (int i = argCount; i < argv.length; ++i) {
+                project.addFile(argv[i]);
+            }
+            commandLine.handleXArgs();
+            commandLine.configureEngine(findBugs);
+
+            boolean justPrintConfiguration = commandLine.justPrintConfiguration();
+            if (justPrintConfiguration || commandLine.justPrintVersion()) {
+                Version.printVersion(justPrintConfiguration);
+                return new AnalysisDaemonClient.Result(0, 0, 0, 0, null);
+            }
+            if (project.getFileCount() == 0) {
+                return failure(1, "No files to be analyzed");
+            }
+        } catch (HelpRequestedException e) {
+            FindBugs.showSynopsis();
+            FindBugs.showCommandLineOptions(commandLine);
+            return failure(1, "Help requested");
+        } catch (IllegalArgumentException | IOException | FilterException e) {
+            return failure(1, e.getMessage());
+        }
+
+        try {
+            findBugs.execute();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(commandLine.setExitCode() ? ExitCodes.ERROR_FLAG : 1, e.toString());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return failure(commandLine.setExitCode() ? ExitCodes.ERROR_FLAG : 1, e.toString());
+        } finally {
+            findBugs.dispose();
+        }
+
+        int bugCount = findBugs.getBugCount();
+        int missingClassCount = findBugs.getMissingClassCount();
+        int errorCount = findBugs.getErrorCount();
+        int exitCode = 0;
+        if (commandLine.setExitCode()) {
+            if (errorCount > 0) {
+                exitCode |= ExitCodes.ERROR_FLAG;
+            }
+            if (missingClassCount > 0) {
+                exitCode |= ExitCodes.MISSING_CLASS_FLAG;
+            }
+            if (bugCount > 0) {
+                exitCode |= ExitCodes.BUGS_FOUND_FLAG;
+            }
+        }
+        return new AnalysisDaemonClient.Result(exitCode, bugCount, missingClassCount, errorCount, null);
+    }
+
+    private static AnalysisDaemonClient.Result failure(int exitCode, String message) {
+        System.err.println(message);
+        return new AnalysisDaemonClient.Result(exitCode, 0, 0, 0, message);
+    }
+
+    /**
+     * Remove the kept plugins whose jar file changed since they were loaded,
+     * so that requests listing them load them again.
+     */
+    private void unloadChangedPlugins() {
+        for (Iterator<Map.Entry<Plugin, String>> i = customPlugins.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Plugin, String> e = i.next();
+            if (!e.getValue().equals(getStamp(e.getKey()))) {
+                Plugin.removeCustomPlugin(e.getKey());
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Unregister the plugins the request loaded, so that they take no part in
+     * the next requests unless they list them again. Plugins which have not
+     * been used for the longest time are removed if too many are kept.
+     */
+    private void unloadCustomPlugins() {
+        DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+        for (Plugin plugin : new ArrayList<>(detectorFactoryCollection.plugins())) {
+            if (plugin.isCorePlugin() || initialPlugins.containsKey(plugin)) {
+                continue;
+            }
+            detectorFactoryCollection.unLoadPlugin(plugin);
+            if (customPlugins.get(plugin) == null) {
+                customPlugins.put(plugin, getStamp(plugin));
+            }
+        }
+        for (Iterator<Plugin> i = customPlugins.keySet().iterator(); customPlugins.size() > maxPlugins && i.hasNext();) {
+            Plugin.removeCustomPlugin(i.next());
+            i.remove();
+        }
+    }
+
+    private static String getStamp(Plugin plugin) {
+        URL url = plugin.getPluginLoader().getURL();
+        if (!"file".equals(url.getProtocol())) {
+            return url.toString();
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.length() + "@" + file.lastModified();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return url.toString();
+        }
+    }
+
+    /**
+     * The state which command line options change outside of the engine they
+     * configure.
+     */
+    private class GlobalSettings {
+        final @CheckForNull String home = FindBugs.getHome();
+
+        final boolean adjustExperimental = BugInstance.isAdjustExperimental();
+
+        final Map<DetectorFactory, Integer> detectorPriorityAdjustments = new HashMap<>();
+
+        final Map<BugPattern, Integer> patternPriorityAdjustments = new HashMap<>();
+
+        GlobalSettings() {
+            DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+            for (Iterator<DetectorFactory> i = detectorFactoryCollection.factoryIterator(); i.hasNext();) {
+                DetectorFactory factory = i.next();
+                detectorPriorityAdjustments.put(factory, factory.getPriorityAdjustment());
+            }
+            for (BugPattern pattern : detectorFactoryCollection.getBugPatterns()) {
+                patternPriorityAdjustments.put(pattern, pattern.getPriorityAdjustment());
+            }
+        }
+
+        void restore() {
+            FindBugs.setHome(home);
+            BugInstance.setAdjustExperimental(adjustExperimental);
+            DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+            for (Iterator<DetectorFactory> i = detectorFactoryCollection.factoryIterator(); i.hasNext();) {
+                DetectorFactory factory = i.next();
+                Integer adjustment = detectorPriorityAdjustments.get(factory);
+                factory.setPriorityAdjustment(adjustment != null ? adjustment : 0);
+            }
+            for (BugPattern pattern : detectorFactoryCollection.getBugPatterns()) {
+                Integer adjustment = patternPriorityAdjustments.get(pattern);
+                pattern.adjustPriority((adjustment != null ? adjustment : 0) - pattern.getPriorityAdjustment());
+            }
+            for (Plugin plugin : Plugin.getAllPlugins()) {
+                Boolean enabled = initialPlugins.get(plugin);
+                boolean expected = enabled != null ? enabled : plugin.isEnabledByDefault();
+                if (!plugin.isCorePlugin() && plugin.isGloballyEnabled() != expected && !plugin.cannotDisable()) {
+                    plugin.setGloballyEnabled(expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends what is written to it to the client as frames of the given type.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        private final int type;
+
+        FrameOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class DaemonCommandLine extends CommandLine {
+        @CheckForNull File portFile;
+
+        int idleTimeout = 3 * 60;
+
+        int maxPlugins = 16;
+
+        DaemonCommandLine() {
+            addOption("-portFile", "file", "write the port and the token of the daemon to this file");
+            addOption("-idleTimeout", "minutes", "stop after this many minutes without requests, 0 to never stop (default 180)");
+            addOption("-maxPlugins", "count", "keep at most this many plugins loaded by requests (default 16)");
+        }
+
+        @Override
+        protected void handleOption(String option, String optionExtraPart) {
+            throw new IllegalArgumentException("Unknown option : " + option);
+        }
+
+        @Override
+        protected void handleOptionWithArgument(String option, String argument) {
+            if ("-portFile".equals(option)) {
+                portFile = new File(argument);
+            } else if ("-idleTimeout".equals(option)) {
+                idleTimeout = Integer.parseInt(argument);
+            } else if ("-maxPlugins".equals(option)) {
+                maxPlugins = Integer.parseInt(argument);
+            } else {
+                throw new IllegalArgumentException("Unknown option : " + option);
+            }
+        }
+    }
+
+    @SuppressFBWarnings("DM_EXIT")
+    public static void main(String[] args) throws IOException {
+        if (!CheckBcel.check()) {
+            System.exit(1);
+        }
+        DaemonCommandLine commandLine = new DaemonCommandLine();
+        commandLine.parse(args, 0, 0, "Usage: " + AnalysisDaemon.class.getName() + " [options]");
+        if (commandLine.portFile == null) {
+            System.err.println("The -portFile option is required");
+            commandLine.printUsage(System.err);
+            System.exit(1);
+        }
+        AnalysisDaemon daemon = new AnalysisDaemon(commandLine.portFile, TimeUnit.MINUTES.toMillis((long) commandLine.idleTimeout),
+                commandLine.maxPlugins);
+        LOG.info("Analysis daemon listening on port " + daemon.getPort());
+        daemon.run();
+    }
+}
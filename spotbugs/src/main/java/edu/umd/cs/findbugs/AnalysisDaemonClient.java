@@ -0,0 +1,195 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Sends analysis requests to an {@link AnalysisDaemon}.
+ */
+public class AnalysisDaemonClient {
+    /**
+     * The outcome of an analysis run by the daemon.
+     */
+    public static class Result {
+        private final int exitCode;
+
+        private final int bugCount;
+
+        private final int missingClassCount;
+
+        private final int errorCount;
+
+        private final @CheckForNull String failure;
+
+        Result(int exitCode, int bugCount, int missingClassCount, int errorCount, @CheckForNull String failure) {
+            this.exitCode = exitCode;
+            this.bugCount = bugCount;
+            this.missingClassCount = missingClassCount;
+            this.errorCount = errorCount;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the exit code the command line would have exited with
+         */
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public int getBugCount() {
+            return bugCount;
+        }
+
+        public int getMissingClassCount() {
+            return missingClassCount;
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * @return why the analysis could not be run or did not complete, or
+         *         null if it completed
+         */
+        public @CheckForNull String getFailure() {
+            return failure;
+        }
+    }
+
+    private final int port;
+
+    private final String token;
+
+    /**
+     * @param portFile
+     *            the port file written by the daemon
+     * @throws IOException
+     *             if the port file cannot be read
+     */
+    public AnalysisDaemonClient(File portFile) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(portFile.toPath())) {
+            properties.load(in);
+        }
+        String portProperty = properties.getProperty(AnalysisDaemon.PORT_PROPERTY);
+        token = properties.getProperty(AnalysisDaemon.TOKEN_PROPERTY);
+        if (portProperty == null || token == null) {
+            throw new IOException("Invalid analysis daemon port file " + portFile);
+        }
+        try {
+            port = Integer.parseInt(portProperty);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid port in analysis daemon port file " + portFile, e);
+        }
+    }
+
+    /**
+     * Run an analysis in the daemon.
+     *
+     * @param args
+     *            the command line arguments of the analysis, as for
+     *            {@link FindBugs2}
+     * @param out
+     *            receives what the analysis writes to its standard output
+     * @param err
+     *            receives what the analysis writes to its standard error
+     * @return the result of the analysis
+     * @throws IOException
+     *             if the daemon cannot be reached, or the connection fails
+     */
+    public Result analyze(List<String> args, OutputStream out, OutputStream err) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            request.writeInt(AnalysisDaemon.PROTOCOL_VERSION);
+            AnalysisDaemon.writeString(request, token);
+            request.writeInt(args.size());
+            for (String arg : args) {
+                AnalysisDaemon.writeString(request, arg);
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] buf = new byte[8192];
+            while (true) {
+                int type = response.read();
+                switch (type) {
+                case AnalysisDaemon.OUTPUT_FRAME:
+                case AnalysisDaemon.ERROR_FRAME:
+                    OutputStream target = type == AnalysisDaemon.OUTPUT_FRAME ? out : err;
+                    for (int remaining = response.readInt(); remaining > 0;) {
+                        int n = response.read(buf, 0, Math.min(remaining, buf.length));
+                        if (n < 0) {
+                            throw new IOException("Connection to the analysis daemon closed unexpectedly");
+                        }
+                        target.write(buf, 0, n);
+                        remaining -= n;
+                    }
+                    target.flush();
+                    break;
+                case AnalysisDaemon.RESULT_FRAME:
+                    int exitCode = response.readInt();
+                    int bugCount = response.readInt();
+                    int missingClassCount = response.readInt();
+                    int errorCount = response.readInt();
+                    String failure = response.readBoolean() ? AnalysisDaemon.readString(response) : null;
+                    return new Result(exitCode, bugCount, missingClassCount, errorCount, failure);
+                case -1:
+                    throw new IOException("The analysis daemon rejected the request");
+                default:
+                    throw new IOException("Unexpected response from the analysis daemon: " + type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run an analysis in the daemon whose port file is given with the
+     * <code>-portFile</code> option, passing it the remaining arguments, and
+     * exit with the exit code of the analysis.
+     */
+    @SuppressFBWarnings("DM_EXIT")
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !"-portFile".equals(args[0])) {
+            System.err.println("Usage: " + AnalysisDaemonClient.class.getName() + " -portFile <file> <analysis arguments>");
+            System.exit(1);
+        }
+        AnalysisDaemonClient client = new AnalysisDaemonClient(new File(args[1]));
+        Result result = client.analyze(Arrays.asList(args).subList(2, args.length), System.out, System.err);
+        System.exit(result.getExitCode());
+    }
+}
@@ -76,6 +76,22 @@ public class AnalysisOptions {
      */
     public boolean noClassOk;
 
+    /**
+     * number of threads used to analyze the classes of a reporting pass
+     */
+    public int threads = 1;
+
+    /**
+     * file storing the warnings of each class between runs, or null
+     */
+    public String incrementalCacheFile;
+
+    /**
+     * directory storing the first pass summaries of auxiliary codebases between
+     * runs, or null
+     */
+    public String auxSummaryCacheDirectory;
+
     String releaseName;
 
     String projectName;
@@ -0,0 +1,584 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.ba.ClassHash;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * On-disk store of the summaries the {@link PersistentSummaryDetector}s of the
+ * first pass write for the classes of auxiliary codebases.
+ * <p>
+ * There is one file for each auxiliary jar file, named after a checksum of
+ * its contents, so the summaries stay valid for as long as the jar file does
+ * not change, no matter where it is located. The checksums are stored as
+ * well, with the size and modification time of the jar files they were
+ * computed for, and a jar file is only read again when either of them
+ * changed. When the stored summary of a
+ * class is restored, the class is not visited by the detectors whose
+ * summaries are stored; other detectors of the first pass still visit it.
+ * <p>
+ * The summaries of a class may depend on its subtypes in other codebases, so
+ * the summaries of a jar file are only reused if the classes outside of it
+ * extending its classes, and the methods they declare, are the same as when
+ * the summaries were stored. They are discarded as well if the SpotBugs
+ * version or the detectors whose summaries are stored change.
+ *
+ * @see AnalysisOptions#auxSummaryCacheDirectory
+ */
+class AuxSummaryCache {
+    private static final boolean DEBUG = FindBugs2.DEBUG;
+
+    private static final int MAGIC = 0x53425353;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".summaries";
+
+    private static final String CHECKSUMS_FILE = "checksums";
+
+    private static class Checksum {
+        final long size;
+
+        final long lastModified;
+
+        final String checksum;
+
+        Checksum(long size, long lastModified, String checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+
+    private static class CodeBaseSummaries {
+        final int index;
+
+        final File file;
+
+        /** summary records of the classes, by class name */
+        final Map<String, byte[]> records = new TreeMap<>();
+
+        /** external subtypes of the classes when the records were written */
+        @CheckForNull
+        String storedDependencies;
+
+        String dependencies;
+
+        boolean modified;
+
+        CodeBaseSummaries(int index, File file) {
+            this.index = index;
+            this.file = file;
+        }
+    }
+
+    private final File directory;
+
+    private final IClassPath classPath;
+
+    private final BugReporter bugReporter;
+
+    /** persistent detectors, in the order of the detectors of the pass */
+    private final PersistentSummaryDetector[] detectors;
+
+    private final String configuration;
+
+    /** summaries of the cacheable codebases, null for other codebases */
+    private final Map<ICodeBase, CodeBaseSummaries> codeBases = new IdentityHashMap<>();
+
+    private final List<CodeBaseSummaries> codeBaseList = new ArrayList<>();
+
+    /** checksums of jar files, by absolute path */
+    private final Map<String, Checksum> checksums = new TreeMap<>();
+
+    private boolean checksumsModified;
+
+    private int checksummedJars;
+
+    private int restoredClasses;
+
+    /**
+     * Constructor. Reads the stored summaries of the auxiliary jar files the
+     * given classes belong to.
+     *
+     * @param directory
+     *            the directory summaries are stored in
+     * @param pass
+     *            the first pass
+     * @param detectorList
+     *            the detectors of the pass, as instantiated
+     * @param classPath
+     *            the classpath
+     * @param classes
+     *            the classes visited in the first pass
+     * @param bugReporter
+     *            the BugReporter errors are logged to
+     */
+    AuxSummaryCache(File directory, AnalysisPass pass, Detector2[] detectorList, IClassPath classPath,
+            Collection<ClassDescriptor> classes, BugReporter bugReporter) {
+        this.directory = directory;
+        this.classPath = classPath;
+        this.bugReporter = bugReporter;
+        this.detectors = new PersistentSummaryDetector[detectorList.length];
+        MessageDigest digest = Util.getMD5Digest();
+        update(digest, Version.VERSION_STRING);
+        update(digest, String.valueOf(FORMAT_VERSION));
+        Iterator<DetectorFactory> factories = pass.iterator();
+        for (int i = 0; i < detectorList.length; i++) {
+            DetectorFactory factory = factories.next();
+            detectors[i] = asPersistentSummaryDetector(detectorList[i]);
+            if (detectors[i] != null) {
+                update(digest, factory.getFullName());
+                update(digest, factory.getPlugin().getVersion());
+            }
+        }
+        configuration = ClassHash.hashToString(digest.digest());
+
+        File checksumsFile = new File(directory, CHECKSUMS_FILE);
+        if (checksumsFile.isFile()) {
+            try {
+                readChecksums(checksumsFile);
+            } catch (IOException | RuntimeException e) {
+                checksums.clear();
+                bugReporter.logError("Unable to read stored checksums " + checksumsFile, e);
+            }
+        }
+        for (ClassDescriptor c : classes) {
+            getCodeBaseSummaries(c);
+        }
+        computeDependencies(classes);
+        for (CodeBaseSummaries summaries : codeBaseList) {
+            if (!summaries.dependencies.equals(summaries.storedDependencies)) {
+                if (DEBUG && summaries.storedDependencies != null) {
+                    System.out.println("Subtypes of classes changed, ignoring " + summaries.file);
+                }
+                summaries.records.clear();
+            }
+        }
+    }
+
+    private static @CheckForNull PersistentSummaryDetector asPersistentSummaryDetector(Detector2 detector) {
+        if (detector instanceof PersistentSummaryDetector) {
+            return (PersistentSummaryDetector) detector;
+        }
+        if (detector instanceof DetectorToDetector2Adapter) {
+            Detector adapted = ((DetectorToDetector2Adapter) detector).getDetector();
+            if (adapted instanceof PersistentSummaryDetector) {
+                return (PersistentSummaryDetector) adapted;
+            }
+        }
+        return null;
+    }
+
+    private static void update(MessageDigest digest, @CheckForNull String s) {
+        digest.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @param i
+     *            index of a detector of the pass
+     * @return true if the summaries of the detector are stored
+     */
+    boolean isPersistent(int i) {
+        return detectors[i] != null;
+    }
+
+    /**
+     * @return number of jar files whose checksum was computed, instead of
+     *         being read from the stored checksums
+     */
+    int getChecksummedJars() {
+        return checksummedJars;
+    }
+
+    /**
+     * @return number of classes whose summaries were restored
+     */
+    int getRestoredClasses() {
+        return restoredClasses;
+    }
+
+    private @CheckForNull CodeBaseSummaries getCodeBaseSummaries(ClassDescriptor c) {
+        ICodeBase codeBase;
+        try {
+            codeBase = classPath.lookupResource(c.toResourceName()).getCodeBase();
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+        if (codeBases.containsKey(codeBase)) {
+            return codeBases.get(codeBase);
+        }
+        CodeBaseSummaries summaries = null;
+        if (!codeBase.isApplicationCodeBase() && codeBase.getPathName() != null) {
+            File jarFile = new File(codeBase.getPathName());
+            if (jarFile.isFile()) {
+                try {
+                    File file = new File(directory, getChecksum(jarFile) + FILE_SUFFIX);
+                    summaries = new CodeBaseSummaries(codeBaseList.size(), file);
+                    if (file.isFile()) {
+                        read(summaries);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    bugReporter.logError("Unable to read stored summaries of " + jarFile, e);
+                    if (summaries != null) {
+                        summaries.records.clear();
+                        summaries.storedDependencies = null;
+                    }
+                }
+                if (summaries != null) {
+                    codeBaseList.add(summaries);
+                }
+            }
+        }
+        codeBases.put(codeBase, summaries);
+        return summaries;
+    }
+
+    /**
+     * @return the stored checksum of a jar file, if its size and modification
+     *         time did not change, or else its newly computed checksum
+     */
+    private String getChecksum(File jarFile) throws IOException {
+        String path = jarFile.getAbsolutePath();
+        long size = jarFile.length();
+        long lastModified = jarFile.lastModified();
+        Checksum stored = checksums.get(path);
+        if (stored != null && stored.size == size && stored.lastModified == lastModified) {
+            return stored.checksum;
+        }
+        String checksum = checksum(jarFile);
+        checksums.put(path, new Checksum(size, lastModified, checksum));
+        checksumsModified = true;
+        checksummedJars++;
+        return checksum;
+    }
+
+    private static String checksum(File file) throws IOException {
+        MessageDigest digest = Util.getMD5Digest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        return ClassHash.hashToString(digest.digest());
+    }
+
+    private void readChecksums(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format of " + file);
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                checksums.put(path, new Checksum(size, lastModified, in.readUTF()));
+            }
+        }
+    }
+
+    private void read(CodeBaseSummaries summaries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(
+                summaries.file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unknown format of " + summaries.file);
+            }
+            if (!configuration.equals(in.readUTF())) {
+                if (DEBUG) {
+                    System.out.println("Analysis configuration changed, ignoring " + summaries.file);
+                }
+                return;
+            }
+            summaries.storedDependencies = in.readUTF();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String className = in.readUTF();
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                summaries.records.put(className, record);
+            }
+        }
+    }
+
+    /**
+     * For each cacheable codebase, compute a digest of the classes in other
+     * codebases which are subtypes of its classes, and of the methods they
+     * declare.
+     */
+    private void computeDependencies(Collection<ClassDescriptor> classes) {
+        Map<ClassDescriptor, BitSet> supertypeCodeBases = new HashMap<>();
+        List<TreeSet<String>> externalSubtypes = new ArrayList<>();
+        for (int i = 0; i < codeBaseList.size(); i++) {
+            externalSubtypes.add(new TreeSet<>());
+        }
+        Map<String, XClass> classByName = new HashMap<>();
+        for (ClassDescriptor c : classes) {
+            BitSet bits = getSupertypeCodeBases(c, supertypeCodeBases);
+            if (bits.isEmpty()) {
+                continue;
+            }
+            CodeBaseSummaries own = getCodeBaseSummaries(c);
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                if (own == null || own.index != i) {
+                    externalSubtypes.get(i).add(c.getClassName());
+                }
+            }
+            classByName.put(c.getClassName(), lookupXClass(c));
+        }
+        for (CodeBaseSummaries summaries : codeBaseList) {
+            MessageDigest digest = Util.getMD5Digest();
+            for (String className : externalSubtypes.get(summaries.index)) {
+                update(digest, className);
+                TreeSet<String> methods = new TreeSet<>();
+                for (XMethod m : classByName.get(className).getXMethods()) {
+                    methods.add(m.getName() + m.getSignature() + (m.isStatic() ? " static" : "")
+                            + (m.isAbstract() ? " abstract" : ""));
+                }
+                for (String m : methods) {
+                    update(digest, m);
+                }
+            }
+            summaries.dependencies = ClassHash.hashToString(digest.digest());
+        }
+    }
+
+    /**
+     * @return the indices of the cacheable codebases containing supertypes of
+     *         the class
+     */
+    private BitSet getSupertypeCodeBases(ClassDescriptor c, Map<ClassDescriptor, BitSet> cache) {
+        BitSet result = cache.get(c);
+        if (result != null) {
+            return result;
+        }
+        result = new BitSet();
+        cache.put(c, result);
+        XClass xClass = lookupXClass(c);
+        if (xClass == null) {
+            return result;
+        }
+        List<ClassDescriptor> supertypes = new ArrayList<>();
+        if (xClass.getSuperclassDescriptor() != null) {
+            supertypes.add(xClass.getSuperclassDescriptor());
+        }
+        for (ClassDescriptor i : xClass.getInterfaceDescriptorList()) {
+            supertypes.add(i);
+        }
+        for (ClassDescriptor supertype : supertypes) {
+            result.or(getSupertypeCodeBases(supertype, cache));
+            CodeBaseSummaries summaries = getCodeBaseSummaries(supertype);
+            if (summaries != null) {
+                result.set(summaries.index);
+            }
+        }
+        return result;
+    }
+
+    private static @CheckForNull XClass lookupXClass(ClassDescriptor c) {
+        try {
+            return Global.getAnalysisCache().getClassAnalysis(XClass.class, c);
+        } catch (CheckedAnalysisException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Restore the stored summaries of a class, if there are any.
+     *
+     * @param c
+     *            the class
+     * @return true if the summaries were restored, and the class need not be
+     *         visited by the persistent detectors
+     */
+    boolean restore(ClassDescriptor c) {
+        CodeBaseSummaries summaries = getCodeBaseSummaries(c);
+        if (summaries == null) {
+            return false;
+        }
+        byte[] record = summaries.records.get(c.getClassName());
+        if (record == null) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            for (PersistentSummaryDetector detector : detectors) {
+                if (detector != null) {
+                    byte[] summary = new byte[in.readInt()];
+                    in.readFully(summary);
+                    detector.readSummary(c, new DataInputStream(new ByteArrayInputStream(summary)));
+                }
+            }
+        } catch (IOException | CheckedAnalysisException | RuntimeException e) {
+            bugReporter.logError("Unable to restore stored summary of " + c.toDottedClassName(), e);
+            summaries.records.remove(c.getClassName());
+            summaries.modified = true;
+            return false;
+        }
+        restoredClasses++;
+        return true;
+    }
+
+    /**
+     * Store the summaries of a class the persistent detectors just visited.
+     *
+     * @param c
+     *            the class
+     */
+    void record(ClassDescriptor c) {
+        CodeBaseSummaries summaries = getCodeBaseSummaries(c);
+        if (summaries == null) {
+            return;
+        }
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            for (PersistentSummaryDetector detector : detectors) {
+                if (detector != null) {
+                    ByteArrayOutputStream summary = new ByteArrayOutputStream();
+                    detector.writeSummary(c, new DataOutputStream(summary));
+                    out.writeInt(summary.size());
+                    summary.writeTo(out);
+                }
+            }
+        } catch (IOException | CheckedAnalysisException | RuntimeException e) {
+            bugReporter.logError("Unable to store summary of " + c.toDottedClassName(), e);
+            return;
+        }
+        summaries.records.put(c.getClassName(), record.toByteArray());
+        summaries.modified = true;
+    }
+
+    /**
+     * Write the summaries of the codebases for which new summaries were
+     * recorded, and the checksums computed for the jar files.
+     *
+     * @throws IOException
+     *             if the summaries can't be written
+     */
+    void save() throws IOException {
+        if (checksumsModified) {
+            saveChecksums();
+        }
+        for (CodeBaseSummaries summaries : codeBaseList) {
+            if (!summaries.modified && summaries.dependencies.equals(summaries.storedDependencies)) {
+                continue;
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+            File tmp = File.createTempFile("summaries", ".tmp", directory);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                        new FileOutputStream(tmp))))) {
+                    out.writeInt(MAGIC);
+                    out.writeUTF(configuration);
+                    out.writeUTF(summaries.dependencies);
+                    out.writeInt(summaries.records.size());
+                    for (Map.Entry<String, byte[]> e : summaries.records.entrySet()) {
+                        out.writeUTF(e.getKey());
+                        out.writeInt(e.getValue().length);
+                        out.write(e.getValue());
+                    }
+                }
+                Files.move(tmp.toPath(), summaries.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                if (tmp.exists() && !tmp.delete()) {
+                    tmp.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the stored checksums, leaving out those of jar files which no
+     * longer exist.
+     */
+    private void saveChecksums() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        List<Map.Entry<String, Checksum>> existing = new ArrayList<>();
+        for (Map.Entry<String, Checksum> e : checksums.entrySet()) {
+            if (new File(e.getKey()).isFile()) {
+                existing.add(e);
+            }
+        }
+        File tmp = File.createTempFile("checksums", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(existing.size());
+                for (Map.Entry<String, Checksum> e : existing) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().size);
+                    out.writeLong(e.getValue().lastModified);
+                    out.writeUTF(e.getValue().checksum);
+                }
+            }
+            Files.move(tmp.toPath(), new File(directory, CHECKSUMS_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+}
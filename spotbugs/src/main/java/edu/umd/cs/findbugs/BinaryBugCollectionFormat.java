@@ -0,0 +1,656 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.WillClose;
+import javax.annotation.WillNotClose;
+
+import edu.umd.cs.findbugs.util.Strings;
+
+/**
+ * A compact binary format for BugCollections, faster to read and write than
+ * XML. The layout of a file is:
+ *
+ * <pre>
+ * header      "SBDB" magic, format version
+ * metadata    the XML document of the BugCollection without its BugInstances
+ * strings     the table of all the strings of the BugInstances
+ * bugs        the number of BugInstances, each one a length-prefixed record
+ * index       offsets of the string table and of the first record, the
+ *             BugInstances of each primary class and of each instance hash,
+ *             and the offset of each record
+ * trailer     offset of the index, as a fixed-size long
+ * </pre>
+ *
+ * Unless noted otherwise, numbers are unsigned LEB128 varints, signed ones
+ * zigzag encoded, and strings are references to the string table, with 0 for
+ * null. Records hold what the XML reader reads back from a BugInstance
+ * element, without the messages: reading a binary file gives the same
+ * BugCollection as reading the XML file written from the same collection.
+ * The index allows {@link BinaryBugCollectionIndex} to read the BugInstances
+ * of a class or with an instance hash without reading the whole file.
+ */
+public final class BinaryBugCollectionFormat {
+    /**
+     * File name extension of the binary format. BugCollections written to a
+     * file with this extension use the binary format.
+     */
+    public static final String FILE_EXTENSION = ".sbdb";
+
+    static final byte[] MAGIC = { 'S', 'B', 'D', 'B' };
+
+    static final int VERSION = 1;
+
+    /**
+     * Name of the empty element of the metadata XML document which stands
+     * for the BugInstances.
+     */
+    static final String BUG_INSTANCES_ELEMENT_NAME = "BinaryBugInstances";
+
+    private static final int CLASS = 1;
+
+    private static final int METHOD = 2;
+
+    private static final int FIELD = 3;
+
+    private static final int TYPE = 4;
+
+    private static final int SOURCE_LINE = 5;
+
+    private static final int INT = 6;
+
+    private static final int STRING = 7;
+
+    private static final int LOCAL_VARIABLE = 8;
+
+    private static final int INTRODUCED_BY_CHANGE = 1;
+
+    private static final int REMOVED_BY_CHANGE = 2;
+
+    private BinaryBugCollectionFormat() {
+    }
+
+    /**
+     * @return true if a BugCollection written to a file with the given name
+     *         uses the binary format
+     */
+    public static boolean isBinaryFileName(String fileName) {
+        return fileName.endsWith(FILE_EXTENSION);
+    }
+
+    /**
+     * Check whether a stream holds a BugCollection in the binary format,
+     * without consuming any input.
+     *
+     * @param in
+     *            a stream supporting mark and reset
+     */
+    public static boolean isBinary(@WillNotClose InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Stream does not support mark");
+        }
+        in.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Read the header, and return the metadata XML document.
+     */
+    static byte[] readHeader(DataInput in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary BugCollection");
+        }
+        int version = readVarint(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary BugCollection version " + version);
+        }
+        byte[] metadata = new byte[readVarint(in)];
+        in.readFully(metadata);
+        return metadata;
+    }
+
+    static String[] readStrings(DataInput in) throws IOException {
+        String[] strings = new String[readVarint(in)];
+        byte[] buf = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarint(in);
+            if (buf.length < length) {
+                buf = new byte[Math.max(length, 2 * buf.length)];
+            }
+            in.readFully(buf, 0, length);
+            strings[i] = new String(buf, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Write a BugCollection.
+     *
+     * @param bugCollection
+     *            the BugCollection holding the metadata
+     * @param bugs
+     *            the BugInstances, iterated twice
+     * @param out
+     *            the stream to write to
+     */
+    static void write(SortedBugCollection bugCollection, Iterable<BugInstance> bugs, @WillClose OutputStream out)
+            throws IOException {
+        // Collect the strings, so that every record can be decoded on its own
+        StringTable strings = new StringTable();
+        DataOutputStream discard = new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        int numBugs = 0;
+        for (BugInstance bug : bugs) {
+            if (bugCollection.isSuppressed(bug)) {
+                continue;
+            }
+            writeBugInstance(discard, bug, strings);
+            strings.getId(bug.getInstanceHash());
+            numBugs++;
+        }
+
+        try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(out))) {
+            DataOutputStream data = new DataOutputStream(counter);
+            data.write(MAGIC);
+            writeVarint(data, VERSION);
+            byte[] metadata = bugCollection.getMetadataXML();
+            writeVarint(data, metadata.length);
+            data.write(metadata);
+
+            long stringsOffset = counter.getCount();
+            writeVarint(data, strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarint(data, bytes.length);
+                data.write(bytes);
+            }
+
+            writeVarint(data, numBugs);
+            long recordsOffset = counter.getCount();
+            long[] offsets = new long[numBugs];
+            Map<String, List<Integer>> byClass = new TreeMap<>();
+            Map<String, List<Integer>> byHash = new TreeMap<>();
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordData = new DataOutputStream(record);
+            int i = 0;
+            for (BugInstance bug : bugs) {
+                if (bugCollection.isSuppressed(bug)) {
+                    continue;
+                }
+                if (i == numBugs) {
+                    throw new IOException("More BugInstances than in the first iteration");
+                }
+                offsets[i] = counter.getCount() - recordsOffset;
+                record.reset();
+                writeBugInstance(recordData, bug, strings);
+                writeVarint(data, record.size());
+                record.writeTo(data);
+                ClassAnnotation primaryClass = bug.getPrimaryClass();
+                if (primaryClass != null) {
+                    byClass.computeIfAbsent(primaryClass.getClassName(), k -> new ArrayList<>()).add(i);
+                }
+                byHash.computeIfAbsent(bug.getInstanceHash(), k -> new ArrayList<>()).add(i);
+                i++;
+            }
+            if (i != numBugs) {
+                throw new IOException("Fewer BugInstances than in the first iteration");
+            }
+
+            long indexOffset = counter.getCount();
+            data.writeLong(stringsOffset);
+            data.writeLong(recordsOffset);
+            writeIndex(data, byClass, strings);
+            writeIndex(data, byHash, strings);
+            long previous = 0;
+            for (long offset : offsets) {
+                writeVarlong(data, offset - previous);
+                previous = offset;
+            }
+            data.writeLong(indexOffset);
+            data.flush();
+        }
+    }
+
+    private static void writeIndex(DataOutput out, Map<String, List<Integer>> index, StringTable strings)
+            throws IOException {
+        writeVarint(out, index.size());
+        for (Map.Entry<String, List<Integer>> e : index.entrySet()) {
+            writeString(out, e.getKey(), strings);
+            List<Integer> ordinals = e.getValue();
+            writeVarint(out, ordinals.size());
+            int previous = 0;
+            for (int ordinal : ordinals) {
+                writeVarint(out, ordinal - previous);
+                previous = ordinal;
+            }
+        }
+    }
+
+    /**
+     * Read an index written by writeIndex().
+     */
+    static Map<String, int[]> readIndex(DataInput in, String[] strings) throws IOException {
+        int size = readVarint(in);
+        Map<String, int[]> index = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in, strings);
+            int[] ordinals = new int[readVarint(in)];
+            int previous = 0;
+            for (int j = 0; j < ordinals.length; j++) {
+                previous += readVarint(in);
+                ordinals[j] = previous;
+            }
+            index.put(key, ordinals);
+        }
+        return index;
+    }
+
+    private static void writeBugInstance(DataOutput out, BugInstance bug, StringTable strings) throws IOException {
+        writeString(out, bug.getType(), strings);
+        writeSignedVarint(out, bug.getPriority());
+        writeSignedVarlong(out, bug.getFirstVersion());
+        writeSignedVarlong(out, bug.getLastVersion());
+        int flags = 0;
+        if (bug.isIntroducedByChangeOfExistingClass()) {
+            flags |= INTRODUCED_BY_CHANGE;
+        }
+        if (bug.isRemovedByChangeOfPersistingClass()) {
+            flags |= REMOVED_BY_CHANGE;
+        }
+        writeVarint(out, flags);
+        writeString(out, bug.isInstanceHashConsistent() ? null : bug.getOldInstanceHash(), strings);
+
+        List<? extends BugAnnotation> annotations = bug.getAnnotations();
+        writeVarint(out, annotations.size());
+        for (BugAnnotation annotation : annotations) {
+            writeAnnotation(out, annotation, strings);
+        }
+
+        List<BugProperty> properties = new ArrayList<>();
+        for (Iterator<BugProperty> i = bug.propertyIterator(); i.hasNext();) {
+            properties.add(i.next());
+        }
+        Collections.sort(properties, (o1, o2) -> o1.getName().compareTo(o2.getName()));
+        writeVarint(out, properties.size());
+        for (BugProperty property : properties) {
+            writeString(out, property.getName(), strings);
+            writeString(out, property.getValue(), strings);
+        }
+    }
+
+    private static void writeAnnotation(DataOutput out, BugAnnotation annotation, StringTable strings)
+            throws IOException {
+        if (annotation instanceof ClassAnnotation) {
+            ClassAnnotation a = (ClassAnnotation) annotation;
+            writeVarint(out, CLASS);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getClassName(), strings);
+        } else if (annotation instanceof MethodAnnotation) {
+            MethodAnnotation a = (MethodAnnotation) annotation;
+            writeVarint(out, METHOD);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getClassName(), strings);
+            writeString(out, a.getMethodName(), strings);
+            writeString(out, a.getMethodSignature(), strings);
+            out.writeBoolean(a.isStatic());
+        } else if (annotation instanceof FieldAnnotation) {
+            FieldAnnotation a = (FieldAnnotation) annotation;
+            writeVarint(out, FIELD);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getClassName(), strings);
+            writeString(out, a.getFieldName(), strings);
+            writeString(out, a.getFieldSignature(), strings);
+            writeString(out, a.getFieldSourceSignature(), strings);
+            out.writeBoolean(a.isStatic());
+        } else if (annotation instanceof TypeAnnotation) {
+            TypeAnnotation a = (TypeAnnotation) annotation;
+            writeVarint(out, TYPE);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getTypeDescriptor(), strings);
+            writeString(out, a.getTypeParameters(), strings);
+        } else if (annotation instanceof SourceLineAnnotation) {
+            SourceLineAnnotation a = (SourceLineAnnotation) annotation;
+            writeVarint(out, SOURCE_LINE);
+            writeString(out, a.getDescription(), strings);
+            writeSourceLines(out, a, strings);
+        } else if (annotation instanceof IntAnnotation) {
+            IntAnnotation a = (IntAnnotation) annotation;
+            writeVarint(out, INT);
+            writeString(out, a.getDescription(), strings);
+            writeSignedVarint(out, a.getValue());
+        } else if (annotation instanceof StringAnnotation) {
+            StringAnnotation a = (StringAnnotation) annotation;
+            writeVarint(out, STRING);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getValue(), strings);
+        } else if (annotation instanceof LocalVariableAnnotation) {
+            LocalVariableAnnotation a = (LocalVariableAnnotation) annotation;
+            writeVarint(out, LOCAL_VARIABLE);
+            writeString(out, a.getDescription(), strings);
+            writeString(out, a.getName(), strings);
+            writeSignedVarint(out, a.getRegister());
+            writeSignedVarint(out, a.getPC());
+        } else {
+            throw new IOException("Can't write bug annotation " + annotation.getClass().getName());
+        }
+        if (annotation instanceof BugAnnotationWithSourceLines) {
+            SourceLineAnnotation sourceLines = ((BugAnnotationWithSourceLines) annotation).getSourceLines();
+            out.writeBoolean(sourceLines != null);
+            if (sourceLines != null) {
+                writeSourceLines(out, sourceLines, strings);
+            }
+        }
+    }
+
+    /**
+     * Write a line range as its start and length, which are small numbers.
+     */
+    private static void writeSourceLines(DataOutput out, SourceLineAnnotation a, StringTable strings) throws IOException {
+        writeString(out, a.getClassName(), strings);
+        writeString(out, a.isSourceFileKnown() ? a.getSourceFile() : null, strings);
+        writeSignedVarint(out, a.getStartLine());
+        writeSignedVarint(out, a.getEndLine() - a.getStartLine());
+        writeSignedVarint(out, a.getStartBytecode());
+        writeSignedVarint(out, a.getEndBytecode() - a.getStartBytecode());
+        out.writeBoolean(a.isSynthetic());
+    }
+
+    /**
+     * Read a record written by writeBugInstance(), doing what the XML reader
+     * does with a BugInstance element.
+     */
+    static BugInstance readBugInstance(DataInput in, String[] strings) throws IOException {
+        String type = readString(in, strings);
+        int priority = readSignedVarint(in);
+        BugInstance bug = new BugInstance(type, priority);
+        long firstVersion = readSignedVarlong(in);
+        if (firstVersion > 0) {
+            bug.setFirstVersion(firstVersion);
+        }
+        long lastVersion = readSignedVarlong(in);
+        if (lastVersion >= 0) {
+            bug.setLastVersion(lastVersion);
+        }
+        int flags = readVarint(in);
+        if ((flags & INTRODUCED_BY_CHANGE) != 0) {
+            bug.setIntroducedByChangeOfExistingClass(true);
+        }
+        if ((flags & REMOVED_BY_CHANGE) != 0) {
+            bug.setRemovedByChangeOfPersistingClass(true);
+        }
+        String oldInstanceHash = readString(in, strings);
+        if (oldInstanceHash != null) {
+            bug.setOldInstanceHash(oldInstanceHash);
+        }
+
+        int numAnnotations = readVarint(in);
+        for (int i = 0; i < numAnnotations; i++) {
+            BugAnnotation annotation = readAnnotation(in, strings);
+            if (annotation != null) {
+                bug.add(annotation);
+            }
+        }
+
+        int numProperties = readVarint(in);
+        for (int i = 0; i < numProperties; i++) {
+            String name = readString(in, strings);
+            bug.setProperty(name, readString(in, strings));
+        }
+        return bug;
+    }
+
+    @CheckForNull
+    private static BugAnnotation readAnnotation(DataInput in, String[] strings) throws IOException {
+        int kind = readVarint(in);
+        String description = readString(in, strings);
+        BugAnnotation annotation;
+        switch (kind) {
+        case CLASS:
+            annotation = new ClassAnnotation(readString(in, strings));
+            break;
+        case METHOD: {
+            String className = readString(in, strings);
+            String methodName = readString(in, strings);
+            String signature = readString(in, strings);
+            annotation = new MethodAnnotation(className, methodName, signature, in.readBoolean());
+            break;
+        }
+        case FIELD: {
+            String className = readString(in, strings);
+            String fieldName = readString(in, strings);
+            String signature = readString(in, strings);
+            String sourceSignature = readString(in, strings);
+            annotation = new FieldAnnotation(className, fieldName, signature, sourceSignature, in.readBoolean());
+            break;
+        }
+        case TYPE: {
+            TypeAnnotation typeAnnotation = new TypeAnnotation(readString(in, strings));
+            String typeParameters = readString(in, strings);
+            if (typeParameters != null) {
+                typeAnnotation.setTypeParameters(Strings.unescapeXml(typeParameters));
+            }
+            annotation = typeAnnotation;
+            break;
+        }
+        case SOURCE_LINE: {
+            SourceLineAnnotation sourceLines = readSourceLines(in, strings);
+            if (sourceLines.isSynthetic()) {
+                return null;
+            }
+            annotation = sourceLines;
+            break;
+        }
+        case INT:
+            annotation = new IntAnnotation(readSignedVarint(in));
+            break;
+        case STRING:
+            annotation = StringAnnotation.fromXMLEscapedString(readString(in, strings));
+            break;
+        case LOCAL_VARIABLE: {
+            String name = readString(in, strings);
+            int register = readSignedVarint(in);
+            annotation = new LocalVariableAnnotation(name, register, readSignedVarint(in));
+            break;
+        }
+        default:
+            throw new IOException("Invalid bug annotation kind " + kind);
+        }
+        if (annotation instanceof BugAnnotationWithSourceLines && in.readBoolean()) {
+            ((BugAnnotationWithSourceLines) annotation).setSourceLines(readSourceLines(in, strings));
+        }
+        if (description != null) {
+            annotation.setDescription(description);
+        }
+        return annotation;
+    }
+
+    private static SourceLineAnnotation readSourceLines(DataInput in, String[] strings) throws IOException {
+        String className = readString(in, strings);
+        String sourceFile = readString(in, strings);
+        if (sourceFile == null) {
+            sourceFile = SourceLineAnnotation.UNKNOWN_SOURCE_FILE;
+        }
+        int startLine = readSignedVarint(in);
+        int endLine = startLine + readSignedVarint(in);
+        int startBytecode = readSignedVarint(in);
+        int endBytecode = startBytecode + readSignedVarint(in);
+        SourceLineAnnotation sourceLines = new SourceLineAnnotation(className, sourceFile, startLine, endLine,
+                startBytecode, endBytecode);
+        if (in.readBoolean()) {
+            sourceLines.setSynthetic(true);
+        }
+        return sourceLines;
+    }
+
+    private static void writeString(DataOutput out, @CheckForNull String s, StringTable strings) throws IOException {
+        writeVarint(out, s == null ? 0 : strings.getId(s) + 1);
+    }
+
+    @CheckForNull
+    static String readString(DataInput in, String[] strings) throws IOException {
+        int id = readVarint(in);
+        if (id == 0) {
+            return null;
+        }
+        if (id > strings.length) {
+            throw new IOException("Invalid string reference " + id);
+        }
+        return strings[id - 1];
+    }
+
+    static void writeVarint(DataOutput out, int value) throws IOException {
+        writeVarlong(out, value & 0xffffffffL);
+    }
+
+    static void writeVarlong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void writeSignedVarint(DataOutput out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static void writeSignedVarlong(DataOutput out, long value) throws IOException {
+        writeVarlong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        long value = readVarlong(in);
+        if ((value & ~0xffffffffL) != 0) {
+            throw new IOException("Invalid varint");
+        }
+        return (int) value;
+    }
+
+    static long readVarlong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private static int readSignedVarint(DataInput in) throws IOException {
+        int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readSignedVarlong(DataInput in) throws IOException {
+        long value = readVarlong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Assigns consecutive ids to strings, in the order they are first seen.
+     */
+    private static class StringTable implements Iterable<String> {
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private final List<String> strings = new ArrayList<>();
+
+        int getId(String s) {
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return strings.iterator();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
+
+/**
+ * Random access to the BugInstances of a file in the binary format of
+ * {@link BinaryBugCollectionFormat}. Opening a file reads its string table and
+ * its index, the BugInstances are only read when asked for.
+ */
+public class BinaryBugCollectionIndex implements Closeable {
+    private static final int[] NO_BUGS = new int[0];
+
+    private final RandomAccessFile file;
+
+    private final String[] strings;
+
+    private final long[] offsets;
+
+    private final Map<String, int[]> byClass;
+
+    private final Map<String, int[]> byInstanceHash;
+
+    /**
+     * Open the given file.
+     *
+     * @param file
+     *            a BugCollection in the binary format
+     */
+    public BinaryBugCollectionIndex(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            BinaryBugCollectionFormat.readHeader(open(0));
+            this.file.seek(this.file.length() - 8);
+            long indexOffset = this.file.readLong();
+            this.file.seek(indexOffset);
+            long stringsOffset = this.file.readLong();
+            long recordsOffset = this.file.readLong();
+
+            DataInputStream in = open(stringsOffset);
+            strings = BinaryBugCollectionFormat.readStrings(in);
+            offsets = new long[BinaryBugCollectionFormat.readVarint(in)];
+
+            in = open(indexOffset + 16);
+            byClass = BinaryBugCollectionFormat.readIndex(in, strings);
+            byInstanceHash = BinaryBugCollectionFormat.readIndex(in, strings);
+            long offset = recordsOffset;
+            for (int i = 0; i < offsets.length; i++) {
+                offset += BinaryBugCollectionFormat.readVarlong(in);
+                offsets[i] = offset;
+            }
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a buffered stream reading the file from the given offset,
+     *         which must not be closed
+     */
+    private DataInputStream open(long offset) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel().position(offset))));
+    }
+
+    /**
+     * @return the number of BugInstances
+     */
+    public int getNumBugs() {
+        return offsets.length;
+    }
+
+    /**
+     * @return the names of the primary classes of the BugInstances, sorted
+     */
+    public SortedSet<String> getClassNames() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(byClass.keySet()));
+    }
+
+    /**
+     * Read a BugInstance.
+     *
+     * @param i
+     *            the index of the BugInstance, in the order of the file
+     */
+    public BugInstance getBug(int i) throws IOException {
+        if (i < 0 || i >= offsets.length) {
+            throw new IndexOutOfBoundsException("No BugInstance " + i);
+        }
+        file.seek(offsets[i]);
+        int length = BinaryBugCollectionFormat.readVarint(file);
+        byte[] record = new byte[length];
+        file.readFully(record);
+        return BinaryBugCollectionFormat.readBugInstance(new DataInputStream(new ByteArrayInputStream(record)), strings);
+    }
+
+    /**
+     * @return the BugInstances whose primary class is the given one, in the
+     *         order of the file
+     */
+    public List<BugInstance> getBugsInClass(@DottedClassName String className) throws IOException {
+        return getBugs(byClass.getOrDefault(className, NO_BUGS));
+    }
+
+    /**
+     * @return the BugInstances with the given instance hash, in the order of
+     *         the file
+     */
+    public List<BugInstance> getBugsWithInstanceHash(String instanceHash) throws IOException {
+        return getBugs(byInstanceHash.getOrDefault(instanceHash, NO_BUGS));
+    }
+
+    private List<BugInstance> getBugs(int[] indices) throws IOException {
+        List<BugInstance> bugs = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            bugs.add(getBug(i));
+        }
+        return bugs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
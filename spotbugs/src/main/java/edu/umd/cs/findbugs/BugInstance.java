@@ -24,6 +24,9 @@ import java.util.*;
 import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.security.MessageDigest;
@@ -98,7 +101,8 @@ import edu.umd.cs.findbugs.xml.XMLWriteable;
  * @author David Hovemeyer
  * @see BugAnnotation
  */
-public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Cloneable {
+public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Serializable, Cloneable {
+    private static final long serialVersionUID = 1L;
 
     private final String type;
 
@@ -119,7 +123,7 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Clone
     private int instanceOccurrenceMax;
 
     @CheckForNull
-    private DetectorFactory detectorFactory;
+    private transient DetectorFactory detectorFactory;
 
     /*
      * The following fields are used for tracking Bug instances across multiple
@@ -223,6 +227,19 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Clone
         }
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(detectorFactory != null ? detectorFactory.getFullName() : null);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        String detectorName = (String) in.readObject();
+        if (detectorName != null) {
+            detectorFactory = DetectorFactoryCollection.instance().getFactoryByClassName(detectorName);
+        }
+    }
+
     /**
      * Create a new BugInstance. This is the constructor that should be used by
      * Detectors.
@@ -288,6 +305,10 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Clone
         adjustExperimental = adjust;
     }
 
+    public static boolean isAdjustExperimental() {
+        return adjustExperimental;
+    }
+
     /*
      * ----------------------------------------------------------------------
      * Accessors
@@ -2427,6 +2448,14 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Clone
         this.oldInstanceHash = oldInstanceHash;
     }
 
+    /**
+     * @return the instance hash read from saved results, or null
+     */
+    @CheckForNull
+    public String getOldInstanceHash() {
+        return oldInstanceHash;
+    }
+
     public String getInstanceHash() {
         String hash = instanceHash;
         if (hash != null) {
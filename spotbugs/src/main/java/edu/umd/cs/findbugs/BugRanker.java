@@ -27,8 +27,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.WillClose;
 
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.charsets.UTF8;
@@ -137,7 +139,19 @@ public class BugRanker {
         if (u == null) {
             return;
         }
-        BufferedReader in = UTF8.bufferedReader(u.openStream());
+        read(UTF8.bufferedReader(u.openStream()));
+    }
+
+    /**
+     * @param in
+     *            reader of the bug ranks
+     * @throws IOException
+     */
+    BugRanker(@WillClose BufferedReader in) throws IOException {
+        read(in);
+    }
+
+    private void read(@WillClose BufferedReader in) throws IOException {
         try {
             while (true) {
                 String s = in.readLine();
@@ -259,11 +273,11 @@ public class BugRanker {
     }
 
 
-    private static AnalysisLocal<HashMap<BugPattern, Integer>> rankForBugPattern
-    = new AnalysisLocal<HashMap<BugPattern, Integer>>() {
+    private static AnalysisLocal<ConcurrentHashMap<BugPattern, Integer>> rankForBugPattern
+    = new AnalysisLocal<ConcurrentHashMap<BugPattern, Integer>>() {
         @Override
-        protected HashMap<BugPattern, Integer> initialValue() {
-            return new HashMap<>();
+        protected ConcurrentHashMap<BugPattern, Integer> initialValue() {
+            return new ConcurrentHashMap<>();
         }
     };
 
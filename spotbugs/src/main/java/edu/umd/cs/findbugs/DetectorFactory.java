@@ -52,12 +52,30 @@ public class DetectorFactory {
     private static final Class<?>[] constructorArgTypes = new Class<?>[] { BugReporter.class };
 
     static class ReflectionDetectorCreator {
-        private final Class<?> detectorClass;
+        private final @DottedClassName String className;
+
+        private final ClassLoader classLoader;
+
+        private volatile Class<?> detectorClass;
 
         private Method setAnalysisContext;
 
         ReflectionDetectorCreator(Class<?> detectorClass) {
-            this.detectorClass = detectorClass;
+            this.className = detectorClass.getName();
+            this.classLoader = null;
+            init(detectorClass);
+        }
+
+        /**
+         * Create a detector creator loading the detector class when it is
+         * first needed.
+         */
+        ReflectionDetectorCreator(@DottedClassName String className, ClassLoader classLoader) {
+            this.className = className;
+            this.classLoader = classLoader;
+        }
+
+        private void init(Class<?> detectorClass) {
             if (SUPPORT_OLD_DETECTOR_INTERFACE) {
                 try {
                     setAnalysisContext = detectorClass.getDeclaredMethod("setAnalysisContext",
@@ -66,14 +84,16 @@ public class DetectorFactory {
                     // Ignore
                 }
             }
+            this.detectorClass = detectorClass;
         }
 
         @Override
         public String toString() {
-            return detectorClass.getSimpleName();
+            return getDetectorClass().getSimpleName();
         }
 
         public Detector createDetector(BugReporter bugReporter) {
+            Class<?> detectorClass = getDetectorClass();
             try {
                 Constructor<?> constructor = detectorClass.getConstructor(constructorArgTypes);
                 Detector detector = (Detector) constructor.newInstance(new Object[] { bugReporter });
@@ -87,6 +107,7 @@ public class DetectorFactory {
         }
 
         public Detector2 createDetector2(BugReporter bugReporter) {
+            Class<?> detectorClass = getDetectorClass();
             if (Detector2.class.isAssignableFrom(detectorClass)) {
                 try {
                     Constructor<?> constructor = detectorClass.getConstructor(constructorArgTypes);
@@ -108,7 +129,21 @@ public class DetectorFactory {
         }
 
         public Class<?> getDetectorClass() {
-            return detectorClass;
+            Class<?> result = detectorClass;
+            if (result == null) {
+                synchronized (this) {
+                    result = detectorClass;
+                    if (result == null) {
+                        try {
+                            result = classLoader.loadClass(className);
+                        } catch (ClassNotFoundException e) {
+                            throw new RuntimeException("Could not load detector class " + className, e);
+                        }
+                        init(result);
+                    }
+                }
+            }
+            return result;
         }
     }
 
@@ -172,6 +207,33 @@ public class DetectorFactory {
         this.hidden = false;
     }
 
+    /**
+     * Constructor for a detector whose class is loaded when it is first
+     * needed.
+     *
+     * @param plugin
+     *            the Plugin the Detector is part of
+     * @param className
+     *            the name of the Detector class
+     * @param classLoader
+     *            the class loader of the Detector class
+     * @see #DetectorFactory(Plugin, String, Class, boolean, String, String,
+     *      String)
+     */
+    DetectorFactory(@Nonnull Plugin plugin, @Nonnull @DottedClassName String className,
+            ClassLoader classLoader, boolean enabled, String speed,
+            String reports, String requireJRE) {
+        this.plugin = plugin;
+        this.className = className;
+        this.detectorCreator = FindBugs.isNoAnalysis() ? null : new ReflectionDetectorCreator(className, classLoader);
+        this.defEnabled = enabled;
+        this.speed = speed;
+        this.reports = reports;
+        this.requireJRE = requireJRE;
+        this.priorityAdjustment = 0;
+        this.hidden = false;
+    }
+
     @Override
     public String toString() {
         return getShortName();
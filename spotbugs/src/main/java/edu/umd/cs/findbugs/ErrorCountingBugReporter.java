@@ -55,14 +55,14 @@ public class ErrorCountingBugReporter extends DelegatingBugReporter {
     }
 
     @Override
-    public void logError(String message) {
+    public synchronized void logError(String message) {
         if (errors.add(message)) {
             super.logError(message);
         }
     }
 
     @Override
-    public void reportMissingClass(ClassNotFoundException ex) {
+    public synchronized void reportMissingClass(ClassNotFoundException ex) {
         String missing = AbstractBugReporter.getMissingClassName(ex);
         if (missing == null || missing.startsWith("[") || "java.lang.Synthetic".equals(missing)) {
             return;
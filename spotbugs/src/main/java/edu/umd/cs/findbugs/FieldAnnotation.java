@@ -21,6 +21,8 @@ package edu.umd.cs.findbugs;
 
 import java.io.IOException;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
@@ -212,6 +214,16 @@ public class FieldAnnotation extends PackageMemberAnnotation {
         return fieldSig;
     }
 
+    /**
+     * Get the generic type signature of the field.
+     *
+     * @return the generic signature, or null if the field has none
+     */
+    @CheckForNull
+    public String getFieldSourceSignature() {
+        return fieldSourceSig;
+    }
+
     /**
      * Return whether or not the field is static.
      */
@@ -19,8 +19,10 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -50,6 +52,7 @@ import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierAnnotation;
 import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierApplications;
 import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
 import edu.umd.cs.findbugs.bugReporter.BugReporterDecorator;
+import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
@@ -68,6 +71,7 @@ import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 import edu.umd.cs.findbugs.config.UserPreferences;
 import edu.umd.cs.findbugs.detect.NoteSuppressedWarnings;
 import edu.umd.cs.findbugs.filter.FilterException;
+import edu.umd.cs.findbugs.log.DataflowMetrics;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.plan.AnalysisPass;
 import edu.umd.cs.findbugs.plan.ExecutionPlan;
@@ -572,6 +576,21 @@ public class FindBugs2 implements IFindBugsEngine {
         this.analysisOptions.noClassOk = noClassOk;
     }
 
+    @Override
+    public void setThreads(int threads) {
+        this.analysisOptions.threads = threads;
+    }
+
+    @Override
+    public void setIncrementalCacheFile(String incrementalCacheFile) {
+        this.analysisOptions.incrementalCacheFile = incrementalCacheFile;
+    }
+
+    @Override
+    public void setAuxSummaryCacheDirectory(String auxSummaryCacheDirectory) {
+        this.analysisOptions.auxSummaryCacheDirectory = auxSummaryCacheDirectory;
+    }
+
     /**
      * Create the analysis cache object and register it for current execution thread.
      * <p>
@@ -670,10 +689,14 @@ public class FindBugs2 implements IFindBugsEngine {
         }
 
         builder.scanNestedArchives(analysisOptions.scanNestedArchives);
+        builder.setThreads(analysisOptions.threads);
 
         builder.build(classPath, progress);
 
-        appClassList = builder.getAppClassList();
+        // Sorted, so the analysis order doesn't depend on the order in which
+        // the codebases list their resources
+        appClassList = new ArrayList<>(builder.getAppClassList());
+        Collections.sort(appClassList);
 
         if (PROGRESS) {
             System.out.println(appClassList.size() + " classes scanned");
@@ -706,6 +729,16 @@ public class FindBugs2 implements IFindBugsEngine {
         if (PROGRESS) {
             System.out.println("Adding referenced classes");
         }
+        if (analysisOptions.threads > 1) {
+            // Parse the class hierarchy on worker threads, the walk below
+            // then finds the classes in the analysis cache
+            XClassPrefetcher prefetcher = new XClassPrefetcher(analysisOptions.threads);
+            try {
+                prefetcher.prefetchHierarchy(appClassList);
+            } finally {
+                prefetcher.shutdown();
+            }
+        }
         Set<String> referencedPackageSet = new HashSet<>();
 
         LinkedList<ClassDescriptor> workList = new LinkedList<>();
@@ -815,7 +848,11 @@ public class FindBugs2 implements IFindBugsEngine {
         for (ClassDescriptor d : DescriptorFactory.instance().getAllClassDescriptors()) {
             referencedPackageSet.add(d.getPackageName());
         }
-        referencedClassSet = new ArrayList<>(DescriptorFactory.instance().getAllClassDescriptors());
+        // Sorted, so the order doesn't depend on the threads which created
+        // the descriptors
+        List<ClassDescriptor> referencedClasses = new ArrayList<>(DescriptorFactory.instance().getAllClassDescriptors());
+        Collections.sort(referencedClasses);
+        referencedClassSet = referencedClasses;
 
         // Based on referenced packages, add any resolvable package-info classes
         // to the set of referenced classes.
@@ -961,6 +998,14 @@ public class FindBugs2 implements IFindBugsEngine {
             }
             progress.predictPassCount(classesPerPass);
             XFactory factory = AnalysisContext.currentXFactory();
+            if (analysisOptions.threads > 1) {
+                XClassPrefetcher prefetcher = new XClassPrefetcher(analysisOptions.threads);
+                try {
+                    prefetcher.prefetch(referencedClassSet);
+                } finally {
+                    prefetcher.shutdown();
+                }
+            }
             Collection<ClassDescriptor> badClasses = new LinkedList<>();
             for (ClassDescriptor desc : referencedClassSet) {
                 try {
@@ -979,6 +1024,12 @@ public class FindBugs2 implements IFindBugsEngine {
                 referencedClassSet.removeAll(badClasses);
             }
 
+            IncrementalAnalysisCache incrementalCache = null;
+            if (analysisOptions.incrementalCacheFile != null) {
+                incrementalCache = new IncrementalAnalysisCache(new File(analysisOptions.incrementalCacheFile), executionPlan,
+                        bugReporter);
+            }
+
             long startTime = System.currentTimeMillis();
             bugReporter.getProjectStats().setReferencedClasses(referencedClassSet.size());
             for (Iterator<AnalysisPass> passIterator = executionPlan.passIterator(); passIterator.hasNext();) {
@@ -986,9 +1037,27 @@ public class FindBugs2 implements IFindBugsEngine {
                 // The first pass is generally a non-reporting pass which
                 // gathers information about referenced classes.
                 boolean isNonReportingFirstPass = multiplePasses && passCount == 0;
+                boolean isFirstReportingPass = passCount == (multiplePasses ? 1 : 0);
+
+                // When analyzing incrementally, the warnings of stateless
+                // detectors are stored, and reused for unchanged classes.
+                BugReporter detectorBugReporter = bugReporter;
+                boolean[] statelessDetectors = null;
+                if (incrementalCache != null && !isNonReportingFirstPass) {
+                    detectorBugReporter = incrementalCache.createRecordingBugReporter(bugReporter);
+                    statelessDetectors = IncrementalAnalysisCache.getStatelessDetectors(pass);
+                }
 
                 // Instantiate the detectors
-                Detector2[] detectorList = pass.instantiateDetector2sInPass(bugReporter);
+                Detector2[] detectorList = pass.instantiateDetector2sInPass(detectorBugReporter);
+
+                // The summaries of the classes of unchanged aux codebases
+                // may be restored instead of visiting the classes.
+                AuxSummaryCache summaryCache = null;
+                if (isNonReportingFirstPass && analysisOptions.auxSummaryCacheDirectory != null) {
+                    summaryCache = new AuxSummaryCache(new File(analysisOptions.auxSummaryCacheDirectory), pass, detectorList,
+                            classPath, referencedClassSet, bugReporter);
+                }
 
                 // If there are multiple passes, then on the first pass,
                 // we apply detectors to all classes referenced by the
@@ -1030,95 +1099,210 @@ public class FindBugs2 implements IFindBugsEngine {
                 int count = 0;
                 Global.getAnalysisCache().purgeAllMethodAnalysis();
                 Global.getAnalysisCache().purgeClassAnalysis(FBClassReader.class);
-                for (ClassDescriptor classDescriptor : classCollection) {
-                    long classStartNanoTime = 0;
+
+                // Decide which classes are unchanged before visiting any of
+                // them, since the databases their keys include are updated
+                // while the classes are visited.
+                if (statelessDetectors != null && isFirstReportingPass) {
+                    for (ClassDescriptor classDescriptor : classCollection) {
+                        if (classScreener.matches(classDescriptor.toResourceName())) {
+                            incrementalCache.isUnchanged(classDescriptor);
+                        }
+                    }
+                }
+
+                // On reporting passes, stateless detectors may be applied
+                // to the classes by worker threads, in analysis order.
+                ParallelDetectorRunner parallelRunner = null;
+                if (!isNonReportingFirstPass && analysisOptions.threads > 1) {
+                    parallelRunner = ParallelDetectorRunner.create(pass, analysisOptions.threads, detectorBugReporter);
+                }
+                if (parallelRunner != null) {
                     if (PROGRESS) {
-                        classStartNanoTime = System.nanoTime();
-                        System.out.printf("%6d %d/%d  %d/%d %s%n", (System.currentTimeMillis() - startTime)/1000,
-                                passCount, executionPlan.getNumPasses(), count,
-                                classCollection.size(), classDescriptor);
+                        System.out.printf("Applying stateless detectors using %d threads%n", analysisOptions.threads);
                     }
-                    count++;
-
-                    // Check to see if class is excluded by the class screener.
-                    // In general, we do not want to screen classes from the
-                    // first pass, even if they would otherwise be excluded.
-                    if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
-                            && !classScreener.matches(classDescriptor.toResourceName())) {
-                        if (DEBUG) {
-                            System.out.println("*** Excluded by class screener");
+                    List<ClassDescriptor> parallelClasses = new ArrayList<>();
+                    for (ClassDescriptor classDescriptor : classCollection) {
+                        if (classScreener.matches(classDescriptor.toResourceName())
+                                && (statelessDetectors == null || !incrementalCache.isUnchanged(classDescriptor))) {
+                            parallelClasses.add(classDescriptor);
                         }
-                        continue;
-                    }
-                    boolean isHuge = currentAnalysisContext.isTooBig(classDescriptor);
-                    if (isHuge && currentAnalysisContext.isApplicationClass(classDescriptor)) {
-                        bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG", Priorities.NORMAL_PRIORITY)
-                        .addClass(classDescriptor));
                     }
-                    currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
-                    notifyClassObservers(classDescriptor);
-                    profiler.startContext(currentClassName);
-                    currentAnalysisContext.setClassBeingAnalyzed(classDescriptor);
+                    parallelRunner.setClasses(parallelClasses, currentAnalysisContext::isTooBig);
+                }
+                try {
+                    for (ClassDescriptor classDescriptor : classCollection) {
+                        long classStartNanoTime = 0;
+                        if (PROGRESS) {
+                            classStartNanoTime = System.nanoTime();
+                            System.out.printf("%6d %d/%d  %d/%d %s%n", (System.currentTimeMillis() - startTime)/1000,
+                                    passCount, executionPlan.getNumPasses(), count,
+                                    classCollection.size(), classDescriptor);
+                        }
+                        count++;
 
-                    try {
-                        for (Detector2 detector : detectorList) {
-                            if (Thread.interrupted()) {
-                                throw new InterruptedException();
-                            }
-                            if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
-                                continue;
-                            }
+                        // Check to see if class is excluded by the class screener.
+                        // In general, we do not want to screen classes from the
+                        // first pass, even if they would otherwise be excluded.
+                        if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
+                                && !classScreener.matches(classDescriptor.toResourceName())) {
                             if (DEBUG) {
-                                System.out.println("Applying " + detector.getDetectorClassName() + " to " + classDescriptor);
-                                // System.out.println("foo: " +
-                                // NonReportingDetector.class.isAssignableFrom(detector.getClass())
-                                // + ", bar: " + detector.getClass().getName());
-                            }
-                            try {
-                                profiler.start(detector.getClass());
-                                detector.visitClass(classDescriptor);
-                            } catch (ClassFormatException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } catch (MissingClassException e) {
-                                Global.getAnalysisCache().getErrorLogger().reportMissingClass(e.getClassDescriptor());
-                            } catch (CheckedAnalysisException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } catch (RuntimeException e) {
-                                logRecoverableException(classDescriptor, detector, e);
-                            } finally {
-                                profiler.end(detector.getClass());
+                                System.out.println("*** Excluded by class screener");
                             }
+                            continue;
                         }
-                    } finally {
+                        boolean isHuge = currentAnalysisContext.isTooBig(classDescriptor);
+                        if (isHuge && currentAnalysisContext.isApplicationClass(classDescriptor)) {
+                            bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG", Priorities.NORMAL_PRIORITY)
+                            .addClass(classDescriptor));
+                        }
+                        currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
+                        notifyClassObservers(classDescriptor);
+                        profiler.startContext(currentClassName);
+                        currentAnalysisContext.setClassBeingAnalyzed(classDescriptor);
+                        boolean isUnchanged = statelessDetectors != null && incrementalCache.isUnchanged(classDescriptor);
+                        boolean summariesRestored = summaryCache != null && summaryCache.restore(classDescriptor);
+                        boolean failed = false;
+                        Global.getAnalysisCache().pinClass(classDescriptor);
 
-                        progress.finishClass();
-                        profiler.endContext(currentClassName);
-                        currentAnalysisContext.clearClassBeingAnalyzed();
-                        if (PROGRESS) {
-                            long usecs = (System.nanoTime() - classStartNanoTime)/1000;
-                            if (usecs > 15000) {
-                                int classSize = currentAnalysisContext.getClassSize(classDescriptor);
-                                long speed = usecs /classSize;
-                                if (speed > 15) {
-                                    System.out.printf("  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n", speed, usecs/1000, classSize, passCount,
-                                            classDescriptor);
+                        try {
+                            for (int i = 0; i < detectorList.length; i++) {
+                                Detector2 detector = detectorList[i];
+                                if (Thread.interrupted()) {
+                                    throw new InterruptedException();
+                                }
+                                if (summariesRestored && summaryCache.isPersistent(i)) {
+                                    continue;
+                                }
+                                if (statelessDetectors != null) {
+                                    if (!statelessDetectors[i]) {
+                                        incrementalCache.stopRecording();
+                                    } else if (isUnchanged) {
+                                        // Stored warnings are reported below
+                                        continue;
+                                    } else {
+                                        incrementalCache.startRecording(classDescriptor);
+                                    }
+                                }
+                                if (parallelRunner != null && parallelRunner.isParallel(i)) {
+                                    // Already applied by a worker thread
+                                    if (!parallelRunner.replay(classDescriptor, i)) {
+                                        failed = true;
+                                    }
+                                    continue;
+                                }
+                                if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+                                    continue;
+                                }
+                                if (DEBUG) {
+                                    System.out.println("Applying " + detector.getDetectorClassName() + " to " + classDescriptor);
+                                    // System.out.println("foo: " +
+                                    // NonReportingDetector.class.isAssignableFrom(detector.getClass())
+                                    // + ", bar: " + detector.getClass().getName());
+                                }
+                                try {
+                                    profiler.start(detector.getClass());
+                                    detector.visitClass(classDescriptor);
+                                } catch (ClassFormatException e) {
+                                    failed = true;
+                                    logRecoverableException(classDescriptor, detector, e);
+                                } catch (MissingClassException e) {
+                                    failed = true;
+                                    Global.getAnalysisCache().getErrorLogger().reportMissingClass(e.getClassDescriptor());
+                                } catch (CheckedAnalysisException e) {
+                                    failed = true;
+                                    logRecoverableException(classDescriptor, detector, e);
+                                } catch (RuntimeException e) {
+                                    failed = true;
+                                    logRecoverableException(classDescriptor, detector, e);
+                                } finally {
+                                    profiler.end(detector.getClass());
+                                }
+                            }
+                            if (summaryCache != null && !summariesRestored && !failed) {
+                                summaryCache.record(classDescriptor);
+                            }
+                            if (isUnchanged && isFirstReportingPass) {
+                                incrementalCache.reportStoredBugs(classDescriptor, bugReporter);
+                            }
+                        } finally {
+                            if (statelessDetectors != null) {
+                                incrementalCache.stopRecording();
+                                if (failed || currentAnalysisContext.hasLoggedErrors(classDescriptor)) {
+                                    incrementalCache.recordFailure(classDescriptor);
                                 }
                             }
 
+                            Global.getAnalysisCache().unpinClass(classDescriptor);
+                            if (parallelRunner != null) {
+                                parallelRunner.finishClass(classDescriptor);
+                            }
+                            progress.finishClass();
+                            profiler.endContext(currentClassName);
+                            currentAnalysisContext.clearClassBeingAnalyzed();
+                            if (PROGRESS) {
+                                long usecs = (System.nanoTime() - classStartNanoTime)/1000;
+                                if (usecs > 15000) {
+                                    int classSize = currentAnalysisContext.getClassSize(classDescriptor);
+                                    long speed = usecs /classSize;
+                                    if (speed > 15) {
+                                        System.out.printf("  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n", speed, usecs/1000, classSize, passCount,
+                                                classDescriptor);
+                                    }
+                                }
+
+                            }
                         }
                     }
-                }
 
-                // Call finishPass on each detector
-                for (Detector2 detector : detectorList) {
-                    detector.finishPass();
+                    // Call finishPass on each detector
+                    if (parallelRunner != null) {
+                        parallelRunner.finishPass();
+                    }
+                    for (Detector2 detector : detectorList) {
+                        detector.finishPass();
+                    }
+                } finally {
+                    if (parallelRunner != null) {
+                        parallelRunner.shutdown();
+                    }
                 }
 
                 progress.finishPerClassAnalysis();
 
+                if (summaryCache != null) {
+                    if (PROGRESS) {
+                        System.out.printf("Restored first pass summaries of %d classes%n", summaryCache.getRestoredClasses());
+                    }
+                    try {
+                        summaryCache.save();
+                    } catch (IOException e) {
+                        bugReporter.logError("Unable to save first pass summaries in " + analysisOptions.auxSummaryCacheDirectory, e);
+                    }
+                }
+
                 passCount++;
             }
 
+            if (incrementalCache != null) {
+                if (PROGRESS) {
+                    System.out.printf("Reused stored warnings of %d classes%n", incrementalCache.getReusedClasses());
+                }
+                try {
+                    incrementalCache.save();
+                } catch (IOException e) {
+                    bugReporter.logError("Unable to save incremental analysis cache " + analysisOptions.incrementalCacheFile, e);
+                }
+            }
+
+            String dataflowMetricsFile = SystemProperties.getProperty(DataflowMetrics.METRICS_FILE_PROPERTY);
+            if (dataflowMetricsFile != null) {
+                try (Writer out = UTF8.bufferedWriter(dataflowMetricsFile)) {
+                    profiler.getDataflowMetrics().writeJSON(out);
+                } catch (IOException e) {
+                    bugReporter.logError("Unable to write dataflow metrics to " + dataflowMetricsFile, e);
+                }
+            }
 
         } finally {
 
@@ -42,7 +42,7 @@ import edu.umd.cs.findbugs.model.ClassNameRewriter;
  * @see edu.umd.cs.findbugs.VersionInsensitiveBugComparator
  * @author David Hovemeyer
  */
-public class FuzzyBugComparator implements WarningComparator {
+public class FuzzyBugComparator implements WarningComparator, MatchingKeyComparator {
     private static final boolean DEBUG = false;
 
     // Don't use hashes for now. Still ironing out issues there.
@@ -209,6 +209,25 @@ public class FuzzyBugComparator implements WarningComparator {
         }
     }
 
+    @Override
+    public Object getMatchingKey(BugInstance bug) {
+        StringBuilder key = new StringBuilder(bug.getBugPattern().getAbbrev());
+        Iterator<BugAnnotation> i = new FilteringBugAnnotationIterator(bug.annotationIterator());
+        while (i.hasNext()) {
+            BugAnnotation annotation = i.next();
+            key.append('\n').append(annotation.getClass().getName()).append(' ');
+            if (annotation.getClass() == ClassAnnotation.class) {
+                key.append(rewriteClassName(((ClassAnnotation) annotation).getClassName()));
+            } else if (annotation.getClass() == MethodAnnotation.class) {
+                MethodAnnotation method = (MethodAnnotation) annotation;
+                key.append(method.getClassName()).append(' ').append(method.getMethodName()).append(method.getMethodSignature());
+            } else if (annotation.getClass() == SourceLineAnnotation.class) {
+                key.append(rewriteClassName(((SourceLineAnnotation) annotation).getClassName()));
+            }
+        }
+        return key.toString();
+    }
+
     /*
      * @param type
      * @return the code of the Bug
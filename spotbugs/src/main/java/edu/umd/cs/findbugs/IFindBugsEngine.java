@@ -274,6 +274,42 @@ public interface IFindBugsEngine {
      */
     public void setNoClassOk(boolean noClassOk);
 
+    /**
+     * Set the number of threads used to analyze the classes of each
+     * reporting pass. Only detectors which are marked as
+     * {@link StatelessDetector} are run concurrently; all other detectors
+     * are still run on the analysis thread. The threads also parse the
+     * application classes and the classes they reference before the
+     * analysis starts.
+     *
+     * @param threads
+     *            number of threads, 1 (the default) to analyze all classes
+     *            on the analysis thread
+     */
+    public void setThreads(int threads);
+
+    /**
+     * Set the file used to store the warnings of each class between runs.
+     * Classes which, like the classes they depend on, did not change since
+     * the previous run are not analyzed again by stateless detectors; their
+     * stored warnings are reported instead.
+     *
+     * @param incrementalCacheFile
+     *            the file, or null to analyze all classes
+     */
+    public void setIncrementalCacheFile(String incrementalCacheFile);
+
+    /**
+     * Set the directory in which the first pass summaries of the classes of
+     * auxiliary codebases are stored between runs. The classes of an
+     * auxiliary codebase which did not change since the summaries were stored
+     * are not visited again by the detectors whose summaries are stored.
+     *
+     * @param auxSummaryCacheDirectory
+     *            the directory, or null to visit all classes
+     */
+    public void setAuxSummaryCacheDirectory(String auxSummaryCacheDirectory);
+
     /**
      * Set the DetectorFactoryCollection from which plugins/detectors may be
      * accessed.
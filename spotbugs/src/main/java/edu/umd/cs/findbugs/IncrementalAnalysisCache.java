@@ -0,0 +1,616 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.JavaClass;
+import org.dom4j.DocumentException;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.ba.ClassHash;
+import edu.umd.cs.findbugs.ba.FieldSummary;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.ba.interproc.PropertyDatabase;
+import edu.umd.cs.findbugs.ba.type.FieldStoreType;
+import edu.umd.cs.findbugs.ba.type.FieldStoreTypeDatabase;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+import edu.umd.cs.findbugs.plan.ExecutionPlan;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * On-disk store of the warnings reported for each application class, used to
+ * avoid re-analyzing classes which did not change since the previous run.
+ * <p>
+ * Only the warnings reported by {@link StatelessDetector}s while visiting a
+ * class are stored, since these depend on nothing but the class and the
+ * information the analysis has about the classes it uses. Every entry is keyed
+ * by a hash of the class file, of the class files of the classes it references
+ * and of all their supertypes and its own, and of what the interprocedural
+ * databases the stateless detectors and the analyses they use read say about
+ * the members of those classes, as they are when the first reporting pass
+ * starts: the return value and parameter nullness properties of the methods,
+ * and the {@link FieldSummary} and {@link FieldStoreTypeDatabase} entries of
+ * the fields. Since the supertypes are included, so are the entries of the
+ * members the referenced classes inherit. Databases only the detectors keeping
+ * state read, such as the
+ * {@link edu.umd.cs.findbugs.ba.ClassSummary}, are not part of the key.
+ * When the key of a class is unchanged, its stored warnings are reported again
+ * instead of applying the stateless detectors. Detectors keeping state between
+ * classes still visit every class.
+ * <p>
+ * The warnings of a class are not stored if any detector failed to analyze it,
+ * or an error was logged while it was being analyzed, since they may be
+ * incomplete.
+ * <p>
+ * The store is discarded as a whole if the SpotBugs version, the detectors in
+ * the execution plan or the analysis features differ from the previous run.
+ *
+ * @see AnalysisOptions#incrementalCacheFile
+ */
+class IncrementalAnalysisCache {
+    private static final boolean DEBUG = FindBugs2.DEBUG;
+
+    private static final String FORMAT = "spotbugs-incremental-cache 1";
+
+    private static final String INDEX_ENTRY = "index";
+
+    private static final String BUGS_ENTRY_PREFIX = "bugs/";
+
+    private static final String BUGS_ENTRY_SUFFIX = ".xml";
+
+    private static final byte[] MISSING_CLASS_HASH = new byte[0];
+
+    private static class Entry {
+        final String key;
+
+        /** true if the warnings were stored by a previous run */
+        final boolean reused;
+
+        /** stored warnings in XML form, not parsed unless needed */
+        @CheckForNull
+        byte[] bugsXML;
+
+        @CheckForNull
+        List<BugInstance> bugs;
+
+        Entry(String key, boolean reused, @CheckForNull byte[] bugsXML, @CheckForNull List<BugInstance> bugs) {
+            this.key = key;
+            this.reused = reused;
+            this.bugsXML = bugsXML;
+            this.bugs = bugs;
+        }
+    }
+
+    private final File file;
+
+    private final String configuration;
+
+    private final BugReporter bugReporter;
+
+    /** entries read from the file */
+    private final Map<ClassDescriptor, Entry> storedEntries = new HashMap<>();
+
+    /** entries of the current analysis */
+    private final Map<ClassDescriptor, Entry> entries = new HashMap<>();
+
+    private final Map<ClassDescriptor, String> keys = new HashMap<>();
+
+    private final Map<ClassDescriptor, byte[]> dependencyHashes = new HashMap<>();
+
+    /** classes a detector failed to analyze, whose entries are not saved */
+    private final Set<ClassDescriptor> failedClasses = ConcurrentHashMap.newKeySet();
+
+    /** entry the warnings currently reported are added to */
+    @CheckForNull
+    private Entry recording;
+
+    private int reusedClasses;
+
+    /**
+     * Constructor. Reads the stored entries, if the file exists and was
+     * written by an analysis using the same configuration.
+     *
+     * @param file
+     *            the file to read the entries from and to save them to
+     * @param executionPlan
+     *            the execution plan of the analysis
+     * @param bugReporter
+     *            the BugReporter errors are logged to
+     */
+    IncrementalAnalysisCache(File file, ExecutionPlan executionPlan, BugReporter bugReporter) {
+        this.file = file;
+        this.bugReporter = bugReporter;
+        this.configuration = computeConfiguration(executionPlan);
+        if (file.isFile()) {
+            try {
+                read();
+            } catch (IOException | RuntimeException e) {
+                storedEntries.clear();
+                bugReporter.logError("Unable to read incremental analysis cache " + file, e);
+            }
+        }
+    }
+
+    private static String computeConfiguration(ExecutionPlan executionPlan) {
+        MessageDigest digest = Util.getMD5Digest();
+        update(digest, Version.VERSION_STRING);
+        for (Iterator<AnalysisPass> i = executionPlan.passIterator(); i.hasNext();) {
+            for (Iterator<DetectorFactory> j = i.next().iterator(); j.hasNext();) {
+                DetectorFactory factory = j.next();
+                update(digest, factory.getFullName());
+                update(digest, factory.getPlugin().getVersion());
+            }
+        }
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        byte[] features = new byte[AnalysisFeatures.NUM_BOOLEAN_ANALYSIS_PROPERTIES];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = (byte) (analysisContext.getBoolProperty(i) ? 1 : 0);
+        }
+        digest.update(features);
+        update(digest, String.valueOf(FindBugsAnalysisFeatures.isRelaxedMode()));
+        return ClassHash.hashToString(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, @CheckForNull String s) {
+        digest.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private void read() throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry index = zipFile.getEntry(INDEX_ENTRY);
+            if (index == null) {
+                throw new IOException("No index in " + file);
+            }
+            try (BufferedReader reader = UTF8.bufferedReader(zipFile.getInputStream(index))) {
+                if (!FORMAT.equals(reader.readLine())) {
+                    throw new IOException("Unknown format of " + file);
+                }
+                if (!configuration.equals(reader.readLine())) {
+                    if (DEBUG) {
+                        System.out.println("Analysis configuration changed, ignoring " + file);
+                    }
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab < 0) {
+                        throw new IOException("Invalid entry in " + file + ": " + line);
+                    }
+                    String className = line.substring(0, tab);
+                    String key = line.substring(tab + 1);
+                    byte[] bugsXML = null;
+                    ZipEntry bugs = zipFile.getEntry(BUGS_ENTRY_PREFIX + className + BUGS_ENTRY_SUFFIX);
+                    if (bugs != null) {
+                        try (InputStream in = zipFile.getInputStream(bugs)) {
+                            bugsXML = readAll(in);
+                        }
+                    }
+                    storedEntries.put(DescriptorFactory.createClassDescriptor(className), new Entry(key, true, bugsXML, null));
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Find out which detectors of a pass report warnings which are stored.
+     *
+     * @param pass
+     *            the analysis pass
+     * @return for each detector of the pass (in the order the detectors are
+     *         instantiated), whether it is a stateless detector
+     */
+    static boolean[] getStatelessDetectors(AnalysisPass pass) {
+        List<Boolean> stateless = new ArrayList<>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            stateless.add(i.next().isDetectorClassSubtypeOf(StatelessDetector.class));
+        }
+        boolean[] result = new boolean[stateless.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stateless.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Wrap the BugReporter passed to the detectors, so that the warnings
+     * reported between {@link #startRecording(ClassDescriptor)} and
+     * {@link #stopRecording()} are stored, and the classes errors are logged
+     * for are not.
+     *
+     * @param delegate
+     *            the BugReporter to forward all reports to
+     * @return the recording BugReporter
+     */
+    BugReporter createRecordingBugReporter(BugReporter delegate) {
+        return new DelegatingBugReporter(delegate) {
+            @Override
+            public void reportBug(BugInstance bugInstance) {
+                Entry entry = recording;
+                if (entry != null) {
+                    entry.bugs.add((BugInstance) bugInstance.clone());
+                }
+                super.reportBug(bugInstance);
+            }
+
+            @Override
+            public void logError(String message) {
+                recordFailureOfClassBeingAnalyzed();
+                super.logError(message);
+            }
+
+            @Override
+            public void logError(String message, Throwable e) {
+                recordFailureOfClassBeingAnalyzed();
+                super.logError(message, e);
+            }
+
+            @Override
+            public void reportSkippedAnalysis(MethodDescriptor method) {
+                recordFailureOfClassBeingAnalyzed();
+                super.reportSkippedAnalysis(method);
+            }
+        };
+    }
+
+    private void recordFailureOfClassBeingAnalyzed() {
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        ClassDescriptor classDescriptor = analysisContext != null ? analysisContext.getClassBeingAnalyzed() : null;
+        if (classDescriptor != null) {
+            recordFailure(classDescriptor);
+        }
+    }
+
+    /**
+     * Do not store the warnings of a class, because a detector failed to
+     * analyze it.
+     *
+     * @param classDescriptor
+     *            the class
+     */
+    void recordFailure(ClassDescriptor classDescriptor) {
+        failedClasses.add(classDescriptor);
+    }
+
+    /**
+     * Determine whether the stored warnings of a class may be reused.
+     *
+     * @param classDescriptor
+     *            the class
+     * @return true if the class, and the classes it depends on, did not
+     *         change since the warnings were stored
+     */
+    boolean isUnchanged(ClassDescriptor classDescriptor) {
+        Entry entry = entries.get(classDescriptor);
+        if (entry != null) {
+            return entry.reused;
+        }
+        Entry stored = storedEntries.get(classDescriptor);
+        String key = getKey(classDescriptor);
+        if (stored == null || key == null || !key.equals(stored.key)) {
+            return false;
+        }
+        if (stored.bugsXML != null) {
+            try {
+                SortedBugCollection bugCollection = new SortedBugCollection();
+                bugCollection.readXML(new ByteArrayInputStream(stored.bugsXML));
+                stored.bugs = new ArrayList<>(bugCollection.getCollection());
+            } catch (IOException | DocumentException | RuntimeException e) {
+                bugReporter.logError("Unable to read stored warnings for " + classDescriptor.toDottedClassName(), e);
+                return false;
+            }
+        }
+        storedEntries.remove(classDescriptor);
+        entries.put(classDescriptor, stored);
+        reusedClasses++;
+        return true;
+    }
+
+    /**
+     * Report the stored warnings of an unchanged class.
+     *
+     * @param classDescriptor
+     *            a class for which {@link #isUnchanged(ClassDescriptor)}
+     *            returned true
+     * @param reporter
+     *            the BugReporter to report the warnings to
+     */
+    void reportStoredBugs(ClassDescriptor classDescriptor, BugReporter reporter) {
+        Entry entry = entries.get(classDescriptor);
+        if (entry == null || entry.bugs == null) {
+            return;
+        }
+        for (BugInstance bug : entry.bugs) {
+            reporter.reportBug((BugInstance) bug.clone());
+        }
+    }
+
+    /**
+     * Start storing the warnings reported for a changed class.
+     *
+     * @param classDescriptor
+     *            the class being visited
+     */
+    void startRecording(ClassDescriptor classDescriptor) {
+        Entry entry = entries.get(classDescriptor);
+        if (entry == null) {
+            String key = getKey(classDescriptor);
+            entry = new Entry(key, false, null, new ArrayList<BugInstance>());
+            entries.put(classDescriptor, entry);
+        }
+        recording = entry;
+    }
+
+    void stopRecording() {
+        recording = null;
+    }
+
+    @CheckForNull
+    private String getKey(ClassDescriptor classDescriptor) {
+        if (keys.containsKey(classDescriptor)) {
+            return keys.get(classDescriptor);
+        }
+        String key = computeKey(classDescriptor);
+        keys.put(classDescriptor, key);
+        return key;
+    }
+
+    /**
+     * @return the key of the class, or null if the class could not be
+     *         loaded
+     */
+    @CheckForNull
+    private String computeKey(ClassDescriptor classDescriptor) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        Set<ClassDescriptor> dependencies = new TreeSet<>();
+        try {
+            addReferencedClasses(analysisCache.getClassAnalysis(JavaClass.class, classDescriptor), dependencies);
+        } catch (CheckedAnalysisException e) {
+            return null;
+        }
+        dependencies.add(classDescriptor);
+        addSupertypes(dependencies);
+
+        MessageDigest digest = Util.getMD5Digest();
+        for (ClassDescriptor dependency : dependencies) {
+            update(digest, dependency.getClassName());
+            digest.update(getDependencyHash(dependency));
+        }
+        return ClassHash.hashToString(digest.digest());
+    }
+
+    /**
+     * Add the classes named in the constant pool of a class. Unlike
+     * {@link XClass#getCalledClassDescriptors()}, these include the owners of
+     * methods with only primitive parameter and return types, and of the
+     * fields the class accesses.
+     */
+    private static void addReferencedClasses(JavaClass javaClass, Set<ClassDescriptor> result) {
+        ConstantPool constantPool = javaClass.getConstantPool();
+        for (Constant constant : constantPool.getConstantPool()) {
+            if (!(constant instanceof ConstantClass)) {
+                continue;
+            }
+            String className = ((ConstantClass) constant).getBytes(constantPool);
+            if (className.startsWith("[")) {
+                className = className.substring(className.lastIndexOf('[') + 1);
+                if (!className.startsWith("L")) {
+                    continue;
+                }
+                className = className.substring(1, className.length() - 1);
+            }
+            result.add(DescriptorFactory.createClassDescriptor(className));
+        }
+    }
+
+    /**
+     * Add the transitive supertypes of the given classes to them. Missing
+     * classes still contribute their name.
+     */
+    private static void addSupertypes(Set<ClassDescriptor> classes) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        LinkedList<ClassDescriptor> worklist = new LinkedList<>(classes);
+        while (!worklist.isEmpty()) {
+            XClass current;
+            try {
+                current = analysisCache.getClassAnalysis(XClass.class, worklist.removeFirst());
+            } catch (CheckedAnalysisException e) {
+                continue;
+            }
+            List<ClassDescriptor> supertypes = new ArrayList<>();
+            if (current.getSuperclassDescriptor() != null) {
+                supertypes.add(current.getSuperclassDescriptor());
+            }
+            for (ClassDescriptor i : current.getInterfaceDescriptorList()) {
+                supertypes.add(i);
+            }
+            for (ClassDescriptor supertype : supertypes) {
+                if (classes.add(supertype)) {
+                    worklist.add(supertype);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return hash of the class file of a class and of the interprocedural
+     *         properties of the fields and methods it declares
+     */
+    private byte[] getDependencyHash(ClassDescriptor classDescriptor) {
+        byte[] hash = dependencyHashes.get(classDescriptor);
+        if (hash != null) {
+            return hash;
+        }
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        try {
+            ClassData classData = analysisCache.getClassAnalysis(ClassData.class, classDescriptor);
+            MessageDigest digest = Util.getMD5Digest();
+            digest.update(classData.getData());
+            XClass xclass = analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+            AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+            PropertyDatabase<MethodDescriptor, ?> returnValueDatabase = analysisContext.getReturnValueNullnessPropertyDatabase();
+            PropertyDatabase<MethodDescriptor, ?> derefParamDatabase = analysisContext.getUnconditionalDerefParamDatabase();
+            FieldSummary fieldSummary = analysisContext.getFieldSummary();
+            FieldStoreTypeDatabase fieldStoreTypeDatabase = analysisContext.getFieldStoreTypeDatabase();
+            for (XMethod xmethod : xclass.getXMethods()) {
+                MethodDescriptor method = xmethod.getMethodDescriptor();
+                if (returnValueDatabase != null) {
+                    update(digest, String.valueOf(returnValueDatabase.getProperty(method)));
+                }
+                if (derefParamDatabase != null) {
+                    update(digest, String.valueOf(derefParamDatabase.getProperty(method)));
+                }
+                update(digest, String.valueOf(new TreeSet<>(fieldSummary.getFieldsWritten(xmethod))));
+            }
+            for (XField xfield : xclass.getXFields()) {
+                update(digest, String.valueOf(fieldSummary.getSummary(xfield)));
+                update(digest, String.valueOf(fieldSummary.isWrittenOutsideOfConstructor(xfield)));
+                FieldStoreType storeType = fieldStoreTypeDatabase != null
+                        ? fieldStoreTypeDatabase.getProperty(xfield.getFieldDescriptor()) : null;
+                if (storeType != null) {
+                    Set<String> signatures = new TreeSet<>();
+                    for (Iterator<String> i = storeType.signatureIterator(); i.hasNext();) {
+                        signatures.add(i.next());
+                    }
+                    update(digest, String.valueOf(signatures));
+                }
+            }
+            update(digest, String.valueOf(fieldSummary.callsOverriddenMethodsFromConstructor(classDescriptor)));
+            hash = digest.digest();
+        } catch (CheckedAnalysisException e) {
+            hash = MISSING_CLASS_HASH;
+        }
+        dependencyHashes.put(classDescriptor, hash);
+        return hash;
+    }
+
+    /**
+     * @return number of classes whose stored warnings were reused
+     */
+    int getReusedClasses() {
+        return reusedClasses;
+    }
+
+    /**
+     * Save the entries of all classes analyzed in this run, replacing the
+     * previous contents of the file.
+     *
+     * @throws IOException
+     */
+    void save() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("spotbugs", ".tmp", parent);
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(temp))) {
+                StringBuilder index = new StringBuilder();
+                index.append(FORMAT).append('\n').append(configuration).append('\n');
+                for (Map.Entry<ClassDescriptor, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (entry.key == null || failedClasses.contains(e.getKey())) {
+                        continue;
+                    }
+                    String className = e.getKey().getClassName();
+                    index.append(className).append('\t').append(entry.key).append('\n');
+                    byte[] bugsXML = entry.bugsXML;
+                    if (bugsXML == null && entry.bugs != null && !entry.bugs.isEmpty()) {
+                        bugsXML = toXML(entry.bugs);
+                    }
+                    if (bugsXML != null) {
+                        out.putNextEntry(new ZipEntry(BUGS_ENTRY_PREFIX + className + BUGS_ENTRY_SUFFIX));
+                        out.write(bugsXML);
+                        out.closeEntry();
+                    }
+                }
+                out.putNextEntry(new ZipEntry(INDEX_ENTRY));
+                out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private static byte[] toXML(List<BugInstance> bugs) throws IOException {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.setMinimalXML(true);
+        for (BugInstance bug : bugs) {
+            bugCollection.add(bug, false);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = bytes; Writer writer = UTF8.writer(out)) {
+            bugCollection.writeXML(writer);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.Comparator;
+
+/**
+ * A comparator of bug instances which also computes a matching key for each
+ * bug instance: bug instances which compare as equal have equal keys. The bug
+ * instances which may be equal to a given one are found in a hash table by
+ * key, and only those are compared with the comparator.
+ */
+public interface MatchingKeyComparator extends Comparator<BugInstance> {
+
+    /**
+     * Get the matching key of a bug instance. If
+     * <code>compare(a, b) == 0</code>, then
+     * <code>getMatchingKey(a).equals(getMatchingKey(b))</code>. The converse
+     * need not hold, but the fewer bug instances share a key, the better.
+     *
+     * @param bug
+     *            a bug instance
+     * @return its matching key
+     */
+    public Object getMatchingKey(BugInstance bug);
+
+    /**
+     * Determine whether a bug instance has annotations matching any value, so
+     * that comparing it with other bug instances is not transitive. The bug
+     * instances sharing a key with such a bug instance can't be kept in a
+     * sorted map, and are compared one by one instead.
+     *
+     * @param bug
+     *            a bug instance
+     * @return true if the bug instance has wildcard annotations
+     */
+    public default boolean hasWildcards(BugInstance bug) {
+        return false;
+    }
+}
@@ -27,8 +27,11 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -121,12 +124,26 @@ public class OpcodeStack implements Constants2 {
     public @interface CustomUserValue {
     }
 
+    /**
+     * You can put this annotation on a OpcodeStack detector to indicate that
+     * it replaces items of the stack, and thus should simulate the opcode stack
+     * itself instead of replaying the {@link StateTrace} shared by the other
+     * detectors.
+     */
+    @Documented
+    @Target({ElementType.TYPE})
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface ModifiesStack {
+    }
+
     private static final String JAVA_UTIL_ARRAYS_ARRAY_LIST = "Ljava/util/Arrays$ArrayList;";
 
     private static final boolean DEBUG = SystemProperties.getBoolean("ocstack.debug");
 
     private static final boolean DEBUG2 = DEBUG;
 
+    private static final boolean REPLAY_STATES = SystemProperties.getBoolean("findbugs.opcodestack.replay", true);
+
     @StaticConstant
     static final HashMap<String, String> boxedTypes = new HashMap<>();
 
@@ -184,6 +201,8 @@ public class OpcodeStack implements Constants2 {
 
     private boolean reachOnlyByBranch;
 
+    private @CheckForNull StateTrace replayedTrace;
+
     public static class Item {
 
         /**
@@ -1124,7 +1143,18 @@ public class OpcodeStack implements Constants2 {
         lastUpdate = new ArrayList<>();
     }
 
+    /**
+     * @param pc
+     *            an instruction of the method
+     * @return true if the instruction is a jump target with a known state at
+     *         the jump. While {@link StateTrace states are replayed}, the
+     *         answer is the one the simulation gave when it reached the
+     *         instruction, as the jump entries are not replayed.
+     */
     public boolean hasIncomingBranches(int pc) {
+        if (replayedTrace != null) {
+            return replayedTrace.incomingBranches.get(pc);
+        }
         return jumpEntryLocations.get(pc) && jumpEntries.get(pc) != null;
 
     }
@@ -1293,6 +1323,10 @@ public class OpcodeStack implements Constants2 {
         if (dbc.isRegisterStore()) {
             setLastUpdate(dbc.getRegisterOperand(), dbc.getPC());
         }
+        if (replayedTrace != null) {
+            restore(replayedTrace.after[dbc.getPC()]);
+            return;
+        }
 
         precomputation(dbc);
         needToMerge = true;
@@ -2190,6 +2224,10 @@ public class OpcodeStack implements Constants2 {
     }
 
     public void precomputation(DismantleBytecode dbc) {
+        if (replayedTrace != null) {
+            restore(replayedTrace.before[dbc.getPC()]);
+            return;
+        }
         if (registerTestedFoundToBeNonnegative >= 0) {
             for (int i = 0; i < stack.size(); i++) {
                 Item item = stack.get(i);
@@ -2957,6 +2995,166 @@ public class OpcodeStack implements Constants2 {
         }
     }
 
+    /**
+     * The state of the opcode stack at some point of a method. States are
+     * shared by all replaying detectors and must not be modified.
+     */
+    static final class State {
+        final List<Item> stack;
+
+        final List<Item> lvValues;
+
+        final boolean top;
+
+        final BitSet jumpEntryLocations;
+
+        State(List<Item> stack, List<Item> lvValues, boolean top, BitSet jumpEntryLocations) {
+            this.stack = stack;
+            this.lvValues = lvValues;
+            this.top = top;
+            this.jumpEntryLocations = jumpEntryLocations;
+        }
+    }
+
+    /**
+     * The states of the opcode stack before and after each instruction of a
+     * method, as computed for an {@link OpcodeStackDetector}. Detectors which
+     * neither use custom user values or jump info nor modify the stack replay
+     * these states instead of simulating the method again.
+     */
+    public static class StateTrace {
+        final State[] before;
+
+        final State[] after;
+
+        /** Instructions for which the simulation had incoming branches */
+        final BitSet incomingBranches;
+
+        private final int numStates;
+
+        StateTrace(State[] before, State[] after, BitSet incomingBranches, int numStates) {
+            this.before = before;
+            this.after = after;
+            this.incomingBranches = incomingBranches;
+            this.numStates = numStates;
+        }
+
+        /**
+         * @return the number of distinct states recorded
+         */
+        public int getNumStates() {
+            return numStates;
+        }
+    }
+
+    public static class StateTraceFactory extends edu.umd.cs.findbugs.classfile.engine.bcel.AnalysisFactory<StateTrace> {
+
+        public StateTraceFactory() {
+            super("Opcode stack states", StateTrace.class);
+        }
+
+        @Override
+        public @CheckForNull StateTrace analyze(IAnalysisCache analysisCache, MethodDescriptor descriptor) throws CheckedAnalysisException {
+            Method method = analysisCache.getMethodAnalysis(Method.class, descriptor);
+            JavaClass jclass = getJavaClass(analysisCache, descriptor.getClassDescriptor());
+            Code code = method.getCode();
+            if (code == null) {
+                return null;
+            }
+            Recorder recorder = new Recorder(code.getLength());
+            recorder.setupVisitorForClass(jclass);
+            recorder.doVisitMethod(method);
+            return new StateTrace(recorder.before, recorder.after, recorder.incomingBranches, recorder.numStates);
+        }
+
+        /**
+         * Simulates the opcode stack like any other detector, and records
+         * immutable copies of its states. Items and lists which did not change
+         * since the previous state are shared with it.
+         */
+        static class Recorder extends OpcodeStackDetector {
+            final State[] before;
+
+            final State[] after;
+
+            final BitSet incomingBranches = new BitSet();
+
+            int numStates;
+
+            private State previous;
+
+            private final IdentityHashMap<Item, Item> copies = new IdentityHashMap<>();
+
+            private int previousJumpEntryCount = -1;
+
+            Recorder(int codeLength) {
+                before = new State[codeLength];
+                after = new State[codeLength];
+            }
+
+            @Override
+            public boolean beforeOpcode(int seen) {
+                super.beforeOpcode(seen);
+                before[getPC()] = record();
+                // as seen from sawOpcode()
+                incomingBranches.set(getPC(), stack.hasIncomingBranches(getPC()));
+                return false;
+            }
+
+            @Override
+            public void afterOpcode(int seen) {
+                super.afterOpcode(seen);
+                after[getPC()] = record();
+            }
+
+            @Override
+            public void sawOpcode(int seen) {
+            }
+
+            private State record() {
+                List<Item> recordedStack = copy(stack.stack, previous == null ? null : previous.stack);
+                List<Item> recordedValues = copy(stack.lvValues, previous == null ? null : previous.lvValues);
+                BitSet jumpEntryLocations;
+                int jumpEntryCount = stack.jumpEntryLocations.cardinality();
+                if (previous != null && jumpEntryCount == previousJumpEntryCount) {
+                    // jump entries are only ever added
+                    jumpEntryLocations = previous.jumpEntryLocations;
+                } else {
+                    jumpEntryLocations = (BitSet) stack.jumpEntryLocations.clone();
+                    previousJumpEntryCount = jumpEntryCount;
+                }
+                if (previous == null || recordedStack != previous.stack || recordedValues != previous.lvValues
+                        || stack.top != previous.top || jumpEntryLocations != previous.jumpEntryLocations) {
+                    previous = new State(recordedStack, recordedValues, stack.top, jumpEntryLocations);
+                    numStates++;
+                }
+                return previous;
+            }
+
+            private List<Item> copy(List<Item> items, @CheckForNull List<Item> previousItems) {
+                Item[] result = new Item[items.size()];
+                boolean same = previousItems != null && previousItems.size() == result.length;
+                for (int i = 0; i < result.length; i++) {
+                    Item item = items.get(i);
+                    if (item != null) {
+                        Item copy = copies.get(item);
+                        // the simulation updates some items in place
+                        if (copy == null || !copy.equals(item) || copy.getPC() != item.getPC()) {
+                            copy = new Item(item);
+                            copies.put(item, copy);
+                        }
+                        result[i] = copy;
+                    }
+                    same = same && result[i] == previousItems.get(i);
+                }
+                if (same) {
+                    return previousItems;
+                }
+                return Collections.unmodifiableList(Arrays.asList(result));
+            }
+        }
+    }
+
     public boolean isJumpTarget(int pc) {
         return jumpEntryLocations.get(pc);
     }
@@ -3019,6 +3217,12 @@ public class OpcodeStack implements Constants2 {
 
     public int resetForMethodEntry(final DismantleBytecode visitor) {
         this.v = visitor;
+        if (replayedTrace != null) {
+            replayedTrace = null;
+            stack = new ArrayList<>();
+            lvValues = new ArrayList<>();
+            jumpEntryLocations = new BitSet();
+        }
         initialize();
 
         int result = resetForMethodEntry0(v);
@@ -3026,6 +3230,15 @@ public class OpcodeStack implements Constants2 {
         if (code == null) {
             return result;
         }
+        // Without the iterative analysis, the jump entries of each detector
+        // depend on the detectors which ran before, so there is nothing to share
+        if (REPLAY_STATES && useIterativeAnalysis && visitor instanceof OpcodeStackDetector
+                && !(visitor instanceof StateTraceFactory.Recorder) && ((OpcodeStackDetector) visitor).isReplayingStates()) {
+            replayedTrace = getStateTrace(code);
+            if (replayedTrace != null) {
+                return result;
+            }
+        }
         JumpInfo jump = null;
         if (useIterativeAnalysis) {
             if (visitor instanceof OpcodeStackDetector.WithCustomJumpInfo) {
@@ -3066,6 +3279,27 @@ public class OpcodeStack implements Constants2 {
             return null;
         }
     }
+    private @CheckForNull StateTrace getStateTrace(Code code) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        XMethod xMethod = XFactory.createXMethod(v.getThisClass(), v.getMethod());
+        try {
+            StateTrace trace = analysisCache.getMethodAnalysis(StateTrace.class, xMethod.getMethodDescriptor());
+            if (trace != null && trace.before.length == code.getLength()) {
+                return trace;
+            }
+        } catch (CheckedAnalysisException e) {
+            AnalysisContext.logError("Error getting opcode stack states", e);
+        }
+        return null;
+    }
+
+    private void restore(State state) {
+        stack = state.stack;
+        lvValues = state.lvValues;
+        top = state.top;
+        jumpEntryLocations = state.jumpEntryLocations;
+    }
+
     private JumpInfoFromStackMap getJumpInfoFromStackMap() {
         IAnalysisCache analysisCache = Global.getAnalysisCache();
         XMethod xMethod = XFactory.createXMethod(v.getThisClass(), v.getMethod());
@@ -3173,7 +3407,15 @@ public class OpcodeStack implements Constants2 {
         return stack.remove(stack.size() - 1);
     }
 
+    private void checkNotReplayed() {
+        if (replayedTrace != null) {
+            throw new IllegalStateException("Replayed opcode stack of " + v.getClass().getName()
+                    + " can't be modified, annotate the detector with @OpcodeStack.ModifiesStack");
+        }
+    }
+
     public void replace(int stackOffset, Item value) {
+        checkNotReplayed();
         if (stackOffset < 0 || stackOffset >= stack.size()) {
             AnalysisContext.logError("Can't get replace stack offset " + stackOffset + " from " + stack.toString() + " @ " + v.getPC()
             + " in " + v.getFullyQualifiedMethodName(), new IllegalArgumentException(stackOffset
@@ -3188,6 +3430,7 @@ public class OpcodeStack implements Constants2 {
     }
 
     public void replaceTop(Item newTop) {
+        checkNotReplayed();
         pop();
         push(newTop);
     }
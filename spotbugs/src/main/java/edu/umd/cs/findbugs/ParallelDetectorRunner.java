@@ -0,0 +1,434 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.bcel.classfile.ClassFormatException;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.MissingClassException;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisWorkerThread;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+
+/**
+ * Applies the {@link StatelessDetector}s of an analysis pass to classes on a
+ * fork-join pool.
+ * <p>
+ * Every worker thread owns its own instances of the stateless detectors.
+ * Anything a detector reports while visiting a class (bugs, errors and missing
+ * classes) is recorded instead of being passed to the real BugReporter. The
+ * analysis thread then replays the recorded reports with
+ * {@link #replay(ClassDescriptor, int)} at the exact position the detector
+ * would have run in a single-threaded analysis, so the BugReporter sees the
+ * same sequence of reports regardless of the number of threads.
+ * <p>
+ * Only a window of classes ahead of the class the analysis thread is visiting
+ * is given to the workers, so that the reports waiting to be replayed, and the
+ * results the workers add to the analysis cache, stay bounded.
+ *
+ * @see AnalysisOptions#threads
+ */
+class ParallelDetectorRunner {
+    private static final boolean DEBUG = FindBugs2.DEBUG;
+
+    private final BugReporter bugReporter;
+
+    private final DetectorFactory[] factories;
+
+    /**
+     * Indexes (into the detector list of the pass) of detectors which are run
+     * by the worker threads
+     */
+    private final boolean[] parallel;
+
+    private final ForkJoinPool pool;
+
+    private final Map<ClassDescriptor, ForkJoinTask<ClassReports>> tasks = new HashMap<>();
+
+    /** Maximum number of scheduled classes not yet finished by the analysis thread */
+    private final int window;
+
+    private List<ClassDescriptor> classes = Collections.emptyList();
+
+    private Predicate<ClassDescriptor> isHuge;
+
+    /** Index in classes of the next class to schedule */
+    private int nextClass;
+
+    /** Detector instances of every worker, used to finish the pass */
+    private final List<Detector2[]> workerDetectors = Collections.synchronizedList(new ArrayList<Detector2[]>());
+
+    private final ThreadLocal<Worker> worker = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            Worker result = new Worker();
+            workerDetectors.add(result.detectors);
+            return result;
+        }
+    };
+
+    /**
+     * Create a runner for given pass, if the pass contains any detector
+     * which can be run concurrently.
+     *
+     * @param pass
+     *            the analysis pass
+     * @param threads
+     *            number of worker threads
+     * @param bugReporter
+     *            the BugReporter all recorded reports are replayed to
+     * @return the runner, or null if no detector of the pass is a
+     *         {@link StatelessDetector}
+     */
+    @CheckForNull
+    static ParallelDetectorRunner create(AnalysisPass pass, int threads, BugReporter bugReporter) {
+        ParallelDetectorRunner runner = new ParallelDetectorRunner(pass, threads, bugReporter);
+        for (boolean p : runner.parallel) {
+            if (p) {
+                return runner;
+            }
+        }
+        runner.shutdown();
+        return null;
+    }
+
+    private ParallelDetectorRunner(AnalysisPass pass, int threads, BugReporter bugReporter) {
+        this.bugReporter = bugReporter;
+        List<DetectorFactory> factoryList = new ArrayList<>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            factoryList.add(i.next());
+        }
+        this.factories = factoryList.toArray(new DetectorFactory[factoryList.size()]);
+        this.parallel = new boolean[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            parallel[i] = factories[i].isDetectorClassSubtypeOf(StatelessDetector.class);
+        }
+        this.pool = AnalysisWorkerThread.newPool(threads, true);
+        this.window = 2 * threads;
+    }
+
+    /**
+     * @return true if the detector at given position of the pass is run by
+     *         the worker threads
+     */
+    boolean isParallel(int detectorIndex) {
+        return parallel[detectorIndex];
+    }
+
+    /**
+     * Set the classes to be analyzed by the worker threads, and schedule the
+     * first window of them. The others are scheduled as the analysis thread
+     * finishes classes. Classes are picked up by the workers in this order.
+     *
+     * @param classes
+     *            the classes to analyze, in analysis order
+     * @param isHuge
+     *            tells if a class is too big to apply all detectors
+     */
+    void setClasses(List<ClassDescriptor> classes, Predicate<ClassDescriptor> isHuge) {
+        this.classes = classes;
+        this.isHuge = isHuge;
+        this.nextClass = 0;
+        scheduleAhead();
+    }
+
+    private void scheduleAhead() {
+        while (tasks.size() < window && nextClass < classes.size()) {
+            final ClassDescriptor classDescriptor = classes.get(nextClass++);
+            final boolean huge = isHuge.test(classDescriptor);
+            tasks.put(classDescriptor, pool.submit(() -> worker.get().analyze(classDescriptor, huge)));
+        }
+    }
+
+    /**
+     * Called by the analysis thread when it is done with a class, so that the
+     * next class is given to the workers. Reports of the class which were not
+     * replayed are discarded.
+     *
+     * @param classDescriptor
+     *            the class the analysis thread visited
+     */
+    void finishClass(ClassDescriptor classDescriptor) {
+        ForkJoinTask<ClassReports> task = tasks.remove(classDescriptor);
+        if (task != null) {
+            task.cancel(false);
+        }
+        scheduleAhead();
+    }
+
+    /**
+     * Wait until the worker threads have analyzed given class, and pass
+     * everything the given detector reported for it to the BugReporter.
+     *
+     * @param classDescriptor
+     *            a class previously passed to
+     *            {@link #setClasses(List, Predicate)}
+     * @param detectorIndex
+     *            position of the detector in the pass
+     * @return false if the detector failed to analyze the class
+     */
+    boolean replay(ClassDescriptor classDescriptor, int detectorIndex) throws InterruptedException {
+        ForkJoinTask<ClassReports> task = tasks.get(classDescriptor);
+        if (task == null) {
+            return true;
+        }
+        ClassReports reports;
+        try {
+            reports = task.get();
+        } catch (CancellationException e) {
+            tasks.remove(classDescriptor);
+            return false;
+        } catch (ExecutionException e) {
+            bugReporter.logError("Exception analyzing " + classDescriptor.toDottedClassName(), e.getCause());
+            tasks.remove(classDescriptor);
+            return false;
+        }
+        boolean completed = reports.replay(detectorIndex);
+        if (reports.isReplayed()) {
+            tasks.remove(classDescriptor);
+        }
+        return completed;
+    }
+
+    /**
+     * Call finishPass() on the detector instances of all worker threads, and
+     * stop the workers.
+     */
+    void finishPass() {
+        shutdown();
+        synchronized (workerDetectors) {
+            for (Detector2[] detectors : workerDetectors) {
+                for (Detector2 detector : detectors) {
+                    if (detector != null) {
+                        detector.finishPass();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the worker threads, discarding the classes not yet analyzed.
+     */
+    void shutdown() {
+        pool.shutdownNow();
+        tasks.clear();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Everything the stateless detectors reported for one class, by position
+     * of the detector in the pass.
+     */
+    private class ClassReports {
+        private final List<List<Runnable>> reports;
+
+        /** Indexes of the detectors which failed to analyze the class */
+        private final boolean[] failed = new boolean[factories.length];
+
+        private int toReplay;
+
+        ClassReports() {
+            reports = new ArrayList<>(factories.length);
+            for (int i = 0; i < factories.length; i++) {
+                reports.add(parallel[i] ? new ArrayList<Runnable>() : null);
+                if (parallel[i]) {
+                    toReplay++;
+                }
+            }
+        }
+
+        List<Runnable> get(int detectorIndex) {
+            return reports.get(detectorIndex);
+        }
+
+        void fail(int detectorIndex) {
+            failed[detectorIndex] = true;
+        }
+
+        boolean replay(int detectorIndex) {
+            List<Runnable> recorded = reports.set(detectorIndex, null);
+            if (recorded == null) {
+                return true;
+            }
+            toReplay--;
+            for (Runnable r : recorded) {
+                r.run();
+            }
+            return !failed[detectorIndex];
+        }
+
+        boolean isReplayed() {
+            return toReplay == 0;
+        }
+    }
+
+    /**
+     * State of one worker thread: its detector instances and the reporter
+     * they report to.
+     */
+    private class Worker {
+        final RecordingBugReporter reporter = new RecordingBugReporter(bugReporter);
+
+        final Detector2[] detectors = new Detector2[factories.length];
+
+        Worker() {
+            for (int i = 0; i < factories.length; i++) {
+                if (parallel[i]) {
+                    detectors[i] = factories[i].createDetector2(reporter);
+                }
+            }
+        }
+
+        ClassReports analyze(ClassDescriptor classDescriptor, boolean isHuge) {
+            ClassReports result = new ClassReports();
+            AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+            Profiler profiler = bugReporter.getProjectStats().getProfiler();
+            analysisContext.setClassBeingAnalyzed(classDescriptor);
+            Global.getAnalysisCache().pinClass(classDescriptor);
+            try {
+                for (int i = 0; i < detectors.length; i++) {
+                    Detector2 detector = detectors[i];
+                    if (detector == null) {
+                        continue;
+                    }
+                    if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+                        continue;
+                    }
+                    if (DEBUG) {
+                        System.out.println("Applying " + detector.getDetectorClassName() + " to " + classDescriptor
+                                + " in " + Thread.currentThread().getName());
+                    }
+                    List<Runnable> recorded = result.get(i);
+                    reporter.recordTo(recorded);
+                    try {
+                        profiler.start(detector.getClass());
+                        detector.visitClass(classDescriptor);
+                    } catch (ClassFormatException e) {
+                        result.fail(i);
+                        recordRecoverableException(recorded, classDescriptor, detector, e);
+                    } catch (final MissingClassException e) {
+                        result.fail(i);
+                        recorded.add(() -> Global.getAnalysisCache().getErrorLogger()
+                                .reportMissingClass(e.getClassDescriptor()));
+                    } catch (CheckedAnalysisException e) {
+                        result.fail(i);
+                        recordRecoverableException(recorded, classDescriptor, detector, e);
+                    } catch (RuntimeException e) {
+                        result.fail(i);
+                        recordRecoverableException(recorded, classDescriptor, detector, e);
+                    } finally {
+                        profiler.end(detector.getClass());
+                        reporter.recordTo(null);
+                    }
+                }
+            } finally {
+                Global.getAnalysisCache().unpinClass(classDescriptor);
+                analysisContext.clearClassBeingAnalyzed();
+            }
+            return result;
+        }
+
+        private void recordRecoverableException(List<Runnable> recorded, ClassDescriptor classDescriptor,
+                Detector2 detector, final Throwable e) {
+            final String message = "Exception analyzing " + classDescriptor.toDottedClassName() + " using detector "
+                    + detector.getDetectorClassName();
+            recorded.add(() -> bugReporter.logError(message, e));
+        }
+    }
+
+    /**
+     * BugReporter given to the detectors of a worker thread. While a class is
+     * being visited, reports are recorded so they can be replayed by the
+     * analysis thread; otherwise (e.g. in finishPass()) they are passed on.
+     */
+    private static class RecordingBugReporter extends DelegatingBugReporter {
+        private List<Runnable> recorded;
+
+        RecordingBugReporter(BugReporter delegate) {
+            super(delegate);
+        }
+
+        void recordTo(@CheckForNull List<Runnable> recorded) {
+            this.recorded = recorded;
+        }
+
+        private void record(Runnable report) {
+            if (recorded != null) {
+                recorded.add(report);
+            } else {
+                report.run();
+            }
+        }
+
+        @Override
+        public void reportBug(@Nonnull final BugInstance bugInstance) {
+            record(() -> getDelegate().reportBug(bugInstance));
+        }
+
+        @Override
+        public void logError(final String message) {
+            record(() -> getDelegate().logError(message));
+        }
+
+        @Override
+        public void logError(final String message, final Throwable e) {
+            record(() -> getDelegate().logError(message, e));
+        }
+
+        @Override
+        public void reportMissingClass(final ClassNotFoundException ex) {
+            record(() -> getDelegate().reportMissingClass(ex));
+        }
+
+        @Override
+        public void reportMissingClass(final ClassDescriptor classDescriptor) {
+            record(() -> getDelegate().reportMissingClass(classDescriptor));
+        }
+
+        @Override
+        public void reportSkippedAnalysis(final MethodDescriptor method) {
+            record(() -> getDelegate().reportSkippedAnalysis(method));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * A detector of the first pass whose contribution to the interprocedural
+ * databases can be stored for each class, so that the classes of unchanged
+ * auxiliary codebases need not be visited again by later analyses.
+ * <p>
+ * The stored summary of a class must describe what the detector noted while
+ * visiting the class itself. It may refer to classes in other codebases, but
+ * must not depend on what the detector noted about them; the only exception
+ * are the subtypes of the class, which are checked before stored summaries are
+ * reused.
+ *
+ * @see AnalysisOptions#auxSummaryCacheDirectory
+ */
+public interface PersistentSummaryDetector {
+    /**
+     * Write the summary of a class. Called right after the detector visited
+     * the class.
+     *
+     * @param classDescriptor
+     *            the class just visited
+     * @param out
+     *            the output to write the summary to
+     * @throws IOException
+     *             if the summary can't be written
+     * @throws CheckedAnalysisException
+     *             if information about the class can't be obtained
+     */
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException, CheckedAnalysisException;
+
+    /**
+     * Restore the summary of a class written by
+     * {@link #writeSummary(ClassDescriptor, DataOutput)}. Called instead of
+     * visiting the class.
+     *
+     * @param classDescriptor
+     *            the class
+     * @param in
+     *            the input to read the summary from
+     * @throws IOException
+     *             if the summary can't be read
+     * @throws CheckedAnalysisException
+     *             if information about the class can't be obtained
+     */
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException, CheckedAnalysisException;
+}
@@ -0,0 +1,535 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Precompiled metadata of a plugin: its plugin descriptor (findbugs.xml), its
+ * message collections (messages*.xml) and its bug ranks (bugrank.txt).
+ * <p>
+ * The index is built when the plugin is packaged, by running this class with
+ * the directory or jar file containing the metadata files and the name of the
+ * index file to write, which is then added to the plugin as
+ * {@value #FILENAME}. The detector classes of the plugin must be in that
+ * directory or jar file, or on the class path, as building the index checks
+ * them. {@link PluginLoader} reads the metadata files from the
+ * index when it is present, without parsing XML or evaluating XPath
+ * expressions. The index records the CRC of each file it was built from, and
+ * a file whose CRC differs is read from the file itself.
+ * </p>
+ */
+public final class PluginIndex {
+
+    public static final String FILENAME = "findbugs.idx";
+
+    private static final byte[] MAGIC = { 'S', 'B', 'P', 'I' };
+
+    private static final int VERSION = 1;
+
+    private static final int KIND_XML = 0;
+
+    private static final int KIND_TEXT = 1;
+
+    /**
+     * An XML element: its name, attributes, text and child elements. This is
+     * what the plugin loader needs of the metadata files, whether they are
+     * read from the index or parsed.
+     */
+    static final class Element {
+        private final String name;
+
+        /** Names and values of the attributes, alternating */
+        private final String[] attributes;
+
+        private final String text;
+
+        private final List<Element> children;
+
+        /** Children by name and attribute, then by attribute value */
+        private Map<String, Map<String, Element>> childrenByKey;
+
+        Element(String name, String[] attributes, String text, List<Element> children) {
+            this.name = name;
+            this.attributes = attributes;
+            this.text = text;
+            this.children = children;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the value of the attribute, or the empty string if the
+         *         element has no such attribute
+         */
+        public String valueOf(String attribute) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(attribute)) {
+                    return attributes[i + 1];
+                }
+            }
+            return "";
+        }
+
+        /**
+         * @return the text directly contained in the element, including CDATA
+         *         sections
+         */
+        public String getText() {
+            return text;
+        }
+
+        public List<Element> getChildren() {
+            return children;
+        }
+
+        public List<Element> getChildren(String childName) {
+            List<Element> result = new ArrayList<>();
+            for (Element child : children) {
+                if (child.name.equals(childName)) {
+                    result.add(child);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the first child with the given name, or null if there is none
+         */
+        @CheckForNull
+        public Element getChild(String childName) {
+            for (Element child : children) {
+                if (child.name.equals(childName)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the first child with the given name and attribute value. The
+         * children are indexed by attribute value on first use, so that
+         * looking up each detector and bug pattern of a plugin doesn't scan
+         * all the children every time.
+         *
+         * @return the child, or null if there is none
+         */
+        @CheckForNull
+        public Element getChild(String childName, String attribute, String value) {
+            if (childrenByKey == null) {
+                childrenByKey = new HashMap<>();
+            }
+            String key = childName + '@' + attribute;
+            Map<String, Element> byValue = childrenByKey.get(key);
+            if (byValue == null) {
+                byValue = new HashMap<>();
+                for (Element child : children) {
+                    if (child.name.equals(childName)) {
+                        String childValue = child.valueOf(attribute);
+                        if (!byValue.containsKey(childValue)) {
+                            byValue.put(childValue, child);
+                        }
+                    }
+                }
+                childrenByKey.put(key, byValue);
+            }
+            return byValue.get(value);
+        }
+
+        static Element fromXml(org.dom4j.Element element) {
+            List<Attribute> xmlAttributes = element.attributes();
+            String[] attributes = new String[2 * xmlAttributes.size()];
+            int i = 0;
+            for (Attribute attribute : xmlAttributes) {
+                attributes[i++] = attribute.getQualifiedName();
+                attributes[i++] = attribute.getValue();
+            }
+            List<org.dom4j.Element> xmlChildren = element.elements();
+            List<Element> children = new ArrayList<>(xmlChildren.size());
+            for (org.dom4j.Element child : xmlChildren) {
+                children.add(fromXml(child));
+            }
+            return new Element(element.getName(), attributes, element.getText(), children);
+        }
+    }
+
+    /** Offset, length and CRC of the source file of each part of the index */
+    private final Map<String, long[]> parts;
+
+    private final byte[] data;
+
+    private PluginIndex(Map<String, long[]> parts, byte[] data) {
+        this.parts = parts;
+        this.data = data;
+    }
+
+    /**
+     * Read a plugin index.
+     *
+     * @param url
+     *            URL of the index
+     * @return the index
+     * @throws IOException
+     *             if the index can't be read, or isn't a plugin index of this
+     *             version
+     */
+    public static PluginIndex read(URL url) throws IOException {
+        byte[] data;
+        try (InputStream in = url.openStream()) {
+            data = IO.readAll(in);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(url + " is not a plugin index");
+        }
+        int version = BinaryBugCollectionFormat.readVarint(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported plugin index version " + version + " in " + url);
+        }
+        int numParts = BinaryBugCollectionFormat.readVarint(in);
+        Map<String, long[]> parts = new HashMap<>();
+        for (int i = 0; i < numParts; i++) {
+            String name = in.readUTF();
+            long crc = in.readLong();
+            long offset = BinaryBugCollectionFormat.readVarint(in);
+            long length = BinaryBugCollectionFormat.readVarint(in);
+            parts.put(name, new long[] { offset, length, crc });
+        }
+        // Offsets are relative to the end of the table of contents
+        int base = data.length - in.available();
+        for (long[] part : parts.values()) {
+            part[0] += base;
+            if (part[0] + part[1] > data.length) {
+                throw new IOException("Truncated plugin index " + url);
+            }
+        }
+        return new PluginIndex(parts, data);
+    }
+
+    /**
+     * Get an XML metadata file of the plugin from the index.
+     *
+     * @param name
+     *            name of the file, e.g. "findbugs.xml"
+     * @param source
+     *            URL of the file in the plugin
+     * @return the root element of the file, or null if the index doesn't
+     *         contain the file or the file changed since the index was built
+     */
+    @CheckForNull
+    public Element getDocument(String name, URL source) throws IOException {
+        DataInputStream in = getPart(name, source, KIND_XML);
+        if (in == null) {
+            return null;
+        }
+        String[] strings = BinaryBugCollectionFormat.readStrings(in);
+        return readElement(in, strings);
+    }
+
+    /**
+     * Get a text metadata file of the plugin from the index.
+     *
+     * @param name
+     *            name of the file, e.g. "bugrank.txt"
+     * @param source
+     *            URL of the file in the plugin
+     * @return the content of the file, or null if the index doesn't contain
+     *         the file or the file changed since the index was built
+     */
+    @CheckForNull
+    public String getText(String name, URL source) throws IOException {
+        DataInputStream in = getPart(name, source, KIND_TEXT);
+        if (in == null) {
+            return null;
+        }
+        byte[] text = new byte[in.available()];
+        in.readFully(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    @CheckForNull
+    private DataInputStream getPart(String name, URL source, int kind) throws IOException {
+        long[] part = parts.get(name);
+        if (part == null || part[2] != crc(source)) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, (int) part[0], (int) part[1]));
+        if (in.readUnsignedByte() != kind) {
+            return null;
+        }
+        return in;
+    }
+
+    /**
+     * Compute the CRC of a metadata file. The CRC of a jar entry is read from
+     * the jar, so the entry doesn't need to be inflated.
+     */
+    private static long crc(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            ZipEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null && entry.getCrc() != -1) {
+                return entry.getCrc();
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return crc(IO.readAll(in));
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static Element readElement(DataInputStream in, String[] strings) throws IOException {
+        String name = strings[BinaryBugCollectionFormat.readVarint(in)];
+        String[] attributes = new String[2 * BinaryBugCollectionFormat.readVarint(in)];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = strings[BinaryBugCollectionFormat.readVarint(in)];
+        }
+        String text = strings[BinaryBugCollectionFormat.readVarint(in)];
+        int numChildren = BinaryBugCollectionFormat.readVarint(in);
+        List<Element> children;
+        if (numChildren == 0) {
+            children = Collections.emptyList();
+        } else {
+            children = new ArrayList<>(numChildren);
+            for (int i = 0; i < numChildren; i++) {
+                children.add(readElement(in, strings));
+            }
+        }
+        return new Element(name, attributes, text, children);
+    }
+
+    /**
+     * Parse an XML metadata file.
+     *
+     * @return the root element of the file
+     */
+    static Element parse(@Nonnull InputStream in) throws DocumentException, IOException {
+        try {
+            Document document = new SAXReader().read(UTF8.bufferedReader(in));
+            return Element.fromXml(document.getRootElement());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Does the plugin index contain the given metadata file?
+     */
+    static boolean isIndexed(String name) {
+        return "findbugs.xml".equals(name) || BugRanker.FILENAME.equals(name)
+                || (name.startsWith("messages") && name.endsWith(".xml") && name.indexOf('/') < 0);
+    }
+
+    /**
+     * Write the plugin index of a set of metadata files.
+     *
+     * @param files
+     *            names and contents of the metadata files
+     * @param out
+     *            stream to write the index to
+     */
+    static void write(Map<String, byte[]> files, OutputStream out) throws IOException, DocumentException {
+        Map<String, byte[]> encodedParts = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> e : files.entrySet()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream part = new DataOutputStream(bytes);
+            if (e.getKey().endsWith(".xml")) {
+                part.writeByte(KIND_XML);
+                Element root = parse(new ByteArrayInputStream(e.getValue()));
+                Map<String, Integer> strings = new LinkedHashMap<>();
+                ByteArrayOutputStream tree = new ByteArrayOutputStream();
+                writeElement(new DataOutputStream(tree), root, strings);
+                BinaryBugCollectionFormat.writeVarint(part, strings.size());
+                for (String s : strings.keySet()) {
+                    byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    BinaryBugCollectionFormat.writeVarint(part, utf8.length);
+                    part.write(utf8);
+                }
+                tree.writeTo(part);
+            } else {
+                part.writeByte(KIND_TEXT);
+                part.write(e.getValue());
+            }
+            part.flush();
+            encodedParts.put(e.getKey(), bytes.toByteArray());
+        }
+
+        // Offsets are relative to the end of the table of contents
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.write(MAGIC);
+        BinaryBugCollectionFormat.writeVarint(dataOut, VERSION);
+        BinaryBugCollectionFormat.writeVarint(dataOut, encodedParts.size());
+        int offset = 0;
+        for (Map.Entry<String, byte[]> e : encodedParts.entrySet()) {
+            dataOut.writeUTF(e.getKey());
+            dataOut.writeLong(crc(files.get(e.getKey())));
+            BinaryBugCollectionFormat.writeVarint(dataOut, offset);
+            BinaryBugCollectionFormat.writeVarint(dataOut, e.getValue().length);
+            offset += e.getValue().length;
+        }
+        for (byte[] part : encodedParts.values()) {
+            dataOut.write(part);
+        }
+        dataOut.flush();
+    }
+
+    private static void writeElement(DataOutputStream out, Element element, Map<String, Integer> strings)
+            throws IOException {
+        writeString(out, element.name, strings);
+        BinaryBugCollectionFormat.writeVarint(out, element.attributes.length / 2);
+        for (String s : element.attributes) {
+            writeString(out, s, strings);
+        }
+        writeString(out, element.text, strings);
+        BinaryBugCollectionFormat.writeVarint(out, element.children.size());
+        for (Element child : element.children) {
+            writeElement(out, child, strings);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s, Map<String, Integer> strings) throws IOException {
+        Integer id = strings.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.put(s, id);
+        }
+        BinaryBugCollectionFormat.writeVarint(out, id);
+    }
+
+    /**
+     * Read the metadata files of a plugin from a directory or jar file.
+     */
+    static Map<String, byte[]> readMetadataFiles(File plugin) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        if (plugin.isDirectory()) {
+            File[] contents = plugin.listFiles();
+            if (contents != null) {
+                for (File f : contents) {
+                    if (f.isFile() && isIndexed(f.getName())) {
+                        files.put(f.getName(), Files.readAllBytes(f.toPath()));
+                    }
+                }
+            }
+        } else {
+            try (ZipFile zip = new ZipFile(plugin)) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                    ZipEntry entry = e.nextElement();
+                    if (!entry.isDirectory() && isIndexed(entry.getName())) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            files.put(entry.getName(), IO.readAll(in));
+                        }
+                    }
+                }
+            }
+        }
+        if (!files.containsKey("findbugs.xml")) {
+            throw new IOException(plugin + " doesn't contain findbugs.xml");
+        }
+        return files;
+    }
+
+    /**
+     * Check that the detector classes named by a plugin descriptor can be
+     * loaded and implement {@link Detector} or {@link Detector2}. PluginLoader
+     * doesn't load the detector classes of a plugin with an index until they
+     * are used, so this is checked when the index is built.
+     */
+    static void checkDetectorClasses(Element descriptor, ClassLoader loader) throws PluginException {
+        for (Element detector : descriptor.getChildren("Detector")) {
+            String className = detector.valueOf("class");
+            Class<?> detectorClass;
+            try {
+                detectorClass = Class.forName(className, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new PluginException("Unable to load detector class " + className, e);
+            }
+            if (!Detector.class.isAssignableFrom(detectorClass) && !Detector2.class.isAssignableFrom(detectorClass)) {
+                throw new PluginException("Class " + className + " does not implement Detector or Detector2");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: " + PluginIndex.class.getName() + " <plugin directory or jar> <index file>");
+            System.exit(1);
+        }
+        File plugin = new File(args[0]);
+        Map<String, byte[]> files = readMetadataFiles(plugin);
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { plugin.toURI().toURL() },
+                PluginIndex.class.getClassLoader())) {
+            checkDetectorClasses(parse(new ByteArrayInputStream(files.get("findbugs.xml"))), loader);
+        }
+        File output = new File(args[1]);
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create directory " + parent);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            write(files, out);
+        }
+    }
+}
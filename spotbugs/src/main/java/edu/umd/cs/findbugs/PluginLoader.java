@@ -25,6 +25,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -45,6 +46,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.jar.Attributes;
 import java.util.jar.JarInputStream;
@@ -60,7 +62,6 @@ import javax.annotation.WillClose;
 
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
-import org.dom4j.Element;
 import org.dom4j.Node;
 import org.dom4j.io.SAXReader;
 
@@ -79,7 +80,6 @@ import edu.umd.cs.findbugs.plugins.DuplicatePluginIdException;
 import edu.umd.cs.findbugs.util.ClassName;
 import edu.umd.cs.findbugs.util.JavaWebStart;
 import edu.umd.cs.findbugs.util.Util;
-import edu.umd.cs.findbugs.xml.XMLUtil;
 
 /**
  * Loader for a FindBugs plugin. A plugin is a jar file containing two metadata
@@ -138,6 +138,16 @@ public class PluginLoader {
 
     private final URI loadedFromUri;
 
+    // Metadata of the plugin, from init() until loadPluginComponents() is done
+    private PluginIndex pluginIndex;
+
+    private PluginIndex.Element pluginDescriptor;
+
+    private List<PluginIndex.Element> messageCollections;
+
+    // Was the plugin descriptor read from the plugin index?
+    private boolean metadataFromIndex;
+
     /** plugin Id for parent plugin */
     String parentId;
 
@@ -709,10 +719,11 @@ public class PluginLoader {
         }
         // Plugin descriptor (a.k.a, "findbugs.xml"). Defines
         // the bug detectors and bug patterns that the plugin provides.
-        Document pluginDescriptor = getPluginDescriptor();
-        List<Document> messageCollectionList = getMessageDocuments();
+        pluginIndex = readPluginIndex();
+        pluginDescriptor = readPluginDescriptor();
+        messageCollections = readMessageCollections();
 
-        Plugin constructedPlugin = constructMinimalPlugin(pluginDescriptor, messageCollectionList);
+        Plugin constructedPlugin = constructMinimalPlugin(pluginDescriptor, messageCollections);
 
         // Success!
         if (DEBUG) {
@@ -723,36 +734,35 @@ public class PluginLoader {
 
     private void loadPluginComponents()
             throws PluginException {
-        Document pluginDescriptor = getPluginDescriptor();
-        List<Document> messageCollectionList = getMessageDocuments();
+        PluginIndex.Element pluginDescriptor = this.pluginDescriptor;
+        List<PluginIndex.Element> messageCollectionList = this.messageCollections;
 
         // Create PluginComponents
         try {
-            List<Node> componentNodeList = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/PluginComponent");
-            for (Node componentNode : componentNodeList) {
-                @DottedClassName String componentKindname = componentNode.valueOf("@componentKind");
+            List<PluginIndex.Element> componentNodeList = pluginDescriptor.getChildren("PluginComponent");
+            for (PluginIndex.Element componentNode : componentNodeList) {
+                @DottedClassName String componentKindname = componentNode.valueOf("componentKind");
                 if (componentKindname == null) {
                     throw new PluginException("Missing @componentKind for " + plugin.getPluginId()
                             + " loaded from " + loadedFrom);
                 }
-                @DottedClassName String componentClassname = componentNode.valueOf("@componentClass");
+                @DottedClassName String componentClassname = componentNode.valueOf("componentClass");
                 if (componentClassname == null) {
                     throw new PluginException("Missing @componentClassname for " + plugin.getPluginId()
                             + " loaded from " + loadedFrom);
                 }
-                String componentId = componentNode.valueOf("@id");
+                String componentId = componentNode.valueOf("id");
                 if (componentId == null) {
                     throw new PluginException("Missing @id for " + plugin.getPluginId()
                             + " loaded from " + loadedFrom);
                 }
 
                 try {
-                    String propertiesLocation = componentNode.valueOf("@properties");
-                    boolean disabled = Boolean.valueOf(componentNode.valueOf("@disabled"));
+                    String propertiesLocation = componentNode.valueOf("properties");
+                    boolean disabled = Boolean.valueOf(componentNode.valueOf("disabled"));
 
-                    Node filterMessageNode = findMessageNode(messageCollectionList,
-                            "/MessageCollection/PluginComponent[@id='" + componentId + "']",
-                            "Missing Cloud description for PluginComponent " + componentId);
+                    PluginIndex.Element filterMessageNode = findMessageNode(messageCollectionList, "PluginComponent", "id",
+                            componentId, "Missing Cloud description for PluginComponent " + componentId);
                     String description = getChildText(filterMessageNode, "Description").trim();
                     String details = getChildText(filterMessageNode, "Details").trim();
                     PropertyBundle properties = new PropertyBundle();
@@ -765,9 +775,9 @@ public class PluginLoader {
                         }
                         properties.loadPropertiesFromURL(properiesURL);
                     }
-                    List<Node> propertyNodes = XMLUtil.selectNodes(componentNode, "Property");
-                    for (Node node : propertyNodes) {
-                        String key = node.valueOf("@key");
+                    List<PluginIndex.Element> propertyNodes = componentNode.getChildren("Property");
+                    for (PluginIndex.Element node : propertyNodes) {
+                        String key = node.valueOf("key");
                         String value = node.getText();
                         properties.setProperty(key, value);
                     }
@@ -784,26 +794,23 @@ public class PluginLoader {
             // Create FindBugsMains
 
             if (!FindBugs.isNoMains()) {
-                List<Node> findBugsMainList = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/FindBugsMain");
-                for (Node main : findBugsMainList) {
-                    String className = main.valueOf("@class");
+                List<PluginIndex.Element> findBugsMainList = pluginDescriptor.getChildren("FindBugsMain");
+                for (PluginIndex.Element main : findBugsMainList) {
+                    String className = main.valueOf("class");
                     if (className == null) {
                         throw new PluginException("Missing @class for FindBugsMain in plugin" + plugin.getPluginId()
                                 + " loaded from " + loadedFrom);
                     }
-                    String cmd = main.valueOf("@cmd");
+                    String cmd = main.valueOf("cmd");
                     if (cmd == null) {
                         throw new PluginException("Missing @cmd for for FindBugsMain in plugin " + plugin.getPluginId()
                                 + " loaded from " + loadedFrom);
                     }
-                    String kind = main.valueOf("@kind");
-                    boolean analysis = Boolean.valueOf(main.valueOf("@analysis"));
-                    Element mainMessageNode = (Element) findMessageNode(messageCollectionList,
-                            "/MessageCollection/FindBugsMain[@cmd='" + cmd
-                            // + " and @class='" + className
-                            +"']/Description",
-                            "Missing FindBugsMain description for cmd " + cmd);
-                    String description = mainMessageNode.getTextTrim();
+                    String kind = main.valueOf("kind");
+                    boolean analysis = Boolean.valueOf(main.valueOf("analysis"));
+                    String description = findMessageNode(messageCollectionList, "FindBugsMain", "cmd", cmd, "Description",
+                            "Missing FindBugsMain description for cmd " + cmd).getText();
+                    description = normalizeSpace(description);
                     try {
                         Class<?> mainClass =  classLoader.loadClass(className);
                         plugin.addFindBugsMain(mainClass, cmd, description, kind, analysis);
@@ -817,31 +824,46 @@ public class PluginLoader {
                 }
             }
 
-            List<Node> detectorNodeList = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/Detector");
+            List<PluginIndex.Element> detectorNodeList = pluginDescriptor.getChildren("Detector");
             int detectorCount = 0;
-            for (Node detectorNode : detectorNodeList) {
-                String className = detectorNode.valueOf("@class");
-                String speed = detectorNode.valueOf("@speed");
-                String disabled = detectorNode.valueOf("@disabled");
-                String reports = detectorNode.valueOf("@reports");
-                String requireJRE = detectorNode.valueOf("@requirejre");
-                String hidden = detectorNode.valueOf("@hidden");
+            for (PluginIndex.Element detectorNode : detectorNodeList) {
+                String className = detectorNode.valueOf("class");
+                String speed = detectorNode.valueOf("speed");
+                String disabled = detectorNode.valueOf("disabled");
+                String reports = detectorNode.valueOf("reports");
+                String requireJRE = detectorNode.valueOf("requirejre");
+                String hidden = detectorNode.valueOf("hidden");
                 if (speed == null || speed.length() == 0) {
                     speed = "fast";
                 }
                 // System.out.println("Found detector: class="+className+", disabled="+disabled);
 
                 // Create DetectorFactory for the detector
-                Class<?> detectorClass = null;
-                if (!FindBugs.isNoAnalysis()) {
-                    detectorClass = classLoader.loadClass(className);
+                DetectorFactory factory;
+                if (metadataFromIndex) {
+                    // The plugin was packaged with its index, so the detector
+                    // class is only loaded when the detector is used. The
+                    // index was checked against the classes when it was built,
+                    // still check that the class file is there, so that a
+                    // broken plugin fails here rather than during the analysis
+                    if (!FindBugs.isNoAnalysis() && classLoader.getResource(className.replace('.', '/') + ".class") == null) {
+                        throw new PluginException("Detector class " + className + " of plugin " + plugin.getPluginId()
+                                + " not found");
+                    }
+                    factory = new DetectorFactory(plugin, className, classLoader, !"true".equals(disabled), speed, reports,
+                            requireJRE);
+                } else {
+                    Class<?> detectorClass = null;
+                    if (!FindBugs.isNoAnalysis()) {
+                        detectorClass = classLoader.loadClass(className);
 
-                    if (!Detector.class.isAssignableFrom(detectorClass) && !Detector2.class.isAssignableFrom(detectorClass)) {
-                        throw new PluginException("Class " + className + " does not implement Detector or Detector2");
+                        if (!Detector.class.isAssignableFrom(detectorClass) && !Detector2.class.isAssignableFrom(detectorClass)) {
+                            throw new PluginException("Class " + className + " does not implement Detector or Detector2");
+                        }
                     }
+                    factory = new DetectorFactory(plugin, className, detectorClass, !"true".equals(disabled), speed,
+                            reports, requireJRE);
                 }
-                DetectorFactory factory = new DetectorFactory(plugin, className, detectorClass, !"true".equals(disabled), speed,
-                        reports, requireJRE);
                 if (Boolean.valueOf(hidden).booleanValue()) {
                     factory.setHidden(true);
                 }
@@ -850,11 +872,8 @@ public class PluginLoader {
 
                 // Find Detector node in one of the messages files,
                 // to get the detail HTML.
-                Node node = findMessageNode(messageCollectionList, "/MessageCollection/Detector[@class='" + className
-                        + "']/Details", "Missing Detector description for detector " + className);
-
-                Element details = (Element) node;
-                String detailHTML = details.getText();
+                String detailHTML = findMessageNode(messageCollectionList, "Detector", "class", className, "Details",
+                        "Missing Detector description for detector " + className).getText();
                 StringBuilder buf = new StringBuilder();
                 buf.append("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n");
                 buf.append("<HTML><HEAD><TITLE>Detector Description</TITLE></HEAD><BODY>\n");
@@ -867,11 +886,13 @@ public class PluginLoader {
         }
 
         // Create ordering constraints
-        Node orderingConstraintsNode = pluginDescriptor.selectSingleNode("/FindbugsPlugin/OrderingConstraints");
+        PluginIndex.Element orderingConstraintsNode = pluginDescriptor.getChild("OrderingConstraints");
         if (orderingConstraintsNode != null) {
             // Get inter-pass and intra-pass constraints
-            List<Element> elements =  XMLUtil.selectNodes(orderingConstraintsNode, "./SplitPass|./WithinPass");
-            for (Element constraintElement : elements) {
+            for (PluginIndex.Element constraintElement : orderingConstraintsNode.getChildren()) {
+                if (!"SplitPass".equals(constraintElement.getName()) && !"WithinPass".equals(constraintElement.getName())) {
+                    continue;
+                }
                 // Create the selectors which determine which detectors are
                 // involved in the constraint
                 DetectorFactorySelector earlierSelector = getConstraintSelector(constraintElement, plugin, "Earlier");
@@ -894,28 +915,28 @@ public class PluginLoader {
 
         // register global Category descriptions
 
-        List<Node> categoryNodeListGlobal = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/BugCategory");
-        for(Node categoryNode : categoryNodeListGlobal) {
-            String key = categoryNode.valueOf("@category");
+        List<PluginIndex.Element> categoryNodeListGlobal = pluginDescriptor.getChildren("BugCategory");
+        for(PluginIndex.Element categoryNode : categoryNodeListGlobal) {
+            String key = categoryNode.valueOf("category");
             if ("".equals(key)) {
                 throw new PluginException("BugCategory element with missing category attribute");
             }
             BugCategory bc = plugin.addOrCreateBugCategory(key);
 
-            boolean hidden = Boolean.valueOf(categoryNode.valueOf("@hidden"));
+            boolean hidden = Boolean.valueOf(categoryNode.valueOf("hidden"));
             if (hidden) {
                 bc.setHidden(hidden);
             }
         }
 
 
-        for (Document messageCollection : messageCollectionList) {
-            List<Node> categoryNodeList = XMLUtil.selectNodes(messageCollection, "/MessageCollection/BugCategory");
+        for (PluginIndex.Element messageCollection : messageCollectionList) {
+            List<PluginIndex.Element> categoryNodeList = messageCollection.getChildren("BugCategory");
             if (DEBUG) {
                 System.out.println("found " + categoryNodeList.size() + " categories in " + plugin.getPluginId());
             }
-            for (Node categoryNode : categoryNodeList) {
-                String key = categoryNode.valueOf("@category");
+            for (PluginIndex.Element categoryNode : categoryNodeList) {
+                String key = categoryNode.valueOf("category");
                 if ("".equals(key)) {
                     throw new PluginException("BugCategory element with missing category attribute");
                 }
@@ -959,18 +980,20 @@ public class PluginLoader {
         }
 
         // Create BugPatterns
-        List<Node> bugPatternNodeList = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/BugPattern");
-        for (Node bugPatternNode : bugPatternNodeList) {
-            String type = bugPatternNode.valueOf("@type");
-            String abbrev = bugPatternNode.valueOf("@abbrev");
-            String category = bugPatternNode.valueOf("@category");
-            boolean experimental = Boolean.parseBoolean(bugPatternNode.valueOf("@experimental"));
+        List<PluginIndex.Element> bugPatternNodeList = pluginDescriptor.getChildren("BugPattern");
+        for (PluginIndex.Element bugPatternNode : bugPatternNodeList) {
+            String type = bugPatternNode.valueOf("type");
+            String abbrev = bugPatternNode.valueOf("abbrev");
+            String category = bugPatternNode.valueOf("category");
+            boolean experimental = Boolean.parseBoolean(bugPatternNode.valueOf("experimental"));
 
             // Find the matching element in messages.xml (or translations)
-            String query = "/MessageCollection/BugPattern[@type='" + type + "']";
-            Node messageNode = findMessageNode(messageCollectionList, query, "messages.xml missing BugPattern element for type "
-                    + type);
-            Node bugsUrlNode = messageNode.getDocument().selectSingleNode("/MessageCollection/Plugin/"+(experimental?"AllBugsUrl":"BugsUrl"));
+            PluginIndex.Element messageCollection = findMessageCollection(messageCollectionList, "BugPattern", "type", type,
+                    "messages.xml missing BugPattern element for type " + type);
+            PluginIndex.Element messageNode = messageCollection.getChild("BugPattern", "type", type);
+            PluginIndex.Element pluginMessageNode = messageCollection.getChild("Plugin");
+            PluginIndex.Element bugsUrlNode = pluginMessageNode == null ? null
+                    : pluginMessageNode.getChild(experimental ? "AllBugsUrl" : "BugsUrl");
 
             String bugsUrl = bugsUrlNode == null ? null : bugsUrlNode.getText();
 
@@ -979,7 +1002,7 @@ public class PluginLoader {
             String detailText = getChildText(messageNode, "Details");
             int cweid = 0;
             try {
-                String cweString = bugPatternNode.valueOf("@cweid");
+                String cweString = bugPatternNode.valueOf("cweid");
                 if (cweString.length() > 0) {
                     cweid = Integer.parseInt(cweString);
                 }
@@ -990,7 +1013,7 @@ public class PluginLoader {
             BugPattern bugPattern = new BugPattern(type, abbrev, category, experimental, shortDesc, longDesc, detailText, bugsUrl, cweid);
 
             try {
-                String deprecatedStr = bugPatternNode.valueOf("@deprecated");
+                String deprecatedStr = bugPatternNode.valueOf("deprecated");
                 boolean deprecated = deprecatedStr.length() > 0 && Boolean.valueOf(deprecatedStr).booleanValue();
                 if (deprecated) {
                     bugPattern.setDeprecated(deprecated);
@@ -1005,10 +1028,10 @@ public class PluginLoader {
 
         // Create BugCodes
         Set<String> definedBugCodes = new HashSet<>();
-        for (Document messageCollection : messageCollectionList) {
-            List<Node> bugCodeNodeList = XMLUtil.selectNodes(messageCollection, "/MessageCollection/BugCode");
-            for (Node bugCodeNode : bugCodeNodeList) {
-                String abbrev = bugCodeNode.valueOf("@abbrev");
+        for (PluginIndex.Element messageCollection : messageCollectionList) {
+            List<PluginIndex.Element> bugCodeNodeList = messageCollection.getChildren("BugCode");
+            for (PluginIndex.Element bugCodeNode : bugCodeNodeList) {
+                String abbrev = bugCodeNode.valueOf("abbrev");
                 if ("".equals(abbrev)) {
                     throw new PluginException("BugCode element with missing abbrev attribute");
                 }
@@ -1017,12 +1040,11 @@ public class PluginLoader {
                 }
                 String description = bugCodeNode.getText();
 
-                String query = "/FindbugsPlugin/BugCode[@abbrev='" + abbrev + "']";
-                Node fbNode = pluginDescriptor.selectSingleNode(query);
+                PluginIndex.Element fbNode = pluginDescriptor.getChild("BugCode", "abbrev", abbrev);
                 int cweid = 0;
                 if (fbNode != null) {
                     try {
-                        cweid = Integer.parseInt(fbNode.valueOf("@cweid"));
+                        cweid = Integer.parseInt(fbNode.valueOf("cweid"));
                     } catch (RuntimeException e) {
                         assert true; // ignore
                     }
@@ -1035,9 +1057,9 @@ public class PluginLoader {
         }
 
         // If an engine registrar is specified, make a note of its classname
-        Node node = pluginDescriptor.selectSingleNode("/FindbugsPlugin/EngineRegistrar");
+        PluginIndex.Element node = pluginDescriptor.getChild("EngineRegistrar");
         if (node != null) {
-            String engineClassName = node.valueOf("@class");
+            String engineClassName = node.valueOf("class");
             if (engineClassName == null) {
                 throw new PluginException("EngineRegistrar element with missing class attribute");
             }
@@ -1067,26 +1089,34 @@ public class PluginLoader {
                     System.out.println("No " + BugRanker.FILENAME + " for plugin " + plugin.getPluginId());
                 }
             }
-            BugRanker ranker = new BugRanker(bugRankURL);
+            String bugRanks = bugRankURL == null || pluginIndex == null ? null
+                    : pluginIndex.getText(BugRanker.FILENAME, bugRankURL);
+            BugRanker ranker = bugRanks != null ? new BugRanker(new BufferedReader(new StringReader(bugRanks)))
+                    : new BugRanker(bugRankURL);
             plugin.setBugRanker(ranker);
         } catch (IOException e) {
             throw new PluginException("Couldn't parse \"" + BugRanker.FILENAME + "\"", e);
         }
+
+        // The metadata isn't needed anymore
+        this.pluginIndex = null;
+        this.pluginDescriptor = null;
+        this.messageCollections = null;
     }
 
-    private Plugin constructMinimalPlugin(Document pluginDescriptor, List<Document> messageCollectionList)
+    private Plugin constructMinimalPlugin(PluginIndex.Element pluginDescriptor, List<PluginIndex.Element> messageCollectionList)
             throws DuplicatePluginIdError {
         // Get the unique plugin id (or generate one, if none is present)
         // Unique plugin id
-        String pluginId = pluginDescriptor.valueOf(XPATH_PLUGIN_PLUGINID);
+        String pluginId = pluginDescriptor.valueOf("pluginid");
         if ("".equals(pluginId)) {
             synchronized (PluginLoader.class) {
                 pluginId = "plugin" + nextUnknownId++;
             }
         }
-        cannotDisable = Boolean.parseBoolean(pluginDescriptor.valueOf("/FindbugsPlugin/@cannotDisable"));
+        cannotDisable = Boolean.parseBoolean(pluginDescriptor.valueOf("cannotDisable"));
 
-        String de = pluginDescriptor.valueOf("/FindbugsPlugin/@defaultenabled");
+        String de = pluginDescriptor.valueOf("defaultenabled");
         if (de != null && "false".equals(de.toLowerCase().trim())) {
             optionalPlugin = true;
         }
@@ -1103,21 +1133,21 @@ public class PluginLoader {
             }
         }
 
-        parentId = pluginDescriptor.valueOf("/FindbugsPlugin/@parentid");
+        parentId = pluginDescriptor.valueOf("parentid");
 
-        String version = pluginDescriptor.valueOf("/FindbugsPlugin/@version");
-        String releaseDate = pluginDescriptor.valueOf("/FindbugsPlugin/@releaseDate");
+        String version = pluginDescriptor.valueOf("version");
+        String releaseDate = pluginDescriptor.valueOf("releaseDate");
 
         // Create the Plugin object (but don't assign to the plugin field yet,
         // since we're still not sure if everything will load correctly)
         Date parsedDate = parseDate(releaseDate);
         Plugin constructedPlugin = new Plugin(pluginId, version, parsedDate, this, !optionalPlugin, cannotDisable);
         // Set provider and website, if specified
-        String provider = pluginDescriptor.valueOf(XPATH_PLUGIN_PROVIDER).trim();
+        String provider = pluginDescriptor.valueOf("provider").trim();
         if (!"".equals(provider)) {
             constructedPlugin.setProvider(provider);
         }
-        String website = pluginDescriptor.valueOf(XPATH_PLUGIN_WEBSITE).trim();
+        String website = pluginDescriptor.valueOf("website").trim();
         if (!"".equals(website)) {
             try {
                 constructedPlugin.setWebsite(website);
@@ -1126,7 +1156,7 @@ public class PluginLoader {
             }
         }
 
-        String updateUrl = pluginDescriptor.valueOf("/FindbugsPlugin/@update-url").trim();
+        String updateUrl = pluginDescriptor.valueOf("update-url").trim();
         if (!"".equals(updateUrl)) {
             try {
                 constructedPlugin.setUpdateUrl(updateUrl);
@@ -1136,31 +1166,21 @@ public class PluginLoader {
         }
 
         // Set short description, if specified
-        Node pluginShortDesc = null;
-        try {
-            pluginShortDesc = findMessageNode(messageCollectionList, XPATH_PLUGIN_SHORT_DESCRIPTION,
-                    "no plugin description");
-        } catch (PluginException e) {
-            // Missing description is not fatal, so ignore
-        }
+        // Missing descriptions are not fatal
+        String pluginShortDesc = findPluginMessage(messageCollectionList, "ShortDescription");
         if (pluginShortDesc != null) {
-            constructedPlugin.setShortDescription(pluginShortDesc.getText().trim());
-        }
-        Node detailedDescription = null;
-        try {
-            detailedDescription = findMessageNode(messageCollectionList, "/MessageCollection/Plugin/Details",
-                    "no plugin description");
-        } catch (PluginException e) {
-            // Missing description is not fatal, so ignore
+            constructedPlugin.setShortDescription(pluginShortDesc.trim());
         }
+        String detailedDescription = findPluginMessage(messageCollectionList, "Details");
         if (detailedDescription != null) {
-            constructedPlugin.setDetailedDescription(detailedDescription.getText().trim());
+            constructedPlugin.setDetailedDescription(detailedDescription.trim());
         }
-        List<Node> globalOptionNodes = XMLUtil.selectNodes(pluginDescriptor, "/FindbugsPlugin/GlobalOptions/Property");
-        for(Node optionNode : globalOptionNodes) {
-            String key = optionNode.valueOf("@key");
-            String value = optionNode.getText().trim();
-            constructedPlugin.setMyGlobalOption(key, value);
+        for (PluginIndex.Element globalOptions : pluginDescriptor.getChildren("GlobalOptions")) {
+            for (PluginIndex.Element optionNode : globalOptions.getChildren("Property")) {
+                String key = optionNode.valueOf("key");
+                String value = optionNode.getText().trim();
+                constructedPlugin.setMyGlobalOption(key, value);
+            }
         }
         return constructedPlugin;
     }
@@ -1168,6 +1188,24 @@ public class PluginLoader {
     public Document getPluginDescriptor() throws PluginException, PluginDoesntContainMetadataException {
         Document pluginDescriptor;
 
+        URL findbugsXML_URL = getPluginDescriptorURL();
+        SAXReader reader = new SAXReader();
+
+        Reader r = null;
+        try {
+            r = UTF8.bufferedReader(findbugsXML_URL.openStream());
+            pluginDescriptor = reader.read(r);
+        } catch (DocumentException e) {
+            throw new PluginException("Couldn't parse \"" + findbugsXML_URL + "\" using " + reader.getClass().getName(), e);
+        } catch (IOException e) {
+            throw new PluginException("Couldn't open \"" + findbugsXML_URL + "\"", e);
+        } finally {
+            IO.close(r);
+        }
+        return pluginDescriptor;
+    }
+
+    private URL getPluginDescriptorURL() throws PluginException {
         // Read the plugin descriptor
         String name = "findbugs.xml";
         URL findbugsXML_URL = getResource(name);
@@ -1178,8 +1216,7 @@ public class PluginLoader {
             System.out.println("PluginLoader found " + name + " at: " + findbugsXML_URL);
         }
 
-        if (jarName != null && !findbugsXML_URL.toString().contains(jarName)
-                && !(corePlugin && findbugsXML_URL.toString().endsWith("etc/findbugs.xml"))) {
+        if (!isResourceOfThisPlugin(findbugsXML_URL, name)) {
             String classloaderName = classLoader.getClass().getName();
             if (classLoader instanceof URLClassLoader) {
                 classloaderName += Arrays.asList(((URLClassLoader) classLoader).getURLs());
@@ -1187,20 +1224,42 @@ public class PluginLoader {
             throw new PluginDoesntContainMetadataException((corePlugin ? "Core plugin" : "Plugin ") + jarName
                     + " doesn't contain findbugs.xml; got " + findbugsXML_URL + " from " + classloaderName);
         }
-        SAXReader reader = new SAXReader();
+        return findbugsXML_URL;
+    }
 
-        Reader r = null;
+    /**
+     * Is a resource found by {@link #getResource(String)} part of this plugin,
+     * rather than of a plugin or jar visible from its class loader?
+     */
+    private boolean isResourceOfThisPlugin(URL url, String name) {
+        return jarName == null || url.toString().contains(jarName) || (corePlugin && url.toString().endsWith("etc/" + name));
+    }
+
+    /**
+     * @return the plugin index of this plugin, or null if it has none
+     */
+    @CheckForNull
+    private PluginIndex readPluginIndex() {
+        URL url = getResource(PluginIndex.FILENAME);
+        if (url == null || !isResourceOfThisPlugin(url, PluginIndex.FILENAME)) {
+            return null;
+        }
         try {
-            r = UTF8.bufferedReader(findbugsXML_URL.openStream());
-            pluginDescriptor = reader.read(r);
-        } catch (DocumentException e) {
-            throw new PluginException("Couldn't parse \"" + findbugsXML_URL + "\" using " + reader.getClass().getName(), e);
+            return PluginIndex.read(url);
         } catch (IOException e) {
-            throw new PluginException("Couldn't open \"" + findbugsXML_URL + "\"", e);
-        } finally {
-            IO.close(r);
+            AnalysisContext.logError("Unable to read plugin index " + url, e);
+            return null;
         }
-        return pluginDescriptor;
+    }
+
+    private PluginIndex.Element readPluginDescriptor() throws PluginException {
+        URL url = getPluginDescriptorURL();
+        PluginIndex.Element descriptor = readFromPluginIndex("findbugs.xml", url);
+        metadataFromIndex = descriptor != null;
+        if (descriptor == null) {
+            descriptor = parseMetadata(url);
+        }
+        return descriptor;
     }
 
     private  static  List<String> getPotentialMessageFiles() {
@@ -1218,13 +1277,20 @@ public class PluginLoader {
         return potential;
     }
 
-    private List<Document> getMessageDocuments() throws PluginException {
+    private List<PluginIndex.Element> readMessageCollections() throws PluginException {
         // List of message translation files in decreasing order of precedence
-        ArrayList<Document> messageCollectionList = new ArrayList<>();
+        ArrayList<PluginIndex.Element> messageCollectionList = new ArrayList<>();
         PluginException caught = null;
         for (String m : getPotentialMessageFiles()) {
             try {
-                addCollection(messageCollectionList, m);
+                URL messageURL = getResource(m);
+                if (messageURL != null) {
+                    PluginIndex.Element messageCollection = readFromPluginIndex(m, messageURL);
+                    if (messageCollection == null) {
+                        messageCollection = parseMetadata(messageURL);
+                    }
+                    messageCollectionList.add(messageCollection);
+                }
             } catch (PluginException e) {
                 caught = e;
                 AnalysisContext.logError(
@@ -1240,6 +1306,35 @@ public class PluginLoader {
         return messageCollectionList;
     }
 
+    /**
+     * @return the metadata file from the plugin index, or null if the plugin
+     *         has no index or the file changed since the index was built
+     */
+    @CheckForNull
+    private PluginIndex.Element readFromPluginIndex(String name, URL url) {
+        if (pluginIndex == null) {
+            return null;
+        }
+        try {
+            PluginIndex.Element root = pluginIndex.getDocument(name, url);
+            if (root == null && DEBUG) {
+                System.out.println("Plugin index of " + loadedFrom + " is out of date for " + name);
+            }
+            return root;
+        } catch (IOException e) {
+            AnalysisContext.logError("Unable to read " + name + " from the plugin index of " + loadedFrom, e);
+            return null;
+        }
+    }
+
+    private static PluginIndex.Element parseMetadata(URL url) throws PluginException {
+        try {
+            return PluginIndex.parse(url.openStream());
+        } catch (IOException | DocumentException e) {
+            throw new PluginException("Couldn't parse \"" + url + "\"", e);
+        }
+    }
+
 
     private <T> void loadComponentPlugin(Plugin plugin,
             Class<T> componentKind, @DottedClassName String componentClassname, String filterId,
@@ -1268,22 +1363,22 @@ public class PluginLoader {
         }
     }
 
-    private DetectorFactorySelector getConstraintSelector(Element constraintElement, Plugin plugin,
+    private DetectorFactorySelector getConstraintSelector(PluginIndex.Element constraintElement, Plugin plugin,
             String singleDetectorElementName/*
              * , String
              * detectorCategoryElementName
              */) throws PluginException {
-        Node node = constraintElement.selectSingleNode("./" + singleDetectorElementName);
+        PluginIndex.Element node = constraintElement.getChild(singleDetectorElementName);
         if (node != null) {
-            String detectorClass = node.valueOf("@class");
+            String detectorClass = node.valueOf("class");
             return new SingleDetectorFactorySelector(plugin, detectorClass);
         }
 
-        node = constraintElement.selectSingleNode("./" + singleDetectorElementName + "Category");
+        node = constraintElement.getChild(singleDetectorElementName + "Category");
         if (node != null) {
-            boolean spanPlugins = Boolean.valueOf(node.valueOf("@spanplugins")).booleanValue();
+            boolean spanPlugins = Boolean.valueOf(node.valueOf("spanplugins")).booleanValue();
 
-            String categoryName = node.valueOf("@name");
+            String categoryName = node.valueOf("name");
             if (!"".equals(categoryName)) {
                 if ("reporting".equals(categoryName)) {
                     return new ReportingDetectorFactorySelector(spanPlugins ? null : plugin);
@@ -1298,11 +1393,11 @@ public class PluginLoader {
             }
         }
 
-        node = constraintElement.selectSingleNode("./" + singleDetectorElementName + "Subtypes");
+        node = constraintElement.getChild(singleDetectorElementName + "Subtypes");
         if (node != null) {
-            boolean spanPlugins = Boolean.valueOf(node.valueOf("@spanplugins")).booleanValue();
+            boolean spanPlugins = Boolean.valueOf(node.valueOf("spanplugins")).booleanValue();
 
-            String superName = node.valueOf("@super");
+            String superName = node.valueOf("super");
             if (!"".equals(superName)) {
                 try {
                     Class<?> superClass = Class.forName(superName, true, classLoader);
@@ -1315,36 +1410,58 @@ public class PluginLoader {
         throw new PluginException("Invalid constraint selector node");
     }
 
-    private void addCollection(List<Document> messageCollectionList, String filename) throws PluginException {
-        URL messageURL = getResource(filename);
-        if (messageURL != null) {
-            SAXReader reader = new SAXReader();
-            try {
-                Reader stream = UTF8.bufferedReader(messageURL.openStream());
-                Document messageCollection;
-                try {
-                    messageCollection = reader.read(stream);
-                } finally {
-                    stream.close();
-                }
-                messageCollectionList.add(messageCollection);
-            } catch (IOException | DocumentException e) {
-                throw new PluginException("Couldn't parse \"" + messageURL + "\"", e);
+    /**
+     * Find the first message collection with an element of the given name and
+     * attribute value.
+     */
+    private static PluginIndex.Element findMessageCollection(List<PluginIndex.Element> messageCollectionList,
+            String elementName, String attribute, String value, String missingMsg) throws PluginException {
+        for (PluginIndex.Element messageCollection : messageCollectionList) {
+            if (messageCollection.getChild(elementName, attribute, value) != null) {
+                return messageCollection;
             }
         }
+        throw new PluginException(missingMsg);
     }
 
-    private static Node findMessageNode(List<Document> messageCollectionList, String xpath, String missingMsg)
-            throws PluginException {
-        for (Document document : messageCollectionList) {
-            Node node = document.selectSingleNode(xpath);
-            if (node != null) {
-                return node;
+    private static PluginIndex.Element findMessageNode(List<PluginIndex.Element> messageCollectionList,
+            String elementName, String attribute, String value, String missingMsg) throws PluginException {
+        return findMessageCollection(messageCollectionList, elementName, attribute, value, missingMsg).getChild(
+                elementName, attribute, value);
+    }
+
+    /**
+     * Find the given child of the element of the given name and attribute
+     * value, in the first message collection where the element has one.
+     */
+    private static PluginIndex.Element findMessageNode(List<PluginIndex.Element> messageCollectionList,
+            String elementName, String attribute, String value, String childName, String missingMsg) throws PluginException {
+        for (PluginIndex.Element messageCollection : messageCollectionList) {
+            PluginIndex.Element node = messageCollection.getChild(elementName, attribute, value);
+            PluginIndex.Element child = node == null ? null : node.getChild(childName);
+            if (child != null) {
+                return child;
             }
         }
         throw new PluginException(missingMsg);
     }
 
+    /**
+     * @return the text of the given child of the Plugin element of the first
+     *         message collection which has one, or null
+     */
+    @CheckForNull
+    private static String findPluginMessage(List<PluginIndex.Element> messageCollectionList, String childName) {
+        for (PluginIndex.Element messageCollection : messageCollectionList) {
+            PluginIndex.Element pluginNode = messageCollection.getChild("Plugin");
+            PluginIndex.Element node = pluginNode == null ? null : pluginNode.getChild(childName);
+            if (node != null) {
+                return node.getText();
+            }
+        }
+        return null;
+    }
+
     private static  String findMessageText(List<Document> messageCollectionList, String xpath, String missingMsg) {
         for (Document document : messageCollectionList) {
             Node node = document.selectSingleNode(xpath);
@@ -1355,14 +1472,29 @@ public class PluginLoader {
         return missingMsg;
     }
 
-    private static String getChildText(Node node, String childName) throws PluginException {
-        Node child = node.selectSingleNode(childName);
+    private static String getChildText(PluginIndex.Element node, String childName) throws PluginException {
+        PluginIndex.Element child = node.getChild(childName);
         if (child == null) {
             throw new PluginException("Could not find child \"" + childName + "\" for node");
         }
         return child.getText();
     }
 
+    /**
+     * Trim a text and replace its whitespace sequences with single spaces.
+     */
+    private static String normalizeSpace(String text) {
+        StringBuilder result = new StringBuilder();
+        StringTokenizer tokenizer = new StringTokenizer(text);
+        while (tokenizer.hasMoreTokens()) {
+            result.append(tokenizer.nextToken());
+            if (tokenizer.hasMoreTokens()) {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
     public static PluginLoader getPluginLoader(URL url, ClassLoader parent, boolean isInitial, boolean optional) throws PluginException {
         URI uri = toUri(url);
         Plugin plugin = Plugin.getPlugin(uri);
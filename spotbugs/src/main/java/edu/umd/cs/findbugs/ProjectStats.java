@@ -380,6 +380,14 @@ public class ProjectStats implements XMLWriteable, Cloneable {
         fileBugHashes = FileBugHash.compute(bugs);
     }
 
+    /**
+     * Set the file statistics, computed from the bugs of a collection which
+     * are not held in memory.
+     */
+    void setFileStats(FileBugHash fileBugHashes) {
+        this.fileBugHashes = fileBugHashes;
+    }
+
     /**
      * Output as XML.
      */
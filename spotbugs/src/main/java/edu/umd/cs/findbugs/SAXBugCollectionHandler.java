@@ -83,6 +83,9 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     private final Stack<CompoundMatcher> matcherStack = new Stack<>();
 
+    /** Whether the matchers of the stack are disabled, null for top level filters */
+    private final Stack<Boolean> matcherDisabledStack = new Stack<>();
+
     private Filter filter;
 
     private final MapCache<String, String> cache = new MapCache<>(2000);
@@ -216,6 +219,7 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                     project.setSuppressionFilter(filter);
                 }
                 matcherStack.clear();
+                matcherDisabledStack.clear();
                 pushCompoundMatcher(filter);
             } else if (PROJECT.equals(qName)) {
                 Project project = this.project;
@@ -417,16 +421,35 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         }
     }
 
+    /**
+     * Push a matcher which is added to the current matcher when its end tag is
+     * reached. Its hash code depends on its children, so it must not be added
+     * to the hash set of its parent before.
+     */
     private void pushCompoundMatcherAsChild(CompoundMatcher m) {
-        addMatcher(m);
-        pushCompoundMatcher(m);
+        pushCompoundMatcher(m, nextMatchedIsDisabled);
+        nextMatchedIsDisabled = false;
     }
 
     private void pushCompoundMatcher(CompoundMatcher m) {
+        pushCompoundMatcher(m, null);
+    }
+
+    private void pushCompoundMatcher(CompoundMatcher m, @CheckForNull Boolean disabled) {
         if (m == null) {
             throw new IllegalArgumentException("matcher must not be null");
         }
         matcherStack.push(m);
+        matcherDisabledStack.push(disabled);
+    }
+
+    private void popCompoundMatcher() {
+        CompoundMatcher m = matcherStack.pop();
+        Boolean disabled = matcherDisabledStack.pop();
+        if (disabled != null) {
+            nextMatchedIsDisabled = disabled;
+            addMatcher(m);
+        }
     }
 
     boolean nextMatchedIsDisabled;
@@ -675,7 +698,7 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                     System.out.println("  ending " + elementStack + " " + qName + " " + matcherStack);
                 }
 
-                matcherStack.pop();
+                popCompoundMatcher();
             } else if (BUG_COLLECTION.equals(outerElement)) {
                 BugCollection bugCollection = this.bugCollection;
                 assert bugCollection != null;
@@ -29,7 +29,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  *
  * @author David Hovemeyer
  */
-public class SloppyBugComparator implements WarningComparator {
+public class SloppyBugComparator implements WarningComparator, MatchingKeyComparator {
 
     private static final boolean DEBUG = SystemProperties.getBoolean("sloppyComparator.debug");
 
@@ -158,6 +158,29 @@ public class SloppyBugComparator implements WarningComparator {
         return 0;
     }
 
+    @Override
+    public Object getMatchingKey(BugInstance bug) {
+        StringBuilder key = new StringBuilder(bug.getBugPattern().getAbbrev());
+        ClassAnnotation primaryClass = bug.getPrimaryClass();
+        if (primaryClass != null) {
+            key.append(" C ").append(classNameRewriter.rewriteClassName(primaryClass.getClassName()));
+        }
+        MethodAnnotation primaryMethod = bug.getPrimaryMethod();
+        if (primaryMethod != null) {
+            primaryMethod = convertMethod(primaryMethod);
+            key.append(" M ").append(primaryMethod.getClassName()).append(' ').append(primaryMethod.getMethodName())
+            .append(primaryMethod.getMethodSignature());
+        } else {
+            FieldAnnotation primaryField = bug.getPrimaryField();
+            if (primaryField != null) {
+                primaryField = convertField(primaryField);
+                key.append(" F ").append(primaryField.getClassName()).append(' ').append(primaryField.getFieldName())
+                .append(' ').append(primaryField.getFieldSignature());
+            }
+        }
+        return key.toString();
+    }
+
     /*
     private static String getAbbrevFromBugType(String type) {
         int bar = type.indexOf('_');
@@ -20,8 +20,10 @@
 package edu.umd.cs.findbugs;
 
 import java.awt.GraphicsEnvironment;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -39,6 +41,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -71,6 +74,7 @@ import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.log.Profiler;
 import edu.umd.cs.findbugs.model.ClassFeatureSet;
 import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.workflow.FileBugHash;
 import edu.umd.cs.findbugs.xml.Dom4JXMLOutput;
 import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
 import edu.umd.cs.findbugs.xml.XMLAttributeList;
@@ -327,7 +331,17 @@ public class SortedBugCollection implements BugCollection {
 
     private void doReadXML(@WillClose InputStream in, @CheckForNull File base) throws IOException, DocumentException {
         try {
-            checkInputStream(in);
+            boolean checkInput = in.markSupported();
+            if (!checkInput) {
+                in = new BufferedInputStream(in);
+            }
+            if (BinaryBugCollectionFormat.isBinary(in)) {
+                doReadBinary(in, base);
+                return;
+            }
+            if (checkInput) {
+                checkInputStream(in);
+            }
             Reader reader = Util.getReader(in);
             doReadXML(reader, base);
         } catch (RuntimeException e) {
@@ -339,6 +353,18 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
+    private void doReadBinary(@WillClose InputStream in, @CheckForNull File base) throws IOException, DocumentException {
+        timeStartedLoading = System.currentTimeMillis();
+        Profiler profiler = getProjectStats().getProfiler();
+        profiler.start(StreamingBugCollectionReader.class);
+        try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(this, in, base)) {
+            reader.readMetadata();
+        } finally {
+            profiler.end(StreamingBugCollectionReader.class);
+        }
+        timeFinishedLoading = System.currentTimeMillis();
+    }
+
     private void doReadXML(@WillClose Reader reader, @CheckForNull File base) throws IOException, DocumentException {
         timeStartedLoading = System.currentTimeMillis();
 
@@ -394,6 +420,10 @@ public class SortedBugCollection implements BugCollection {
      */
     @Override
     public void writeXML(String fileName) throws IOException {
+        if (BinaryBugCollectionFormat.isBinaryFileName(fileName)) {
+            writeBinary(new FileOutputStream(fileName));
+            return;
+        }
         OutputStream out = new FileOutputStream(fileName);
         if (fileName.endsWith(".gz")) {
             out = new GZIPOutputStream(out);
@@ -408,6 +438,10 @@ public class SortedBugCollection implements BugCollection {
      *            the file to write to
      */
     public void writeXML(File file) throws IOException {
+        if (BinaryBugCollectionFormat.isBinaryFileName(file.getName())) {
+            writeBinary(new FileOutputStream(file));
+            return;
+        }
         OutputStream out = new FileOutputStream(file);
         if (file.getName().endsWith(".gz")) {
             out = new GZIPOutputStream(out);
@@ -415,6 +449,56 @@ public class SortedBugCollection implements BugCollection {
         writeXML(out);
     }
 
+    /**
+     * Write this BugCollection to given output stream in the binary format,
+     * see {@link BinaryBugCollectionFormat}. The output stream will be closed,
+     * even if an exception is thrown.
+     *
+     * @param out
+     *            the OutputStream to write to
+     */
+    public void writeBinary(@WillClose OutputStream out) throws IOException {
+        writeBinary(out, getCollection());
+    }
+
+    /**
+     * Write the metadata of this BugCollection to given output stream in the
+     * binary format, with the given BugInstances instead of the ones held by
+     * it. The output stream will be closed, even if an exception is thrown.
+     *
+     * @param out
+     *            the OutputStream to write to
+     * @param bugs
+     *            the BugInstances, iterated twice, see
+     *            {@link #writeXML(XMLOutput, Iterable)}
+     */
+    public void writeBinary(@WillClose OutputStream out, Iterable<BugInstance> bugs) throws IOException {
+        assert project != null;
+        bugsPopulated();
+        BinaryBugCollectionFormat.write(this, bugs, out);
+    }
+
+    /**
+     * Write the XML document of this BugCollection without messages, with an
+     * empty element standing for the BugInstances.
+     */
+    byte[] getMetadataXML() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean messages = withMessages;
+        withMessages = false;
+        XMLOutput xmlOutput = new OutputStreamXMLOutput(bytes);
+        try {
+            writePrologue(xmlOutput);
+            writeBugInstances(xmlOutput, Collections.<BugInstance> emptyList());
+            xmlOutput.openCloseTag(BinaryBugCollectionFormat.BUG_INSTANCES_ELEMENT_NAME);
+            writeEpilogue(xmlOutput, Collections.<BugInstance> emptyList());
+        } finally {
+            xmlOutput.finish();
+            withMessages = messages;
+        }
+        return bytes.toByteArray();
+    }
+
     /**
      * Convert the BugCollection into a dom4j Document object.
      *
@@ -515,44 +599,186 @@ public class SortedBugCollection implements BugCollection {
             if (withMessages) {
                 computeBugHashes();
                 getProjectStats().computeFileStats(this);
-                String commonBase = null;
-                for (String s : project.getSourceDirList()) {
-                    if (commonBase == null) {
-                        commonBase = s;
-                    } else {
-                        commonBase = commonBase.substring(0, commonPrefix(commonBase, s));
-                    }
+                generateRelativeSource();
+            }
+            writeBugInstances(xmlOutput, getCollection());
+            writeEpilogue(xmlOutput);
 
+        } finally {
+            xmlOutput.finish();
+            SourceLineAnnotation.clearGenerateRelativeSource();
+        }
+    }
+
+    /**
+     * Write the metadata of this BugCollection to a file as XML, with the given
+     * BugInstances instead of the ones held by it.
+     *
+     * @param fileName
+     *            the file to write to
+     * @param bugs
+     *            the BugInstances, see {@link #writeXML(XMLOutput, Iterable)}
+     */
+    public void writeXML(String fileName, Iterable<BugInstance> bugs) throws IOException {
+        if (BinaryBugCollectionFormat.isBinaryFileName(fileName)) {
+            writeBinary(new FileOutputStream(fileName), bugs);
+            return;
+        }
+        OutputStream out = new FileOutputStream(fileName);
+        if (fileName.endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        writeXML(out, bugs);
+    }
+
+    /**
+     * Write the metadata of this BugCollection to given output stream as XML,
+     * with the given BugInstances instead of the ones held by it. The output
+     * stream will be closed, even if an exception is thrown.
+     *
+     * @param out
+     *            the OutputStream to write to
+     * @param bugs
+     *            the BugInstances, see {@link #writeXML(XMLOutput, Iterable)}
+     */
+    public void writeXML(@WillClose OutputStream out, Iterable<BugInstance> bugs) throws IOException {
+        assert project != null;
+        bugsPopulated();
+        writeXML(new OutputStreamXMLOutput(UTF8.writer(out)), bugs);
+    }
+
+    /**
+     * Write the metadata of this BugCollection to an XMLOutput object, with
+     * the given BugInstances instead of the ones held by it. This allows
+     * writing more BugInstances than fit in memory: they are iterated twice
+     * when writing messages, to compute the occurrence numbers of their
+     * instance hashes and the file statistics, and once otherwise. The
+     * finish() method of the XMLOutput object is guaranteed to be called.
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     * @param bugs
+     *            the BugInstances to write, in the order of this collection
+     *            and without duplicates, e.g. a {@link SpillingBugSorter}.
+     *            They must already have been counted in the project
+     *            statistics, see {@link #addExternal(BugInstance)}.
+     */
+    public void writeXML(@WillClose XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
+        assert project != null;
+        try {
+            writePrologue(xmlOutput);
+            if (withMessages) {
+                Map<String, Integer> occurrences = new HashMap<>();
+                Map<String, BugInstance> firstOfType = new LinkedHashMap<>();
+                FileBugHash fileBugHash = new FileBugHash(getProjectStats());
+                for (BugInstance bug : bugs) {
+                    occurrences.merge(bug.getInstanceHash(), 1, Integer::sum);
+                    firstOfType.putIfAbsent(bug.getType(), bug);
+                    fileBugHash.add(bug);
                 }
-                if (commonBase != null && commonBase.length() > 0) {
-                    if (commonBase.indexOf("/./") > 0) {
-                        commonBase = commonBase.substring(0, commonBase.indexOf("/."));
-                    }
-                    File base = new File(commonBase);
-                    if (base.exists() && base.isDirectory() && base.canRead()) {
-                        SourceLineAnnotation.generateRelativeSource(base, project);
-                    }
-                }
+                getProjectStats().setFileStats(fileBugHash);
+                generateRelativeSource();
+                writeBugInstances(xmlOutput, () -> new OccurrenceNumberingIterator(bugs.iterator(), occurrences));
+                writeEpilogue(xmlOutput, firstOfType.values());
+            } else {
+                writeBugInstances(xmlOutput, bugs);
+                writeEpilogue(xmlOutput, bugs);
             }
-            if (earlyStats && !minimalXML) {
-                getProjectStats().writeXML(xmlOutput, withMessages);
+        } finally {
+            xmlOutput.finish();
+            SourceLineAnnotation.clearGenerateRelativeSource();
+        }
+    }
+
+    /**
+     * Sets the occurrence numbers of instance hashes, like
+     * {@link SortedBugCollection#computeBugHashes()}.
+     */
+    private static class OccurrenceNumberingIterator implements Iterator<BugInstance> {
+        private final Iterator<BugInstance> iterator;
+
+        private final Map<String, Integer> occurrences;
+
+        private final Map<String, Integer> seen = new HashMap<>();
+
+        OccurrenceNumberingIterator(Iterator<BugInstance> iterator, Map<String, Integer> occurrences) {
+            this.iterator = iterator;
+            this.occurrences = occurrences;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public BugInstance next() {
+            BugInstance bug = iterator.next();
+            String hash = bug.getInstanceHash();
+            Integer count = seen.get(hash);
+            int num = count == null ? 0 : count + 1;
+            seen.put(hash, num);
+            bug.setInstanceOccurrenceNum(num);
+            bug.setInstanceOccurrenceMax(occurrences.get(hash) - 1);
+            return bug;
+        }
+    }
+
+    /**
+     * Make source file names relative to the common base of the source
+     * directories of the project, if there is one.
+     */
+    void generateRelativeSource() {
+        String commonBase = null;
+        for (String s : project.getSourceDirList()) {
+            if (commonBase == null) {
+                commonBase = s;
+            } else {
+                commonBase = commonBase.substring(0, commonPrefix(commonBase, s));
             }
 
-            // Write BugInstances
-            for (BugInstance bugInstance : getCollection()) {
-                if (!applySuppressions || !project.getSuppressionFilter().match(bugInstance)) {
-                    bugInstance.writeXML(xmlOutput, this, withMessages);
-                }
+        }
+        if (commonBase != null && commonBase.length() > 0) {
+            if (commonBase.indexOf("/./") > 0) {
+                commonBase = commonBase.substring(0, commonBase.indexOf("/."));
             }
+            File base = new File(commonBase);
+            if (base.exists() && base.isDirectory() && base.canRead()) {
+                SourceLineAnnotation.generateRelativeSource(base, project);
+            }
+        }
+    }
 
-            writeEpilogue(xmlOutput);
+    /**
+     * Write the given BugInstances, which must be in the order of this
+     * collection, preceded by the statistics if they are written first.
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     * @param bugs
+     *            the BugInstances to write
+     */
+    void writeBugInstances(XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
+        if (earlyStats && !minimalXML) {
+            getProjectStats().writeXML(xmlOutput, withMessages);
+        }
 
-        } finally {
-            xmlOutput.finish();
-            SourceLineAnnotation.clearGenerateRelativeSource();
+        // Write BugInstances
+        for (BugInstance bugInstance : bugs) {
+            if (!isSuppressed(bugInstance)) {
+                bugInstance.writeXML(xmlOutput, this, withMessages);
+            }
         }
     }
 
+    /**
+     * @return true if the BugInstance is left out when writing this
+     *         collection, see {@link #setApplySuppressions(boolean)}
+     */
+    boolean isSuppressed(BugInstance bugInstance) {
+        return applySuppressions && project.getSuppressionFilter().match(bugInstance);
+    }
+
     int commonPrefix(String s1, String s2) {
         int pos = 0;
         while (pos < s1.length() && pos < s2.length() && s1.charAt(pos) == s2.charAt(pos)) {
@@ -563,10 +789,24 @@ public class SortedBugCollection implements BugCollection {
 
     @Override
     public void writeEpilogue(XMLOutput xmlOutput) throws IOException {
+        writeEpilogue(xmlOutput, getCollection());
+    }
+
+    /**
+     * Write the end of the XML document, describing the bug categories,
+     * patterns and codes of the given BugInstances.
+     *
+     * @param xmlOutput
+     *            the XMLOutput object
+     * @param bugs
+     *            the reported BugInstances, or at least the first one of each
+     *            bug pattern in the order of this collection
+     */
+    void writeEpilogue(XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
         if (withMessages) {
-            writeBugCategories(xmlOutput);
-            writeBugPatterns(xmlOutput);
-            writeBugCodes(xmlOutput);
+            writeBugCategories(xmlOutput, bugs);
+            writeBugPatterns(xmlOutput, bugs);
+            writeBugCodes(xmlOutput, bugs);
         }
         // Errors, missing classes
         if (!minimalXML) {
@@ -614,11 +854,10 @@ public class SortedBugCollection implements BugCollection {
         xmlOutput.closeTag(ROOT_ELEMENT_NAME);
     }
 
-    private void writeBugPatterns(XMLOutput xmlOutput) throws IOException {
+    private void writeBugPatterns(XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
         // Find bug types reported
         Set<String> bugTypeSet = new HashSet<>();
-        for (Iterator<BugInstance> i = iterator(); i.hasNext();) {
-            BugInstance bugInstance = i.next();
+        for (BugInstance bugInstance : bugs) {
             BugPattern bugPattern = bugInstance.getBugPattern();
             bugTypeSet.add(bugPattern.getType());
         }
@@ -650,11 +889,10 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
-    private void writeBugCodes(XMLOutput xmlOutput) throws IOException {
+    private void writeBugCodes(XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
         // Find bug codes reported
         Set<String> bugCodeSet = new HashSet<>();
-        for (Iterator<BugInstance> i = iterator(); i.hasNext();) {
-            BugInstance bugInstance = i.next();
+        for (BugInstance bugInstance : bugs) {
             String bugCode = bugInstance.getAbbrev();
             if (bugCode != null) {
                 bugCodeSet.add(bugCode);
@@ -683,11 +921,10 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
-    private void writeBugCategories(XMLOutput xmlOutput) throws IOException {
+    private void writeBugCategories(XMLOutput xmlOutput, Iterable<BugInstance> bugs) throws IOException {
         // Find bug categories reported
         Set<String> bugCatSet = new HashSet<>();
-        for (Iterator<BugInstance> i = iterator(); i.hasNext();) {
-            BugInstance bugInstance = i.next();
+        for (BugInstance bugInstance : bugs) {
             BugPattern bugPattern = bugInstance.getBugPattern();
             bugCatSet.add(bugPattern.getCategory());
         }
@@ -826,7 +1063,7 @@ public class SortedBugCollection implements BugCollection {
         }
     }
 
-    public static class BugInstanceComparator implements Comparator<BugInstance> {
+    public static class BugInstanceComparator implements MatchingKeyComparator {
 
         private BugInstanceComparator() {
         }
@@ -845,6 +1082,16 @@ public class SortedBugCollection implements BugCollection {
             return lhs.compareTo(rhs);
         }
 
+        @Override
+        public Object getMatchingKey(BugInstance bug) {
+            ClassAnnotation primaryClass = bug.getPrimaryClass();
+            if (primaryClass == null) {
+                throw new IllegalStateException("null class annotation: " + bug);
+            }
+            return primaryClass.getClassName() + " " + bug.getType() + " " + bug.getPriority() + " "
+            + bug.getAnnotations().size();
+        }
+
         public static final BugInstanceComparator instance = new BugInstanceComparator();
     }
 
@@ -958,6 +1205,38 @@ public class SortedBugCollection implements BugCollection {
         return bugSet.add(bugInstance);
     }
 
+    /**
+     * Update this BugCollection like {@link #add(BugInstance)} does, for a
+     * BugInstance held outside of it, e.g. in a {@link SpillingBugSorter}:
+     * set its first version and count it in the project statistics.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     */
+    public void addExternal(BugInstance bugInstance) {
+        addExternal(bugInstance,
+                bugInstance.getFirstVersion() == 0L && bugInstance.getLastVersion() == 0L);
+    }
+
+    /**
+     * Update this BugCollection like {@link #add(BugInstance, boolean)} does,
+     * for a BugInstance held outside of it.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     * @param updateActiveTime
+     *            true if the warning's first version should be set to the
+     *            sequence number of this BugCollection
+     */
+    public void addExternal(BugInstance bugInstance, boolean updateActiveTime) {
+        if (updateActiveTime) {
+            bugInstance.setFirstVersion(sequence);
+        }
+        if (!bugInstance.isDead()) {
+            projectStats.addBug(bugInstance);
+        }
+    }
+
     private void invalidateHashes() {
         preciseHashOccurrenceNumbersAvailable = false;
     }
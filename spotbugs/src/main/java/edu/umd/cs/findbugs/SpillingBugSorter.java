@@ -0,0 +1,291 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Sorts BugInstances while keeping a bounded number of them in memory. When
+ * the number of BugInstances held reaches the chunk size, they are written in
+ * order to a temporary file. Iterating merges the temporary files with the
+ * BugInstances still in memory. Like in a SortedBugCollection, BugInstances
+ * equal to one added before are dropped.
+ */
+public final class SpillingBugSorter implements Iterable<BugInstance>, Closeable {
+    /**
+     * Default number of BugInstances held in memory.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = SystemProperties.getInt("findbugs.xml.chunkSize", 10000);
+
+    /**
+     * Number of BugInstances written to a temporary file between resets of
+     * the object stream, which would otherwise keep all of them reachable.
+     */
+    private static final int RESET_INTERVAL = 1000;
+
+    private final Comparator<BugInstance> comparator;
+
+    private final int chunkSize;
+
+    private TreeSet<BugInstance> chunk;
+
+    private final List<File> spillFiles = new ArrayList<>();
+
+    private int numSpills;
+
+    /**
+     * @param comparator
+     *            the order of the BugInstances
+     */
+    public SpillingBugSorter(Comparator<BugInstance> comparator) {
+        this(comparator, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param comparator
+     *            the order of the BugInstances
+     * @param chunkSize
+     *            the number of BugInstances held in memory
+     */
+    public SpillingBugSorter(Comparator<BugInstance> comparator, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        this.comparator = comparator;
+        this.chunkSize = chunkSize;
+        this.chunk = new TreeSet<>(comparator);
+    }
+
+    /**
+     * Add a BugInstance.
+     *
+     * @return false if an equal BugInstance is held in memory, in which case
+     *         the BugInstance is dropped. An equal BugInstance written to a
+     *         temporary file is only dropped when iterating.
+     */
+    public boolean add(BugInstance bug) throws IOException {
+        if (!chunk.add(bug)) {
+            return false;
+        }
+        if (chunk.size() >= chunkSize) {
+            spill();
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of temporary files written
+     */
+    int getNumSpillFiles() {
+        return numSpills;
+    }
+
+    private void spill() throws IOException {
+        File file = File.createTempFile("spotbugs-warnings", ".ser");
+        spillFiles.add(file);
+        numSpills++;
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            int count = 0;
+            for (BugInstance bug : chunk) {
+                out.writeObject(bug);
+                if (++count % RESET_INTERVAL == 0) {
+                    out.reset();
+                }
+            }
+            out.writeObject(null);
+        }
+        chunk = new TreeSet<>(comparator);
+    }
+
+    /**
+     * Iterate over the BugInstances in order. Each iteration reads the
+     * temporary files again.
+     *
+     * @throws UncheckedIOException
+     *             if a temporary file cannot be read
+     */
+    @Override
+    public Iterator<BugInstance> iterator() {
+        return new MergingIterator();
+    }
+
+    /**
+     * Delete the temporary files.
+     */
+    @Override
+    public void close() {
+        for (File file : spillFiles) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        spillFiles.clear();
+        chunk = new TreeSet<>(comparator);
+    }
+
+    /**
+     * The BugInstances of a temporary file or of the chunk held in memory,
+     * positioned at the next one to be merged.
+     */
+    private static class Run {
+        final int index;
+
+        @CheckForNull
+        final ObjectInputStream in;
+
+        @CheckForNull
+        final Iterator<BugInstance> chunkIterator;
+
+        BugInstance head;
+
+        Run(int index, File file) throws IOException {
+            this.index = index;
+            this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            this.chunkIterator = null;
+        }
+
+        Run(int index, Iterator<BugInstance> chunkIterator) {
+            this.index = index;
+            this.in = null;
+            this.chunkIterator = chunkIterator;
+        }
+
+        /**
+         * Move to the next BugInstance.
+         *
+         * @return false if there are no more BugInstances
+         */
+        boolean advance() throws IOException {
+            if (chunkIterator != null) {
+                head = chunkIterator.hasNext() ? chunkIterator.next() : null;
+            } else {
+                assert in != null;
+                try {
+                    head = (BugInstance) in.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Invalid temporary file", e);
+                }
+                if (head == null) {
+                    in.close();
+                }
+            }
+            return head != null;
+        }
+
+        void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    private class MergingIterator implements Iterator<BugInstance> {
+        private final PriorityQueue<Run> queue;
+
+        @CheckForNull
+        private BugInstance last;
+
+        @CheckForNull
+        private BugInstance next;
+
+        MergingIterator() {
+            // Equal BugInstances are taken from the run added first
+            queue = new PriorityQueue<>(spillFiles.size() + 1, (r1, r2) -> {
+                int cmp = comparator.compare(r1.head, r2.head);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return Integer.compare(r1.index, r2.index);
+            });
+            try {
+                for (int i = 0; i < spillFiles.size(); i++) {
+                    addRun(new Run(i, spillFiles.get(i)));
+                }
+                addRun(new Run(spillFiles.size(), chunk.iterator()));
+            } catch (IOException e) {
+                closeRuns();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void addRun(Run run) throws IOException {
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+
+        private void closeRuns() {
+            for (Run run : queue) {
+                try {
+                    run.close();
+                } catch (IOException e) {
+                    // ignore, reading already failed
+                }
+            }
+            queue.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !queue.isEmpty()) {
+                Run run = queue.poll();
+                BugInstance bug = run.head;
+                try {
+                    addRun(run);
+                } catch (IOException e) {
+                    closeRuns();
+                    throw new UncheckedIOException(e);
+                }
+                if (last == null || comparator.compare(last, bug) != 0) {
+                    next = bug;
+                    last = bug;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public BugInstance next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BugInstance result = next;
+            next = null;
+            return result;
+        }
+    }
+}
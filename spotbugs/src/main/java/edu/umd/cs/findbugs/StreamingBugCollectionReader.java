@@ -0,0 +1,328 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.WillCloseWhenClosed;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.DocumentException;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * Read the BugInstances of a BugCollection XML document one at a time,
+ * without holding them in memory. The document may be compressed with gzip,
+ * or be in the binary format of {@link BinaryBugCollectionFormat}.
+ *
+ * <p>
+ * The document is parsed with a {@link SAXBugCollectionHandler}, so the
+ * BugInstances and the metadata are the same as those read by
+ * {@link SortedBugCollection#readXML(File)}. A single handler is used for the
+ * whole document, so the strings of the annotations are shared between the
+ * BugInstances. The metadata is collected in the BugCollection returned by
+ * {@link #getBugCollection()}, which never contains any BugInstance. The
+ * project and the version attributes are read before the first BugInstance,
+ * the rest of the metadata (errors, statistics and history) once
+ * {@link #read()} has returned null.
+ * </p>
+ */
+public class StreamingBugCollectionReader implements Closeable {
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    private final SortedBugCollection bugCollection;
+
+    private final SAXBugCollectionHandler handler;
+
+    private final InputStream in;
+
+    /**
+     * The binary file, positioned after the metadata, or null for an XML
+     * document
+     */
+    @CheckForNull
+    private final DataInputStream binaryIn;
+
+    /**
+     * The strings of the binary file, read at the start of its BugInstances
+     */
+    @CheckForNull
+    private String[] strings;
+
+    /**
+     * Number of BugInstances of the binary file still to be read
+     */
+    private int numBinaryBugs;
+
+    private final XMLStreamReader reader;
+
+    @CheckForNull
+    private final File file;
+
+    private boolean done;
+
+    /**
+     * Read the given file.
+     *
+     * @param file
+     *            the BugCollection XML document, possibly compressed with
+     *            gzip, or binary file
+     */
+    public StreamingBugCollectionReader(File file) throws IOException, DocumentException {
+        this(new MetadataBugCollection(), new FileInputStream(file), file);
+        bugCollection.getProject().setCurrentWorkingDirectory(file.getParentFile());
+        bugCollection.dataSource = file.getAbsolutePath();
+    }
+
+    /**
+     * Read the given stream, which is closed by {@link #close()}.
+     *
+     * @param in
+     *            the BugCollection XML document, possibly compressed with
+     *            gzip, or binary file
+     */
+    public StreamingBugCollectionReader(@WillCloseWhenClosed InputStream in) throws IOException, DocumentException {
+        this(new MetadataBugCollection(), in, null);
+    }
+
+    /**
+     * Read the given stream into the given BugCollection, which also gets the
+     * BugInstances.
+     */
+    StreamingBugCollectionReader(SortedBugCollection bugCollection, @WillCloseWhenClosed InputStream in,
+            @CheckForNull File file) throws IOException, DocumentException {
+        this.bugCollection = bugCollection;
+        this.handler = new SAXBugCollectionHandler(bugCollection, file);
+        this.file = file;
+        try {
+            this.in = decompress(in);
+            if (BinaryBugCollectionFormat.isBinary(this.in)) {
+                this.binaryIn = new DataInputStream(this.in);
+                byte[] metadata = BinaryBugCollectionFormat.readHeader(binaryIn);
+                this.reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(metadata), "UTF-8");
+            } else {
+                this.binaryIn = null;
+                this.reader = FACTORY.createXMLStreamReader(Util.getReader(this.in));
+            }
+        } catch (XMLStreamException e) {
+            in.close();
+            throw newDocumentException(e);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static InputStream decompress(@WillCloseWhenClosed InputStream in) throws IOException {
+        InputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        buffered.reset();
+        if (b0 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b1 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new BufferedInputStream(new GZIPInputStream(buffered));
+        }
+        return buffered;
+    }
+
+    /**
+     * @return the BugCollection holding the metadata read so far, without any
+     *         BugInstance
+     */
+    public SortedBugCollection getBugCollection() {
+        return bugCollection;
+    }
+
+    /**
+     * Read the next BugInstance.
+     *
+     * @return the next BugInstance, or null at the end of the document
+     */
+    @CheckForNull
+    public BugInstance read() throws IOException, DocumentException {
+        if (done) {
+            return null;
+        }
+        try {
+            if (numBinaryBugs > 0) {
+                return readBinaryBugInstance();
+            }
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (isBinaryBugInstancesElement()) {
+                        strings = BinaryBugCollectionFormat.readStrings(binaryIn);
+                        numBinaryBugs = BinaryBugCollectionFormat.readVarint(binaryIn);
+                        if (numBinaryBugs > 0) {
+                            return readBinaryBugInstance();
+                        }
+                        break;
+                    }
+                    handler.startElement("", reader.getLocalName(), getQName(reader.getPrefix(), reader.getLocalName()),
+                            getAttributes());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (isBinaryBugInstancesElement()) {
+                        break;
+                    }
+                    handler.endElement("", reader.getLocalName(), getQName(reader.getPrefix(), reader.getLocalName()));
+                    if (bugCollection instanceof MetadataBugCollection) {
+                        BugInstance bug = ((MetadataBugCollection) bugCollection).takeBugInstance();
+                        if (bug != null) {
+                            return bug;
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw newDocumentException(e);
+        } catch (SAXException e) {
+            throw new DocumentException(file != null ? "Sax error while parsing " + file : "Sax error ", e);
+        }
+        done = true;
+        bugCollection.bugsPopulated();
+        bugCollection.getProject().setModified(false);
+        return null;
+    }
+
+    /**
+     * @return true if the current element of the metadata of a binary file
+     *         stands for its BugInstances
+     */
+    private boolean isBinaryBugInstancesElement() {
+        return binaryIn != null && BinaryBugCollectionFormat.BUG_INSTANCES_ELEMENT_NAME.equals(reader.getLocalName());
+    }
+
+    /**
+     * Decode the next record of the binary file, and add it to the
+     * BugCollection like the SAXBugCollectionHandler does.
+     */
+    private BugInstance readBinaryBugInstance() throws IOException {
+        assert binaryIn != null && strings != null;
+        numBinaryBugs--;
+        BinaryBugCollectionFormat.readVarint(binaryIn);
+        BugInstance bug = BinaryBugCollectionFormat.readBugInstance(binaryIn, strings);
+        bugCollection.add(bug, false);
+        if (bugCollection instanceof MetadataBugCollection) {
+            ((MetadataBugCollection) bugCollection).takeBugInstance();
+        }
+        return bug;
+    }
+
+    /**
+     * Read the rest of the document, skipping the remaining BugInstances.
+     *
+     * @return the BugCollection holding all the metadata of the document
+     */
+    public SortedBugCollection readMetadata() throws IOException, DocumentException {
+        while (read() != null) {
+            // skip
+        }
+        return bugCollection;
+    }
+
+    private AttributesImpl getAttributes() {
+        AttributesImpl attributes = new AttributesImpl();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String localName = reader.getAttributeLocalName(i);
+            attributes.addAttribute("", localName, getQName(reader.getAttributePrefix(i), localName), "CDATA",
+                    reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    private static String getQName(@CheckForNull String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+
+    private DocumentException newDocumentException(XMLStreamException e) {
+        Location location = e.getLocation();
+        String message = location == null ? "Parse error"
+                : "Parse error at line " + location.getLineNumber() + " : " + location.getColumnNumber();
+        if (file != null) {
+            message += " of " + file;
+        }
+        return new DocumentException(message, e);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the metadata read by the SAXBugCollectionHandler, and hands
+     * over the BugInstances instead of storing them.
+     */
+    private static class MetadataBugCollection extends SortedBugCollection {
+        @CheckForNull
+        private BugInstance bugInstance;
+
+        @Override
+        public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+            addExternal(bugInstance, updateActiveTime);
+            this.bugInstance = bugInstance;
+            return true;
+        }
+
+        @CheckForNull
+        BugInstance takeBugInstance() {
+            BugInstance result = bugInstance;
+            bugInstance = null;
+            return result;
+        }
+    }
+}
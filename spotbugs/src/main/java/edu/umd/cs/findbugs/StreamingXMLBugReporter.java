@@ -0,0 +1,96 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+
+/**
+ * Report warnings as an XML document, without holding all of them in memory.
+ * The reported warnings are sorted in chunks which are written to temporary
+ * files, and merged when the document is written. The document is the same as
+ * the one written by {@link XMLBugReporter}, but the BugCollection of this
+ * reporter does not contain the warnings. A warning equal to one written to a
+ * temporary file is only dropped when the files are merged, so observers are
+ * notified of the warnings in {@link #finish()}, in order.
+ */
+public class StreamingXMLBugReporter extends XMLBugReporter {
+    private final SpillingBugSorter bugs;
+
+    public StreamingXMLBugReporter(Project project) {
+        this(project, SpillingBugSorter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param project
+     *            the analyzed project
+     * @param chunkSize
+     *            the number of warnings held in memory before they are
+     *            written to a temporary file
+     */
+    public StreamingXMLBugReporter(Project project, int chunkSize) {
+        super(project);
+        bugs = new SpillingBugSorter(SortedBugCollection.MultiversionBugInstanceComparator.instance, chunkSize);
+    }
+
+    /**
+     * @return the number of temporary files written
+     */
+    int getNumSpillFiles() {
+        return bugs.getNumSpillFiles();
+    }
+
+    @Override
+    public void doReportBug(BugInstance bugInstance) {
+        if (VERIFY_INTEGRITY) {
+            checkBugInstance(bugInstance);
+        }
+        ((SortedBugCollection) getBugCollection()).addExternal(bugInstance);
+        try {
+            bugs.add(bugInstance);
+        } catch (IOException e) {
+            throw new FatalException("Error writing warnings to temporary file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void finish() {
+        try {
+            Project project = getProject();
+            if (project == null) {
+                throw new NullPointerException("No project");
+            }
+            for (BugInstance bug : bugs) {
+                notifyObservers(bug);
+            }
+            SortedBugCollection bugCollection = (SortedBugCollection) getBugCollection();
+            bugCollection.bugsPopulated();
+            bugCollection.writeXML(new OutputStreamXMLOutput(outputStream), bugs);
+            outputStream.close();
+        } catch (IOException e) {
+            throw new FatalException("Error writing XML output: " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw new FatalException("Error reading warnings from temporary file: " + e.getMessage(), e);
+        } finally {
+            bugs.close();
+        }
+    }
+}
@@ -98,6 +98,8 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean xmlWithAbridgedMessages = false;
 
+    private boolean streamingXml = false;
+
     private String stylesheet = null;
 
     private boolean quiet = false;
@@ -138,6 +140,12 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean scanNestedArchives = true;
 
+    private int threads = 1;
+
+    private String incrementalCacheFile;
+
+    private String auxSummaryCacheDirectory;
+
     private boolean applySuppression;
 
     private boolean printConfiguration;
@@ -171,6 +179,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         addSwitch("-sortByClass", "sort warnings by class");
         addSwitchWithOptionalExtraPart("-xml", "withMessages", "XML output (optionally with messages)");
+        addSwitch("-streamingXml", "don't hold the warnings in memory for XML output, sort them in temporary files");
         addSwitch("-xdocs", "xdoc XML output to use with Apache Maven");
         addSwitchWithOptionalExtraPart("-html", "stylesheet", "Generate HTML output (default stylesheet is default.xsl)");
         addSwitch("-emacs", "Use emacs reporting format");
@@ -187,6 +196,9 @@ public class TextUICommandLine extends FindBugsCommandLine {
         addOption("-output", "filename", "Save output in named file");
         makeOptionUnlisted("-outputFile");
         addSwitchWithOptionalExtraPart("-nested", "true|false", "analyze nested jar/zip archives (default=true)");
+        addOption("-threads", "n", "analyze classes using n threads (default=1)");
+        addOption("-incrementalCache", "filename", "store warnings of each class in file and reuse them for unchanged classes");
+        addOption("-auxSummaryCache", "directory", "store first pass summaries of aux classpath jars in directory and reuse them for unchanged jars");
 
         startOptionGroup("Output filtering options:");
         addOption("-bugCategories", "cat1[,cat2...]", "only report bugs in given categories");
@@ -320,6 +332,8 @@ public class TextUICommandLine extends FindBugsCommandLine {
                     throw new IllegalArgumentException("Unknown option: -xml:" + optionExtraPart);
                 }
             }
+        } else if ("-streamingXml".equals(option)) {
+            streamingXml = true;
         } else if ("-emacs".equals(option)) {
             bugReporterType = EMACS_REPORTER;
         } else if ("-relaxed".equals(option)) {
@@ -378,7 +392,6 @@ public class TextUICommandLine extends FindBugsCommandLine {
     }
 
     protected @CheckForNull File outputFile;
-    @SuppressFBWarnings("DM_EXIT")
     @Override
     protected void handleOptionWithArgument(String option, String argument) throws IOException {
         parsedOptions.put(option, argument);
@@ -405,8 +418,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
                 }
                 outputStream = UTF8.printStream(oStream);
             } catch (IOException e) {
-                System.err.println("Couldn't open " + outputFile + " for output: " + e.toString());
-                System.exit(1);
+                throw new IllegalArgumentException("Couldn't open " + outputFile + " for output: " + e.toString(), e);
             }
         } else if ("-bugReporters".equals(option)) {
             for (String s : argument.split(",")) {
@@ -421,6 +433,15 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         } else if ("-maxRank".equals(option)) {
             this.rankThreshold = Integer.parseInt(argument);
+        } else if ("-threads".equals(option)) {
+            threads = Integer.parseInt(argument);
+            if (threads < 1) {
+                throw new IllegalArgumentException("Number of threads must be at least 1: " + argument);
+            }
+        } else if ("-incrementalCache".equals(option)) {
+            incrementalCacheFile = argument;
+        } else if ("-auxSummaryCache".equals(option)) {
+            auxSummaryCacheDirectory = argument;
         } else if ("-projectName".equals(option)) {
             this.projectName = argument;
         } else if ("-release".equals(option)) {
@@ -621,7 +642,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
             textuiBugReporter = new SortingBugReporter();
             break;
         case XML_REPORTER: {
-            XMLBugReporter xmlBugReporter = new XMLBugReporter(project);
+            XMLBugReporter xmlBugReporter = streamingXml ? new StreamingXMLBugReporter(project) : new XMLBugReporter(project);
             xmlBugReporter.setAddMessages(xmlWithMessages);
             xmlBugReporter.setMinimalXML(xmlMinimal);
 
@@ -692,6 +713,9 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         findBugs.setScanNestedArchives(scanNestedArchives);
         findBugs.setNoClassOk(noClassOk);
+        findBugs.setThreads(threads);
+        findBugs.setIncrementalCacheFile(incrementalCacheFile);
+        findBugs.setAuxSummaryCacheDirectory(auxSummaryCacheDirectory);
 
         findBugs.setBugReporterDecorators(enabledBugReporterDecorators, disabledBugReporterDecorators);
         if (applySuppression) {
@@ -30,7 +30,7 @@ import edu.umd.cs.findbugs.model.IdentityClassNameRewriter;
  * Compare bug instances by only those criteria which we would expect to remain
  * constant between versions.
  */
-public class VersionInsensitiveBugComparator implements WarningComparator {
+public class VersionInsensitiveBugComparator implements WarningComparator, MatchingKeyComparator {
 
     private ClassNameRewriter classNameRewriter = IdentityClassNameRewriter.instance();
 
@@ -262,6 +262,66 @@ public class VersionInsensitiveBugComparator implements WarningComparator {
         }
     }
 
+    /**
+     * The key is made of the bug pattern, of the priority if priorities are
+     * compared, and of the annotations other than local variables, which may be
+     * skipped or match any name.
+     */
+    @Override
+    public Object getMatchingKey(BugInstance bug) {
+        BugPattern pattern = bug.getBugPattern();
+        StringBuilder key = new StringBuilder(pattern.getAbbrev());
+        if (isExactBugPatternMatch()) {
+            key.append(' ').append(pattern.getType());
+        }
+        if (comparePriorities) {
+            key.append(' ').append(bug.getPriority());
+        }
+        for (BugAnnotation annotation : bug.getAnnotations()) {
+            Class<? extends BugAnnotation> annotationClass = annotation.getClass();
+            if (annotationClass == LocalVariableAnnotation.class || isBoring(annotation)) {
+                continue;
+            }
+            if (annotationClass == ClassAnnotation.class) {
+                key.append("\nC ").append(classNameRewriter.rewriteClassName(((ClassAnnotation) annotation).getClassName()));
+            } else if (annotationClass == MethodAnnotation.class) {
+                MethodAnnotation method = ClassNameRewriterUtil.convertMethodAnnotation(classNameRewriter,
+                        (MethodAnnotation) annotation);
+                key.append("\nM ").append(method.getClassName()).append(' ').append(method.getMethodName())
+                .append(method.getMethodSignature());
+            } else if (annotationClass == FieldAnnotation.class) {
+                FieldAnnotation field = ClassNameRewriterUtil.convertFieldAnnotation(classNameRewriter,
+                        (FieldAnnotation) annotation);
+                key.append("\nF ").append(field.getClassName()).append(' ').append(field.getFieldName()).append(' ')
+                .append(field.getFieldSignature());
+            } else if (annotationClass == StringAnnotation.class) {
+                key.append("\nS ").append(((StringAnnotation) annotation).getValue());
+            } else if (annotationClass == TypeAnnotation.class) {
+                key.append("\nT ").append(ClassNameRewriterUtil.rewriteSignature(classNameRewriter,
+                        ((TypeAnnotation) annotation).getTypeDescriptor()));
+            } else if (annotationClass == IntAnnotation.class) {
+                key.append("\nI ").append(((IntAnnotation) annotation).getValue());
+            } else {
+                key.append('\n').append(annotationClass.getName());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Local variables of unknown name match local variables of any name.
+     */
+    @Override
+    public boolean hasWildcards(BugInstance bug) {
+        for (BugAnnotation annotation : bug.getAnnotations()) {
+            if (annotation instanceof LocalVariableAnnotation
+                    && LocalVariableAnnotation.UNKNOWN_NAME.equals(((LocalVariableAnnotation) annotation).getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean interestingNext(Iterator<BugAnnotation> i) {
         while (i.hasNext()) {
             BugAnnotation a = i.next();
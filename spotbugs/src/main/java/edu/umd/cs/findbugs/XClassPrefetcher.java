@@ -0,0 +1,153 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisWorkerThread;
+
+/**
+ * Computes the XClass of classes on a fork-join pool, ahead of the analysis
+ * thread which then finds them in the analysis cache. The analysis cache
+ * keeps the failure of a class as well, so the analysis thread still reports
+ * missing and invalid classes itself, in its own order.
+ *
+ * @see AnalysisOptions#threads
+ */
+class XClassPrefetcher {
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor. Must be called on the analysis thread.
+     *
+     * @param threads
+     *            number of worker threads
+     */
+    XClassPrefetcher(int threads) {
+        this.pool = AnalysisWorkerThread.newPool(threads, false);
+    }
+
+    /**
+     * Compute the XClass of given classes, and of their superclasses,
+     * interfaces and enclosing classes, transitively.
+     *
+     * @param classes
+     *            the classes to start from
+     */
+    void prefetchHierarchy(Collection<ClassDescriptor> classes) throws InterruptedException {
+        Set<ClassDescriptor> seen = ConcurrentHashMap.newKeySet();
+        List<Prefetch> tasks = new ArrayList<>();
+        for (ClassDescriptor classDescriptor : classes) {
+            if (seen.add(classDescriptor)) {
+                tasks.add(new Prefetch(classDescriptor, seen));
+            }
+        }
+        run(tasks);
+    }
+
+    /**
+     * Compute the XClass of given classes.
+     *
+     * @param classes
+     *            the classes
+     */
+    void prefetch(Collection<ClassDescriptor> classes) throws InterruptedException {
+        List<Prefetch> tasks = new ArrayList<>();
+        for (ClassDescriptor classDescriptor : classes) {
+            tasks.add(new Prefetch(classDescriptor, null));
+        }
+        run(tasks);
+    }
+
+    private void run(List<Prefetch> tasks) throws InterruptedException {
+        for (Prefetch task : tasks) {
+            pool.execute(task);
+        }
+        for (Prefetch task : tasks) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            task.quietlyJoin();
+        }
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    void shutdown() {
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Prefetch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ClassDescriptor classDescriptor;
+
+        /** classes already scheduled, or null to not follow the hierarchy */
+        private final Set<ClassDescriptor> seen;
+
+        Prefetch(ClassDescriptor classDescriptor, Set<ClassDescriptor> seen) {
+            this.classDescriptor = classDescriptor;
+            this.seen = seen;
+        }
+
+        @Override
+        protected void compute() {
+            XClass xclass;
+            try {
+                xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+            } catch (CheckedAnalysisException | RuntimeException e) {
+                // Reported by the analysis thread
+                return;
+            }
+            if (seen == null) {
+                return;
+            }
+            List<Prefetch> next = new ArrayList<>();
+            follow(xclass.getSuperclassDescriptor(), next);
+            for (ClassDescriptor iface : xclass.getInterfaceDescriptorList()) {
+                follow(iface, next);
+            }
+            follow(xclass.getImmediateEnclosingClass(), next);
+            invokeAll(next);
+        }
+
+        private void follow(ClassDescriptor next, List<Prefetch> tasks) {
+            if (next != null && seen.add(next)) {
+                tasks.add(new Prefetch(next, seen));
+            }
+        }
+    }
+}
@@ -140,6 +140,11 @@ public abstract class AbstractDominatorsAnalysis extends BasicAbstractDataflowAn
         }
     }
 
+    @Override
+    public boolean useWorklistSolver() {
+        return true;
+    }
+
     /**
      * Get a bitset containing the unique IDs of all blocks which dominate (or
      * postdominate) the given block.
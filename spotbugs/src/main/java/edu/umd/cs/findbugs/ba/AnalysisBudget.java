@@ -0,0 +1,260 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003,2004 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * CPU time budgets of the method analyses of a method and of all the methods
+ * of a class.
+ * <p>
+ * The analysis cache {@link #enter(MethodDescriptor, boolean) enters} the
+ * budget of a method while it computes one of its analyses, and the time is
+ * charged to the method whose analysis is being computed. Long running
+ * analyses such as {@link Dataflow#execute()} {@link #check() check} the
+ * budget from time to time. When the budget of a method or its class runs
+ * out, the analysis fails, an error is logged once, and the analysis cache
+ * refuses to compute the dataflow analyses of the method from then on, until
+ * the end of the analysis run.
+ * Detectors see a {@link MethodUnprofitableException}, so they skip the
+ * method as they do for methods too big to analyze, while detectors which
+ * don't need dataflow analyses still look at it.
+ * </p>
+ * <p>
+ * The budgets are set with the <code>findbugs.analysisBudget.methodMillis</code>
+ * and <code>findbugs.analysisBudget.classMillis</code> system properties, 0
+ * meaning unlimited. Both are unlimited unless set. The time of a class is the time spent on its methods in
+ * all the passes of a run, on the current thread; the threads forget about
+ * the classes they haven't analyzed for a while.
+ * </p>
+ */
+public final class AnalysisBudget {
+
+    private static volatile long methodBudget = SystemProperties.getInt("findbugs.analysisBudget.methodMillis", 0) * 1000000L;
+
+    private static volatile long classBudget = SystemProperties.getInt("findbugs.analysisBudget.classMillis", 0) * 1000000L;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final boolean USE_CPU_TIME = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+    private static final ThreadLocal<AnalysisBudget> BUDGETS = new ThreadLocal<AnalysisBudget>() {
+        @Override
+        protected AnalysisBudget initialValue() {
+            return new AnalysisBudget();
+        }
+    };
+
+    /** Methods whose analyses are being computed, innermost last */
+    private final List<MethodDescriptor> activeMethods = new ArrayList<>();
+
+    private long lastCharged;
+
+    /**
+     * Methods and classes which ran out of budget, for each analysis run. They
+     * stay exhausted until the end of the run, for all the threads.
+     */
+    private static final Map<IAnalysisCache, Set<Object>> EXHAUSTED = Collections
+            .synchronizedMap(new WeakHashMap<IAnalysisCache, Set<Object>>());
+
+    /** Analysis cache of the analyses computed last */
+    private IAnalysisCache currentAnalysisCache;
+
+    private Set<Object> exhausted;
+
+    private static final int MAX_CLASSES = 256;
+
+    /**
+     * Time spent by this thread on the analyses of the classes it analyzed
+     * last, and of their methods. The classes analyzed least recently are
+     * forgotten.
+     */
+    private final Map<ClassDescriptor, ClassTime> classTimes = new LinkedHashMap<ClassDescriptor, ClassTime>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ClassDescriptor, ClassTime> eldest) {
+            return size() > MAX_CLASSES;
+        }
+    };
+
+    private static class ClassTime {
+        long time;
+
+        final Map<MethodDescriptor, long[]> methodTime = new HashMap<>();
+    }
+
+    private AnalysisBudget() {
+    }
+
+    /**
+     * Set the budgets of the analyses started from now on.
+     *
+     * @param methodMillis
+     *            CPU time budget of the analyses of a method in milliseconds,
+     *            0 for unlimited
+     * @param classMillis
+     *            CPU time budget of the analyses of the methods of a class in
+     *            milliseconds, 0 for unlimited
+     */
+    public static void setBudgets(long methodMillis, long classMillis) {
+        methodBudget = methodMillis * 1000000L;
+        classBudget = classMillis * 1000000L;
+    }
+
+    public static boolean isEnabled() {
+        return methodBudget > 0 || classBudget > 0;
+    }
+
+    private static long now() {
+        return USE_CPU_TIME ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Start charging the time of the current thread to a method.
+     * {@link #exit()} must be called when the analysis is done, unless this
+     * throws.
+     *
+     * @param method
+     *            the method whose analysis is computed
+     * @param expensive
+     *            true if the analysis is expensive, and should not be computed
+     *            if the budget of the method ran out
+     * @throws MethodUnprofitableException
+     *             if the analysis is expensive and the budget of the method ran
+     *             out
+     */
+    public static void enter(MethodDescriptor method, boolean expensive) throws MethodUnprofitableException {
+        AnalysisBudget budget = BUDGETS.get();
+        long now = now();
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        if (analysisCache != budget.currentAnalysisCache) {
+            // A new analysis run
+            budget.currentAnalysisCache = analysisCache;
+            budget.exhausted = getExhausted(analysisCache);
+            budget.classTimes.clear();
+        }
+        if (!budget.activeMethods.isEmpty()) {
+            budget.charge(now);
+        }
+        if (expensive && (budget.exhausted.contains(method) || budget.exhausted.contains(method.getClassDescriptor()))) {
+            throw new MethodUnprofitableException(method);
+        }
+        budget.activeMethods.add(method);
+        budget.lastCharged = now;
+    }
+
+    /**
+     * Stop charging the time of the current thread to the method passed to the
+     * matching {@link #enter(MethodDescriptor, boolean)} call.
+     */
+    public static void exit() {
+        AnalysisBudget budget = BUDGETS.get();
+        budget.charge(now());
+        budget.activeMethods.remove(budget.activeMethods.size() - 1);
+    }
+
+    private static Set<Object> getExhausted(IAnalysisCache analysisCache) {
+        synchronized (EXHAUSTED) {
+            Set<Object> result = EXHAUSTED.get(analysisCache);
+            if (result == null) {
+                result = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+                EXHAUSTED.put(analysisCache, result);
+            }
+            return result;
+        }
+    }
+
+    private ClassTime getClassTime(ClassDescriptor classDescriptor) {
+        ClassTime classTime = classTimes.get(classDescriptor);
+        if (classTime == null) {
+            classTime = new ClassTime();
+            classTimes.put(classDescriptor, classTime);
+        }
+        return classTime;
+    }
+
+    private void charge(long now) {
+        MethodDescriptor method = activeMethods.get(activeMethods.size() - 1);
+        long elapsed = now - lastCharged;
+        lastCharged = now;
+        ClassTime classTime = getClassTime(method.getClassDescriptor());
+        classTime.time += elapsed;
+        long[] methodTime = classTime.methodTime.get(method);
+        if (methodTime == null) {
+            methodTime = new long[1];
+            classTime.methodTime.put(method, methodTime);
+        }
+        methodTime[0] += elapsed;
+    }
+
+    /**
+     * Check the budget of the method whose analysis is computed by the
+     * current thread, if any.
+     *
+     * @throws AnalysisBudgetExceededException
+     *             if the budget of the method or its class ran out
+     */
+    public static void check() throws AnalysisBudgetExceededException {
+        if (!isEnabled()) {
+            return;
+        }
+        AnalysisBudget budget = BUDGETS.get();
+        if (budget.activeMethods.isEmpty()) {
+            return;
+        }
+        budget.charge(now());
+        MethodDescriptor method = budget.activeMethods.get(budget.activeMethods.size() - 1);
+        ClassDescriptor classDescriptor = method.getClassDescriptor();
+        ClassTime classTime = budget.getClassTime(classDescriptor);
+        long limit = methodBudget;
+        if (limit > 0 && classTime.methodTime.get(method)[0] > limit) {
+            budget.exhaust(method, method, limit);
+        }
+        limit = classBudget;
+        if (limit > 0 && classTime.time > limit) {
+            budget.exhaust(classDescriptor, method, limit);
+        }
+    }
+
+    private void exhaust(Object methodOrClass, MethodDescriptor method, long limit) throws AnalysisBudgetExceededException {
+        String message = "Skipped analyses of " + method + ": the analyses of "
+                + (methodOrClass == method ? "the method" : "its class") + " took more than " + limit / 1000000
+                + " ms";
+        if (exhausted.add(methodOrClass)) {
+            AnalysisContext.logError(message);
+        }
+        throw new AnalysisBudgetExceededException(message);
+    }
+}
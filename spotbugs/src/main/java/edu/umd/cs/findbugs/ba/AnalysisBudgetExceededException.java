@@ -0,0 +1,39 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003,2004 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+/**
+ * Thrown by {@link AnalysisBudget#check()} when the time budget of a method
+ * analysis ran out. The analysis cache turns it into a
+ * {@link MethodUnprofitableException}.
+ */
+public class AnalysisBudgetExceededException extends DataflowAnalysisException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     *
+     * @param msg
+     *            message describing the budget which ran out
+     */
+    public AnalysisBudgetExceededException(String msg) {
+        super(msg);
+    }
+}
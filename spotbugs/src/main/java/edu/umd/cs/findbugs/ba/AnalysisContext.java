@@ -26,10 +26,13 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -147,7 +150,7 @@ public class AnalysisContext {
 
     private ClassSummary classSummary;
 
-    private ClassDescriptor classBeingAnalyzed;
+    private final ThreadLocal<ClassDescriptor> classBeingAnalyzed = new ThreadLocal<>();
 
     private FieldSummary fieldSummary;
 
@@ -155,7 +158,10 @@ public class AnalysisContext {
 
     private TypeQualifierNullnessAnnotationDatabase tqNullnessDatabase;
 
-    private final HashSet<MethodDescriptor> skippedDueToInvokeDynamic;
+    private final Set<MethodDescriptor> skippedDueToInvokeDynamic;
+
+    /** Classes being analyzed when an error was logged through the context */
+    private final Set<ClassDescriptor> classesWithLoggedErrors;
 
     private final Project project;
 
@@ -177,12 +183,14 @@ public class AnalysisContext {
         this.project = project;
         this.boolPropertySet = new BitSet();
         this.lookupFailureCallback = new DelegatingRepositoryLookupFailureCallback();
-        skippedDueToInvokeDynamic = new HashSet<>();
+        skippedDueToInvokeDynamic = ConcurrentHashMap.newKeySet();
+        classesWithLoggedErrors = ConcurrentHashMap.newKeySet();
         equalsKindSummary = new EqualsKindSummary();
         unreadFieldsData = new UnreadFieldsData();
         suppressionMatcher = new SuppressionMatcher();
-        bridgeTo = new IdentityHashMap<>();
-        bridgeFrom = new IdentityHashMap<>();
+        // Classes may be parsed by worker threads
+        bridgeTo = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, MethodInfo>());
+        bridgeFrom = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, MethodInfo>());
     }
 
     private void clear() {
@@ -202,16 +210,43 @@ public class AnalysisContext {
         return currentXFactory.get();
     }
 
+    /**
+     * Get the class being analyzed by the current thread.
+     */
     public ClassDescriptor getClassBeingAnalyzed() {
-        return classBeingAnalyzed;
+        return classBeingAnalyzed.get();
     }
 
     public void setClassBeingAnalyzed(@Nonnull ClassDescriptor classBeingAnalyzed) {
-        this.classBeingAnalyzed = classBeingAnalyzed;
+        this.classBeingAnalyzed.set(classBeingAnalyzed);
     }
 
     public void clearClassBeingAnalyzed() {
-        this.classBeingAnalyzed = null;
+        this.classBeingAnalyzed.remove();
+    }
+
+    /**
+     * Determine whether an error was logged, or the analysis of a method
+     * skipped, through the analysis context while given class was being
+     * analyzed by any thread.
+     *
+     * @param classDescriptor
+     *            the class
+     * @return true if an error was logged while analyzing the class
+     */
+    public boolean hasLoggedErrors(ClassDescriptor classDescriptor) {
+        return classesWithLoggedErrors.contains(classDescriptor);
+    }
+
+    private static void errorLogged() {
+        AnalysisContext context = currentAnalysisContext();
+        if (context == null) {
+            return;
+        }
+        ClassDescriptor clazz = context.getClassBeingAnalyzed();
+        if (clazz != null) {
+            context.classesWithLoggedErrors.add(clazz);
+        }
     }
 
     public ClassSummary getClassSummary() {
@@ -1061,11 +1096,13 @@ public class AnalysisContext {
 
         @Override
         public void logError(String message) {
+            errorLogged();
             Global.getAnalysisCache().getErrorLogger().logError(message);
         }
 
         @Override
         public void logError(String message, Throwable e) {
+            errorLogged();
             Global.getAnalysisCache().getErrorLogger().logError(message, e);
         }
 
@@ -1081,6 +1118,7 @@ public class AnalysisContext {
 
         @Override
         public void reportSkippedAnalysis(MethodDescriptor method) {
+            errorLogged();
             Global.getAnalysisCache().getErrorLogger().reportSkippedAnalysis(method);
         }
 
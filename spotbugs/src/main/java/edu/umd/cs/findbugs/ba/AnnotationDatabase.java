@@ -101,6 +101,8 @@ public class AnnotationDatabase<AnnotationEnum extends AnnotationEnumeration<Ann
     }
 
     // TODO: Parameterize these values?
+    // Guarded by themselves, since several analysis threads resolve
+    // annotations at once
     Map<Object, AnnotationEnum> cachedMinimal = new MapCache<>(20000);
 
     Map<Object, AnnotationEnum> cachedMaximal = new MapCache<>(20000);
@@ -130,14 +132,18 @@ public class AnnotationDatabase<AnnotationEnum extends AnnotationEnumeration<Ann
             cache = cachedMaximal;
         }
 
-        if (cache.containsKey(o)) {
-            return cache.get(o);
+        synchronized (cache) {
+            if (cache.containsKey(o)) {
+                return cache.get(o);
+            }
         }
         AnnotationEnum n = getUncachedResolvedAnnotation(o, getMinimal);
         if (DEBUG) {
             System.out.println("TTT: " + o + " " + n);
         }
-        cache.put(o, n);
+        synchronized (cache) {
+            cache.put(o, n);
+        }
         return n;
     }
 
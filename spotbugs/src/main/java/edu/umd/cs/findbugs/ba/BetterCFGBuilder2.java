@@ -21,13 +21,13 @@ package edu.umd.cs.findbugs.ba;
 
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -35,8 +35,6 @@ import org.apache.bcel.Const;
 import org.apache.bcel.classfile.ClassParser;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.ACONST_NULL;
-import org.apache.bcel.generic.ALOAD;
 import org.apache.bcel.generic.BranchInstruction;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.CodeExceptionGen;
@@ -46,13 +44,7 @@ import org.apache.bcel.generic.GETFIELD;
 import org.apache.bcel.generic.GETSTATIC;
 import org.apache.bcel.generic.GOTO;
 import org.apache.bcel.generic.GotoInstruction;
-import org.apache.bcel.generic.ICONST;
-import org.apache.bcel.generic.IFNONNULL;
-import org.apache.bcel.generic.IFNULL;
-import org.apache.bcel.generic.IF_ACMPEQ;
-import org.apache.bcel.generic.IF_ACMPNE;
 import org.apache.bcel.generic.INSTANCEOF;
-import org.apache.bcel.generic.INVOKESTATIC;
 import org.apache.bcel.generic.IfInstruction;
 import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionHandle;
@@ -64,8 +56,6 @@ import org.apache.bcel.generic.MONITOREXIT;
 import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.NEW;
 import org.apache.bcel.generic.NOP;
-import org.apache.bcel.generic.POP;
-import org.apache.bcel.generic.POP2;
 import org.apache.bcel.generic.PUTFIELD;
 import org.apache.bcel.generic.PUTSTATIC;
 import org.apache.bcel.generic.ReturnInstruction;
@@ -73,8 +63,6 @@ import org.apache.bcel.generic.ReturnInstruction;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.type.ExceptionSetFactory;
 import edu.umd.cs.findbugs.ba.type.StandardTypeMerger;
-import edu.umd.cs.findbugs.bcel.generic.NONNULL2Z;
-import edu.umd.cs.findbugs.bcel.generic.NULL2Z;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.FieldDescriptor;
@@ -591,7 +579,8 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
 
     private final IdentityHashMap<InstructionHandle, Subroutine> jsrSubroutineMap;
 
-    private final Map<FieldDescriptor, Integer> addedFields = new HashMap<>();
+    private final CFGInstructionOptimizer optimizer;
+
     private Subroutine topLevelSubroutine;
 
     private CFG cfg;
@@ -611,158 +600,38 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
     public BetterCFGBuilder2(@Nonnull MethodDescriptor descriptor, @Nonnull MethodGen methodGen) {
         this.methodGen = methodGen;
         this.cpg = methodGen.getConstantPool();
+        this.optimizer = new CFGInstructionOptimizer(methodGen);
+        this.exceptionHandlerMap = new ExceptionHandlerMap(methodGen, createTypeMerger(descriptor));
+        this.usedInstructionSet = new BitSet();
+        this.jsrSubroutineMap = new IdentityHashMap<>();
+        this.subroutineWorkList = new LinkedList<>();
+    }
+
+    /**
+     * Create the TypeMerger used to merge the catch types of exception
+     * handlers sharing the same start instruction.
+     *
+     * @return the TypeMerger, or null if the exception set factory of the
+     *         method could not be created
+     */
+    static @CheckForNull StandardTypeMerger createTypeMerger(MethodDescriptor descriptor) {
         IAnalysisCache analysisCache = Global.getAnalysisCache();
-        StandardTypeMerger merger = null;
-        ExceptionSetFactory exceptionSetFactory;
         try {
-            exceptionSetFactory = analysisCache.getMethodAnalysis(ExceptionSetFactory.class, descriptor);
-            merger = new StandardTypeMerger( AnalysisContext.currentAnalysisContext()
-                    .getLookupFailureCallback(), exceptionSetFactory);
+            ExceptionSetFactory exceptionSetFactory = analysisCache.getMethodAnalysis(ExceptionSetFactory.class, descriptor);
+            return new StandardTypeMerger(AnalysisContext.currentAnalysisContext().getLookupFailureCallback(),
+                    exceptionSetFactory);
         } catch (CheckedAnalysisException e) {
             AnalysisContext.logError("Unable to generate exceptionSetFactory for " + descriptor, e);
+            return null;
         }
-
-
-        this.exceptionHandlerMap = new ExceptionHandlerMap(methodGen, merger);
-        this.usedInstructionSet = new BitSet();
-        this.jsrSubroutineMap = new IdentityHashMap<>();
-        this.subroutineWorkList = new LinkedList<>();
     }
 
     public int getIndex(FieldDescriptor f) {
-        Integer i = addedFields.get(f);
-        if (i != null) {
-            return i;
-        }
-        int index = cpg.addFieldref(f.getSlashedClassName(), f.getName(), f.getSignature());
-        addedFields.put(f, index);
-        return index;
-
+        return optimizer.getIndex(f);
     }
-    public void optimize(InstructionList instructionList) {
-        InstructionHandle head = instructionList.getStart();
-
-        while (head != null) {
-            Instruction i = head.getInstruction();
-
-
-            if (i instanceof INVOKESTATIC) {
-                INVOKESTATIC is = (INVOKESTATIC) i;
-                String name = is.getMethodName(cpg);
-                String signature = is.getSignature(cpg);
-                if (name.startsWith("access$")) {
-                    XMethod invoked = XFactory.createXMethod(is, cpg);
-                    FieldDescriptor field = invoked.getAccessMethodForField();
-                    if (field != null) {
-                        boolean isSetter = signature.endsWith("V");
-                        Instruction replacement;
-                        int index = getIndex(field);
-                        if (field.isStatic()) {
-                            if (isSetter) {
-                                replacement = new PUTSTATIC(index);
-                            } else {
-                                replacement = new GETSTATIC(index);
-                            }
-                        } else {
-                            if (isSetter) {
-                                replacement = new PUTFIELD(index);
-                            } else {
-                                replacement = new GETFIELD(index);
-                            }
-                        }
-                        head.swapInstruction(replacement);
-                        /*
-                            if (false)
-                                System.out.println("Substituting " + (isSetter ? "set" : "get") + " of " + field + " for call of "
-                                    + invoked + " in " + methodGen.getClassName() + "." + methodGen.getName()
-                                    + methodGen.getSignature());
-                         */
-
-                    }
-
-                }
-            }
-            if (i instanceof IfInstruction) {
-                IfInstruction ii = (IfInstruction) i;
-                InstructionHandle target = ii.getTarget();
-                InstructionHandle next = head.getNext();
-                if (target.equals(next)) {
-                    int consumed = ii.consumeStack(methodGen.getConstantPool());
-                    if (consumed != 1 && consumed != 2) {
-                        throw new IllegalStateException();
-                    }
-                    head.swapInstruction(consumed == 1 ? new POP() : new POP2());
-                }
 
-            }
-            if (i instanceof IFNULL || i instanceof IFNONNULL) {
-                IfInstruction ii = (IfInstruction) i;
-                InstructionHandle target = ii.getTarget();
-                InstructionHandle next1 = head.getNext(); // ICONST
-                if (next1 == null) {
-                    break;
-                }
-                if (next1.getInstruction() instanceof ICONST) {
-                    InstructionHandle next2 = next1.getNext(); // GOTO
-                    if (next2 == null) {
-                        break;
-                    }
-                    InstructionHandle next3 = next2.getNext(); // ICONST
-                    if (next3== null) {
-                        break;
-                    }
-                    InstructionHandle next4 = next3.getNext();
-                    if (next4 == null) {
-                        break;
-                    }
-                    if (target.equals(next3)  && next2.getInstruction() instanceof GOTO
-                            && next3.getInstruction() instanceof ICONST && next1.getTargeters().length == 0
-                            && next2.getTargeters().length == 0 && next3.getTargeters().length == 1
-                            && next4.getTargeters().length == 1) {
-                        int c1 = ((ICONST) next1.getInstruction()).getValue().intValue();
-                        GOTO g = (GOTO) next2.getInstruction();
-                        int c2 = ((ICONST) next3.getInstruction()).getValue().intValue();
-                        if (g.getTarget().equals(next4) && (c1 == 1 && c2 == 0 || c1 == 0 && c2 == 1)) {
-                            boolean nullIsTrue = i instanceof IFNULL && c2 == 1 || i instanceof IFNONNULL && c2 == 0;
-
-                            if (nullIsTrue) {
-                                // System.out.println("Found NULL2Z instruction");
-                                head.swapInstruction(new NULL2Z());
-
-                            } else {
-                                // System.out.println("Found NONNULL2Z instruction");
-                                head.swapInstruction(new NONNULL2Z());
-                            }
-                            next3.removeAllTargeters();
-                            next4.removeAllTargeters();
-                            next1.swapInstruction(new NOP());
-                            next2.swapInstruction(new NOP());
-                            next3.swapInstruction(new NOP());
-                        }
-                    }
-                }
-
-            }
-            if (i instanceof ACONST_NULL) {
-                InstructionHandle next = head.getNext();
-                assert next != null;
-                InstructionHandle next2 = next.getNext();
-                if (next2 != null && next.getInstruction() instanceof ALOAD) {
-                    Instruction check = next2.getInstruction();
-                    if (check instanceof IF_ACMPNE || check instanceof IF_ACMPEQ) {
-                        // need to update
-                        head.swapInstruction(new NOP());
-                        IfInstruction ifTest = (IfInstruction) check;
-                        if (check instanceof IF_ACMPNE) {
-                            next2.swapInstruction(new IFNONNULL(ifTest.getTarget()));
-                        } else {
-                            next2.swapInstruction(new IFNULL(ifTest.getTarget()));
-                        }
-                    }
-                }
-            }
-            head = head.getNext();
-        }
+    public void optimize(InstructionList instructionList) {
+        optimizer.optimize(instructionList);
     }
 
     @Override
@@ -827,7 +696,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
 
             // Add exception handler block (ETB) for exception-throwing
             // instructions
-            if (isPEI(handle)) {
+            if (isPEI(methodGen, handle)) {
                 if (DEBUG) {
                     System.out.println("ETB block " + basicBlock.getLabel() + " for " + handle);
                 }
@@ -915,7 +784,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
                     }
 
                     // Is the next instruction a control merge or a PEI?
-                    if (isMerge(next) || isPEI(next)) {
+                    if (isMerge(next) || isPEI(methodGen, next)) {
                         subroutine.addEdgeAndExplore(basicBlock, next, FALL_THROUGH_EDGE);
                         endOfBasicBlock = true;
                     } else {
@@ -973,12 +842,15 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
     /**
      * Return whether or not the given instruction can throw exceptions.
      *
+     * @param methodGen
+     *            the method containing the instruction
      * @param handle
      *            the instruction
      * @return true if the instruction can throw an exception, false otherwise
      * @throws CFGBuilderException
      */
-    private boolean isPEI(InstructionHandle handle) throws CFGBuilderException {
+    static boolean isPEI(MethodGen methodGen, InstructionHandle handle) throws CFGBuilderException {
+        ConstantPoolGen cpg = methodGen.getConstantPool();
         Instruction ins = handle.getInstruction();
 
         if (!(ins instanceof ExceptionThrower)) {
@@ -1009,7 +881,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
         }
         if (ins instanceof GETFIELD && !methodGen.isStatic()) {
             // Assume that GETFIELD on this object is not PEI
-            return !isSafeFieldSource(handle.getPrev());
+            return !isSafeFieldSource(handle.getPrev(), cpg);
         }
         if (ins instanceof PUTFIELD && !methodGen.isStatic()) {
             // Assume that PUTFIELD on this object is not PEI
@@ -1040,7 +912,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
                     if(prevPrev != null && prevPrev.getInstruction() instanceof BranchInstruction) {
                         continue;
                     }
-                    return !isSafeFieldSource(prevPrev);
+                    return !isSafeFieldSource(prevPrev, cpg);
                 }
             }
         }
@@ -1051,7 +923,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
      * @param handle instruction handle which loads the object for further GETFIELD/PUTFIELD operation
      * @return true if this object is known to be non-null
      */
-    private boolean isSafeFieldSource(InstructionHandle handle) {
+    private static boolean isSafeFieldSource(InstructionHandle handle, ConstantPoolGen cpg) {
         while(handle != null && handle.getInstruction().getOpcode() == Const.DUP) {
             // Some compilers generate DUP for field increment code like
             // ALOAD_0 / DUP / GETFIELD x / ICONST_1 / IADD / PUTFIELD x
@@ -1074,7 +946,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
      *            the instruction
      * @return true if the instruction is a control merge, false otherwise
      */
-    private static boolean isMerge(InstructionHandle handle) {
+    static boolean isMerge(InstructionHandle handle) {
         if (handle.hasTargeters()) {
             // Check all targeters of this handle to see if any
             // of them are branches. If so, the instruction is a merge.
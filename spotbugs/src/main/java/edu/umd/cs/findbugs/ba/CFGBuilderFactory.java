@@ -23,6 +23,7 @@ import javax.annotation.Nonnull;
 
 import org.apache.bcel.generic.MethodGen;
 
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
 
@@ -38,6 +39,12 @@ import edu.umd.cs.findbugs.classfile.MethodDescriptor;
  */
 public class CFGBuilderFactory {
 
+    /**
+     * Set the property cfgbuilder.indexed to false to build all CFGs with
+     * {@link BetterCFGBuilder2}.
+     */
+    private static final boolean USE_INDEXED_BUILDER = SystemProperties.getBoolean("cfgbuilder.indexed", true);
+
     /**
      * Create a CFGBuilder to build a CFG for given method.
      *
@@ -46,6 +53,9 @@ public class CFGBuilderFactory {
      * @return a CFGBuilder for the method
      */
     public static CFGBuilder create(@Nonnull MethodDescriptor descriptor, @Nonnull MethodGen methodGen) {
+        if (USE_INDEXED_BUILDER && !IndexedCFGBuilder.hasSubroutines(methodGen)) {
+            return new IndexedCFGBuilder(descriptor, methodGen);
+        }
         return new BetterCFGBuilder2(descriptor, methodGen);
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003,2004 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.bcel.generic.ACONST_NULL;
+import org.apache.bcel.generic.ALOAD;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.GETFIELD;
+import org.apache.bcel.generic.GETSTATIC;
+import org.apache.bcel.generic.GOTO;
+import org.apache.bcel.generic.ICONST;
+import org.apache.bcel.generic.IFNONNULL;
+import org.apache.bcel.generic.IFNULL;
+import org.apache.bcel.generic.IF_ACMPEQ;
+import org.apache.bcel.generic.IF_ACMPNE;
+import org.apache.bcel.generic.INVOKESTATIC;
+import org.apache.bcel.generic.IfInstruction;
+import org.apache.bcel.generic.Instruction;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.NOP;
+import org.apache.bcel.generic.POP;
+import org.apache.bcel.generic.POP2;
+import org.apache.bcel.generic.PUTFIELD;
+import org.apache.bcel.generic.PUTSTATIC;
+
+import edu.umd.cs.findbugs.bcel.generic.NONNULL2Z;
+import edu.umd.cs.findbugs.bcel.generic.NULL2Z;
+import edu.umd.cs.findbugs.classfile.FieldDescriptor;
+
+/**
+ * Rewrites the instructions of a method before its CFG is built: calls of
+ * synthetic field accessors become field accesses, and some branches testing
+ * for null become single instructions.
+ *
+ * @see BetterCFGBuilder2
+ * @see IndexedCFGBuilder
+ */
+final class CFGInstructionOptimizer {
+    private final MethodGen methodGen;
+
+    private final ConstantPoolGen cpg;
+
+    private final Map<FieldDescriptor, Integer> addedFields = new HashMap<>();
+
+    CFGInstructionOptimizer(MethodGen methodGen) {
+        this.methodGen = methodGen;
+        this.cpg = methodGen.getConstantPool();
+    }
+
+    int getIndex(FieldDescriptor f) {
+        Integer i = addedFields.get(f);
+        if (i != null) {
+            return i;
+        }
+        int index = cpg.addFieldref(f.getSlashedClassName(), f.getName(), f.getSignature());
+        addedFields.put(f, index);
+        return index;
+
+    }
+
+    /**
+     * Rewrite the instructions of the method.
+     *
+     * @param instructionList
+     *            the instructions of the method
+     */
+    void optimize(InstructionList instructionList) {
+        InstructionHandle head = instructionList.getStart();
+
+        while (head != null) {
+            Instruction i = head.getInstruction();
+
+
+            if (i instanceof INVOKESTATIC) {
+                INVOKESTATIC is = (INVOKESTATIC) i;
+                String name = is.getMethodName(cpg);
+                String signature = is.getSignature(cpg);
+                if (name.startsWith("access$")) {
+                    XMethod invoked = XFactory.createXMethod(is, cpg);
+                    FieldDescriptor field = invoked.getAccessMethodForField();
+                    if (field != null) {
+                        boolean isSetter = signature.endsWith("V");
+                        Instruction replacement;
+                        int index = getIndex(field);
+                        if (field.isStatic()) {
+                            if (isSetter) {
+                                replacement = new PUTSTATIC(index);
+                            } else {
+                                replacement = new GETSTATIC(index);
+                            }
+                        } else {
+                            if (isSetter) {
+                                replacement = new PUTFIELD(index);
+                            } else {
+                                replacement = new GETFIELD(index);
+                            }
+                        }
+                        head.swapInstruction(replacement);
+                        /*
+                            if (false)
+                                System.out.println("Substituting " + (isSetter ? "set" : "get") + " of " + field + " for call of "
+                                    + invoked + " in " + methodGen.getClassName() + "." + methodGen.getName()
+                                    + methodGen.getSignature());
+                         */
+
+                    }
+
+                }
+            }
+            if (i instanceof IfInstruction) {
+                IfInstruction ii = (IfInstruction) i;
+                InstructionHandle target = ii.getTarget();
+                InstructionHandle next = head.getNext();
+                if (target.equals(next)) {
+                    int consumed = ii.consumeStack(methodGen.getConstantPool());
+                    if (consumed != 1 && consumed != 2) {
+                        throw new IllegalStateException();
+                    }
+                    head.swapInstruction(consumed == 1 ? new POP() : new POP2());
+                }
+
+            }
+            if (i instanceof IFNULL || i instanceof IFNONNULL) {
+                IfInstruction ii = (IfInstruction) i;
+                InstructionHandle target = ii.getTarget();
+                InstructionHandle next1 = head.getNext(); // ICONST
+                if (next1 == null) {
+                    break;
+                }
+                if (next1.getInstruction() instanceof ICONST) {
+                    InstructionHandle next2 = next1.getNext(); // GOTO
+                    if (next2 == null) {
+                        break;
+                    }
+                    InstructionHandle next3 = next2.getNext(); // ICONST
+                    if (next3== null) {
+                        break;
+                    }
+                    InstructionHandle next4 = next3.getNext();
+                    if (next4 == null) {
+                        break;
+                    }
+                    if (target.equals(next3)  && next2.getInstruction() instanceof GOTO
+                            && next3.getInstruction() instanceof ICONST && next1.getTargeters().length == 0
+                            && next2.getTargeters().length == 0 && next3.getTargeters().length == 1
+                            && next4.getTargeters().length == 1) {
+                        int c1 = ((ICONST) next1.getInstruction()).getValue().intValue();
+                        GOTO g = (GOTO) next2.getInstruction();
+                        int c2 = ((ICONST) next3.getInstruction()).getValue().intValue();
+                        if (g.getTarget().equals(next4) && (c1 == 1 && c2 == 0 || c1 == 0 && c2 == 1)) {
+                            boolean nullIsTrue = i instanceof IFNULL && c2 == 1 || i instanceof IFNONNULL && c2 == 0;
+
+                            if (nullIsTrue) {
+                                // System.out.println("Found NULL2Z instruction");
+                                head.swapInstruction(new NULL2Z());
+
+                            } else {
+                                // System.out.println("Found NONNULL2Z instruction");
+                                head.swapInstruction(new NONNULL2Z());
+                            }
+                            next3.removeAllTargeters();
+                            next4.removeAllTargeters();
+                            next1.swapInstruction(new NOP());
+                            next2.swapInstruction(new NOP());
+                            next3.swapInstruction(new NOP());
+                        }
+                    }
+                }
+
+            }
+            if (i instanceof ACONST_NULL) {
+                InstructionHandle next = head.getNext();
+                assert next != null;
+                InstructionHandle next2 = next.getNext();
+                if (next2 != null && next.getInstruction() instanceof ALOAD) {
+                    Instruction check = next2.getInstruction();
+                    if (check instanceof IF_ACMPNE || check instanceof IF_ACMPEQ) {
+                        // need to update
+                        head.swapInstruction(new NOP());
+                        IfInstruction ifTest = (IfInstruction) check;
+                        if (check instanceof IF_ACMPNE) {
+                            next2.swapInstruction(new IFNONNULL(ifTest.getTarget()));
+                        } else {
+                            next2.swapInstruction(new IFNULL(ifTest.getTarget()));
+                        }
+                    }
+                }
+            }
+            head = head.getNext();
+        }
+    }
+}
@@ -288,7 +288,7 @@ public class CheckReturnAnnotationDatabase extends AnnotationDatabase<CheckRetur
             // BuildCheckReturnAnnotationDatabase does not visit non-application classes,
             // so we need to check package info dynamically
 
-            return packageInfoCache.computeIfAbsent(m.getPackageName(), this::parsePackage);
+            return getPackageAnnotation(m.getPackageName());
         }
         return annotationOnMethod;
     }
@@ -302,8 +302,28 @@ public class CheckReturnAnnotationDatabase extends AnnotationDatabase<CheckRetur
     @SlashedClassName
     private static final String NAME_OF_CAN_IGNORE_RETURN_VALUE = "com/google/errorprone/annotations/CanIgnoreReturnValue";
 
+    /** Guarded by itself, since several analysis threads look up packages at once. */
     private final Map<String, CheckReturnValueAnnotation> packageInfoCache = new HashMap<>();
 
+    @CheckForNull
+    private CheckReturnValueAnnotation getPackageAnnotation(@DottedClassName String packageName) {
+        synchronized (packageInfoCache) {
+            CheckReturnValueAnnotation annotation = packageInfoCache.get(packageName);
+            if (annotation != null) {
+                return annotation;
+            }
+        }
+        // Parse without holding the lock, as looking up the class may wait
+        // for another thread
+        CheckReturnValueAnnotation annotation = parsePackage(packageName);
+        if (annotation != null) {
+            synchronized (packageInfoCache) {
+                packageInfoCache.put(packageName, annotation);
+            }
+        }
+        return annotation;
+    }
+
     /**
      * Try to find default {@link CheckReturnValueAnnotation} for methods inside of target class.
      *
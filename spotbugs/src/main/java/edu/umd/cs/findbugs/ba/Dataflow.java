@@ -20,8 +20,12 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.apache.bcel.generic.InstructionHandle;
@@ -34,6 +38,8 @@ import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.log.DataflowMetrics;
 
 /**
  * Perform dataflow analysis on a method using a control flow graph. Both
@@ -63,6 +69,12 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
     private int numIterations;
 
+    private long numBlockTransfers;
+
+    private long numMeets;
+
+    private long numFactsCreated;
+
     public static boolean DEBUG = SystemProperties.getBoolean("dataflow.debug");
 
     /**
@@ -103,6 +115,15 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
     // Maximum number of iterations before we assume there is a bug and give up.
     private static final int MAX_ITERS = SystemProperties.getInt("dataflow.maxiters", 97);
 
+    /**
+     * "worklist" or "sweep" to use that solver for every analysis, instead of
+     * the one selected by {@link DataflowAnalysis#useWorklistSolver()}
+     */
+    private static final String SOLVER = SystemProperties.getProperty("dataflow.solver");
+
+    /** The analysis budget is checked every 64 block transfers */
+    private static final int BUDGET_CHECK_MASK = 63;
+
     private String getFullyQualifiedMethodName() {
         String methodName;
         MethodGen methodGen = cfg.getMethodGen();
@@ -140,6 +161,43 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
      * points of each block.
      */
     public void execute() throws DataflowAnalysisException {
+        long start = System.nanoTime();
+        try {
+            solve();
+        } finally {
+            recordMetrics(System.nanoTime() - start);
+        }
+    }
+
+    private void recordMetrics(long nanos) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        if (analysisCache == null) {
+            return;
+        }
+        DataflowMetrics metrics = analysisCache.getProfiler().getDataflowMetrics();
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        String analysisName = (getClass() != Dataflow.class ? this : analysis).getClass().getName();
+        metrics.record(
+                new DataflowMetrics.Run(analysisName, getFullyQualifiedMethodName(), cfg.getNumBasicBlocks(), numIterations,
+                        numBlockTransfers, numMeets, numFactsCreated, nanos));
+    }
+
+    private boolean useWorklistSolver() {
+        if ("worklist".equals(SOLVER)) {
+            return true;
+        } else if ("sweep".equals(SOLVER)) {
+            return false;
+        }
+        return analysis.useWorklistSolver();
+    }
+
+    private void solve() throws DataflowAnalysisException {
+        if (useWorklistSolver() && !DEBUG) {
+            solveWithWorklist();
+            return;
+        }
         boolean change;
         boolean debugWas = DEBUG;
         if (DEBUG) {
@@ -316,6 +374,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
                         // Apply the edge transfer function.
                         Fact edgeFact = analysis.createFact();
+                        ++numFactsCreated;
                         analysis.copy(predFact, edgeFact);
                         analysis.edgeTransfer(edge, edgeFact);
 
@@ -339,12 +398,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
                             }
                         }
 
-                        if (analysis instanceof UnconditionalValueDerefAnalysis) {
-                            ((UnconditionalValueDerefAnalysis) analysis).meetInto((UnconditionalValueDerefSet) edgeFact,
-                                    edge, (UnconditionalValueDerefSet) start, rawPredCount == 1);
-                        } else {
-                            analysis.meetInto(edgeFact, edge, start);
-                        }
+                        meetInto(edgeFact, edge, start, rawPredCount == 1);
                         analysis.setLastUpdateTimestamp(start, timestamp);
 
                         int pos = -1;
@@ -367,6 +421,7 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
                 Fact origResult = null;
                 if (!resultWasTop) {
                     origResult = analysis.createFact();
+                    ++numFactsCreated;
                     analysis.copy(result, origResult);
                 }
 
@@ -374,6 +429,9 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
                 // Apply the transfer function.
 
                 analysis.transfer(block, null, start, result);
+                if ((++numBlockTransfers & BUDGET_CHECK_MASK) == 0) {
+                    AnalysisBudget.check();
+                }
                 //                } else {
                 //                    analysis.copy(start, result);
                 //                }
@@ -439,6 +497,99 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
         DEBUG = debugWas;
     }
 
+    /**
+     * Solve with a worklist ordered by the block order. The block with the
+     * lowest rank is processed first, and a block is processed again only
+     * when the result fact of one of its logical predecessors changed. The
+     * number of iterations is the number of times the most visited block was
+     * processed.
+     */
+    private void solveWithWorklist() throws DataflowAnalysisException {
+        List<BasicBlock> blocks = new ArrayList<>();
+        int[] rank = new int[cfg.getNumVertexLabels()];
+        Arrays.fill(rank, -1);
+        for (Iterator<BasicBlock> i = blockOrder.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            rank[block.getLabel()] = blocks.size();
+            blocks.add(block);
+        }
+        int[] visits = new int[blocks.size()];
+        BitSet worklist = new BitSet(blocks.size());
+        worklist.set(0, blocks.size());
+        BasicBlock entry = logicalEntryBlock();
+        int timestamp = 0;
+
+        analysis.startIteration();
+        for (int r = worklist.nextSetBit(0); r >= 0; r = worklist.nextSetBit(0)) {
+            worklist.clear(r);
+            BasicBlock block = blocks.get(r);
+            if (++visits[r] > numIterations) {
+                numIterations = visits[r];
+                if (numIterations >= MAX_ITERS + 9) {
+                    throw new DataflowAnalysisException("Too many iterations (" + numIterations + ") in dataflow when analyzing "
+                            + getFullyQualifiedMethodName());
+                }
+            }
+
+            // Meet all of the logical predecessor results into the start fact
+            Fact start = analysis.getStartFact(block);
+            analysis.makeFactTop(start);
+            if (block == entry) {
+                analysis.initEntryFact(start);
+            } else {
+                boolean onlyPredecessor = (isForwards ? cfg.getNumIncomingEdges(block) : cfg.getNumOutgoingEdges(block)) == 1;
+                Iterator<Edge> predEdgeIter = logicalPredecessorEdgeIterator(block);
+                while (predEdgeIter.hasNext()) {
+                    Edge edge = predEdgeIter.next();
+                    BasicBlock logicalPred = isForwards ? edge.getSource() : edge.getTarget();
+                    Fact edgeFact = analysis.createFact();
+                    ++numFactsCreated;
+                    analysis.copy(analysis.getResultFact(logicalPred), edgeFact);
+                    analysis.edgeTransfer(edge, edgeFact);
+                    meetInto(edgeFact, edge, start, onlyPredecessor);
+                    analysis.setLastUpdateTimestamp(start, timestamp);
+                }
+            }
+
+            // Apply the transfer function, and see if the result changed
+            Fact result = analysis.getResultFact(block);
+            boolean resultWasTop = analysis.isTop(result);
+            Fact origResult = null;
+            if (!resultWasTop) {
+                origResult = analysis.createFact();
+                ++numFactsCreated;
+                analysis.copy(result, origResult);
+            }
+            analysis.transfer(block, null, start, result);
+            if ((++numBlockTransfers & BUDGET_CHECK_MASK) == 0) {
+                AnalysisBudget.check();
+            }
+            boolean changed = resultWasTop ? !analysis.isTop(result) : !analysis.same(result, origResult);
+            if (changed) {
+                analysis.setLastUpdateTimestamp(result, ++timestamp);
+                Iterator<Edge> succEdgeIter = isForwards ? cfg.outgoingEdgeIterator(block) : cfg.incomingEdgeIterator(block);
+                while (succEdgeIter.hasNext()) {
+                    Edge edge = succEdgeIter.next();
+                    int succRank = rank[(isForwards ? edge.getTarget() : edge.getSource()).getLabel()];
+                    if (succRank >= 0) {
+                        worklist.set(succRank);
+                    }
+                }
+            }
+        }
+        analysis.finishIteration();
+    }
+
+    private void meetInto(Fact edgeFact, Edge edge, Fact start, boolean onlyPredecessor) throws DataflowAnalysisException {
+        if (analysis instanceof UnconditionalValueDerefAnalysis) {
+            ((UnconditionalValueDerefAnalysis) analysis).meetInto((UnconditionalValueDerefSet) edgeFact, edge,
+                    (UnconditionalValueDerefSet) start, onlyPredecessor);
+        } else {
+            analysis.meetInto(edgeFact, edge, start);
+        }
+        ++numMeets;
+    }
+
     private void reportAnalysis(String msg) {
         String shortAnalysisName = analysis.getClass().getName();
         int pkgEnd = shortAnalysisName.lastIndexOf('.');
@@ -473,6 +624,20 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
         return numIterations;
     }
 
+    /**
+     * Return the number of times the block transfer function was applied.
+     */
+    public long getNumBlockTransfers() {
+        return numBlockTransfers;
+    }
+
+    /**
+     * Return the number of meet operations.
+     */
+    public long getNumMeets() {
+        return numMeets;
+    }
+
     /**
      * Get dataflow facts for start of given block.
      */
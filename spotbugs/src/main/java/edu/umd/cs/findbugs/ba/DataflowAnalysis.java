@@ -195,6 +195,21 @@ public interface DataflowAnalysis<Fact> {
      */
     public void finishIteration();
 
+    /**
+     * Return whether {@link Dataflow} should solve this analysis with a
+     * worklist, revisiting only the logical successors of blocks whose result
+     * fact changed, instead of sweeping over every block until nothing
+     * changes. This is only correct if the transfer, edge transfer and meet
+     * functions depend on their input facts alone, not on how often or in
+     * which order blocks are visited. In worklist mode,
+     * {@link #startIteration()} and {@link #finishIteration()} are called
+     * once. Returns false by default, so analyses are swept unless they opt
+     * in.
+     */
+    public default boolean useWorklistSolver() {
+        return false;
+    }
+
     public int getLastUpdateTimestamp(Fact fact);
 
     public void setLastUpdateTimestamp(Fact fact, int timestamp);
@@ -182,16 +182,16 @@ public class FieldSummary {
 
         }
 
+        // the item may be shared by the opcode stacks of several detectors,
+        // and the summary is updated in place
+        mergeValue = new OpcodeStack.Item(mergeValue);
         OpcodeStack.Item oldSummary = summary.get(fieldOperand);
         if (oldSummary != null) {
             Item newValue = OpcodeStack.Item.merge(mergeValue, oldSummary);
             newValue.clearNewlyAllocated();
             summary.put(fieldOperand, newValue);
         } else {
-            if (mergeValue.isNewlyAllocated()) {
-                mergeValue = new OpcodeStack.Item(mergeValue);
-                mergeValue.clearNewlyAllocated();
-            }
+            mergeValue.clearNewlyAllocated();
             summary.put(fieldOperand, mergeValue);
         }
     }
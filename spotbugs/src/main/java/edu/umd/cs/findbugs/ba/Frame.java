@@ -21,7 +21,7 @@ package edu.umd.cs.findbugs.ba;
 
 import static edu.umd.cs.findbugs.ba.Debug.VERIFY_INTEGRITY;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
@@ -51,6 +51,12 @@ import edu.umd.cs.findbugs.SystemProperties;
  * Typically, only initEntryFact() will need to do this.
  * </p>
  * <p>
+ * The slots are kept in an array which is shared by copies of the frame made
+ * with copyFrom(), and only copied when one of the frames sharing it is
+ * modified. Most facts are copies of other facts which are never modified, or
+ * only in a few slots, so this avoids allocating a new array for every copy.
+ * </p>
+ * <p>
  * A Frame may have the special "TOP" value. Such frames serve as the identity
  * element for the meet operation operation.
  * </p>
@@ -76,8 +82,20 @@ public abstract class Frame<ValueType> {
 
     /**
      * Array storing the values of local variables and operand stack slots.
+     * Only the first numSlots elements are used. The array may be shared with
+     * other frames, in which case it must be copied before being modified.
+     */
+    private ValueType[] slots;
+
+    /**
+     * Number of slots (locals plus stack values) in use.
+     */
+    private int numSlots;
+
+    /**
+     * Flag marking the slots array as shared with another frame.
      */
-    private ArrayList<ValueType> slotList;
+    private boolean slotsShared;
 
     /**
      * Flag marking this frame as a special "TOP" value. Such Frames serve as
@@ -108,11 +126,33 @@ public abstract class Frame<ValueType> {
      * @param numLocals
      *            number of local variable slots in the method
      */
+    @SuppressWarnings("unchecked")
     public Frame(int numLocals) {
         this.numLocals = numLocals;
-        this.slotList = new ArrayList<>(numLocals + DEFAULT_STACK_CAPACITY);
-        for (int i = 0; i < numLocals; ++i) {
-            slotList.add(null);
+        this.slots = (ValueType[]) new Object[numLocals + DEFAULT_STACK_CAPACITY];
+        this.numSlots = numLocals;
+    }
+
+    /**
+     * Make sure the slots array is owned by this frame and can hold the given
+     * number of slots, copying it if needed.
+     *
+     * @param capacity
+     *            the number of slots the array must be able to hold
+     */
+    private void prepareForWrite(int capacity) {
+        if (capacity > slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(capacity, slots.length + (slots.length >> 1)));
+            slotsShared = false;
+        } else if (slotsShared) {
+            slots = slots.clone();
+            slotsShared = false;
+        }
+    }
+
+    private void checkSlot(int n) {
+        if (n < 0 || n >= numSlots) {
+            throw new IndexOutOfBoundsException("Index: " + n + ", Size: " + numSlots);
         }
     }
 
@@ -178,7 +218,8 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new IllegalStateException("accessing top or bottom frame");
         }
-        slotList.add(value);
+        prepareForWrite(numSlots + 1);
+        slots[numSlots++] = value;
     }
 
     /**
@@ -192,10 +233,14 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new DataflowAnalysisException("accessing top or bottom frame");
         }
-        if (slotList.size() == numLocals) {
+        if (numSlots == numLocals) {
             throw new DataflowAnalysisException("operand stack empty");
         }
-        return slotList.remove(slotList.size() - 1);
+        ValueType value = slots[--numSlots];
+        if (!slotsShared) {
+            slots[numSlots] = null;
+        }
+        return value;
     }
 
     /**
@@ -208,11 +253,11 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new DataflowAnalysisException("accessing top or bottom frame");
         }
-        assert slotList.size() >= numLocals;
-        if (slotList.size() == numLocals) {
+        assert numSlots >= numLocals;
+        if (numSlots == numLocals) {
             throw new DataflowAnalysisException("operand stack is empty");
         }
-        return slotList.get(slotList.size() - 1);
+        return slots[numSlots - 1];
     }
 
     /**
@@ -225,10 +270,7 @@ public abstract class Frame<ValueType> {
         if (valueList.length > stackDepth) {
             throw new DataflowAnalysisException("not enough values on stack");
         }
-        int numSlots = slotList.size();
-        for (int i = numSlots - valueList.length, j = 0; i < numSlots; ++i, ++j) {
-            valueList[j] = slotList.get(i);
-        }
+        System.arraycopy(slots, numSlots - valueList.length, valueList, 0, valueList.length);
     }
 
     /**
@@ -249,8 +291,7 @@ public abstract class Frame<ValueType> {
         if (loc < 0) {
             throw new DataflowAnalysisException("can't get position " + loc + " of stack");
         }
-        int pos = slotList.size() - (loc + 1);
-        return slotList.get(pos);
+        return slots[numSlots - (loc + 1)];
     }
 
     /**
@@ -265,7 +306,7 @@ public abstract class Frame<ValueType> {
         if (loc >= stackDepth) {
             throw new DataflowAnalysisException("not enough values on stack: access=" + loc + ", avail=" + stackDepth);
         }
-        return slotList.size() - (loc + 1);
+        return numSlots - (loc + 1);
     }
 
     /**
@@ -427,7 +468,7 @@ public abstract class Frame<ValueType> {
             throw new IllegalArgumentException();
         }
 
-        return (slotList.size() - numArguments) + i;
+        return (numSlots - numArguments) + i;
     }
 
     /**
@@ -488,17 +529,18 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new IllegalStateException("accessing top or bottom frame");
         }
-        assert slotList.size() >= numLocals;
-        if (slotList.size() > numLocals) {
-            slotList.subList(numLocals, slotList.size()).clear();
+        assert numSlots >= numLocals;
+        if (!slotsShared) {
+            Arrays.fill(slots, numLocals, numSlots, null);
         }
+        numSlots = numLocals;
     }
 
     /**
      * Get the depth of the Java operand stack.
      */
     public int getStackDepth() {
-        return slotList.size() - numLocals;
+        return numSlots - numLocals;
     }
 
     /**
@@ -512,15 +554,15 @@ public abstract class Frame<ValueType> {
      * Get the number of slots (locals plus stack values).
      */
     public int getNumSlots() {
-        return slotList.size();
+        return numSlots;
     }
 
     public boolean contains(ValueType value) {
         if (!isValid()) {
             throw new IllegalStateException("accessing top or bottom frame");
         }
-        for (ValueType v : slotList) {
-            if (v.equals(value)) {
+        for (int i = 0; i < numSlots; ++i) {
+            if (slots[i].equals(value)) {
                 return true;
             }
         }
@@ -538,7 +580,8 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new IllegalStateException("accessing top or bottom frame");
         }
-        return slotList.get(n);
+        checkSlot(n);
+        return slots[n];
     }
 
     /**
@@ -556,7 +599,12 @@ public abstract class Frame<ValueType> {
         if (!isValid()) {
             throw new IllegalStateException("accessing top or bottom frame");
         }
-        slotList.set(n, value);
+        checkSlot(n);
+        if (slots[n] == value) {
+            return;
+        }
+        prepareForWrite(numSlots);
+        slots[n] = value;
     }
 
     /**
@@ -584,12 +632,18 @@ public abstract class Frame<ValueType> {
             return true;
         }
 
-        if (getNumSlots() != other.getNumSlots()) {
+        if (numSlots != other.numSlots) {
             return false;
         }
 
-        for (int i = 0; i < getNumSlots(); ++i) {
-            if (!getValue(i).equals(other.getValue(i))) {
+        if (slots == other.slots) {
+            return true;
+        }
+
+        for (int i = 0; i < numSlots; ++i) {
+            ValueType value = slots[i];
+            ValueType otherValue = other.slots[i];
+            if (value != otherValue && !value.equals(otherValue)) {
                 return false;
             }
         }
@@ -605,7 +659,12 @@ public abstract class Frame<ValueType> {
      */
     public void copyFrom(Frame<ValueType> other) {
         lastUpdateTimestamp = other.lastUpdateTimestamp;
-        slotList = new ArrayList<>(other.slotList);
+        if (other != this) {
+            slots = other.slots;
+            numSlots = other.numSlots;
+            slotsShared = true;
+            other.slotsShared = true;
+        }
         isTop = other.isTop;
         isBottom = other.isBottom;
     }
@@ -665,10 +724,7 @@ public abstract class Frame<ValueType> {
      *         stack slots
      */
     public Collection<ValueType> allSlots() {
-        if (slotList == null) {
-            return Collections.<ValueType> emptyList();
-        }
-        return Collections.<ValueType> unmodifiableCollection(slotList);
+        return Collections.<ValueType> unmodifiableList(Arrays.asList(slots).subList(0, numSlots));
     }
 
     /**
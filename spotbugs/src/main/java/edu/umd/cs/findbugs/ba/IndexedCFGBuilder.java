@@ -0,0 +1,443 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003,2004 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.CodeExceptionGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.GotoInstruction;
+import org.apache.bcel.generic.INVOKESTATIC;
+import org.apache.bcel.generic.IfInstruction;
+import org.apache.bcel.generic.Instruction;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.NOP;
+import org.apache.bcel.generic.ReturnInstruction;
+import org.apache.bcel.generic.Select;
+
+import edu.umd.cs.findbugs.ba.type.TypeMerger;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * A CFGBuilder for methods without JSR subroutines. It builds the same CFG as
+ * {@link BetterCFGBuilder2}, with the same block labels and edge order, but
+ * works on instruction indices: the blocks and edges are first recorded in int
+ * arrays, and the BasicBlocks and Edges of the result are only allocated once,
+ * in the order in which BetterCFGBuilder2 would allocate them when inlining its
+ * top level subroutine.
+ *
+ * @see CFGBuilderFactory
+ */
+public class IndexedCFGBuilder implements CFGBuilder, EdgeTypes, Debug {
+
+    /** Block index of the entry block. */
+    private static final int ENTRY = 0;
+
+    /** Block index of the exit block. */
+    private static final int EXIT = 1;
+
+    private static final int RETURN_BLOCK = 1;
+
+    private static final int EXIT_BLOCK = 2;
+
+    private static final int UNHANDLED_EXCEPTION_BLOCK = 4;
+
+    private final MethodGen methodGen;
+
+    private final ConstantPoolGen cpg;
+
+    private final TypeMerger merger;
+
+    private final CFGInstructionOptimizer optimizer;
+
+    private InstructionHandle[] handles;
+
+    private int[] indexByPosition;
+
+    private CodeExceptionGen[] exceptionHandlers;
+
+    private int[] handlerStartPosition;
+
+    private int[] handlerEndPosition;
+
+    private boolean[] universalHandler;
+
+    /** The (merged) handler starting at each instruction, or null. */
+    private CodeExceptionGen[] handlerForStart;
+
+    /** The block starting at each instruction (its ETB for PEIs), or -1. */
+    private int[] blockForStart;
+
+    private int numBlocks;
+
+    private int[] blockStart;
+
+    private int[] blockEnd;
+
+    private int[] blockThrower;
+
+    private int[] blockFlags;
+
+    private int[] firstEdge;
+
+    private int[] lastEdge;
+
+    private int numEdges;
+
+    private int[] edgeTarget;
+
+    private int[] edgeType;
+
+    private int[] nextEdge;
+
+    private int[] workList;
+
+    private int workListHead;
+
+    private int workListTail;
+
+    private CFG cfg;
+
+    /**
+     * Constructor.
+     *
+     * @param descriptor
+     *            the method
+     * @param methodGen
+     *            the method, which must not contain JSR subroutines
+     */
+    public IndexedCFGBuilder(@Nonnull MethodDescriptor descriptor, @Nonnull MethodGen methodGen) {
+        this.methodGen = methodGen;
+        this.cpg = methodGen.getConstantPool();
+        this.merger = BetterCFGBuilder2.createTypeMerger(descriptor);
+        this.optimizer = new CFGInstructionOptimizer(methodGen);
+    }
+
+    /**
+     * Does the given method use JSR subroutines? Such methods must be handled
+     * by {@link BetterCFGBuilder2}, which inlines the subroutines.
+     */
+    public static boolean hasSubroutines(MethodGen methodGen) {
+        InstructionList il = methodGen.getInstructionList();
+        for (InstructionHandle handle = il.getStart(); handle != null; handle = handle.getNext()) {
+            short opcode = handle.getInstruction().getOpcode();
+            if (opcode == Const.JSR || opcode == Const.JSR_W || opcode == Const.RET) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void build() throws CFGBuilderException {
+        InstructionList instructionList = methodGen.getInstructionList();
+        optimizer.optimize(instructionList);
+        handles = instructionList.getInstructionHandles();
+        int n = handles.length;
+        indexByPosition = new int[handles[n - 1].getPosition() + 1];
+        for (int i = 0; i < n; i++) {
+            indexByPosition[handles[i].getPosition()] = i;
+        }
+        buildExceptionHandlers();
+
+        blockForStart = new int[n];
+        Arrays.fill(blockForStart, -1);
+        int capacity = 2 + n / 2;
+        blockStart = new int[capacity];
+        blockEnd = new int[capacity];
+        blockThrower = new int[capacity];
+        blockFlags = new int[capacity];
+        firstEdge = new int[capacity];
+        lastEdge = new int[capacity];
+        workList = new int[capacity];
+        edgeTarget = new int[capacity];
+        edgeType = new int[capacity];
+        nextEdge = new int[capacity];
+        allocateBlock(-1);
+        allocateBlock(-1);
+
+        buildBlocks();
+        cfg = createCFG();
+
+        // Add a NOP instruction to the entry block.
+        // This allows analyses to construct a Location
+        // representing the entry to the method.
+        BasicBlock entryBlock = cfg.getEntry();
+        InstructionList il = new InstructionList();
+        entryBlock.addInstruction(il.append(new NOP()));
+
+        cfg.checkIntegrity();
+    }
+
+    @Override
+    public CFG getCFG() {
+        return cfg;
+    }
+
+    private int indexOf(InstructionHandle handle) {
+        return indexByPosition[handle.getPosition()];
+    }
+
+    /**
+     * Index the exception handler table, merging the handlers which share a
+     * start instruction the way {@link ExceptionHandlerMap} does.
+     */
+    private void buildExceptionHandlers() {
+        exceptionHandlers = methodGen.getExceptionHandlers();
+        int h = exceptionHandlers.length;
+        handlerStartPosition = new int[h];
+        handlerEndPosition = new int[h];
+        universalHandler = new boolean[h];
+        handlerForStart = new CodeExceptionGen[handles.length];
+        for (int i = 0; i < h; i++) {
+            CodeExceptionGen exceptionHandler = exceptionHandlers[i];
+            handlerStartPosition[i] = exceptionHandler.getStartPC().getPosition();
+            handlerEndPosition[i] = exceptionHandler.getEndPC().getPosition();
+            universalHandler[i] = Hierarchy.isUniversalExceptionHandler(exceptionHandler.getCatchType());
+            int start = indexOf(exceptionHandler.getHandlerPC());
+            handlerForStart[start] = ExceptionHandlerMap.merge(merger, handlerForStart[start], exceptionHandler);
+        }
+    }
+
+    private int allocateBlock(int start) {
+        if (numBlocks == blockStart.length) {
+            int capacity = 2 * numBlocks;
+            blockStart = Arrays.copyOf(blockStart, capacity);
+            blockEnd = Arrays.copyOf(blockEnd, capacity);
+            blockThrower = Arrays.copyOf(blockThrower, capacity);
+            blockFlags = Arrays.copyOf(blockFlags, capacity);
+            firstEdge = Arrays.copyOf(firstEdge, capacity);
+            lastEdge = Arrays.copyOf(lastEdge, capacity);
+            workList = Arrays.copyOf(workList, capacity);
+        }
+        int block = numBlocks++;
+        blockStart[block] = start;
+        blockEnd[block] = start - 1;
+        blockThrower[block] = -1;
+        firstEdge[block] = -1;
+        lastEdge[block] = -1;
+        return block;
+    }
+
+    private void addEdge(int source, int target, @Edge.Type int type) {
+        if (VERIFY_INTEGRITY && target > EXIT && blockForStart[blockStart[target]] == target
+                && handlerForStart[blockStart[target]] != null && type != HANDLED_EXCEPTION_EDGE) {
+            throw new IllegalStateException("In method " + SignatureConverter.convertMethodSignature(methodGen)
+                    + ": exception handler " + handles[blockStart[target]] + " reachable by non exception edge type " + type);
+        }
+        if (numEdges == edgeTarget.length) {
+            int capacity = 2 * numEdges;
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeType = Arrays.copyOf(edgeType, capacity);
+            nextEdge = Arrays.copyOf(nextEdge, capacity);
+        }
+        int edge = numEdges++;
+        edgeTarget[edge] = target;
+        edgeType[edge] = type;
+        nextEdge[edge] = -1;
+        if (firstEdge[source] < 0) {
+            firstEdge[source] = edge;
+        } else {
+            nextEdge[lastEdge[source]] = edge;
+        }
+        lastEdge[source] = edge;
+    }
+
+    /**
+     * Add an edge to the block starting at the given instruction, creating the
+     * block if there isn't one yet.
+     */
+    private void addEdgeAndExplore(int source, int target, @Edge.Type int type) {
+        int targetBlock = blockForStart[target];
+        if (targetBlock < 0) {
+            targetBlock = allocateBlock(target);
+            blockForStart[target] = targetBlock;
+            workList[workListTail++] = targetBlock;
+        }
+        addEdge(source, targetBlock, type);
+    }
+
+    /**
+     * Record the blocks of the method and their edges. Blocks are numbered in
+     * the order BetterCFGBuilder2 allocates them in its subroutine CFG.
+     */
+    private void buildBlocks() throws CFGBuilderException {
+        int n = handles.length;
+        boolean[] isMerge = new boolean[n];
+        boolean[] isPEI = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            isMerge[i] = BetterCFGBuilder2.isMerge(handles[i]);
+            isPEI[i] = BetterCFGBuilder2.isPEI(methodGen, handles[i]);
+        }
+        boolean[] visited = new boolean[n];
+
+        addEdgeAndExplore(ENTRY, 0, START_EDGE);
+        while (workListHead < workListTail) {
+            int basicBlock = workList[workListHead++];
+            int index = blockStart[basicBlock];
+
+            // Add exception handler block (ETB) for exception-throwing
+            // instructions
+            if (isPEI[index]) {
+                handleExceptions(index, basicBlock);
+                int body = allocateBlock(index);
+                addEdge(basicBlock, body, FALL_THROUGH_EDGE);
+                basicBlock = body;
+            }
+
+            // Add instructions until we get to the end of the block
+            while (true) {
+                InstructionHandle handle = handles[index];
+                if (visited[index]) {
+                    throw new CFGBuilderException("Instruction " + handle + " visited in multiple subroutines");
+                }
+                visited[index] = true;
+                blockEnd[basicBlock] = index;
+
+                Instruction ins = handle.getInstruction();
+                if (ins instanceof GotoInstruction) {
+                    addEdgeAndExplore(basicBlock, indexOf(((GotoInstruction) ins).getTarget()), GOTO_EDGE);
+                    break;
+                } else if (ins instanceof IfInstruction) {
+                    addEdgeAndExplore(basicBlock, indexOf(((IfInstruction) ins).getTarget()), IFCMP_EDGE);
+                    addEdgeAndExplore(basicBlock, index + 1, FALL_THROUGH_EDGE);
+                    break;
+                } else if (ins instanceof Select) {
+                    Select select = (Select) ins;
+                    for (InstructionHandle target : select.getTargets()) {
+                        addEdgeAndExplore(basicBlock, indexOf(target), SWITCH_EDGE);
+                    }
+                    addEdgeAndExplore(basicBlock, indexOf(select.getTarget()), SWITCH_DEFAULT_EDGE);
+                    break;
+                } else if (ins instanceof ReturnInstruction) {
+                    blockFlags[basicBlock] |= RETURN_BLOCK;
+                    break;
+                } else if (ins.getOpcode() == Const.ATHROW) {
+                    handleExceptions(index, basicBlock);
+                    break;
+                } else if (ins.getOpcode() == Const.INVOKESTATIC && isExit((INVOKESTATIC) ins)) {
+                    blockFlags[basicBlock] |= EXIT_BLOCK;
+                    break;
+                }
+
+                int next = index + 1;
+                if (next == n) {
+                    throw new CFGBuilderException("Control falls off end of method: " + handle);
+                }
+
+                // Is the next instruction a control merge or a PEI?
+                if (isMerge[next] || isPEI[next]) {
+                    addEdgeAndExplore(basicBlock, next, FALL_THROUGH_EDGE);
+                    break;
+                }
+                index = next;
+            }
+        }
+    }
+
+    private boolean isExit(INVOKESTATIC ins) {
+        return "java.lang.System".equals(ins.getClassName(cpg)) && "exit".equals(ins.getName(cpg))
+                && "(I)V".equals(ins.getSignature(cpg));
+    }
+
+    /**
+     * Add edges from an exception thrower block to the handlers of its
+     * instruction, in the order of the exception handler table.
+     */
+    private void handleExceptions(int pei, int etb) {
+        blockThrower[etb] = pei;
+
+        int position = handles[pei].getPosition();
+        for (int i = 0; i < exceptionHandlers.length; i++) {
+            if (position >= handlerStartPosition[i] && position <= handlerEndPosition[i]) {
+                addEdgeAndExplore(etb, indexOf(exceptionHandlers[i].getHandlerPC()), HANDLED_EXCEPTION_EDGE);
+
+                // No lower-priority handler can be reached, and the
+                // exception cannot propagate out of the method.
+                if (universalHandler[i]) {
+                    return;
+                }
+            }
+        }
+        blockFlags[etb] |= UNHANDLED_EXCEPTION_BLOCK;
+    }
+
+    /**
+     * Create the CFG, allocating its blocks breadth first from the start
+     * block, following the edges in the order they were created.
+     */
+    private CFG createCFG() {
+        CFG result = new CFG();
+        BasicBlock[] resultBlocks = new BasicBlock[numBlocks];
+        resultBlocks[ENTRY] = result.getEntry();
+        resultBlocks[EXIT] = result.getExit();
+
+        int startBlock = blockForStart[0];
+        resultBlocks[startBlock] = result.allocate();
+        result.createEdge(result.getEntry(), resultBlocks[startBlock], START_EDGE);
+
+        workListHead = 0;
+        workListTail = 0;
+        workList[workListTail++] = startBlock;
+        while (workListHead < workListTail) {
+            int block = workList[workListHead++];
+            BasicBlock resultBlock = resultBlocks[block];
+
+            for (int i = blockStart[block]; i <= blockEnd[block]; i++) {
+                resultBlock.addInstruction(handles[i]);
+            }
+            if (blockThrower[block] >= 0) {
+                resultBlock.setExceptionThrower(handles[blockThrower[block]]);
+            }
+            if (blockForStart[blockStart[block]] == block) {
+                CodeExceptionGen exceptionGen = handlerForStart[blockStart[block]];
+                if (exceptionGen != null) {
+                    resultBlock.setExceptionGen(null, exceptionGen);
+                }
+            }
+
+            for (int edge = firstEdge[block]; edge >= 0; edge = nextEdge[edge]) {
+                int target = edgeTarget[edge];
+                if (resultBlocks[target] == null) {
+                    resultBlocks[target] = result.allocate();
+                    workList[workListTail++] = target;
+                }
+                result.createEdge(resultBlock, resultBlocks[target], edgeType[edge]);
+            }
+
+            int flags = blockFlags[block];
+            if ((flags & RETURN_BLOCK) != 0) {
+                result.createEdge(resultBlock, result.getExit(), RETURN_EDGE);
+            }
+            if ((flags & EXIT_BLOCK) != 0) {
+                result.createEdge(resultBlock, result.getExit(), EXIT_EDGE);
+            }
+            if ((flags & UNHANDLED_EXCEPTION_BLOCK) != 0) {
+                result.createEdge(resultBlock, result.getExit(), UNHANDLED_EXCEPTION_EDGE);
+            }
+        }
+        return result;
+    }
+}
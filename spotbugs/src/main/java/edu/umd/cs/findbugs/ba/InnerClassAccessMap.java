@@ -22,6 +22,8 @@ package edu.umd.cs.findbugs.ba;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.bcel.Const;
 import org.apache.bcel.Repository;
@@ -61,9 +63,10 @@ public class InnerClassAccessMap {
 
     /**
      * Map of class names to maps of method names to InnerClassAccess objects
-     * representing access methods.
+     * representing access methods. Classes may be added by several analysis
+     * threads at once.
      */
-    private final Map<String, Map<String, InnerClassAccess>> classToAccessMap;
+    private final ConcurrentMap<String, Map<String, InnerClassAccess>> classToAccessMap;
 
     /*
      * ----------------------------------------------------------------------
@@ -133,7 +136,7 @@ public class InnerClassAccessMap {
      * Constructor.
      */
     private InnerClassAccessMap() {
-        this.classToAccessMap = new HashMap<>(3);
+        this.classToAccessMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -388,7 +391,10 @@ public class InnerClassAccessMap {
                 map = new HashMap<>(map);
             }
 
-            classToAccessMap.put(className, map);
+            Map<String, InnerClassAccess> existing = classToAccessMap.putIfAbsent(className, map);
+            if (existing != null) {
+                map = existing;
+            }
         }
 
         return map;
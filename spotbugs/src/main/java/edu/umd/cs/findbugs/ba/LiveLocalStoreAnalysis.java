@@ -98,6 +98,11 @@ public class LiveLocalStoreAnalysis extends BackwardDataflowAnalysis<BitSet> imp
         verifyFact(result);
     }
 
+    @Override
+    public boolean useWorklistSolver() {
+        return true;
+    }
+
     @Override
     public void transferInstruction(InstructionHandle handle, BasicBlock basicBlock, BitSet fact)
             throws DataflowAnalysisException {
@@ -110,6 +110,11 @@ public class LockAnalysis extends ForwardDataflowAnalysis<LockSet> {
         result.meetWith(fact);
     }
 
+    @Override
+    public boolean useWorklistSolver() {
+        return true;
+    }
+
     @Override
     public void transferInstruction(InstructionHandle handle, BasicBlock basicBlock, LockSet fact)
             throws DataflowAnalysisException {
@@ -20,11 +20,10 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -67,25 +66,29 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Factory methods for creating XMethod objects.
+ * <p>
+ * The interned methods and fields are kept in concurrent collections, as the
+ * factory is shared by all threads analyzing classes of the same analysis
+ * context.
  *
  * @author David Hovemeyer
  */
 public class XFactory {
     public static final boolean DEBUG_UNRESOLVED = SystemProperties.getBoolean("findbugs.xfactory.debugunresolved");
 
-    private final Set<ClassDescriptor> reflectiveClasses = new HashSet<>();
+    private final Set<ClassDescriptor> reflectiveClasses = ConcurrentHashMap.newKeySet();
 
-    private final Map<MethodDescriptor, XMethod> methods = new HashMap<>();
+    private final Map<MethodDescriptor, XMethod> methods = new ConcurrentHashMap<>();
 
-    private final Map<FieldDescriptor, XField> fields = new HashMap<>();
+    private final Map<FieldDescriptor, XField> fields = new ConcurrentHashMap<>();
 
-    private final Set<XMethod> calledMethods = new HashSet<>();
+    private final Set<XMethod> calledMethods = ConcurrentHashMap.newKeySet();
 
-    private final Set<XField> emptyArrays = new HashSet<>();
+    private final Set<XField> emptyArrays = ConcurrentHashMap.newKeySet();
 
-    private final Set<String> calledMethodSignatures = new HashSet<>();
+    private final Set<String> calledMethodSignatures = ConcurrentHashMap.newKeySet();
 
-    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = new HashSet<>();
+    private final Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = ConcurrentHashMap.newKeySet();
 
     public void canonicalizeAll() {
         DescriptorFactory descriptorFactory = DescriptorFactory.instance();
@@ -132,7 +135,7 @@ public class XFactory {
     }
 
     public boolean isEmptyArrayField(@CheckForNull XField f) {
-        return emptyArrays.contains(f);
+        return f != null && emptyArrays.contains(f);
     }
 
     public boolean isCalled(XMethod m) {
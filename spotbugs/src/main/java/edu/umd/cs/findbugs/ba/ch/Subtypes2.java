@@ -55,6 +55,11 @@ import edu.umd.cs.findbugs.util.Values;
 /**
  * Class for performing class hierarchy queries. Does <em>not</em> require
  * JavaClass objects to be in memory. Instead, uses XClass objects.
+ * <p>
+ * The inheritance graph and the query caches grow while the hierarchy is
+ * queried, so all access to them is synchronized on this object. Visitors
+ * passed to the traversal methods are called without holding the lock.
+ * </p>
  *
  * @author David Hovemeyer
  */
@@ -126,7 +131,8 @@ public class Subtypes2 {
     }
 
     /**
-     * @return Returns the graph.
+     * @return Returns the graph. Callers must synchronize on this object
+     *         while using it.
      */
     public InheritanceGraph getGraph() {
         return graph;
@@ -221,7 +227,7 @@ public class Subtypes2 {
      * @param appXClass
      *            application XClass to add to the inheritance graph
      */
-    public void addApplicationClass(XClass appXClass) {
+    public synchronized void addApplicationClass(XClass appXClass) {
         for (XMethod m : appXClass.getXMethods()) {
             if (m.isStub()) {
                 return;
@@ -232,7 +238,7 @@ public class Subtypes2 {
 
     }
 
-    public boolean isApplicationClass(ClassDescriptor descriptor) {
+    public synchronized boolean isApplicationClass(ClassDescriptor descriptor) {
         assert descriptor != null;
         try {
             return resolveClassVertex(descriptor).isApplicationClass();
@@ -249,7 +255,7 @@ public class Subtypes2 {
      * @param xclass
      *            XClass to add to the inheritance graph
      */
-    public void addClass(XClass xclass) {
+    public synchronized void addClass(XClass xclass) {
         addClassAndGetClassVertex(xclass);
     }
 
@@ -324,7 +330,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if a missing class prevents a definitive answer
      */
-    public boolean isSubtype(ReferenceType type, ReferenceType possibleSupertype) throws ClassNotFoundException {
+    public synchronized boolean isSubtype(ReferenceType type, ReferenceType possibleSupertype) throws ClassNotFoundException {
 
         // Eliminate some easy cases
         if (type.equals(possibleSupertype)) {
@@ -401,7 +407,7 @@ public class Subtypes2 {
     ClassDescriptor prevSubDesc, prevSuperDesc;
     boolean prevResult;
 
-    public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
+    public synchronized boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
         if (subDesc == prevSubDesc && prevSuperDesc == superDesc) {
             return prevResult;
         }
@@ -411,7 +417,7 @@ public class Subtypes2 {
         return prevResult;
     }
 
-    public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor... superDesc) throws ClassNotFoundException {
+    public synchronized boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor... superDesc) throws ClassNotFoundException {
         for (ClassDescriptor s : superDesc) {
             if (subDesc.equals(s)) {
                 return true;
@@ -435,7 +441,7 @@ public class Subtypes2 {
         return false;
     }
 
-    public boolean isSubtype0(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
+    public synchronized boolean isSubtype0(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
         assert subDesc != null;
         assert superDesc != null;
         if (subDesc.equals(superDesc)) {
@@ -505,7 +511,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if a missing class prevents a definitive answer
      */
-    public boolean isSubtype(ObjectType type, ObjectType possibleSupertype) throws ClassNotFoundException {
+    public synchronized boolean isSubtype(ObjectType type, ObjectType possibleSupertype) throws ClassNotFoundException {
         if (DEBUG_QUERIES) {
             System.out.println("isSubtype: check " + type + " subtype of " + possibleSupertype);
         }
@@ -542,7 +548,7 @@ public class Subtypes2 {
      * @return the first common superclass of <code>a</code> and <code>b</code>
      * @throws ClassNotFoundException
      */
-    public ReferenceType getFirstCommonSuperclass(ReferenceType a, ReferenceType b) throws ClassNotFoundException {
+    public synchronized ReferenceType getFirstCommonSuperclass(ReferenceType a, ReferenceType b) throws ClassNotFoundException {
         // Easy case: same types
         if (a.equals(b)) {
             return a;
@@ -699,7 +705,7 @@ public class Subtypes2 {
      * @return the first common superclass of <code>a</code> and <code>b</code>
      * @throws ClassNotFoundException
      */
-    public ObjectType getFirstCommonSuperclass(ObjectType a, ObjectType b) throws ClassNotFoundException {
+    public synchronized ObjectType getFirstCommonSuperclass(ObjectType a, ObjectType b) throws ClassNotFoundException {
         // Easy case
         if (a.equals(b)) {
             return a;
@@ -822,7 +828,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         Set<ClassDescriptor> result = subtypeSetMap.get(classDescriptor);
         if (result == null) {
             result = computeKnownSubtypes(classDescriptor);
@@ -855,7 +861,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
 
@@ -892,10 +898,11 @@ public class Subtypes2 {
     /**
      * Get Collection of all XClass objects (resolved classes) seen so far.
      *
-     * @return Collection of all XClass objects
+     * @return Collection of all XClass objects, which does not change when
+     *         further classes are added
      */
-    public Collection<XClass> getXClassCollection() {
-        return Collections.<XClass> unmodifiableCollection(xclassSet);
+    public synchronized Collection<XClass> getXClassCollection() {
+        return Collections.<XClass> unmodifiableCollection(new ArrayList<>(xclassSet));
     }
 
     /**
@@ -1045,7 +1052,10 @@ public class Subtypes2 {
 
     private void addToWorkList(LinkedList<SupertypeTraversalPath> workList, SupertypeTraversalPath curPath,
             ClassDescriptor supertypeDescriptor) {
-        ClassVertex vertex = classDescriptorToVertexMap.get(supertypeDescriptor);
+        ClassVertex vertex;
+        synchronized (this) {
+            vertex = classDescriptorToVertexMap.get(supertypeDescriptor);
+        }
 
         // The vertex should already have been added to the graph
         assert vertex != null;
@@ -1066,12 +1076,15 @@ public class Subtypes2 {
             return false;
         }
 
-        ClassVertex supertypeVertex = classDescriptorToVertexMap.get(supertypeDescriptor);
-        if (supertypeVertex == null) {
-            try {
-                supertypeVertex = resolveClassVertex(supertypeDescriptor);
-            } catch (ClassNotFoundException e) {
-                supertypeVertex = addClassVertexForMissingClass(supertypeDescriptor, isInterfaceEdge);
+        ClassVertex supertypeVertex;
+        synchronized (this) {
+            supertypeVertex = classDescriptorToVertexMap.get(supertypeDescriptor);
+            if (supertypeVertex == null) {
+                try {
+                    supertypeVertex = resolveClassVertex(supertypeDescriptor);
+                } catch (ClassNotFoundException e) {
+                    supertypeVertex = addClassVertexForMissingClass(supertypeDescriptor, isInterfaceEdge);
+                }
             }
         }
         assert supertypeVertex != null;
@@ -1118,7 +1131,7 @@ public class Subtypes2 {
     }
 
 
-    public boolean hasKnownSubclasses(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized boolean hasKnownSubclasses(ClassDescriptor classDescriptor) throws ClassNotFoundException {
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
         if (!startVertex.isInterface()) {
@@ -1192,7 +1205,7 @@ public class Subtypes2 {
      *            a ClassDescriptor
      * @return SupertypeQueryResults for the class named by the ClassDescriptor
      */
-    public SupertypeQueryResults getSupertypeQueryResults(ClassDescriptor classDescriptor) {
+    public synchronized SupertypeQueryResults getSupertypeQueryResults(ClassDescriptor classDescriptor) {
         SupertypeQueryResults supertypeQueryResults = supertypeSetMap.get(classDescriptor);
         if (supertypeQueryResults == null) {
             supertypeQueryResults = computeSupertypes(classDescriptor);
@@ -1262,7 +1275,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if the class named by the ClassDescriptor does not exist
      */
-    private ClassVertex resolveClassVertex(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    private synchronized ClassVertex resolveClassVertex(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         ClassVertex typeVertex = optionallyResolveClassVertex(classDescriptor);
 
         if (!typeVertex.isResolved()) {
@@ -1273,7 +1286,7 @@ public class Subtypes2 {
         return typeVertex;
     }
 
-    private ClassVertex optionallyResolveClassVertex(ClassDescriptor classDescriptor) {
+    private synchronized ClassVertex optionallyResolveClassVertex(ClassDescriptor classDescriptor) {
         ClassVertex typeVertex = classDescriptorToVertexMap.get(classDescriptor);
         if (typeVertex == null) {
             // We have never tried to resolve this ClassVertex before.
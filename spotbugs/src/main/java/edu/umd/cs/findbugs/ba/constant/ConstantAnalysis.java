@@ -87,6 +87,11 @@ public class ConstantAnalysis extends FrameDataflowAnalysis<Constant, ConstantFr
         mergeInto(fact, result);
     }
 
+    @Override
+    public boolean useWorklistSolver() {
+        return true;
+    }
+
     @Override
     protected void mergeValues(ConstantFrame otherFrame, ConstantFrame resultFrame, int slot) throws DataflowAnalysisException {
         Constant value = Constant.merge(resultFrame.getValue(slot), otherFrame.getValue(slot));
@@ -0,0 +1,281 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2005, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.graph.AbstractEdge;
+import edu.umd.cs.findbugs.graph.AbstractGraph;
+import edu.umd.cs.findbugs.graph.AbstractVertex;
+import edu.umd.cs.findbugs.graph.GraphToolkit;
+import edu.umd.cs.findbugs.graph.StronglyConnectedComponents;
+
+/**
+ * Computes the fixpoint of method summaries which depend on the summaries of
+ * the called methods.
+ * <p>
+ * The methods are updated bottom-up over the strongly connected components of
+ * the call graph: the summaries of the methods called from a component are
+ * final before the methods of the component are first updated. Within a
+ * component, a method is updated again only when the summary of a method it
+ * calls in the component changes. Compared to updating all the methods until
+ * none changes, each method outside of call cycles is updated once.
+ * </p>
+ *
+ * @param <M>
+ *            type of the methods, with equals() and hashCode()
+ */
+public class SummaryFixpoint<M> {
+
+    /**
+     * Updates the summary of a method from the current summaries of the
+     * methods it calls.
+     */
+    public interface Summarizer<M> {
+        /**
+         * Update the summary of a method.
+         *
+         * @param method
+         *            the method
+         * @return true if the summary changed in a way which can change the
+         *         summaries of the callers
+         */
+        public boolean update(M method);
+    }
+
+    private static class MethodVertex<M> extends AbstractVertex<CallEdge<M>, MethodVertex<M>> {
+        final M method;
+
+        MethodVertex(M method) {
+            this.method = method;
+        }
+    }
+
+    private static class CallEdge<M> extends AbstractEdge<CallEdge<M>, MethodVertex<M>> {
+        CallEdge(MethodVertex<M> source, MethodVertex<M> target) {
+            super(source, target);
+        }
+    }
+
+    private static class MethodGraph<M> extends AbstractGraph<CallEdge<M>, MethodVertex<M>> {
+        @Override
+        protected CallEdge<M> allocateEdge(MethodVertex<M> source, MethodVertex<M> target) {
+            return new CallEdge<>(source, target);
+        }
+    }
+
+    private static class MethodGraphToolkit<M> implements GraphToolkit<MethodGraph<M>, CallEdge<M>, MethodVertex<M>> {
+        @Override
+        public MethodGraph<M> createGraph() {
+            return new MethodGraph<>();
+        }
+
+        @Override
+        public MethodVertex<M> duplicateVertex(MethodVertex<M> original) {
+            return new MethodVertex<>(original.method);
+        }
+
+        @Override
+        public void copyEdge(CallEdge<M> source, CallEdge<M> dest) {
+        }
+    }
+
+    private final Map<M, List<M>> calls = new LinkedHashMap<>();
+
+    private int numUpdates;
+
+    /**
+     * Add a method whose summary is to be computed.
+     *
+     * @param method
+     *            the method
+     */
+    public void addMethod(M method) {
+        if (!calls.containsKey(method)) {
+            calls.put(method, new ArrayList<M>(2));
+        }
+    }
+
+    /**
+     * Add a call whose target summary the summary of the caller depends on.
+     * Calls to methods which are not added are ignored: their summaries are
+     * not computed here.
+     *
+     * @param caller
+     *            the calling method
+     * @param called
+     *            the called method
+     */
+    public void addCall(M caller, M called) {
+        addMethod(caller);
+        calls.get(caller).add(called);
+    }
+
+    /**
+     * Update the summaries of the methods until they don't change.
+     *
+     * @param summarizer
+     *            updates the summary of a method
+     */
+    public void solve(Summarizer<M> summarizer) {
+        for (List<M> component : getComponentsBottomUp()) {
+            if (component.size() == 1 && !calls.get(component.get(0)).contains(component.get(0))) {
+                numUpdates++;
+                summarizer.update(component.get(0));
+                continue;
+            }
+            Set<M> members = new HashSet<>(component);
+            Map<M, List<M>> callers = new LinkedHashMap<>();
+            for (M method : component) {
+                for (M called : calls.get(method)) {
+                    if (members.contains(called)) {
+                        List<M> list = callers.get(called);
+                        if (list == null) {
+                            list = new ArrayList<>();
+                            callers.put(called, list);
+                        }
+                        list.add(method);
+                    }
+                }
+            }
+            ArrayDeque<M> worklist = new ArrayDeque<>(component);
+            Set<M> queued = new HashSet<>(component);
+            while (!worklist.isEmpty()) {
+                M method = worklist.removeFirst();
+                queued.remove(method);
+                numUpdates++;
+                if (!summarizer.update(method)) {
+                    continue;
+                }
+                List<M> list = callers.get(method);
+                if (list == null) {
+                    continue;
+                }
+                for (M caller : list) {
+                    if (queued.add(caller)) {
+                        worklist.addLast(caller);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of updates made by solve()
+     */
+    public int getNumUpdates() {
+        return numUpdates;
+    }
+
+    /**
+     * @return the strongly connected components of the call graph, the
+     *         components called from a component before it
+     */
+    List<List<M>> getComponentsBottomUp() {
+        List<List<M>> result = new ArrayList<>();
+
+        // Most methods are not part of call cycles and don't call methods
+        // which are: take the methods whose called methods have all been
+        // taken, in turn, before looking for the components of the others
+        Map<M, Integer> remainingCalls = new HashMap<>();
+        Map<M, List<M>> callers = new HashMap<>();
+        ArrayDeque<M> ready = new ArrayDeque<>();
+        for (Map.Entry<M, List<M>> entry : calls.entrySet()) {
+            int count = 0;
+            for (M called : entry.getValue()) {
+                if (calls.containsKey(called)) {
+                    count++;
+                    List<M> list = callers.get(called);
+                    if (list == null) {
+                        list = new ArrayList<>(2);
+                        callers.put(called, list);
+                    }
+                    list.add(entry.getKey());
+                }
+            }
+            if (count == 0) {
+                ready.add(entry.getKey());
+            } else {
+                remainingCalls.put(entry.getKey(), count);
+            }
+        }
+        while (!ready.isEmpty()) {
+            M method = ready.removeFirst();
+            result.add(Collections.singletonList(method));
+            List<M> list = callers.get(method);
+            if (list == null) {
+                continue;
+            }
+            for (M caller : list) {
+                int count = remainingCalls.get(caller) - 1;
+                if (count == 0) {
+                    remainingCalls.remove(caller);
+                    ready.add(caller);
+                } else {
+                    remainingCalls.put(caller, count);
+                }
+            }
+        }
+        if (remainingCalls.isEmpty()) {
+            return result;
+        }
+
+        MethodGraph<M> graph = new MethodGraph<>();
+        Map<M, MethodVertex<M>> vertices = new HashMap<>();
+        for (M method : calls.keySet()) {
+            if (remainingCalls.containsKey(method)) {
+                MethodVertex<M> vertex = new MethodVertex<>(method);
+                graph.addVertex(vertex);
+                vertices.put(method, vertex);
+            }
+        }
+        for (MethodVertex<M> caller : graph.vertices()) {
+            for (M called : calls.get(caller.method)) {
+                MethodVertex<M> target = vertices.get(called);
+                if (target != null && graph.lookupEdge(caller, target) == null) {
+                    graph.createEdge(caller, target);
+                }
+            }
+        }
+
+        // Components are found callers first
+        StronglyConnectedComponents<MethodGraph<M>, CallEdge<M>, MethodVertex<M>> scc = new StronglyConnectedComponents<>();
+        scc.findStronglyConnectedComponents(graph, new MethodGraphToolkit<M>());
+        List<List<M>> components = new ArrayList<>();
+        for (Iterator<Set<MethodVertex<M>>> i = scc.setIterator(); i.hasNext();) {
+            List<M> component = new ArrayList<>();
+            for (MethodVertex<M> vertex : i.next()) {
+                component.add(vertex.method);
+            }
+            components.add(component);
+        }
+        Collections.reverse(components);
+        result.addAll(components);
+        return result;
+    }
+}
@@ -231,7 +231,11 @@ public class TypeQualifierValue<A extends Annotation> {
         ClassData data = Global.getAnalysisCache().getClassAnalysis(ClassData.class, d);
         return data.getData();
     }
-    static class Data {
+    /**
+     * The type qualifiers of one analysis. Shared by the analysis thread and
+     * its worker threads, so all access is synchronized on the instance.
+     */
+    public static final class Data {
         /**
          * Cache in which constructed TypeQualifierValues are interned.
          */
@@ -254,6 +258,24 @@ public class TypeQualifierValue<A extends Annotation> {
         instance.remove();
     }
 
+    /**
+     * @return the type qualifiers known to the analysis of the current thread
+     */
+    public static Data getInstanceForCurrentThread() {
+        return instance.get();
+    }
+
+    /**
+     * Make given type qualifiers those of the current thread. Used by worker
+     * threads to share the type qualifiers of the analysis thread.
+     *
+     * @param data
+     *            the type qualifiers to use
+     */
+    public static void setInstanceForCurrentThread(Data data) {
+        instance.set(data);
+    }
+
     public boolean canValidate(@CheckForNull Object constantValue) {
         return validator != null;
     }
@@ -288,14 +310,24 @@ public class TypeQualifierValue<A extends Annotation> {
     @SuppressWarnings("rawtypes")
     public static @Nonnull
     TypeQualifierValue<?> getValue(ClassDescriptor desc, @CheckForNull  Object value) {
-        DualKeyHashMap<ClassDescriptor, Object, TypeQualifierValue<?>> map = instance.get().typeQualifierMap;
-        TypeQualifierValue<?> result = map.get(desc, value);
-        if (result != null) {
-            return result;
+        Data data = instance.get();
+        synchronized (data) {
+            TypeQualifierValue<?> result = data.typeQualifierMap.get(desc, value);
+            if (result != null) {
+                return result;
+            }
+        }
+        // Construct without holding the lock, as loading the validator may
+        // wait for another thread
+        TypeQualifierValue<?> result = new TypeQualifierValue(desc, value);
+        synchronized (data) {
+            TypeQualifierValue<?> existing = data.typeQualifierMap.get(desc, value);
+            if (existing != null) {
+                return existing;
+            }
+            data.typeQualifierMap.put(desc, value, result);
+            data.allKnownTypeQualifiers.add(result);
         }
-        result = new TypeQualifierValue(desc, value);
-        map.put(desc, value, result);
-        instance.get().allKnownTypeQualifiers.add(result);
         return result;
     }
     @SuppressWarnings("unchecked")
@@ -310,7 +342,10 @@ public class TypeQualifierValue<A extends Annotation> {
      * @return Collection of all known TypeQualifierValues
      */
     public static Collection<TypeQualifierValue<?>> getAllKnownTypeQualifiers() {
-        return Collections.unmodifiableSet(instance.get().allKnownTypeQualifiers);
+        Data data = instance.get();
+        synchronized (data) {
+            return Collections.unmodifiableSet(new HashSet<>(data.allKnownTypeQualifiers));
+        }
     }
 
     /**
@@ -326,7 +361,7 @@ public class TypeQualifierValue<A extends Annotation> {
 
         LinkedList<TypeQualifierValue<?>> result = new LinkedList<>();
 
-        for (TypeQualifierValue<?> t : instance.get().allKnownTypeQualifiers) {
+        for (TypeQualifierValue<?> t : getAllKnownTypeQualifiers()) {
             //
             // Any TypeQualifierValue with the same
             // annotation class but a different value is a complementary
@@ -352,7 +387,7 @@ public class TypeQualifierValue<A extends Annotation> {
      */
     public static boolean hasMultipleVariants(TypeQualifierValue<?> tqv) {
         int count = 0;
-        for (TypeQualifierValue<?> t : instance.get().allKnownTypeQualifiers) {
+        for (TypeQualifierValue<?> t : getAllKnownTypeQualifiers()) {
             if (t.typeQualifier.equals(tqv.typeQualifier)) {
                 count++;
             }
@@ -19,7 +19,6 @@
 
 package edu.umd.cs.findbugs.ba.vna;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -50,7 +49,11 @@ import edu.umd.cs.findbugs.util.Util;
  */
 public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberAnalysisFeatures {
 
-    private ArrayList<ValueNumber> mergedValueList;
+    /**
+     * Values created by merges into each slot, created on the first merge
+     * which needs one.
+     */
+    private ValueNumber[] mergedValues;
 
     private Map<AvailableLoad, ValueNumber[]> availableLoadMap;
 
@@ -400,11 +403,19 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
     }
 
     ValueNumber getMergedValue(int slot) {
-        return mergedValueList.get(slot);
+        if (mergedValues == null || slot >= mergedValues.length) {
+            return null;
+        }
+        return mergedValues[slot];
     }
 
     void setMergedValue(int slot, ValueNumber value) {
-        mergedValueList.set(slot, value);
+        if (mergedValues == null) {
+            mergedValues = new ValueNumber[Math.max(slot + 1, getNumSlots())];
+        } else if (slot >= mergedValues.length) {
+            mergedValues = Arrays.copyOf(mergedValues, slot + 1);
+        }
+        mergedValues[slot] = value;
     }
 
     @Override
@@ -412,17 +423,6 @@ public class ValueNumberFrame extends Frame<ValueNumber> implements ValueNumberA
         if (!(other instanceof ValueNumberFrame)) {
             throw new IllegalArgumentException();
         }
-        // If merged value list hasn't been created yet, create it.
-        if (mergedValueList == null && other.isValid()) {
-            // This is where this frame gets its size.
-            // It will have the same size as long as it remains valid.
-            mergedValueList = new ArrayList<>(other.getNumSlots());
-            int numSlots = other.getNumSlots();
-            for (int i = 0; i < numSlots; ++i) {
-                mergedValueList.add(null);
-            }
-        }
-
         if (REDUNDANT_LOAD_ELIMINATION) {
             assignAvailableLoadMap((ValueNumberFrame) other);
             assignPreviouslyKnownAs((ValueNumberFrame) other);
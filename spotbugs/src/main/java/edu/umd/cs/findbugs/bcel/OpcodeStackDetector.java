@@ -37,9 +37,12 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
 
     private final boolean isUsingCustomUserValue;
 
+    private final boolean isModifyingStack;
+
     public OpcodeStackDetector() {
         super();
         isUsingCustomUserValue = getClass().isAnnotationPresent(OpcodeStack.CustomUserValue.class);
+        isModifyingStack = getClass().isAnnotationPresent(OpcodeStack.ModifiesStack.class);
     }
 
     /**
@@ -103,4 +106,14 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
     public final boolean isUsingCustomUserValue() {
         return isUsingCustomUserValue;
     }
+
+    /**
+     * @return true if the opcode stack of this detector replays the states
+     *         computed once per method and shared by all detectors, rather
+     *         than simulating the method itself
+     * @see OpcodeStack.StateTrace
+     */
+    public final boolean isReplayingStates() {
+        return !isUsingCustomUserValue && !isModifyingStack && !(this instanceof WithCustomJumpInfo);
+    }
 }
@@ -20,8 +20,8 @@
 package edu.umd.cs.findbugs.classfile;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -63,10 +63,10 @@ public class DescriptorFactory {
     private static final ClassDescriptor MODULE_INFO = new ClassDescriptor("module-info");
 
     private DescriptorFactory() {
-        this.classDescriptorMap = new HashMap<>();
-        this.dottedClassDescriptorMap = new HashMap<>();
-        this.methodDescriptorMap = new HashMap<>();
-        this.fieldDescriptorMap = new HashMap<>();
+        this.classDescriptorMap = new ConcurrentHashMap<>();
+        this.dottedClassDescriptorMap = new ConcurrentHashMap<>();
+        this.methodDescriptorMap = new ConcurrentHashMap<>();
+        this.fieldDescriptorMap = new ConcurrentHashMap<>();
     }
 
     /**
@@ -94,6 +94,17 @@ public class DescriptorFactory {
         instanceThreadLocal.remove();
     }
 
+    /**
+     * Make given instance the DescriptorFactory of the current thread. Used
+     * by worker threads to share the descriptors of the analysis thread.
+     *
+     * @param factory
+     *            the DescriptorFactory to use
+     */
+    public static void setInstanceForCurrentThread(DescriptorFactory factory) {
+        instanceThreadLocal.set(factory);
+    }
+
     public Collection<ClassDescriptor> getAllClassDescriptors() {
         return classDescriptorMap.values();
     }
@@ -128,7 +139,10 @@ public class DescriptorFactory {
                 return MODULE_INFO;
             }
             classDescriptor = new ClassDescriptor(className);
-            classDescriptorMap.put(className, classDescriptor);
+            ClassDescriptor existing = classDescriptorMap.putIfAbsent(className, classDescriptor);
+            if (existing != null) {
+                classDescriptor = existing;
+            }
         }
         return classDescriptor;
     }
@@ -145,7 +159,7 @@ public class DescriptorFactory {
         ClassDescriptor classDescriptor = dottedClassDescriptorMap.get(dottedClassName);
         if (classDescriptor == null) {
             classDescriptor = getClassDescriptor(dottedClassName.replace('.', '/'));
-            dottedClassDescriptorMap.put(dottedClassName, classDescriptor);
+            dottedClassDescriptorMap.putIfAbsent(dottedClassName, classDescriptor);
         }
         return classDescriptor;
     }
@@ -175,9 +189,8 @@ public class DescriptorFactory {
             throw new NullPointerException("className must be nonnull");
         }
         MethodDescriptor methodDescriptor = new MethodDescriptor(className, name, signature, isStatic);
-        MethodDescriptor existing = methodDescriptorMap.get(methodDescriptor);
+        MethodDescriptor existing = methodDescriptorMap.putIfAbsent(methodDescriptor, methodDescriptor);
         if (existing == null) {
-            methodDescriptorMap.put(methodDescriptor, methodDescriptor);
             existing = methodDescriptor;
         }
         return existing;
@@ -238,9 +251,8 @@ public class DescriptorFactory {
      */
     public FieldDescriptor getFieldDescriptor(@SlashedClassName String className, String name, String signature, boolean isStatic) {
         FieldDescriptor fieldDescriptor = new FieldDescriptor(className, name, signature, isStatic);
-        FieldDescriptor existing = fieldDescriptorMap.get(fieldDescriptor);
+        FieldDescriptor existing = fieldDescriptorMap.putIfAbsent(fieldDescriptor, fieldDescriptor);
         if (existing == null) {
-            fieldDescriptorMap.put(fieldDescriptor, fieldDescriptor);
             existing = fieldDescriptor;
         }
         return existing;
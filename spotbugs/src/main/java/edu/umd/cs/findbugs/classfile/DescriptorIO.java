@@ -0,0 +1,71 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary representation of class, method and field descriptors, used to store
+ * analysis results. Descriptors read back are canonicalized by the
+ * {@link DescriptorFactory}.
+ */
+public final class DescriptorIO {
+    private DescriptorIO() {
+    }
+
+    public static void writeClassDescriptor(DataOutput out, ClassDescriptor c) throws IOException {
+        out.writeUTF(c.getClassName());
+    }
+
+    public static ClassDescriptor readClassDescriptor(DataInput in) throws IOException {
+        return DescriptorFactory.createClassDescriptor(in.readUTF());
+    }
+
+    public static void writeMethodDescriptor(DataOutput out, MethodDescriptor m) throws IOException {
+        out.writeUTF(m.getSlashedClassName());
+        out.writeUTF(m.getName());
+        out.writeUTF(m.getSignature());
+        out.writeBoolean(m.isStatic());
+    }
+
+    public static MethodDescriptor readMethodDescriptor(DataInput in) throws IOException {
+        String className = in.readUTF();
+        String name = in.readUTF();
+        String signature = in.readUTF();
+        boolean isStatic = in.readBoolean();
+        return DescriptorFactory.instance().getMethodDescriptor(className, name, signature, isStatic);
+    }
+
+    public static void writeFieldDescriptor(DataOutput out, FieldDescriptor f) throws IOException {
+        out.writeUTF(f.getSlashedClassName());
+        out.writeUTF(f.getName());
+        out.writeUTF(f.getSignature());
+        out.writeBoolean(f.isStatic());
+    }
+
+    public static FieldDescriptor readFieldDescriptor(DataInput in) throws IOException {
+        String className = in.readUTF();
+        String name = in.readUTF();
+        String signature = in.readUTF();
+        boolean isStatic = in.readBoolean();
+        return DescriptorFactory.instance().getFieldDescriptor(className, name, signature, isStatic);
+    }
+}
@@ -142,6 +142,24 @@ public interface IAnalysisCache {
      */
     public void purgeClassAnalysis(Class<?> analysisClass);
 
+    /**
+     * Keep the results of a class, in particular its ClassContext, from being
+     * evicted until {@link #unpinClass(ClassDescriptor)} is called as many
+     * times as this method. Called while detectors visit the class.
+     *
+     * @param classDescriptor
+     *            the class being visited
+     */
+    public void pinClass(ClassDescriptor classDescriptor);
+
+    /**
+     * Release a pin taken with {@link #pinClass(ClassDescriptor)}.
+     *
+     * @param classDescriptor
+     *            the class no longer being visited
+     */
+    public void unpinClass(ClassDescriptor classDescriptor);
+
     /**
      * Register a database factory.
      *
@@ -53,6 +53,16 @@ public interface IClassPathBuilder {
      */
     public void scanNestedArchives(boolean scanNestedArchives);
 
+    /**
+     * Set the number of threads used to parse the classes of application
+     * codebases. This should be called before the build() method is called.
+     *
+     * @param threads
+     *            number of threads, 1 to parse all classes on the calling
+     *            thread
+     */
+    public void setThreads(int threads);
+
     /**
      * Build the classpath.
      *
@@ -62,7 +62,7 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass {
 
     private final MethodInfo[] xMethods;
 
-    private final MethodInfo[] methodsInCallOrder;
+    private volatile MethodInfo[] methodsInCallOrder;
 
     private final ClassDescriptor immediateEnclosingClass;
 
@@ -82,22 +82,22 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass {
     private boolean containingScopeCached;
 
     public static class Builder extends ClassNameAndSuperclassInfo.Builder {
-        private List<FieldInfo> fieldInfoList = new LinkedList<>();
+        List<FieldInfo> fieldInfoList = new LinkedList<>();
 
-        private List<MethodInfo> methodInfoList = new LinkedList<>();
+        List<MethodInfo> methodInfoList = new LinkedList<>();
 
         /**
          * Mapping from one method signature to its bridge method signature
          */
-        private final Map<MethodInfo, String> bridgedSignatures = new IdentityHashMap<>();
+        final Map<MethodInfo, String> bridgedSignatures = new IdentityHashMap<>();
 
-        private ClassDescriptor immediateEnclosingClass;
+        ClassDescriptor immediateEnclosingClass;
 
         final Map<ClassDescriptor, AnnotationValue> classAnnotations = new HashMap<>(3);
 
-        private String classSourceSignature;
+        String classSourceSignature;
 
-        private String source;
+        String source;
 
         boolean usesConcurrency;
 
@@ -299,16 +299,6 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass {
         this.classAnnotations = Util.immutableMap(classAnnotations);
         this.usesConcurrency = usesConcurrency;
         this.hasStubs = hasStubs;
-        this.methodsInCallOrder = computeMethodsInCallOrder();
-        /*
-        if (false) {
-            System.out.println("Methods in call order for " + classDescriptor);
-            for (MethodInfo m : methodsInCallOrder) {
-                System.out.println("  " + m);
-            }
-            System.out.println();
-        }
-         */
     }
 
     @Override
@@ -322,7 +312,13 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass {
     }
 
     public List<? extends XMethod> getXMethodsInCallOrder() {
-        return Arrays.asList(methodsInCallOrder);
+        // Computed on first use, as it needs to read the class again
+        MethodInfo[] result = methodsInCallOrder;
+        if (result == null) {
+            result = computeMethodsInCallOrder();
+            methodsInCallOrder = result;
+        }
+        return Arrays.asList(result);
     }
 
     @Override
@@ -0,0 +1,968 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+
+import org.objectweb.asm.Type;
+
+import edu.umd.cs.findbugs.Version;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.FieldDescriptor;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.engine.ClassParserUsingASM;
+import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
+import edu.umd.cs.findbugs.io.IO;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * A file holding the {@link ClassInfo} data of classes which never change,
+ * such as the classes of a Java runtime image, so that they don't have to be
+ * parsed again by every analysis.
+ * <p>
+ * The file starts with a header identifying the classes it was built from,
+ * followed by an index of the classes, a table of all strings used by the
+ * classes and one record per class. Records refer to strings by their index
+ * in the table. The file is memory mapped on the first lookup and records and
+ * strings are only decoded when they are needed.
+ * </p>
+ * <p>
+ * Classes which are parsed because they are not in the snapshot yet can be
+ * {@link #add(ClassInfo.Builder) added}. The file is then rewritten with all
+ * classes when the snapshot is {@link #close() closed}, so that it grows to
+ * the classes actually needed by the analyses.
+ * </p>
+ * <p>
+ * Other analyses may still have the file mapped, and a mapped file cannot be
+ * replaced or deleted on Windows. So the file is never rewritten in place:
+ * each rewrite gets a new name, made of the name of the snapshot and a
+ * generation number, the latest generation is read, and older generations
+ * are deleted when possible.
+ * </p>
+ */
+public class ClassInfoSnapshot implements Closeable {
+
+    private static final int MAGIC = 0x46424349;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int METHOD_UNCONDITIONAL_THROWER = 1;
+
+    private static final int METHOD_USES_CONCURRENCY = 2;
+
+    private static final int METHOD_HAS_BACK_BRANCH = 4;
+
+    private static final int METHOD_IS_STUB = 8;
+
+    private static final int METHOD_IS_IDENTITY = 16;
+
+    private static final int METHOD_USES_INVOKE_DYNAMIC = 32;
+
+    private static final Pattern GENERATION = Pattern.compile("\\.(\\d{1,9})");
+
+    /** Hash of the classes which determine the content of a snapshot */
+    private static String buildHash;
+
+    private final File file;
+
+    private final String key;
+
+    /** Generation of the existing file, -1 if there is none */
+    private int generation = -1;
+
+    private boolean opened;
+
+    /** Contents of the existing file, null if there is none */
+    private @CheckForNull ByteBuffer buffer;
+
+    /** Class name to offset and length of its record */
+    private final Map<String, int[]> index = new HashMap<>();
+
+    private int[] stringOffsets = new int[0];
+
+    private String[] strings = new String[0];
+
+    /** Strings of the new records, starting after the existing ones */
+    private final List<String> addedStrings = new ArrayList<>();
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    private final Map<String, byte[]> addedRecords = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            the snapshot file, which does not need to exist
+     * @param key
+     *            identifies the classes the snapshot is built from, a file
+     *            with a different key, or written by another build of
+     *            SpotBugs, is ignored and replaced
+     */
+    public ClassInfoSnapshot(File file, String key) {
+        this.file = file;
+        this.key = Version.VERSION_STRING + '/' + FORMAT_VERSION + '/' + getBuildHash() + '/' + key;
+    }
+
+    /**
+     * @return the name of the snapshot, to which generation numbers are
+     *         appended
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get a hash of the classes reading and writing snapshots, so that a
+     * snapshot written by a development build isn't read by another one of
+     * the same version.
+     */
+    private static synchronized String getBuildHash() {
+        if (buildHash == null) {
+            MessageDigest digest = Util.getMD5Digest();
+            for (Class<?> c : new Class<?>[] { ClassInfoSnapshot.class, RecordWriter.class, RecordReader.class, ClassInfo.class,
+                MethodInfo.class, FieldInfo.class, ClassParserUsingASM.class }) {
+                String name = c.getName();
+                try (InputStream in = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+                    if (in != null) {
+                        digest.update(IO.readAll(in));
+                    }
+                } catch (IOException e) {
+                    // Only the version and format then identify the build
+                }
+            }
+            byte[] hash = digest.digest();
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                result.append(String.format("%02x", hash[i] & 0xff));
+            }
+            buildHash = result.toString();
+        }
+        return buildHash;
+    }
+
+    private File getGeneration(int n) {
+        return n == 0 ? file : new File(file.getPath() + '.' + n);
+    }
+
+    /**
+     * @return the generations of the snapshot which exist, in increasing
+     *         order
+     */
+    private List<Integer> getGenerations() {
+        List<Integer> result = new ArrayList<>();
+        String[] names = file.getAbsoluteFile().getParentFile().list();
+        if (names != null) {
+            String name = file.getName();
+            for (String n : names) {
+                if (n.equals(name)) {
+                    result.add(0);
+                } else if (n.startsWith(name)) {
+                    Matcher m = GENERATION.matcher(n.substring(name.length()));
+                    if (m.matches()) {
+                        result.add(Integer.parseInt(m.group(1)));
+                    }
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private synchronized void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        List<Integer> generations = getGenerations();
+        if (generations.isEmpty()) {
+            return;
+        }
+        generation = generations.get(generations.size() - 1);
+        try (FileChannel channel = FileChannel.open(getGeneration(generation).toPath(), StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION) {
+                return;
+            }
+            stringOffsets = new int[mapped.getInt()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = mapped.getInt();
+            }
+            strings = new String[stringOffsets.length];
+            buffer = mapped;
+            if (!key.equals(getString(mapped.getInt()))) {
+                throw new IOException("Snapshot of other classes");
+            }
+            int numClasses = mapped.getInt();
+            for (int i = 0; i < numClasses; i++) {
+                String className = getString(mapped.getInt());
+                index.put(className, new int[] { mapped.getInt(), mapped.getInt() });
+            }
+        } catch (IOException | RuntimeException e) {
+            // A damaged or outdated snapshot is simply replaced
+            buffer = null;
+            strings = new String[0];
+            stringOffsets = new int[0];
+            index.clear();
+        }
+    }
+
+    /**
+     * @return the number of classes in the existing file
+     */
+    public int getNumClasses() {
+        open();
+        return index.size();
+    }
+
+    /**
+     * Get the builder of the ClassInfo of a class.
+     *
+     * @param descriptor
+     *            the class
+     * @param codeBaseEntry
+     *            the codebase entry the class is loaded from
+     * @return a builder, which is not built yet, or null if the class is not
+     *         in the snapshot
+     */
+    public @CheckForNull ClassInfo.Builder lookup(ClassDescriptor descriptor, ICodeBaseEntry codeBaseEntry) {
+        open();
+        int[] location = index.get(descriptor.getClassName());
+        ByteBuffer data = buffer;
+        if (location == null || data == null) {
+            return null;
+        }
+        ByteBuffer record = data.duplicate();
+        record.position(location[0]);
+        try {
+            ClassInfo.Builder builder = new RecordReader(record).readClass();
+            if (!descriptor.equals(builder.classDescriptor)) {
+                return null;
+            }
+            builder.setCodeBaseEntry(codeBaseEntry);
+            return builder;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add a class to the snapshot. This must be called after the builder was
+     * built, from a thread using the analysis cache which built it.
+     *
+     * @param builder
+     *            the builder of the ClassInfo
+     */
+    public synchronized void add(ClassInfo.Builder builder) {
+        open();
+        String className = builder.classDescriptor.getClassName();
+        if (index.containsKey(className) || addedRecords.containsKey(className)) {
+            return;
+        }
+        RecordWriter writer = new RecordWriter();
+        writer.writeClass(builder);
+        addedRecords.put(className, writer.toByteArray());
+    }
+
+    /**
+     * Write the snapshot, if classes were added to it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (addedRecords.isEmpty()) {
+            return;
+        }
+        int keyId = stringId(key);
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        ByteBuffer data = buffer;
+        if (data != null) {
+            for (Map.Entry<String, int[]> e : index.entrySet()) {
+                byte[] record = new byte[e.getValue()[1]];
+                ByteBuffer source = data.duplicate();
+                source.position(e.getValue()[0]);
+                source.get(record);
+                records.put(e.getKey(), record);
+            }
+        }
+        records.putAll(addedRecords);
+        int[] classNameIds = new int[records.size()];
+        int i = 0;
+        for (String className : records.keySet()) {
+            classNameIds[i++] = stringId(className);
+        }
+
+        ByteArrayOutputStream stringData = new ByteArrayOutputStream();
+        int numStrings = strings.length + addedStrings.size();
+        int[] offsets = new int[numStrings];
+        for (int s = 0; s < numStrings; s++) {
+            offsets[s] = stringData.size();
+            writeString(stringData, s < strings.length ? getString(s) : addedStrings.get(s - strings.length));
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        File tmp = File.createTempFile("snapshot", ".tmp", directory);
+        int written = -1;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                int stringStart = 4 * (5 + numStrings + 3 * records.size());
+                int recordStart = stringStart + stringData.size();
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(numStrings);
+                for (int offset : offsets) {
+                    out.writeInt(stringStart + offset);
+                }
+                out.writeInt(keyId);
+                out.writeInt(records.size());
+                i = 0;
+                int offset = recordStart;
+                for (byte[] record : records.values()) {
+                    out.writeInt(classNameIds[i++]);
+                    out.writeInt(offset);
+                    out.writeInt(record.length);
+                    offset += record.length;
+                }
+                stringData.writeTo(out);
+                for (byte[] record : records.values()) {
+                    out.write(record);
+                }
+            }
+            // The existing generations may be mapped, by this snapshot or by
+            // other analyses, so write a new one
+            List<Integer> generations = getGenerations();
+            int next = Math.max(generation, generations.isEmpty() ? -1 : generations.get(generations.size() - 1)) + 1;
+            for (int attempt = 0; written < 0; attempt++) {
+                try {
+                    Files.move(tmp.toPath(), getGeneration(next).toPath());
+                    written = next;
+                } catch (FileAlreadyExistsException e) {
+                    // Written by another analysis meanwhile
+                    if (attempt == 10) {
+                        throw e;
+                    }
+                    next++;
+                }
+            }
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+        addedRecords.clear();
+
+        // Fails for generations still mapped on Windows, a later rewrite will
+        // delete them
+        for (int n : getGenerations()) {
+            if (n < written) {
+                getGeneration(n).delete();
+            }
+        }
+    }
+
+    private String getString(int id) {
+        String s = strings[id];
+        if (s == null) {
+            ByteBuffer data = buffer.duplicate();
+            data.position(stringOffsets[id]);
+            s = readString(data);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    private int stringId(String s) {
+        if (stringIds.isEmpty()) {
+            for (int id = 0; id < strings.length; id++) {
+                stringIds.put(getString(id), id);
+            }
+        }
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = strings.length + addedStrings.size();
+            addedStrings.add(s);
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * Write a string as its number of chars followed by its chars in the
+     * modified UTF-8 encoding of class files, so that any string can be
+     * written.
+     */
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        writeVarint(out, s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 1 && c <= 0x7f) {
+                out.write(c);
+            } else if (c <= 0x7ff) {
+                out.write(0xc0 | (c >> 6));
+                out.write(0x80 | (c & 0x3f));
+            } else {
+                out.write(0xe0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3f));
+                out.write(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        char[] chars = new char[readVarint(in)];
+        for (int i = 0; i < chars.length; i++) {
+            int b = in.get() & 0xff;
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xe0) {
+                chars[i] = (char) (((b & 0x1f) << 6) | (in.get() & 0x3f));
+            } else {
+                int b2 = in.get() & 0x3f;
+                chars[i] = (char) (((b & 0x0f) << 12) | (b2 << 6) | (in.get() & 0x3f));
+            }
+        }
+        return new String(chars);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Encodes the record of a class. Strings are written as their id plus
+     * one, so that null can be written as 0.
+     */
+    private final class RecordWriter extends ByteArrayOutputStream {
+
+        void writeInt(int value) {
+            writeVarint(this, value);
+        }
+
+        void writeFixedInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value) {
+            writeFixedInt((int) (value >>> 32));
+            writeFixedInt((int) value);
+        }
+
+        void writeString(@CheckForNull String s) {
+            writeInt(s == null ? 0 : stringId(s) + 1);
+        }
+
+        void writeClassName(@CheckForNull ClassDescriptor descriptor) {
+            writeString(descriptor == null ? null : descriptor.getClassName());
+        }
+
+        void writeClassNames(@CheckForNull Collection<ClassDescriptor> descriptors) {
+            if (descriptors == null) {
+                writeInt(0);
+                return;
+            }
+            writeInt(descriptors.size());
+            for (ClassDescriptor descriptor : descriptors) {
+                writeClassName(descriptor);
+            }
+        }
+
+        void writeClass(ClassInfo.Builder builder) {
+            writeClassName(builder.classDescriptor);
+            writeClassName(builder.superclassDescriptor);
+            ClassDescriptor[] interfaces = builder.interfaceDescriptorList;
+            writeInt(interfaces == null ? 0 : interfaces.length);
+            if (interfaces != null) {
+                for (ClassDescriptor descriptor : interfaces) {
+                    writeClassName(descriptor);
+                }
+            }
+            writeInt(builder.accessFlags);
+            writeInt(builder.majorVersion);
+            writeInt(builder.minorVersion);
+            // The referenced classes are not kept by ClassInfo
+            writeClassNames(builder.calledClassDescriptors);
+            writeString(builder.source);
+            writeString(builder.classSourceSignature);
+            writeClassName(builder.immediateEnclosingClass);
+            writeInt((builder.usesConcurrency ? 1 : 0) | (builder.hasStubs ? 2 : 0));
+            writeAnnotations(builder.classAnnotations);
+
+            writeInt(builder.fieldInfoList.size());
+            for (FieldInfo field : builder.fieldInfoList) {
+                writeString(field.getName());
+                writeString(field.getSignature());
+                writeString(field.fieldSourceSignature);
+                writeInt(field.accessFlags);
+                writeAnnotations(field.fieldAnnotations);
+            }
+
+            writeInt(builder.methodInfoList.size());
+            for (MethodInfo method : builder.methodInfoList) {
+                writeMethod(method, builder.bridgedSignatures.get(method));
+            }
+        }
+
+        private void writeMethod(MethodInfo method, @CheckForNull String bridgedSignature) {
+            writeString(method.getName());
+            writeString(method.getSignature());
+            writeString(method.methodSourceSignature);
+            writeInt(method.accessFlags);
+            writeInt((method.isUnconditionalThrower() ? METHOD_UNCONDITIONAL_THROWER : 0)
+                    | (method.usesConcurrency ? METHOD_USES_CONCURRENCY : 0)
+                    | (method.hasBackBranch ? METHOD_HAS_BACK_BRANCH : 0)
+                    | (method.isStub ? METHOD_IS_STUB : 0)
+                    | (method.isIdentity() ? METHOD_IS_IDENTITY : 0)
+                    | (method.usesInvokeDynamic() ? METHOD_USES_INVOKE_DYNAMIC : 0));
+            writeInt(method.methodCallCount);
+            writeLong(method.variableIsSynthetic);
+            String[] exceptions = method.exceptions;
+            writeInt(exceptions == null ? 0 : exceptions.length + 1);
+            if (exceptions != null) {
+                for (String exception : exceptions) {
+                    writeString(exception);
+                }
+            }
+            MethodDescriptor accessMethodForMethod = method.getAccessMethodForMethod();
+            writeInt(accessMethodForMethod == null ? 0 : accessMethodForMethod.isStatic() ? 2 : 1);
+            if (accessMethodForMethod != null) {
+                writeString(accessMethodForMethod.getSlashedClassName());
+                writeString(accessMethodForMethod.getName());
+                writeString(accessMethodForMethod.getSignature());
+            }
+            FieldDescriptor accessMethodForField = method.getAccessMethodForField();
+            writeInt(accessMethodForField == null ? 0 : accessMethodForField.isStatic() ? 2 : 1);
+            if (accessMethodForField != null) {
+                writeString(accessMethodForField.getSlashedClassName());
+                writeString(accessMethodForField.getName());
+                writeString(accessMethodForField.getSignature());
+            }
+            writeAnnotations(method.methodAnnotations);
+            writeInt(method.methodParameterAnnotations.size());
+            for (Map.Entry<Integer, Map<ClassDescriptor, AnnotationValue>> e : method.methodParameterAnnotations.entrySet()) {
+                writeInt(e.getKey());
+                writeAnnotations(e.getValue());
+            }
+            writeString(bridgedSignature);
+        }
+
+        private void writeAnnotations(Map<ClassDescriptor, AnnotationValue> annotations) {
+            writeInt(annotations.size());
+            for (Map.Entry<ClassDescriptor, AnnotationValue> e : annotations.entrySet()) {
+                writeString(e.getKey().getSignature());
+                writeAnnotation(e.getValue());
+            }
+        }
+
+        private void writeAnnotation(AnnotationValue annotation) {
+            writeString(annotation.getAnnotationClass().getSignature());
+            writeInt(annotation.valueMap.size());
+            for (Map.Entry<String, Object> e : annotation.valueMap.entrySet()) {
+                writeString(e.getKey());
+                writeValue(e.getValue());
+            }
+            writeInt(annotation.typeMap.size());
+            for (Map.Entry<String, Object> e : annotation.typeMap.entrySet()) {
+                writeString(e.getKey());
+                writeString((String) e.getValue());
+            }
+        }
+
+        /**
+         * Write one of the values an AnnotationVisitor can see, preceded by a
+         * tag identifying its type.
+         */
+        private void writeValue(Object value) {
+            if (value instanceof String) {
+                write('s');
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                write('I');
+                writeFixedInt((Integer) value);
+            } else if (value instanceof Boolean) {
+                write('Z');
+                write((Boolean) value ? 1 : 0);
+            } else if (value instanceof Byte) {
+                write('B');
+                write((Byte) value);
+            } else if (value instanceof Character) {
+                write('C');
+                writeInt((Character) value);
+            } else if (value instanceof Short) {
+                write('S');
+                writeFixedInt((Short) value);
+            } else if (value instanceof Long) {
+                write('J');
+                writeLong((Long) value);
+            } else if (value instanceof Float) {
+                write('F');
+                writeFixedInt(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Double) {
+                write('D');
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Type) {
+                write('T');
+                writeString(((Type) value).getDescriptor());
+            } else if (value instanceof EnumValue) {
+                write('e');
+                writeString(((EnumValue) value).desc.getSignature());
+                writeString(((EnumValue) value).value);
+            } else if (value instanceof AnnotationValue) {
+                write('@');
+                writeAnnotation((AnnotationValue) value);
+            } else if (value instanceof Object[]) {
+                write('[');
+                Object[] array = (Object[]) value;
+                writeInt(array.length);
+                for (Object element : array) {
+                    writeValue(element);
+                }
+            } else if (value instanceof boolean[]) {
+                write('z');
+                boolean[] array = (boolean[]) value;
+                writeInt(array.length);
+                for (boolean element : array) {
+                    write(element ? 1 : 0);
+                }
+            } else if (value instanceof byte[]) {
+                write('b');
+                byte[] array = (byte[]) value;
+                writeInt(array.length);
+                write(array, 0, array.length);
+            } else if (value instanceof char[]) {
+                write('c');
+                char[] array = (char[]) value;
+                writeInt(array.length);
+                for (char element : array) {
+                    writeInt(element);
+                }
+            } else if (value instanceof short[]) {
+                write('h');
+                short[] array = (short[]) value;
+                writeInt(array.length);
+                for (short element : array) {
+                    writeFixedInt(element);
+                }
+            } else if (value instanceof int[]) {
+                write('i');
+                int[] array = (int[]) value;
+                writeInt(array.length);
+                for (int element : array) {
+                    writeFixedInt(element);
+                }
+            } else if (value instanceof long[]) {
+                write('j');
+                long[] array = (long[]) value;
+                writeInt(array.length);
+                for (long element : array) {
+                    writeLong(element);
+                }
+            } else if (value instanceof float[]) {
+                write('f');
+                float[] array = (float[]) value;
+                writeInt(array.length);
+                for (float element : array) {
+                    writeFixedInt(Float.floatToRawIntBits(element));
+                }
+            } else if (value instanceof double[]) {
+                write('d');
+                double[] array = (double[]) value;
+                writeInt(array.length);
+                for (double element : array) {
+                    writeLong(Double.doubleToRawLongBits(element));
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected annotation value " + value);
+            }
+        }
+    }
+
+    /**
+     * Decodes the record of a class into builders, so that building them has
+     * the same effects as building the ones filled by the class parser.
+     */
+    private final class RecordReader {
+        private final ByteBuffer in;
+
+        RecordReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        int readInt() {
+            return readVarint(in);
+        }
+
+        @CheckForNull
+        String readString() {
+            int id = readInt();
+            return id == 0 ? null : getString(id - 1);
+        }
+
+        @CheckForNull
+        ClassDescriptor readClassName() {
+            String className = readString();
+            return className == null ? null : DescriptorFactory.createClassDescriptor(className);
+        }
+
+        List<ClassDescriptor> readClassNames() {
+            int count = readInt();
+            List<ClassDescriptor> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(readClassName());
+            }
+            return result;
+        }
+
+        ClassInfo.Builder readClass() {
+            ClassInfo.Builder builder = new ClassInfo.Builder();
+            builder.setClassDescriptor(readClassName());
+            builder.setSuperclassDescriptor(readClassName());
+            ClassDescriptor[] interfaces = new ClassDescriptor[readInt()];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = readClassName();
+            }
+            builder.setInterfaceDescriptorList(interfaces);
+            builder.setAccessFlags(readInt());
+            int majorVersion = readInt();
+            builder.setClassfileVersion(majorVersion, readInt());
+            builder.setReferencedClassDescriptors(Collections.<ClassDescriptor> emptyList());
+            builder.setCalledClassDescriptors(readClassNames());
+            builder.setSource(readString());
+            builder.setSourceSignature(readString());
+            builder.setImmediateEnclosingClass(readClassName());
+            int flags = readInt();
+            builder.usesConcurrency = (flags & 1) != 0;
+            builder.hasStubs = (flags & 2) != 0;
+            readAnnotations(builder.classAnnotations);
+
+            @SlashedClassName
+            String className = builder.classDescriptor.getClassName();
+            int numFields = readInt();
+            for (int i = 0; i < numFields; i++) {
+                String name = readString();
+                String signature = readString();
+                String sourceSignature = readString();
+                FieldInfo.Builder field = new FieldInfo.Builder(className, name, signature, readInt());
+                field.setSourceSignature(sourceSignature);
+                readAnnotations(field.fieldAnnotations);
+                builder.addFieldDescriptor(field.build());
+            }
+            int numMethods = readInt();
+            for (int i = 0; i < numMethods; i++) {
+                MethodInfo method = readMethod(className);
+                builder.addBridgeMethodDescriptor(method, readString());
+            }
+            return builder;
+        }
+
+        private MethodInfo readMethod(@SlashedClassName String className) {
+            String name = readString();
+            String signature = readString();
+            String sourceSignature = readString();
+            MethodInfo.Builder method = new MethodInfo.Builder(className, name, signature, readInt());
+            method.setSourceSignature(sourceSignature);
+            int flags = readInt();
+            method.isUnconditionalThrower = (flags & METHOD_UNCONDITIONAL_THROWER) != 0;
+            method.usesConcurrency = (flags & METHOD_USES_CONCURRENCY) != 0;
+            method.hasBackBranch = (flags & METHOD_HAS_BACK_BRANCH) != 0;
+            method.isStub = (flags & METHOD_IS_STUB) != 0;
+            method.isIdentity = (flags & METHOD_IS_IDENTITY) != 0;
+            method.usesInvokeDynamic = (flags & METHOD_USES_INVOKE_DYNAMIC) != 0;
+            method.methodCallCount = readInt();
+            method.variableIsSynthetic = in.getLong();
+            int numExceptions = readInt();
+            if (numExceptions > 0) {
+                String[] exceptions = new String[numExceptions - 1];
+                for (int i = 0; i < exceptions.length; i++) {
+                    exceptions[i] = readString();
+                }
+                method.exceptions = exceptions;
+            }
+            int accessMethodForMethod = readInt();
+            if (accessMethodForMethod != 0) {
+                method.setAccessMethodForMethod(readString(), readString(), readString(), accessMethodForMethod == 2);
+            }
+            int accessMethodForField = readInt();
+            if (accessMethodForField != 0) {
+                method.setAccessMethodForField(readString(), readString(), readString(), accessMethodForField == 2);
+            }
+            readAnnotations(method.methodAnnotations);
+            int numParameters = readInt();
+            for (int i = 0; i < numParameters; i++) {
+                Map<ClassDescriptor, AnnotationValue> annotations = new HashMap<>();
+                method.methodParameterAnnotations.put(readInt(), annotations);
+                readAnnotations(annotations);
+            }
+            return method.build();
+        }
+
+        private void readAnnotations(Map<ClassDescriptor, AnnotationValue> annotations) {
+            int count = readInt();
+            for (int i = 0; i < count; i++) {
+                ClassDescriptor annotationClass = DescriptorFactory.createClassDescriptorFromSignature(readString());
+                annotations.put(annotationClass, readAnnotation());
+            }
+        }
+
+        private AnnotationValue readAnnotation() {
+            AnnotationValue annotation = new AnnotationValue(readString());
+            int numValues = readInt();
+            for (int i = 0; i < numValues; i++) {
+                String name = readString();
+                annotation.valueMap.put(name, readValue());
+            }
+            int numTypes = readInt();
+            for (int i = 0; i < numTypes; i++) {
+                String name = readString();
+                annotation.typeMap.put(name, readString());
+            }
+            return annotation;
+        }
+
+        private Object readValue() {
+            byte tag = in.get();
+            switch (tag) {
+            case 's':
+                return readString();
+            case 'I':
+                return in.getInt();
+            case 'Z':
+                return in.get() != 0;
+            case 'B':
+                return in.get();
+            case 'C':
+                return (char) readInt();
+            case 'S':
+                return (short) in.getInt();
+            case 'J':
+                return in.getLong();
+            case 'F':
+                return Float.intBitsToFloat(in.getInt());
+            case 'D':
+                return Double.longBitsToDouble(in.getLong());
+            case 'T':
+                return Type.getType(readString());
+            case 'e':
+                String desc = readString();
+                return new EnumValue(desc, readString());
+            case '@':
+                return readAnnotation();
+            case '[':
+                Object[] objects = new Object[readInt()];
+                for (int i = 0; i < objects.length; i++) {
+                    objects[i] = readValue();
+                }
+                return objects;
+            case 'z':
+                boolean[] booleans = new boolean[readInt()];
+                for (int i = 0; i < booleans.length; i++) {
+                    booleans[i] = in.get() != 0;
+                }
+                return booleans;
+            case 'b':
+                byte[] bytes = new byte[readInt()];
+                in.get(bytes);
+                return bytes;
+            case 'c':
+                char[] chars = new char[readInt()];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = (char) readInt();
+                }
+                return chars;
+            case 'h':
+                short[] shorts = new short[readInt()];
+                for (int i = 0; i < shorts.length; i++) {
+                    shorts[i] = (short) in.getInt();
+                }
+                return shorts;
+            case 'i':
+                int[] ints = new int[readInt()];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = in.getInt();
+                }
+                return ints;
+            case 'j':
+                long[] longs = new long[readInt()];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = in.getLong();
+                }
+                return longs;
+            case 'f':
+                float[] floats = new float[readInt()];
+                for (int i = 0; i < floats.length; i++) {
+                    floats[i] = Float.intBitsToFloat(in.getInt());
+                }
+                return floats;
+            case 'd':
+                double[] doubles = new double[readInt()];
+                for (int i = 0; i < doubles.length; i++) {
+                    doubles[i] = Double.longBitsToDouble(in.getLong());
+                }
+                return doubles;
+            default:
+                throw new IllegalStateException("Unexpected annotation value tag " + tag);
+            }
+        }
+    }
+}
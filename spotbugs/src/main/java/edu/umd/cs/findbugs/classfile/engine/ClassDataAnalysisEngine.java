@@ -31,6 +31,7 @@ import edu.umd.cs.findbugs.classfile.MissingClassException;
 import edu.umd.cs.findbugs.classfile.RecomputableClassAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
 import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.impl.MappedZipFileCodeBaseEntry;
 import edu.umd.cs.findbugs.classfile.impl.ZipInputStreamCodeBaseEntry;
 import edu.umd.cs.findbugs.io.IO;
 
@@ -64,6 +65,12 @@ public class ClassDataAnalysisEngine extends RecomputableClassAnalysisEngine<Cla
         byte[] data;
         if (codeBaseEntry instanceof ZipInputStreamCodeBaseEntry) {
             data = ((ZipInputStreamCodeBaseEntry) codeBaseEntry).getBytes();
+        } else if (codeBaseEntry instanceof MappedZipFileCodeBaseEntry) {
+            try {
+                data = ((MappedZipFileCodeBaseEntry) codeBaseEntry).getBytes();
+            } catch (IOException e) {
+                throw new MissingClassException(descriptor, e);
+            }
         } else {
             try {
                 // Create a ByteArrayOutputStream to capture the class data
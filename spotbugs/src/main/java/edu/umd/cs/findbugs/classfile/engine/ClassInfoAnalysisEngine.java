@@ -26,8 +26,12 @@ import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.ClassNameMismatchException;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
 import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
 import edu.umd.cs.findbugs.classfile.analysis.ClassData;
 import edu.umd.cs.findbugs.classfile.analysis.ClassInfo;
+import edu.umd.cs.findbugs.classfile.analysis.ClassInfoSnapshot;
+import edu.umd.cs.findbugs.classfile.impl.JrtfsCodeBase.JrtfsCodebaseEntry;
 
 /**
  * Analysis engine to produce the ClassInfo for a loaded class. We parse just
@@ -56,6 +60,22 @@ public class ClassInfoAnalysisEngine implements IClassAnalysisEngine<XClass> {
         if (descriptor instanceof ClassInfo) {
             return (ClassInfo) descriptor;
         }
+
+        // Classes of the runtime image are usually in its snapshot
+        ClassInfoSnapshot snapshot = null;
+        try {
+            ICodeBaseEntry entry = analysisCache.getClassPath().lookupResource(descriptor.toResourceName());
+            if (entry instanceof JrtfsCodebaseEntry) {
+                snapshot = ((JrtfsCodebaseEntry) entry).getCodeBase().getClassInfoSnapshot();
+                ClassInfo.Builder builder = snapshot != null ? snapshot.lookup(descriptor, entry) : null;
+                if (builder != null) {
+                    return builder.build();
+                }
+            }
+        } catch (ResourceNotFoundException e) {
+            // Reported as a missing class below
+        }
+
         ClassData classData;
         try {
             classData = analysisCache.getClassAnalysis(ClassData.class, descriptor);
@@ -82,6 +102,9 @@ public class ClassInfoAnalysisEngine implements IClassAnalysisEngine<XClass> {
         if (!classInfo.getClassDescriptor().equals(descriptor)) {
             throw new ClassNameMismatchException(descriptor, classInfo.getClassDescriptor(), classData.getCodeBaseEntry());
         }
+        if (snapshot != null) {
+            snapshot.add(classInfoBuilder);
+        }
         return classInfo;
     }
 
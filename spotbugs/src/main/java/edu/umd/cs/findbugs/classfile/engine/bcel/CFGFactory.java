@@ -163,6 +163,9 @@ public class CFGFactory extends AnalysisFactory<CFG> {
                 PruneInfeasibleExceptionEdges pruner = new PruneInfeasibleExceptionEdges(cfg, methodGen, typeDataflow);
                 pruner.execute();
                 changed = changed || pruner.wasCFGModified();
+            } catch (MethodUnprofitableException e) {
+                // The analysis budget of the method ran out, keep the edges
+                assert true;
             } catch (MissingClassException e) {
                 AnalysisContext.currentAnalysisContext().getLookupFailureCallback()
                 .reportMissingClass(e.getClassNotFoundException());
@@ -192,6 +195,9 @@ public class CFGFactory extends AnalysisFactory<CFG> {
                     changed = true;
 
                 }
+            } catch (MethodUnprofitableException e) {
+                // The analysis budget of the method ran out, keep the edges
+                assert true;
             } catch (DataflowAnalysisException e) {
                 AnalysisContext.logError("Error pruning normal return edges for unconditionally throwing methods for "
                         + descriptor, e);
@@ -51,6 +51,7 @@ import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.PushInstruction;
 import org.apache.bcel.generic.Type;
 
+import edu.umd.cs.findbugs.ba.AnalysisBudget;
 import edu.umd.cs.findbugs.ba.BasicBlock;
 import edu.umd.cs.findbugs.ba.CFG;
 import edu.umd.cs.findbugs.ba.ClassContext;
@@ -713,6 +714,7 @@ public class ValueRangeAnalysisFactory implements IMethodAnalysisEngine<ValueRan
         List<RedundantCondition> redundantConditions = new ArrayList<>();
         for (VariableData data : analyzedArguments.values()) {
             for (LongRangeSet subRange : data.splitSet) {
+                AnalysisBudget.check();
                 BitSet reachedBlocks = new BitSet();
                 walkCFG(cfg, subRange, data.edges, reachedBlocks);
                 data.reachableBlocks.or(reachedBlocks);
@@ -21,10 +21,13 @@ package edu.umd.cs.findbugs.classfile.impl;
 
 import static java.util.Objects.requireNonNull;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -35,9 +38,13 @@ import org.apache.bcel.generic.ConstantPoolGen;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.asm.FBClassReader;
+import edu.umd.cs.findbugs.ba.AnalysisBudget;
+import edu.umd.cs.findbugs.ba.AnalysisBudgetExceededException;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.Dataflow;
 import edu.umd.cs.findbugs.ba.Debug;
+import edu.umd.cs.findbugs.ba.MethodUnprofitableException;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
@@ -49,28 +56,58 @@ import edu.umd.cs.findbugs.classfile.IErrorLogger;
 import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.classfile.UncheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
 import edu.umd.cs.findbugs.log.Profiler;
-import edu.umd.cs.findbugs.util.MapCache;
 
 /**
  * Implementation of IAnalysisCache. This object is responsible for registering
  * class and method analysis engines and caching analysis results.
+ * <p>
+ * The cache may be shared by the worker threads used when classes are
+ * analyzed in parallel. If several threads ask for the same result at the same
+ * time, only one of them computes it and the others wait for it.
+ * <p>
+ * Results which can be recomputed (those of engines whose
+ * {@link IClassAnalysisEngine#canRecompute()} returns true, JavaClass,
+ * FBClassReader, ConstantPoolGen and ClassContext together with the method
+ * analyses it holds) are evicted in least recently used order once their
+ * estimated size exceeds the heap budget. The budget may be set with the
+ * <code>findbugs.analysisCache.maxMegabytes</code> property and defaults to a
+ * quarter of the maximum heap size. ClassContexts are also limited in number,
+ * since the size of the CFGs and dataflows they hold is only estimated: the
+ * <code>findbugs.analysisCache.maxClassContexts</code> property sets the
+ * limit, which defaults to two per processor and at least 10.
+ * <p>
+ * Neither bound evicts the results of a class while it is pinned with
+ * {@link #pinClass(ClassDescriptor)}. The analysis pins each class while its
+ * detectors visit it, so that the ClassContext and the method analyses the
+ * detectors hold stay the ones the cache returns, even when other threads
+ * store results meanwhile. Pinned results may exceed both bounds.
  *
  * @author David Hovemeyer
  */
 public class AnalysisCache implements IAnalysisCache {
     /**
-     *
+     * Property setting the heap budget, in megabytes, for recomputable results.
      */
-    private static final int MAX_JAVACLASS_RESULTS_TO_CACHE = 3000;
-    private static final int MAX_FBCLASSREADER_RESULTS_TO_CACHE = 3000;
+    public static final String MAX_MEGABYTES_PROPERTY = "findbugs.analysisCache.maxMegabytes";
 
-    private static final int MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE = 500;
+    /**
+     * Property setting the maximum number of cached ClassContexts.
+     */
+    public static final String MAX_CLASS_CONTEXTS_PROPERTY = "findbugs.analysisCache.maxClassContexts";
 
     /**
-     * Maximum number of class analysis results to cache.
+     * Number of most recently used results which are never evicted, so that
+     * the results of the classes being analyzed survive even a tiny budget.
      */
-    private static final int MAX_CLASS_RESULTS_TO_CACHE = 5000;
+    private static final int MIN_RESULTS_TO_CACHE = 64;
+
+    /**
+     * Returned when waiting for a result computed by another thread would
+     * deadlock.
+     */
+    private static final Object COMPUTE_LOCALLY = new Object();
 
     //    private static final boolean ASSERTIONS_ENABLED = SystemProperties.ASSERTIONS_ENABLED;
 
@@ -85,9 +122,33 @@ public class AnalysisCache implements IAnalysisCache {
 
     private final Map<Class<?>, IDatabaseFactory<?>> databaseFactoryMap;
 
-    private final Map<Class<?>, Map<ClassDescriptor, Object>> classAnalysisMap;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<ClassDescriptor, Object>> classAnalysisMap;
+
+    private final ConcurrentMap<Class<?>, Object> databaseMap;
+
+    private final ConcurrentMap<MethodAnalysisKey, PendingResult> pendingMethodAnalyses;
+
+    private final ConcurrentMap<Class<?>, Boolean> evictableAnalysisClasses;
+
+    /** Threads waiting for a result, used to detect wait cycles. Guarded by itself. */
+    private final Map<Thread, PendingResult> waitingThreads;
+
+    /** Evictable results in access order. Guarded by itself. */
+    private final LinkedHashMap<EvictionKey, EvictionEntry> evictionQueue;
+
+    /** Estimated size of the results in evictionQueue. Guarded by evictionQueue. */
+    private long cachedBytes;
+
+    private final long maxCachedBytes;
+
+    /** Number of results of the limited analysis classes in evictionQueue. Guarded by evictionQueue. */
+    private final Map<Class<?>, Integer> cachedCounts;
 
-    private final Map<Class<?>, Object> databaseMap;
+    /** Maximum number of cached results of some analysis classes. Guarded by evictionQueue. */
+    private final Map<Class<?>, Integer> maxCachedCounts;
+
+    /** Number of pins of the classes whose results are not evicted. Guarded by evictionQueue. */
+    private final Map<ClassDescriptor, Integer> pinnedClasses;
 
     private final Map<?, ?> analysisLocals = Collections.synchronizedMap(new HashMap<>());
 
@@ -138,6 +199,109 @@ public class AnalysisCache implements IAnalysisCache {
 
     static final AbnormalAnalysisResult NULL_ANALYSIS_RESULT = new AbnormalAnalysisResult();
 
+    /**
+     * Placeholder for a result which is being computed by another thread.
+     */
+    private static final class PendingResult {
+        final Thread owner = Thread.currentThread();
+
+        private boolean done;
+
+        private Object result;
+
+        /**
+         * @param result
+         *            the computed result, or null if the owner failed to
+         *            compute one and waiting threads should try themselves
+         */
+        synchronized void complete(@CheckForNull Object result) {
+            this.result = result;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized Object await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+
+    private static final class MethodAnalysisKey {
+        final Class<?> analysisClass;
+
+        final MethodDescriptor methodDescriptor;
+
+        MethodAnalysisKey(Class<?> analysisClass, MethodDescriptor methodDescriptor) {
+            this.analysisClass = analysisClass;
+            this.methodDescriptor = methodDescriptor;
+        }
+
+        @Override
+        public int hashCode() {
+            return analysisClass.hashCode() * 31 + methodDescriptor.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MethodAnalysisKey)) {
+                return false;
+            }
+            MethodAnalysisKey other = (MethodAnalysisKey) obj;
+            return analysisClass == other.analysisClass && methodDescriptor.equals(other.methodDescriptor);
+        }
+    }
+
+    private static final class EvictionKey {
+        final Class<?> analysisClass;
+
+        final ClassDescriptor classDescriptor;
+
+        EvictionKey(Class<?> analysisClass, ClassDescriptor classDescriptor) {
+            this.analysisClass = analysisClass;
+            this.classDescriptor = classDescriptor;
+        }
+
+        @Override
+        public int hashCode() {
+            return analysisClass.hashCode() * 31 + classDescriptor.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof EvictionKey)) {
+                return false;
+            }
+            EvictionKey other = (EvictionKey) obj;
+            return analysisClass == other.analysisClass && classDescriptor.equals(other.classDescriptor);
+        }
+    }
+
+    private static final class EvictionEntry {
+        final Object result;
+
+        /** estimated size of the result itself */
+        final long baseSize;
+
+        /** estimated size including method analyses held by a ClassContext */
+        long size;
+
+        EvictionEntry(Object result, long size) {
+            this.result = result;
+            this.baseSize = size;
+            this.size = size;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     static <E> E checkedCast(Class<E> analysisClass, Object o) {
         if (SystemProperties.ASSERTIONS_ENABLED) {
@@ -155,13 +319,89 @@ public class AnalysisCache implements IAnalysisCache {
      *            the IErrorLogger
      */
     AnalysisCache(IClassPath classPath, BugReporter errorLogger) {
+        this(classPath, errorLogger, getDefaultMaxCachedBytes());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classPath
+     *            the IClassPath to load resources from
+     * @param errorLogger
+     *            the IErrorLogger
+     * @param maxCachedBytes
+     *            heap budget, in bytes, for recomputable results
+     */
+    AnalysisCache(IClassPath classPath, BugReporter errorLogger, long maxCachedBytes) {
         this.classPath = classPath;
         this.bugReporter = errorLogger;
-        this.classAnalysisEngineMap = new HashMap<>();
-        this.methodAnalysisEngineMap = new HashMap<>();
-        this.databaseFactoryMap = new HashMap<>();
-        this.classAnalysisMap = new HashMap<>();
-        this.databaseMap = new HashMap<>();
+        this.classAnalysisEngineMap = new ConcurrentHashMap<>();
+        this.methodAnalysisEngineMap = new ConcurrentHashMap<>();
+        this.databaseFactoryMap = new ConcurrentHashMap<>();
+        this.classAnalysisMap = new ConcurrentHashMap<>();
+        this.databaseMap = new ConcurrentHashMap<>();
+        this.pendingMethodAnalyses = new ConcurrentHashMap<>();
+        this.evictableAnalysisClasses = new ConcurrentHashMap<>();
+        this.waitingThreads = new HashMap<>();
+        this.evictionQueue = new LinkedHashMap<>(1024, 0.75f, true);
+        this.maxCachedBytes = maxCachedBytes;
+        this.cachedCounts = new HashMap<>();
+        this.maxCachedCounts = new HashMap<>();
+        this.pinnedClasses = new HashMap<>();
+        maxCachedCounts.put(ClassContext.class, getDefaultMaxClassContexts());
+    }
+
+    private static long getDefaultMaxCachedBytes() {
+        int megabytes = SystemProperties.getInt(MAX_MEGABYTES_PROPERTY, 0);
+        if (megabytes > 0) {
+            return megabytes * 1024L * 1024L;
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private static int getDefaultMaxClassContexts() {
+        int max = SystemProperties.getInt(MAX_CLASS_CONTEXTS_PROPERTY, 0);
+        if (max > 0) {
+            return max;
+        }
+        return Math.max(10, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Limit the number of cached results of an analysis class, in addition to
+     * the heap budget.
+     *
+     * @param analysisClass
+     *            the recomputable analysis class
+     * @param max
+     *            maximum number of its results to cache
+     */
+    void setMaxCachedResults(Class<?> analysisClass, int max) {
+        synchronized (evictionQueue) {
+            maxCachedCounts.put(analysisClass, max);
+            int count = 0;
+            for (EvictionKey key : evictionQueue.keySet()) {
+                if (key.analysisClass == analysisClass) {
+                    count++;
+                }
+            }
+            cachedCounts.put(analysisClass, count);
+            evictIfNecessary(analysisClass);
+        }
+    }
+
+    @Override
+    public void pinClass(ClassDescriptor classDescriptor) {
+        synchronized (evictionQueue) {
+            pinnedClasses.merge(classDescriptor, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public void unpinClass(ClassDescriptor classDescriptor) {
+        synchronized (evictionQueue) {
+            pinnedClasses.computeIfPresent(classDescriptor, (c, pins) -> pins > 1 ? pins - 1 : null);
+        }
     }
 
     @Override
@@ -174,29 +414,41 @@ public class AnalysisCache implements IAnalysisCache {
         // System.out.println("ZZZ : purging all method analyses");
 
         try {
-            Map<ClassDescriptor, ClassContext> map = getAllClassAnalysis(ClassContext.class);
-            Collection<?> allClassContexts = map.values();
-            for (Object c : allClassContexts) {
+            Map<ClassDescriptor, Object> map = classAnalysisMap.get(ClassContext.class);
+            if (map == null) {
+                return;
+            }
+            for (Object c : map.values()) {
                 if (c instanceof ClassContext) {
                     ((ClassContext) c).purgeAllMethodAnalyses();
                 }
             }
+            synchronized (evictionQueue) {
+                for (EvictionEntry entry : evictionQueue.values()) {
+                    if (entry.result instanceof ClassContext) {
+                        cachedBytes -= entry.size - entry.baseSize;
+                        entry.size = entry.baseSize;
+                    }
+                }
+            }
         } catch (ClassCastException e) {
             AnalysisContext.logError("Unable to purge method analysis", e);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private <E> Map<ClassDescriptor, E> getAllClassAnalysis(Class<E> analysisClass)  {
-        Map<ClassDescriptor, Object> descriptorMap
-        = findOrCreateDescriptorMap(classAnalysisMap, classAnalysisEngineMap,
-                analysisClass);
-        return (Map<ClassDescriptor, E>) descriptorMap;
-    }
-
     @Override
     public void purgeClassAnalysis(Class<?> analysisClass) {
         classAnalysisMap.remove(analysisClass);
+        synchronized (evictionQueue) {
+            for (Iterator<Map.Entry<EvictionKey, EvictionEntry>> i = evictionQueue.entrySet().iterator(); i.hasNext();) {
+                Map.Entry<EvictionKey, EvictionEntry> entry = i.next();
+                if (entry.getKey().analysisClass == analysisClass) {
+                    cachedBytes -= entry.getValue().size;
+                    i.remove();
+                }
+            }
+            cachedCounts.remove(analysisClass);
+        }
     }
 
     /**
@@ -209,14 +461,30 @@ public class AnalysisCache implements IAnalysisCache {
         databaseFactoryMap.clear();
         databaseMap.clear();
         methodAnalysisEngineMap.clear();
+        synchronized (evictionQueue) {
+            evictionQueue.clear();
+            cachedBytes = 0;
+            cachedCounts.clear();
+            pinnedClasses.clear();
+        }
     }
 
     /**
      * @param analysisClass non null analysis type
-     * @return map with analysis data for given type, can be null
+     * @return copy of the map with analysis data for given type, can be null
      */
     public @CheckForNull Map<ClassDescriptor, Object> getClassAnalysis(Class<?> analysisClass) {
-        return classAnalysisMap.get(analysisClass);
+        Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
+        if (descriptorMap == null) {
+            return null;
+        }
+        Map<ClassDescriptor, Object> result = new HashMap<>();
+        for (Map.Entry<ClassDescriptor, Object> entry : descriptorMap.entrySet()) {
+            if (!(entry.getValue() instanceof PendingResult)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
     }
 
     /**
@@ -225,69 +493,28 @@ public class AnalysisCache implements IAnalysisCache {
      * @param map non null, pre-filled map with analysis data for given type
      */
     public <E> void reuseClassAnalysis(Class<E> analysisClass, Map<ClassDescriptor, Object> map) {
-        Map<ClassDescriptor, Object> myMap = classAnalysisMap.get(analysisClass);
-        if (myMap != null) {
-            myMap.putAll(map);
-        } else {
-            myMap = createMap(classAnalysisEngineMap, analysisClass);
-            myMap.putAll(map);
-            classAnalysisMap.put(analysisClass, myMap);
+        Map<ClassDescriptor, Object> myMap = findOrCreateDescriptorMap(analysisClass);
+        for (Map.Entry<ClassDescriptor, Object> entry : map.entrySet()) {
+            myMap.put(entry.getKey(), entry.getValue());
+            classAnalysisStored(analysisClass, entry.getKey(), entry.getValue());
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) throws CheckedAnalysisException {
         requireNonNull(classDescriptor, "classDescriptor is null");
         // Get the descriptor->result map for this analysis class,
         // creating if necessary
-        Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(classAnalysisMap,
-                classAnalysisEngineMap,
-                analysisClass);
+        ConcurrentMap<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(analysisClass);
 
         // See if there is a cached result in the descriptor map
         Object analysisResult = descriptorMap.get(classDescriptor);
-        if (analysisResult == null) {
-            // No cached result - compute (or recompute)
-
-            IAnalysisEngine<ClassDescriptor, E> engine = (IAnalysisEngine<ClassDescriptor, E>) classAnalysisEngineMap
-                    .get(analysisClass);
-            if (engine == null) {
-                throw new IllegalArgumentException("No analysis engine registered to produce " + analysisClass.getName());
-            }
-            Profiler profiler = getProfiler();
-            // Perform the analysis
-            try {
-                profiler.start(engine.getClass());
-                analysisResult = engine.analyze(this, classDescriptor);
-
-                // If engine returned null, we need to construct
-                // an AbnormalAnalysisResult object to record that fact.
-                // Otherwise we will try to recompute the value in
-                // the future.
-                if (analysisResult == null) {
-                    analysisResult = NULL_ANALYSIS_RESULT;
-                }
-            } catch (CheckedAnalysisException e) {
-                // Exception - make note
-                // Andrei: e.getStackTrace() cannot be null, but getter clones
-                // the stack...
-                // if (e.getStackTrace() == null)
-                // e.fillInStackTrace();
-                analysisResult = new AbnormalAnalysisResult(e);
-            } catch (RuntimeException e) {
-                // Exception - make note
-                // Andrei: e.getStackTrace() cannot be null, but getter clones
-                // the stack...
-                // if (e.getStackTrace() == null)
-                // e.fillInStackTrace();
-                analysisResult = new AbnormalAnalysisResult(e);
-            } finally {
-                profiler.end(engine.getClass());
-            }
-
-            // Save the result
-            descriptorMap.put(classDescriptor, analysisResult);
+        if (analysisResult == null || analysisResult instanceof PendingResult) {
+            // No cached result - compute (or recompute), or wait for the
+            // thread computing it
+            analysisResult = findOrCompute(descriptorMap, analysisClass, classDescriptor);
+        } else {
+            classAnalysisUsed(analysisClass, classDescriptor);
         }
 
         // Abnormal analysis result?
@@ -298,13 +525,133 @@ public class AnalysisCache implements IAnalysisCache {
         return checkedCast(analysisClass, analysisResult);
     }
 
+    /**
+     * Find a class analysis result, computing it if it is neither cached nor
+     * being computed by another thread.
+     *
+     * @return the result, or an AbnormalAnalysisResult
+     */
+    private Object findOrCompute(ConcurrentMap<ClassDescriptor, Object> descriptorMap, Class<?> analysisClass,
+            ClassDescriptor classDescriptor) {
+        while (true) {
+            Object analysisResult = descriptorMap.get(classDescriptor);
+            if (analysisResult == null) {
+                PendingResult pending = new PendingResult();
+                analysisResult = descriptorMap.putIfAbsent(classDescriptor, pending);
+                if (analysisResult == null) {
+                    Object computed = null;
+                    try {
+                        computed = analyzeClass(analysisClass, classDescriptor);
+
+                        // Save the result, unless the analysis class was
+                        // purged in the meantime
+                        if (descriptorMap.replace(classDescriptor, pending, computed)) {
+                            classAnalysisStored(analysisClass, classDescriptor, computed);
+                        }
+                        return computed;
+                    } finally {
+                        if (computed == null) {
+                            descriptorMap.remove(classDescriptor, pending);
+                        }
+                        pending.complete(computed);
+                    }
+                }
+            }
+            if (!(analysisResult instanceof PendingResult)) {
+                return analysisResult;
+            }
+            analysisResult = await((PendingResult) analysisResult);
+            if (analysisResult == COMPUTE_LOCALLY) {
+                return analyzeClass(analysisClass, classDescriptor);
+            } else if (analysisResult != null) {
+                return analysisResult;
+            }
+            // the other thread failed, try again
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E> Object analyzeClass(Class<E> analysisClass, ClassDescriptor classDescriptor) {
+        IAnalysisEngine<ClassDescriptor, E> engine = (IAnalysisEngine<ClassDescriptor, E>) classAnalysisEngineMap
+                .get(analysisClass);
+        if (engine == null) {
+            throw new IllegalArgumentException("No analysis engine registered to produce " + analysisClass.getName());
+        }
+        Profiler profiler = getProfiler();
+        Object analysisResult;
+        // Perform the analysis
+        try {
+            profiler.start(engine.getClass());
+            analysisResult = engine.analyze(this, classDescriptor);
+
+            // If engine returned null, we need to construct
+            // an AbnormalAnalysisResult object to record that fact.
+            // Otherwise we will try to recompute the value in
+            // the future.
+            if (analysisResult == null) {
+                analysisResult = NULL_ANALYSIS_RESULT;
+            }
+        } catch (CheckedAnalysisException e) {
+            // Exception - make note
+            // Andrei: e.getStackTrace() cannot be null, but getter clones
+            // the stack...
+            // if (e.getStackTrace() == null)
+            // e.fillInStackTrace();
+            analysisResult = new AbnormalAnalysisResult(e);
+        } catch (RuntimeException e) {
+            // Exception - make note
+            // Andrei: e.getStackTrace() cannot be null, but getter clones
+            // the stack...
+            // if (e.getStackTrace() == null)
+            // e.fillInStackTrace();
+            analysisResult = new AbnormalAnalysisResult(e);
+        } finally {
+            profiler.end(engine.getClass());
+        }
+        return analysisResult;
+    }
+
+    /**
+     * Wait for a result being computed by another thread.
+     *
+     * @return the result, null if the other thread failed to compute it, or
+     *         COMPUTE_LOCALLY if the current thread should compute it itself
+     *         because waiting would deadlock
+     */
+    private Object await(PendingResult pending) {
+        Thread currentThread = Thread.currentThread();
+        synchronized (waitingThreads) {
+            // Follow the chain of threads waiting for each other
+            Thread thread = pending.owner;
+            for (int i = 0; thread != null && i <= waitingThreads.size(); i++) {
+                if (thread == currentThread) {
+                    return COMPUTE_LOCALLY;
+                }
+                PendingResult awaited = waitingThreads.get(thread);
+                thread = awaited != null ? awaited.owner : null;
+            }
+            waitingThreads.put(currentThread, pending);
+        }
+        try {
+            return pending.await();
+        } finally {
+            synchronized (waitingThreads) {
+                waitingThreads.remove(currentThread);
+            }
+        }
+    }
+
     @Override
     public <E> E probeClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) {
         Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
         if (descriptorMap == null) {
             return null;
         }
-        return checkedCast(analysisClass, descriptorMap.get(classDescriptor));
+        Object analysisResult = descriptorMap.get(classDescriptor);
+        if (analysisResult instanceof PendingResult) {
+            return null;
+        }
+        return checkedCast(analysisClass, analysisResult);
     }
 
     String hex(Object o) {
@@ -318,19 +665,7 @@ public class AnalysisCache implements IAnalysisCache {
         Object object = classContext.getMethodAnalysis(analysisClass, methodDescriptor);
 
         if (object == null) {
-            try {
-                object = analyzeMethod(classContext, analysisClass, methodDescriptor);
-                if (object == null) {
-                    object = NULL_ANALYSIS_RESULT;
-                }
-            } catch (RuntimeException e) {
-                object = new AbnormalAnalysisResult(e);
-            } catch (CheckedAnalysisException e) {
-                object = new AbnormalAnalysisResult(e);
-            }
-
-            classContext.putMethodAnalysis(analysisClass, methodDescriptor, object);
-
+            object = findOrComputeMethodAnalysis(classContext, analysisClass, methodDescriptor);
         }
         if (Debug.VERIFY_INTEGRITY && object == null) {
             throw new IllegalStateException("AnalysisFactory failed to produce a result object");
@@ -343,6 +678,60 @@ public class AnalysisCache implements IAnalysisCache {
         return checkedCast(analysisClass, object);
     }
 
+    /**
+     * Find a method analysis result, computing it if it is neither cached nor
+     * being computed by another thread.
+     *
+     * @return the result, or an AbnormalAnalysisResult
+     */
+    private Object findOrComputeMethodAnalysis(ClassContext classContext, Class<?> analysisClass,
+            MethodDescriptor methodDescriptor) {
+        MethodAnalysisKey key = new MethodAnalysisKey(analysisClass, methodDescriptor);
+        while (true) {
+            PendingResult pending = new PendingResult();
+            PendingResult other = pendingMethodAnalyses.putIfAbsent(key, pending);
+            if (other == null) {
+                Object object = null;
+                try {
+                    // Another thread may have finished just before we
+                    // registered
+                    object = classContext.getMethodAnalysis(analysisClass, methodDescriptor);
+                    if (object == null) {
+                        object = computeMethodAnalysis(classContext, analysisClass, methodDescriptor);
+                        classContext.putMethodAnalysis(analysisClass, methodDescriptor, object);
+                        methodAnalysisStored(classContext, object);
+                    }
+                    return object;
+                } finally {
+                    pendingMethodAnalyses.remove(key, pending);
+                    pending.complete(object);
+                }
+            }
+            Object object = await(other);
+            if (object == COMPUTE_LOCALLY) {
+                return computeMethodAnalysis(classContext, analysisClass, methodDescriptor);
+            } else if (object != null) {
+                return object;
+            }
+            // the other thread failed, try again
+        }
+    }
+
+    private Object computeMethodAnalysis(ClassContext classContext, Class<?> analysisClass, MethodDescriptor methodDescriptor) {
+        Object object;
+        try {
+            object = analyzeMethod(classContext, analysisClass, methodDescriptor);
+            if (object == null) {
+                object = NULL_ANALYSIS_RESULT;
+            }
+        } catch (RuntimeException e) {
+            object = new AbnormalAnalysisResult(e);
+        } catch (CheckedAnalysisException e) {
+            object = new AbnormalAnalysisResult(e);
+        }
+        return object;
+    }
+
     /**
      * Analyze a method.
      *
@@ -363,12 +752,24 @@ public class AnalysisCache implements IAnalysisCache {
         if (engine == null) {
             throw new IllegalArgumentException("No analysis engine registered to produce " + analysisClass.getName());
         }
+        boolean budgeted = AnalysisBudget.isEnabled();
+        if (budgeted) {
+            AnalysisBudget.enter(methodDescriptor, Dataflow.class.isAssignableFrom(analysisClass));
+        }
         Profiler profiler = getProfiler();
         profiler.start(engine.getClass());
         try {
             return engine.analyze(this, methodDescriptor);
+        } catch (AnalysisBudgetExceededException e) {
+            // Let detectors skip the method, as for a method too big to analyze
+            MethodUnprofitableException skipped = new MethodUnprofitableException(methodDescriptor);
+            skipped.initCause(e);
+            throw skipped;
         } finally {
             profiler.end(engine.getClass());
+            if (budgeted) {
+                AnalysisBudget.exit();
+            }
         }
     }
 
@@ -378,6 +779,7 @@ public class AnalysisCache implements IAnalysisCache {
             ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
             assert analysisClass.isInstance(analysisObject);
             classContext.putMethodAnalysis(analysisClass, methodDescriptor, analysisObject);
+            methodAnalysisStored(classContext, analysisObject);
         } catch (CheckedAnalysisException e) {
             IllegalStateException ise = new IllegalStateException("Unexpected exception adding method analysis to cache");
             ise.initCause(e);
@@ -400,57 +802,144 @@ public class AnalysisCache implements IAnalysisCache {
     }
 
     /**
-     * Find or create a descriptor to analysis object map.
+     * Find or create the descriptor to analysis object map for an analysis
+     * class.
      *
-     * @param <DescriptorType>
-     *            type of descriptor used as the map's key type (ClassDescriptor
-     *            or MethodDescriptor)
-     * @param analysisClassToDescriptorMapMap
-     *            analysis class to descriptor map map
-     * @param engineMap
-     *            analysis class to analysis engine map
      * @param analysisClass
-     *            the analysis map
+     *            the analysis class
      * @return the descriptor to analysis object map
      */
-    private static <DescriptorType> Map<DescriptorType, Object> findOrCreateDescriptorMap(
-            final Map<Class<?>, Map<DescriptorType, Object>> analysisClassToDescriptorMapMap,
-            final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap,
-                    final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap = analysisClassToDescriptorMapMap.get(analysisClass);
+    private ConcurrentMap<ClassDescriptor, Object> findOrCreateDescriptorMap(Class<?> analysisClass) {
+        ConcurrentMap<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(analysisClass);
         if (descriptorMap == null) {
-            descriptorMap = createMap(engineMap, analysisClass);
-            analysisClassToDescriptorMapMap.put(analysisClass, descriptorMap);
+            descriptorMap = new ConcurrentHashMap<>();
+            ConcurrentMap<ClassDescriptor, Object> existing = classAnalysisMap.putIfAbsent(analysisClass, descriptorMap);
+            if (existing != null) {
+                descriptorMap = existing;
+            }
         }
         return descriptorMap;
     }
 
-    private static <DescriptorType> Map<DescriptorType, Object> createMap(
-            final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap,
-                    final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap;
-        // Create a MapCache that allows the analysis engine to
-        // decide that analysis results should be retained indefinitely.
-        IAnalysisEngine<DescriptorType, ?> engine = engineMap.get(analysisClass);
-        if (analysisClass.equals(JavaClass.class)) {
-            descriptorMap = new MapCache<>(MAX_JAVACLASS_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(FBClassReader.class)) {
-            descriptorMap = new MapCache<>(MAX_FBCLASSREADER_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(ConstantPoolGen.class)) {
-            descriptorMap = new MapCache<>(MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE);
-        } else if (analysisClass.equals(ClassContext.class)) {
-            descriptorMap = new MapCache<>(10);
-        } else if (engine instanceof IClassAnalysisEngine && ((IClassAnalysisEngine<?>) engine).canRecompute()) {
-            descriptorMap = new MapCache<>(MAX_CLASS_RESULTS_TO_CACHE);
+    /**
+     * Results of some analysis classes are kept until they are purged
+     * explicitly, everything which can be recomputed may be evicted.
+     */
+    private boolean isEvictable(Class<?> analysisClass) {
+        Boolean evictable = evictableAnalysisClasses.get(analysisClass);
+        if (evictable == null) {
+            IClassAnalysisEngine<?> engine = classAnalysisEngineMap.get(analysisClass);
+            evictable = analysisClass.equals(JavaClass.class) || analysisClass.equals(FBClassReader.class)
+                    || analysisClass.equals(ConstantPoolGen.class) || analysisClass.equals(ClassContext.class)
+                    || (engine != null && engine.canRecompute());
+            evictableAnalysisClasses.put(analysisClass, evictable);
+        }
+        return evictable.booleanValue();
+    }
+
+    private void classAnalysisUsed(Class<?> analysisClass, ClassDescriptor classDescriptor) {
+        if (isEvictable(analysisClass)) {
+            synchronized (evictionQueue) {
+                // moves the entry to the end of the queue
+                evictionQueue.get(new EvictionKey(analysisClass, classDescriptor));
+            }
+        }
+    }
+
+    private void classAnalysisStored(Class<?> analysisClass, ClassDescriptor classDescriptor, Object result) {
+        if (!isEvictable(analysisClass)) {
+            return;
+        }
+        long size;
+        if (result instanceof AbnormalAnalysisResult) {
+            size = AnalysisResultSizeEstimator.ENTRY_OVERHEAD;
         } else {
-            descriptorMap = new HashMap<>();
+            size = AnalysisResultSizeEstimator.estimateClassAnalysis(result, getClassFileSize(classDescriptor));
+        }
+        synchronized (evictionQueue) {
+            EvictionEntry old = evictionQueue.put(new EvictionKey(analysisClass, classDescriptor), new EvictionEntry(result, size));
+            if (old != null) {
+                cachedBytes -= old.size;
+            } else if (maxCachedCounts.containsKey(analysisClass)) {
+                cachedCounts.merge(analysisClass, 1, Integer::sum);
+            }
+            cachedBytes += size;
+            evictIfNecessary(analysisClass);
+        }
+    }
+
+    private void methodAnalysisStored(ClassContext classContext, Object result) {
+        long size = AnalysisResultSizeEstimator.estimateMethodAnalysis(result);
+        synchronized (evictionQueue) {
+            EvictionEntry entry = evictionQueue.get(new EvictionKey(ClassContext.class, classContext.getClassDescriptor()));
+            if (entry != null && entry.result == classContext) {
+                entry.size += size;
+                cachedBytes += size;
+                evictIfNecessary(ClassContext.class);
+            }
+        }
+    }
+
+    private int getClassFileSize(ClassDescriptor classDescriptor) {
+        Object classData = probeClassAnalysis(ClassData.class, classDescriptor);
+        if (classData instanceof ClassData) {
+            return ((ClassData) classData).getData().length;
+        }
+        return AnalysisResultSizeEstimator.DEFAULT_CLASS_FILE_SIZE;
+    }
+
+    /**
+     * Evict least recently used results while over the heap budget, and
+     * results of the analysis class just stored while over its limit. Results
+     * of pinned classes are skipped.
+     */
+    private void evictIfNecessary(Class<?> storedClass) {
+        assert Thread.holdsLock(evictionQueue);
+        Iterator<Map.Entry<EvictionKey, EvictionEntry>> i = evictionQueue.entrySet().iterator();
+        while (cachedBytes > maxCachedBytes && evictionQueue.size() > MIN_RESULTS_TO_CACHE && i.hasNext()) {
+            Map.Entry<EvictionKey, EvictionEntry> eldest = i.next();
+            if (!pinnedClasses.containsKey(eldest.getKey().classDescriptor)) {
+                i.remove();
+                evicted(eldest.getKey(), eldest.getValue());
+            }
+        }
+        Integer max = maxCachedCounts.get(storedClass);
+        if (max == null) {
+            return;
+        }
+        i = evictionQueue.entrySet().iterator();
+        while (cachedCounts.getOrDefault(storedClass, 0) > max && i.hasNext()) {
+            Map.Entry<EvictionKey, EvictionEntry> entry = i.next();
+            if (entry.getKey().analysisClass == storedClass && !pinnedClasses.containsKey(entry.getKey().classDescriptor)) {
+                i.remove();
+                evicted(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void evicted(EvictionKey key, EvictionEntry entry) {
+        cachedBytes -= entry.size;
+        cachedCounts.computeIfPresent(key.analysisClass, (c, count) -> count - 1);
+        Map<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(key.analysisClass);
+        if (descriptorMap != null) {
+            descriptorMap.remove(key.classDescriptor, entry.result);
+        }
+    }
+
+    /**
+     * @return estimated size, in bytes, of the recomputable results currently
+     *         cached
+     */
+    long getCachedBytes() {
+        synchronized (evictionQueue) {
+            return cachedBytes;
         }
-        return descriptorMap;
     }
 
     @Override
     public <E> void registerClassAnalysisEngine(Class<E> analysisResultType, IClassAnalysisEngine<E> classAnalysisEngine) {
         classAnalysisEngineMap.put(analysisResultType, classAnalysisEngine);
+        evictableAnalysisClasses.remove(analysisResultType);
     }
 
     @Override
@@ -474,8 +963,8 @@ public class AnalysisCache implements IAnalysisCache {
     public <E> E getDatabase(Class<E> databaseClass, boolean optional) {
         Object database = databaseMap.get(databaseClass);
 
-        if (database == null) {
-            try {
+        while (database == null || database instanceof PendingResult) {
+            if (database == null) {
                 // Find the database factory
                 IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
                 if (databaseFactory == null) {
@@ -484,15 +973,36 @@ public class AnalysisCache implements IAnalysisCache {
                     }
                     throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
                 }
-
-                // Create the database
-                database = databaseFactory.createDatabase();
-            } catch (CheckedAnalysisException e) {
-                // Error - record the analysis error
-                database = new AbnormalAnalysisResult(e);
+                PendingResult pending = new PendingResult();
+                database = databaseMap.putIfAbsent(databaseClass, pending);
+                if (database == null) {
+                    try {
+                        database = createDatabase(databaseFactory);
+                        if (database != null) {
+                            databaseMap.replace(databaseClass, pending, database);
+                        }
+                    } finally {
+                        if (database == null) {
+                            databaseMap.remove(databaseClass, pending);
+                        }
+                        pending.complete(database);
+                    }
+                    if (database == null) {
+                        return null;
+                    }
+                }
+            } else {
+                database = await((PendingResult) database);
+                if (database == COMPUTE_LOCALLY) {
+                    database = createDatabase(databaseFactoryMap.get(databaseClass));
+                    if (database == null) {
+                        return null;
+                    }
+                } else if (database == null) {
+                    // the other thread failed, try again
+                    database = databaseMap.get(databaseClass);
+                }
             }
-            // FIXME: should catch and re-throw RuntimeExceptions?
-            databaseMap.put(databaseClass, database);
         }
 
         if (database instanceof AbnormalAnalysisResult) {
@@ -502,6 +1012,17 @@ public class AnalysisCache implements IAnalysisCache {
         return databaseClass.cast(database);
     }
 
+    private static Object createDatabase(IDatabaseFactory<?> databaseFactory) {
+        try {
+            // Create the database
+            return databaseFactory.createDatabase();
+        } catch (CheckedAnalysisException e) {
+            // Error - record the analysis error
+            return new AbnormalAnalysisResult(e);
+        }
+        // FIXME: should catch and re-throw RuntimeExceptions?
+    }
+
     @Override
     public <E> void eagerlyPutDatabase(Class<E> databaseClass, E database) {
         databaseMap.put(databaseClass, database);
@@ -0,0 +1,108 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.objectweb.asm.tree.ClassNode;
+
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.asm.FBClassReader;
+import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.Dataflow;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+
+/**
+ * Rough estimates of the heap retained by cached analysis results. The
+ * estimates are only used to decide when the AnalysisCache is over its
+ * budget, so they are derived from cheap size hints (the size of the class
+ * file, the number of basic blocks in a CFG) rather than by walking the
+ * object graph.
+ */
+final class AnalysisResultSizeEstimator {
+
+    /** Assumed class file size when the class bytes are not cached. */
+    static final int DEFAULT_CLASS_FILE_SIZE = 4 * 1024;
+
+    /** Fixed per-entry overhead of the cache itself. */
+    static final int ENTRY_OVERHEAD = 64;
+
+    /** Estimated size of a basic block and its edges. */
+    private static final int BYTES_PER_BASIC_BLOCK = 512;
+
+    /** Estimated size of the facts kept for one basic block. */
+    private static final int BYTES_PER_DATAFLOW_BLOCK = 384;
+
+    /** Estimated size of a recorded opcode stack state. */
+    private static final int BYTES_PER_STACK_STATE = 128;
+
+    /** Estimate for method analyses we know nothing about. */
+    private static final int DEFAULT_METHOD_ANALYSIS_SIZE = 1024;
+
+    private AnalysisResultSizeEstimator() {
+    }
+
+    /**
+     * Estimate the bytes retained by a class analysis result.
+     *
+     * @param result
+     *            the (non-null) cached result
+     * @param classFileSize
+     *            size of the class file the result was computed from
+     * @return estimated retained bytes
+     */
+    static long estimateClassAnalysis(Object result, int classFileSize) {
+        long estimate;
+        if (result instanceof ClassData) {
+            estimate = ((ClassData) result).getData().length;
+        } else if (result instanceof JavaClass || result instanceof ClassNode) {
+            estimate = 8L * classFileSize;
+        } else if (result instanceof ConstantPoolGen) {
+            estimate = 4L * classFileSize;
+        } else if (result instanceof FBClassReader || result instanceof ClassContext) {
+            estimate = classFileSize;
+        } else {
+            estimate = 2L * classFileSize;
+        }
+        return estimate + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Estimate the bytes retained by a method analysis result.
+     *
+     * @param result
+     *            the (non-null) cached result
+     * @return estimated retained bytes
+     */
+    static long estimateMethodAnalysis(Object result) {
+        long estimate;
+        if (result instanceof CFG) {
+            estimate = (long) BYTES_PER_BASIC_BLOCK * ((CFG) result).getNumBasicBlocks();
+        } else if (result instanceof Dataflow) {
+            // start and result fact for each block
+            estimate = 2L * BYTES_PER_DATAFLOW_BLOCK * ((Dataflow<?, ?>) result).getCFG().getNumBasicBlocks();
+        } else if (result instanceof OpcodeStack.StateTrace) {
+            estimate = (long) BYTES_PER_STACK_STATE * ((OpcodeStack.StateTrace) result).getNumStates();
+        } else {
+            estimate = DEFAULT_METHOD_ANALYSIS_SIZE;
+        }
+        return estimate + ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import edu.umd.cs.findbugs.ba.jsr305.TypeQualifierValue;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+
+/**
+ * Worker thread which shares the analysis cache, the DescriptorFactory and the
+ * known type qualifiers of the thread creating its pool. The AnalysisContext is inherited from the
+ * thread creating the worker.
+ */
+public class AnalysisWorkerThread extends ForkJoinWorkerThread {
+    private final IAnalysisCache analysisCache;
+
+    private final DescriptorFactory descriptorFactory;
+
+    private final TypeQualifierValue.Data typeQualifiers;
+
+    private AnalysisWorkerThread(ForkJoinPool pool, IAnalysisCache analysisCache, DescriptorFactory descriptorFactory,
+            TypeQualifierValue.Data typeQualifiers) {
+        super(pool);
+        this.analysisCache = analysisCache;
+        this.descriptorFactory = descriptorFactory;
+        this.typeQualifiers = typeQualifiers;
+        setName("spotbugs-analysis-" + getPoolIndex());
+    }
+
+    /**
+     * Create a pool of worker threads sharing the analysis cache, the
+     * DescriptorFactory and the known type qualifiers of the current thread.
+     *
+     * @param threads
+     *            number of worker threads
+     * @param asyncMode
+     *            true to pick up tasks which are never joined in FIFO
+     *            order, see {@link ForkJoinPool}
+     * @return the pool
+     */
+    public static ForkJoinPool newPool(int threads, boolean asyncMode) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+        TypeQualifierValue.Data typeQualifiers = TypeQualifierValue.getInstanceForCurrentThread();
+        return new ForkJoinPool(threads, p -> new AnalysisWorkerThread(p, analysisCache, descriptorFactory, typeQualifiers),
+                null, asyncMode);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+        TypeQualifierValue.setInstanceForCurrentThread(typeQualifiers);
+    }
+
+    @Override
+    protected void onTermination(Throwable exception) {
+        TypeQualifierValue.clearInstance();
+        DescriptorFactory.clearInstance();
+        Global.removeAnalysisCacheForCurrentThread();
+        super.onTermination(exception);
+    }
+}
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -37,6 +38,9 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -174,6 +178,11 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
     private boolean scanNestedArchives;
 
+    private int threads = 1;
+
+    /** pool parsing the class names of application classes, if threads > 1 */
+    private ForkJoinPool pool;
+
     /**
      * Constructor.
      *
@@ -215,6 +224,16 @@ public class ClassPathBuilder implements IClassPathBuilder {
         this.scanNestedArchives = scanNestedArchives;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.IClassPathBuilder#setThreads(int)
+     */
+    @Override
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -226,13 +245,23 @@ public class ClassPathBuilder implements IClassPathBuilder {
     @Override
     public void build(IClassPath classPath, IClassPathBuilderProgress progress) throws CheckedAnalysisException, IOException,
     InterruptedException {
-        // Discover all directly and indirectly referenced codebases
-        processWorkList(classPath, projectWorkList, progress);
+        if (threads > 1 && !NO_PARSE_CLASS_NAMES) {
+            pool = AnalysisWorkerThread.newPool(threads, false);
+        }
+        try {
+            // Discover all directly and indirectly referenced codebases
+            processWorkList(classPath, projectWorkList, progress);
 
-        // If not already located, try to locate any additional codebases
-        // containing classes required for analysis.
-        if (!discoveredCodeBaseList.isEmpty()) {
-            locateCodebasesRequiredForAnalysis(classPath, progress);
+            // If not already located, try to locate any additional codebases
+            // containing classes required for analysis.
+            if (!discoveredCodeBaseList.isEmpty()) {
+                locateCodebasesRequiredForAnalysis(classPath, progress);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
         }
 
         // Add all discovered codebases to the classpath
@@ -240,6 +269,16 @@ public class ClassPathBuilder implements IClassPathBuilder {
             classPath.addCodeBase(discoveredCodeBase.getCodeBase());
         }
 
+        // Index the classes in the zip files, so that looking up a class
+        // does not search every codebase
+        if (classPath instanceof ClassPathImpl) {
+            try {
+                ((ClassPathImpl) classPath).buildResourceIndex();
+            } catch (IOException e) {
+                errorLogger.logError("Cannot save classpath index", e);
+            }
+        }
+
         Set<ClassDescriptor> appClassSet = new HashSet<>();
 
         // Build collection of all application classes.
@@ -683,6 +722,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
         }
 
         IScannableCodeBase codeBase = (IScannableCodeBase) discoveredCodeBase.getCodeBase();
+        List<ICodeBaseEntry> classEntries = new ArrayList<>();
 
         ICodeBaseIterator i = codeBase.iterator();
         while (i.hasNext()) {
@@ -693,7 +733,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
             if (!NO_PARSE_CLASS_NAMES && codeBase.isApplicationCodeBase()
                     && DescriptorFactory.isClassResource(entry.getResourceName()) && !(entry instanceof SingleFileCodeBaseEntry)) {
-                parseClassName(entry);
+                classEntries.add(entry);
             }
 
             // Note the resource exists in this codebase
@@ -711,6 +751,45 @@ public class ClassPathBuilder implements IClassPathBuilder {
                         new WorkListItem(nestedArchiveLocator, codeBase.isApplicationCodeBase(), ICodeBase.Discovered.NESTED));
             }
         }
+
+        parseClassNames(classEntries);
+    }
+
+    /**
+     * Parse the class resources of a codebase in order to divine the real
+     * names of the classes they contain. The resources are read by the worker
+     * threads, if any; the real names are applied, and errors are logged, in
+     * the order of the resources.
+     *
+     * @param entries
+     *            the class resources
+     */
+    private void parseClassNames(List<ICodeBaseEntry> entries) throws InterruptedException {
+        if (pool == null || entries.size() < 2) {
+            for (ICodeBaseEntry entry : entries) {
+                parseClassName(entry);
+            }
+            return;
+        }
+        List<ForkJoinTask<String>> tasks = new ArrayList<>(entries.size());
+        for (ICodeBaseEntry entry : entries) {
+            tasks.add(pool.submit(() -> readClassResourceName(entry)));
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            ICodeBaseEntry entry = entries.get(i);
+            try {
+                applyClassResourceName(entry, tasks.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException || cause instanceof InvalidClassFileFormatException) {
+                    errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, cause);
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new IllegalStateException(cause);
+                }
+            }
+        }
     }
 
     /**
@@ -721,6 +800,25 @@ public class ClassPathBuilder implements IClassPathBuilder {
      *            the resource
      */
     private void parseClassName(ICodeBaseEntry entry) {
+        try {
+            applyClassResourceName(entry, readClassResourceName(entry));
+        } catch (IOException e) {
+            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
+        } catch (InvalidClassFileFormatException e) {
+            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
+        }
+    }
+
+    /**
+     * Parse data of given resource to get the resource name of the class it
+     * contains. Does not modify the resource, so it may be called from any
+     * thread.
+     *
+     * @param entry
+     *            the resource
+     * @return the resource name of the class
+     */
+    private static String readClassResourceName(ICodeBaseEntry entry) throws IOException, InvalidClassFileFormatException {
         DataInputStream in = null;
         try {
             InputStream resourceIn = entry.openResource();
@@ -732,19 +830,18 @@ public class ClassPathBuilder implements IClassPathBuilder {
             ClassNameAndSuperclassInfo.Builder builder = new ClassNameAndSuperclassInfo.Builder();
             parser.parse(builder);
 
-            String trueResourceName = builder.build().getClassDescriptor().toResourceName();
-            if (!trueResourceName.equals(entry.getResourceName())) {
-                entry.overrideResourceName(trueResourceName);
-            }
-        } catch (IOException e) {
-            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
-        } catch (InvalidClassFileFormatException e) {
-            errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
+            return builder.build().getClassDescriptor().toResourceName();
         } finally {
             IO.close(in);
         }
     }
 
+    private static void applyClassResourceName(ICodeBaseEntry entry, String trueResourceName) {
+        if (!trueResourceName.equals(entry.getResourceName())) {
+            entry.overrideResourceName(trueResourceName);
+        }
+    }
+
     /**
      * Check a codebase for a Jar manifest to examine for Class-Path entries.
      *
@@ -19,13 +19,25 @@
 
 package edu.umd.cs.findbugs.classfile.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.IClassPath;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
 import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
@@ -38,16 +50,65 @@ import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
  * @author David Hovemeyer
  */
 public class ClassPathImpl implements IClassPath {
+    /**
+     * Name of the system property naming the file the class resource names of
+     * zip files are stored in between runs, see {@link #buildResourceIndex()}
+     */
+    public static final String INDEX_FILE_PROPERTY = "findbugs.classpath.indexFile";
+
+    /**
+     * Index of the class resources in the zip file codebases of the classpath.
+     */
+    private static class ResourceIndex {
+        /** all codebases, in the order they are searched */
+        final ICodeBase[] codeBases;
+
+        /** resource name to position of the first zip codebase containing it */
+        final Map<String, Integer> positions;
+
+        /** positions of the codebases which are not indexed, ascending */
+        final int[] unindexed;
+
+        ResourceIndex(ICodeBase[] codeBases, Map<String, Integer> positions, int[] unindexed) {
+            this.codeBases = codeBases;
+            this.positions = positions;
+            this.unindexed = unindexed;
+        }
+
+        /**
+         * @return the entry of the resource, or null if the resource is not
+         *         found in the codebases before or at the indexed position
+         */
+        @CheckForNull
+        ICodeBaseEntry lookupResource(String resourceName) {
+            Integer position = positions.get(resourceName);
+            int limit = position != null ? position : codeBases.length;
+            for (int i : unindexed) {
+                if (i >= limit) {
+                    break;
+                }
+                ICodeBaseEntry entry = codeBases[i].lookupResource(resourceName);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return position != null ? codeBases[position].lookupResource(resourceName) : null;
+        }
+    }
+
     private final List<IScannableCodeBase> appCodeBaseList;
 
     private final List<ICodeBase> auxCodeBaseList;
 
     private final Map<String, ICodeBaseEntry> codeBaseEntryMap;
 
+    @CheckForNull
+    private volatile ResourceIndex resourceIndex;
+
     public ClassPathImpl() {
         this.appCodeBaseList = new LinkedList<>();
         this.auxCodeBaseList = new LinkedList<>();
-        this.codeBaseEntryMap = new HashMap<>();
+        this.codeBaseEntryMap = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -74,6 +135,7 @@ public class ClassPathImpl implements IClassPath {
      */
     @Override
     public void addCodeBase(ICodeBase codeBase) {
+        resourceIndex = null;
         if (codeBase.isApplicationCodeBase()) {
             if (!(codeBase instanceof IScannableCodeBase)) {
                 throw new IllegalStateException();
@@ -120,6 +182,86 @@ public class ClassPathImpl implements IClassPath {
         appCodeBaseList.clear();
         auxCodeBaseList.clear();
         codeBaseEntryMap.clear();
+        resourceIndex = null;
+    }
+
+    /**
+     * Build the index of the class resources in the zip file codebases, which
+     * is used to find classes without searching all codebases. The resource
+     * names of the zip files are enumerated in parallel. If the system
+     * property {@link #INDEX_FILE_PROPERTY} names a file, the names of zip
+     * files whose path, last modified time and size did not change are read
+     * from it rather than enumerated, and it is updated afterwards.
+     * <p>
+     * Other codebases are still searched in classpath order. The index is
+     * discarded when a codebase is added.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the resource names
+     * @throws IOException
+     *             if the index file can't be written; the index is built
+     *             anyway
+     */
+    public void buildResourceIndex() throws InterruptedException, IOException {
+        List<ICodeBase> codeBases = new ArrayList<>(appCodeBaseList);
+        codeBases.addAll(auxCodeBaseList);
+
+        String indexFile = SystemProperties.getProperty(INDEX_FILE_PROPERTY);
+        ZipResourceNameStore store = indexFile != null ? new ZipResourceNameStore(new File(indexFile)) : null;
+
+        List<Future<List<String>>> names = new ArrayList<>();
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), codeBases.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "classpath-index");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (ICodeBase codeBase : codeBases) {
+                if (codeBase instanceof ZipFileCodeBase) {
+                    ZipFileCodeBase zipCodeBase = (ZipFileCodeBase) codeBase;
+                    names.add(executor.submit(() -> store != null ? store.getClassResourceNames(zipCodeBase)
+                            : zipCodeBase.getClassResourceNames()));
+                } else if (codeBase instanceof MappedZipFileCodeBase) {
+                    names.add(executor.submit(((MappedZipFileCodeBase) codeBase)::getClassResourceNames));
+                } else {
+                    names.add(null);
+                }
+            }
+
+            Map<String, Integer> positions = new HashMap<>();
+            List<Integer> unindexed = new ArrayList<>();
+            for (int i = 0; i < codeBases.size(); i++) {
+                List<String> resourceNames = null;
+                if (names.get(i) != null) {
+                    try {
+                        resourceNames = names.get(i).get();
+                    } catch (ExecutionException e) {
+                        // Search the codebase instead
+                    }
+                }
+                if (resourceNames == null) {
+                    unindexed.add(i);
+                    continue;
+                }
+                Integer position = i;
+                for (String resourceName : resourceNames) {
+                    positions.putIfAbsent(resourceName, position);
+                }
+            }
+            int[] unindexedPositions = new int[unindexed.size()];
+            for (int i = 0; i < unindexedPositions.length; i++) {
+                unindexedPositions[i] = unindexed.get(i);
+            }
+            resourceIndex = new ResourceIndex(codeBases.toArray(new ICodeBase[codeBases.size()]), positions,
+                    unindexedPositions);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (store != null) {
+            store.save();
+        }
     }
 
     @Override
@@ -150,12 +292,20 @@ public class ClassPathImpl implements IClassPath {
         if (result == null) {
             // No previously resolved entry - look up the resources in the
             // codebases
-
-            // First try application codebases
-            result = search(appCodeBaseList, resourceName);
-            if (result == null) {
-                // Next try aux codebases
-                result = search(auxCodeBaseList, resourceName);
+            ResourceIndex index = resourceIndex;
+            boolean searched = false;
+            if (index != null && DescriptorFactory.isClassResource(resourceName)) {
+                result = index.lookupResource(resourceName);
+                // A class not in the index is in none of the zip files
+                searched = result != null || !index.positions.containsKey(resourceName);
+            }
+            if (!searched) {
+                // First try application codebases
+                result = search(appCodeBaseList, resourceName);
+                if (result == null) {
+                    // Next try aux codebases
+                    result = search(auxCodeBaseList, resourceName);
+                }
             }
 
             // If not found in any codebase, then throw
@@ -20,17 +20,20 @@
 package edu.umd.cs.findbugs.classfile.impl;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,10 +42,13 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
@@ -50,6 +56,8 @@ import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
 import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
 import edu.umd.cs.findbugs.classfile.InvalidClassFileFormatException;
 import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.classfile.analysis.ClassInfoSnapshot;
+import edu.umd.cs.findbugs.util.Util;
 
 /**
  *
@@ -60,6 +68,11 @@ import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
 public class JrtfsCodeBase extends AbstractScannableCodeBase {
     private static final int PRIME = 31;
 
+    private static final boolean USE_SNAPSHOT = SystemProperties.getBoolean("findbugs.jdkSnapshot");
+
+    private static final String SNAPSHOT_DIRECTORY = SystemProperties.getProperty("findbugs.jdkSnapshot.directory",
+            new File(new File(System.getProperty("user.home"), ".findbugs"), "jdk-snapshots").getPath());
+
     private FileSystem fs;
     private final String fileName;
     private Path root;
@@ -72,6 +85,8 @@ public class JrtfsCodeBase extends AbstractScannableCodeBase {
      */
     private Map<String, Object> packageToModuleMap;
 
+    private @CheckForNull ClassInfoSnapshot snapshot;
+
     public JrtfsCodeBase(ICodeBaseLocator codeBaseLocator, @Nonnull String fileName) {
         super(codeBaseLocator);
         this.fileName = fileName;
@@ -82,11 +97,64 @@ public class JrtfsCodeBase extends AbstractScannableCodeBase {
             fs = FileSystems.newFileSystem(URI.create("jrt:/"), Collections.emptyMap(), loader);
             root = fs.getPath("modules");
             packageToModuleMap = createPackageToModuleMap(fs);
+            if (USE_SNAPSHOT) {
+                String key = getJavaVersion() + '-' + getModulesHash();
+                snapshot = new ClassInfoSnapshot(new File(SNAPSHOT_DIRECTORY, "jdk-" + key.replaceAll("[^\\w.-]", "_")
+                        + ".snapshot"), key);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Get the snapshot of the ClassInfo of the classes of this runtime image.
+     * It is keyed by the Java version and the modules of the image, so that
+     * all analyses using the same image share it.
+     *
+     * @return the snapshot, or null if snapshots are disabled
+     */
+    @CheckForNull
+    public ClassInfoSnapshot getClassInfoSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the version in the release file of the Java installation
+     *         jrt-fs.jar belongs to, or the version of the running Java if it
+     *         can't be read
+     */
+    private String getJavaVersion() {
+        Path lib = Paths.get(fileName).toAbsolutePath().getParent();
+        if (lib != null && lib.getParent() != null) {
+            Path release = lib.getParent().resolve("release");
+            try {
+                for (String line : Files.readAllLines(release)) {
+                    if (line.startsWith("JAVA_VERSION=")) {
+                        return line.substring("JAVA_VERSION=".length()).replace("\"", "");
+                    }
+                }
+            } catch (IOException e) {
+                // Use the version of the running Java
+            }
+        }
+        return System.getProperty("java.version");
+    }
+
+    private String getModulesHash() {
+        MessageDigest digest = Util.getMD5Digest();
+        for (Map.Entry<String, Object> e : new TreeMap<>(packageToModuleMap).entrySet()) {
+            Object modules = e.getValue() instanceof Set ? new TreeSet<>((Set<?>) e.getValue()) : e.getValue();
+            digest.update((e.getKey() + '=' + modules + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder result = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            result.append(String.format("%02x", hash[i] & 0xff));
+        }
+        return result.toString();
+    }
+
     public Map<String, Object> createPackageToModuleMap(FileSystem fs) throws IOException{
         HashMap<String, Object> packageToModule = new LinkedHashMap<>();
         Path path = fs.getPath("packages");
@@ -193,6 +261,13 @@ public class JrtfsCodeBase extends AbstractScannableCodeBase {
 
     @Override
     public void close() {
+        if (snapshot != null) {
+            try {
+                snapshot.close();
+            } catch (IOException e) {
+                System.err.println("Unable to write " + snapshot.getFile() + ": " + e.getMessage());
+            }
+        }
         if(fs != null){
             try {
                 fs.close();
@@ -0,0 +1,385 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+
+/**
+ * Implementation of ICodeBase to read from a zip file or jar file by mapping
+ * it into memory. The central directory is parsed once when the codebase is
+ * opened; the data of stored entries is copied straight out of the mapped
+ * file, and deflated entries are inflated directly into the array returned
+ * for the entry, so no streams or intermediate buffers are allocated per
+ * entry.
+ * <p>
+ * ZIP64 files and files larger than 2GB are not supported; the constructor
+ * throws a ZipException for them.
+ *
+ * @see ZipCodeBaseFactory#MAP_ZIP_FILES_PROPERTY
+ */
+public class MappedZipFileCodeBase extends AbstractScannableCodeBase {
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_SIZE = 30;
+
+    /**
+     * Inflaters and input buffers reused across entries, at most a couple
+     * per processor
+     */
+    private static final BlockingQueue<Decompressor> DECOMPRESSORS = new ArrayBlockingQueue<>(2 * Runtime.getRuntime()
+            .availableProcessors());
+
+    private static class Decompressor {
+        final Inflater inflater = new Inflater(true);
+
+        byte[] input = new byte[8192];
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    static class Entry {
+        final String name;
+
+        final int method;
+
+        final int compressedSize;
+
+        final int size;
+
+        final int dosTime;
+
+        final int localHeaderOffset;
+
+        Entry(String name, int method, int compressedSize, int size, int dosTime, int localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.dosTime = dosTime;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final File file;
+
+    private volatile ByteBuffer buffer;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param file
+     *            the File containing the zip file (may be a temp file if the
+     *            codebase was copied from a nested zipfile in another codebase)
+     * @throws ZipException
+     *             if the file is not a zip file, or uses features not
+     *             supported by this codebase
+     * @throws IOException
+     *             if the file can't be read
+     */
+    public MappedZipFileCodeBase(ICodeBaseLocator codeBaseLocator, File file) throws IOException {
+        super(codeBaseLocator);
+        this.file = file;
+        ByteBuffer buffer;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new ZipException("Zip file too large to map: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.entries = readCentralDirectory(buffer);
+        this.buffer = buffer;
+        setLastModifiedTime(file.lastModified());
+    }
+
+    private Map<String, Entry> readCentralDirectory(ByteBuffer buffer) throws ZipException {
+        int end = findEndOfCentralDirectory(buffer);
+        int count = buffer.getShort(end + 10) & 0xffff;
+        long centralSize = buffer.getInt(end + 12) & 0xffffffffL;
+        long centralOffset = buffer.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || centralOffset == 0xffffffffL) {
+            throw new ZipException("ZIP64 zip files are not supported: " + file);
+        }
+        // Offsets are relative to the start of the zip data, which may be
+        // preceded by a self extracting stub
+        long base = end - centralSize - centralOffset;
+        if (base < 0) {
+            throw new ZipException("Invalid central directory in " + file);
+        }
+
+        Map<String, Entry> result = new LinkedHashMap<>(count * 4 / 3 + 1);
+        int pos = (int) (base + centralOffset);
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_SIZE > end || buffer.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry in " + file);
+            }
+            int method = buffer.getShort(pos + 10) & 0xffff;
+            int dosTime = buffer.getInt(pos + 12);
+            long compressedSize = buffer.getInt(pos + 20) & 0xffffffffL;
+            long size = buffer.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = buffer.getShort(pos + 28) & 0xffff;
+            int extraLength = buffer.getShort(pos + 30) & 0xffff;
+            int commentLength = buffer.getShort(pos + 32) & 0xffff;
+            long localHeaderOffset = buffer.getInt(pos + 42) & 0xffffffffL;
+            if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                throw new ZipException("ZIP64 zip files are not supported: " + file);
+            }
+            if (pos + CENTRAL_SIZE + nameLength > end) {
+                throw new ZipException("Invalid central directory entry in " + file);
+            }
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer name = buffer.duplicate();
+            name.position(pos + CENTRAL_SIZE);
+            name.get(nameBytes);
+            String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+            result.putIfAbsent(entryName, new Entry(entryName, method, (int) compressedSize, (int) size, dosTime,
+                    (int) (base + localHeaderOffset)));
+            pos += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    private int findEndOfCentralDirectory(ByteBuffer buffer) throws ZipException {
+        // The end record is followed by a comment of up to 64K
+        int limit = Math.max(0, buffer.limit() - END_SIZE - 0xffff);
+        for (int pos = buffer.limit() - END_SIZE; pos >= limit; pos--) {
+            if (buffer.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+        throw new ZipException("No end of central directory found in " + file);
+    }
+
+    @Override
+    public ICodeBaseEntry lookupResource(String resourceName) {
+        // Translate resource name, in case a resource name
+        // has been overridden and the resource is being accessed
+        // using the overridden name.
+        resourceName = translateResourceName(resourceName);
+
+        Entry entry = entries.get(resourceName);
+        if (entry == null || buffer == null) {
+            return null;
+        }
+        return new MappedZipFileCodeBaseEntry(this, entry);
+    }
+
+    /**
+     * Get the names of the class resources in the zip file.
+     *
+     * @return the resource names
+     */
+    List<String> getClassResourceNames() {
+        List<String> names = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.isDirectory() && DescriptorFactory.isClassResource(entry.name)) {
+                names.add(entry.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Get the uncompressed data of an entry.
+     *
+     * @param entry
+     *            the entry
+     * @return the data of the entry
+     * @throws IOException
+     *             if the codebase is closed, or the entry can't be read
+     */
+    byte[] getBytes(Entry entry) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IOException("Zip file closed: " + file);
+        }
+        int pos = entry.localHeaderOffset;
+        if (pos < 0 || pos + LOCAL_SIZE > buffer.limit() || buffer.getInt(pos) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name + " in " + file);
+        }
+        int start = pos + LOCAL_SIZE + (buffer.getShort(pos + 26) & 0xffff) + (buffer.getShort(pos + 28) & 0xffff);
+        if (entry.compressedSize < 0 || entry.size < 0 || start + (long) entry.compressedSize > buffer.limit()) {
+            throw new ZipException("Truncated entry " + entry.name + " in " + file);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(start);
+        data.limit(start + entry.compressedSize);
+
+        byte[] bytes = new byte[entry.size];
+        if (entry.method == ZipEntry.STORED) {
+            data.get(bytes);
+        } else if (entry.method == ZipEntry.DEFLATED) {
+            inflate(data, bytes, entry);
+        } else {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + file);
+        }
+        return bytes;
+    }
+
+    private void inflate(ByteBuffer data, byte[] bytes, Entry entry) throws ZipException {
+        Decompressor decompressor = DECOMPRESSORS.poll();
+        if (decompressor == null) {
+            decompressor = new Decompressor();
+        }
+        Inflater inflater = decompressor.inflater;
+        try {
+            if (decompressor.input.length < data.remaining()) {
+                decompressor.input = new byte[data.remaining()];
+            }
+            int length = data.remaining();
+            data.get(decompressor.input, 0, length);
+            inflater.setInput(decompressor.input, 0, length);
+            int n = 0;
+            while (n < bytes.length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, n, bytes.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != bytes.length) {
+                throw new ZipException("Invalid compressed data for " + entry.name + " in " + file);
+            }
+        } catch (DataFormatException e) {
+            ZipException zipException = new ZipException("Invalid compressed data for " + entry.name + " in " + file);
+            zipException.initCause(e);
+            throw zipException;
+        } finally {
+            inflater.reset();
+            if (!DECOMPRESSORS.offer(decompressor)) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Convert a time in MS-DOS format to milliseconds, as ZipEntry does.
+     */
+    static long dosToJavaTime(int dosTime) {
+        try {
+            return LocalDateTime.of(((dosTime >> 25) & 0x7f) + 1980, (dosTime >> 21) & 0x0f, (dosTime >> 16) & 0x1f,
+                    (dosTime >> 11) & 0x1f, (dosTime >> 5) & 0x3f, (dosTime << 1) & 0x3e).atZone(ZoneId.systemDefault())
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1L;
+        }
+    }
+
+    @Override
+    public ICodeBaseIterator iterator() {
+        final Iterator<Entry> entryIterator = entries.values().iterator();
+
+        return new ICodeBaseIterator() {
+            MappedZipFileCodeBaseEntry nextEntry;
+
+            @Override
+            public boolean hasNext() {
+                scanForNextEntry();
+                return nextEntry != null;
+            }
+
+            @Override
+            public ICodeBaseEntry next() throws InterruptedException {
+                scanForNextEntry();
+                if (nextEntry == null) {
+                    throw new NoSuchElementException();
+                }
+                ICodeBaseEntry result = nextEntry;
+                nextEntry = null;
+                return result;
+            }
+
+            private void scanForNextEntry() {
+                while (nextEntry == null) {
+                    if (!entryIterator.hasNext()) {
+                        return;
+                    }
+
+                    Entry entry = entryIterator.next();
+
+                    if (!entry.isDirectory()) {
+                        addLastModifiedTime(dosToJavaTime(entry.dosTime));
+                        nextEntry = new MappedZipFileCodeBaseEntry(MappedZipFileCodeBase.this, entry);
+                        break;
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public String getPathName() {
+        return file.getPath();
+    }
+
+    @Override
+    public void close() {
+        // A mapping can't be released explicitly; it is unmapped when the
+        // buffer is garbage collected
+        buffer = null;
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.zip.ZipException;
 
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
 import edu.umd.cs.findbugs.log.Profiler;
@@ -32,10 +33,27 @@ import edu.umd.cs.findbugs.log.Profiler;
  */
 public class ZipCodeBaseFactory {
 
+    /**
+     * Name of the boolean system property to read zip files through a memory
+     * mapping, see {@link MappedZipFileCodeBase}. Note that on some platforms
+     * a mapped file can't be deleted or replaced until the mapping is garbage
+     * collected.
+     */
+    public static final String MAP_ZIP_FILES_PROPERTY = "findbugs.classpath.mapZipFiles";
+
+    private static final boolean MAP_ZIP_FILES = SystemProperties.getBoolean(MAP_ZIP_FILES_PROPERTY);
+
     public static AbstractScannableCodeBase makeZipCodeBase(ICodeBaseLocator codeBaseLocator, File file) throws IOException {
         Profiler profiler = Global.getAnalysisCache().getProfiler();
         profiler.start(ZipCodeBaseFactory.class);
         try {
+            if (MAP_ZIP_FILES) {
+                try {
+                    return new MappedZipFileCodeBase(codeBaseLocator, file);
+                } catch (ZipException e) {
+                    // Not supported, e.g. ZIP64 - try ZipFile
+                }
+            }
             return new ZipFileCodeBase(codeBaseLocator, file);
         } catch (ZipException e) {
             // May be too many zip entries
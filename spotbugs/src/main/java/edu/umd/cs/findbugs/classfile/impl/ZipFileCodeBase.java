@@ -23,12 +23,15 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
 import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
 import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
 import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
@@ -113,6 +116,25 @@ public class ZipFileCodeBase extends AbstractScannableCodeBase {
         }
     }
 
+    /**
+     * Get the names of the class resources in the zip file. Unlike
+     * {@link #iterator()}, this does not update the last modified time of the
+     * codebase.
+     *
+     * @return the resource names
+     */
+    List<String> getClassResourceNames() {
+        List<String> names = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && DescriptorFactory.isClassResource(entry.getName())) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
     @Override
     public ICodeBaseIterator iterator() {
         final Enumeration<? extends ZipEntry> zipEntryEnumerator = zipFile.entries();
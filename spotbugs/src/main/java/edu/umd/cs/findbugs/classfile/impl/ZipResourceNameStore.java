@@ -0,0 +1,171 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk store of the class resource names of zip files, keyed by the path,
+ * last modified time and size of each zip file, so that the resource index of
+ * a classpath can be built without enumerating the entries of zip files which
+ * did not change.
+ *
+ * @see ClassPathImpl#INDEX_FILE_PROPERTY
+ */
+class ZipResourceNameStore {
+    private static final int MAGIC = 0x5342524e;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static class Names {
+        final long lastModified;
+
+        final long length;
+
+        final List<String> names;
+
+        Names(long lastModified, long length, List<String> names) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.names = names;
+        }
+    }
+
+    private final File file;
+
+    private final Map<String, Names> entries = new ConcurrentHashMap<>();
+
+    private volatile boolean modified;
+
+    /**
+     * Constructor. Reads the stored names, if the file exists and can be read.
+     *
+     * @param file
+     *            the file to read the names from and to save them to
+     */
+    ZipResourceNameStore(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            try {
+                read();
+            } catch (IOException | RuntimeException e) {
+                // Start over
+                entries.clear();
+                modified = true;
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format of " + file);
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                String[] names = new String[in.readInt()];
+                for (int j = 0; j < names.length; j++) {
+                    names[j] = in.readUTF();
+                }
+                entries.put(path, new Names(lastModified, length, Arrays.asList(names)));
+            }
+        }
+    }
+
+    /**
+     * Get the class resource names of a zip file codebase, from the store if
+     * the zip file did not change since they were stored.
+     *
+     * @param codeBase
+     *            the codebase
+     * @return the class resource names
+     */
+    List<String> getClassResourceNames(ZipFileCodeBase codeBase) {
+        String path = codeBase.getPathName();
+        File zipFile = new File(path);
+        long lastModified = zipFile.lastModified();
+        long length = zipFile.length();
+        Names stored = entries.get(path);
+        if (stored != null && stored.lastModified == lastModified && stored.length == length) {
+            return stored.names;
+        }
+        List<String> names = codeBase.getClassResourceNames();
+        entries.put(path, new Names(lastModified, length, names));
+        modified = true;
+        return names;
+    }
+
+    /**
+     * Write the stored names, if names were added, leaving out zip files
+     * which no longer exist.
+     *
+     * @throws IOException
+     *             if the names can't be written
+     */
+    void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("resources", ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(
+                    tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                entries.keySet().removeIf(path -> !new File(path).isFile());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Names> e : entries.entrySet()) {
+                    Names names = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(names.lastModified);
+                    out.writeLong(names.length);
+                    out.writeInt(names.names.size());
+                    for (String name : names.names) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            modified = false;
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+}
@@ -20,11 +20,13 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.bcel.Const;
+import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
@@ -80,6 +82,12 @@ public class BadResultSetAccess extends OpcodeStackDetector {
         }
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.INVOKEINTERFACE);
+    }
+
     @Override
     public void sawOpcode(int seen) {
 
@@ -19,6 +19,9 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,7 +41,11 @@ import org.apache.bcel.generic.Type;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
@@ -46,7 +53,7 @@ import edu.umd.cs.findbugs.classfile.MethodDescriptor;
  * Builds the database of string parameters passed from method to method unchanged.
  * @author Tagir Valeev
  */
-public class BuildStringPassthruGraph extends OpcodeStackDetector implements NonReportingDetector {
+public class BuildStringPassthruGraph extends OpcodeStackDetector implements NonReportingDetector, PersistentSummaryDetector {
     private static final int PRIME = 31;
 
     public static class MethodParameter {
@@ -203,10 +210,38 @@ public class BuildStringPassthruGraph extends OpcodeStackDetector implements Non
 
     private List<MethodParameter>[] passedParameters;
 
+    /** edges added while visiting the current class, as callee and caller pairs */
+    private final List<MethodParameter> classEdges = new ArrayList<>();
+
     public BuildStringPassthruGraph(BugReporter bugReporter) {
         Global.getAnalysisCache().eagerlyPutDatabase(StringPassthruDatabase.class, cache);
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        classEdges.clear();
+        super.visitClassContext(classContext);
+    }
+
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        out.writeInt(classEdges.size());
+        for (MethodParameter mp : classEdges) {
+            DescriptorIO.writeMethodDescriptor(out, mp.getMethodDescriptor());
+            out.writeInt(mp.getParameterNumber());
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i += 2) {
+            MethodParameter callee = new MethodParameter(DescriptorIO.readMethodDescriptor(in), in.readInt());
+            MethodParameter caller = new MethodParameter(DescriptorIO.readMethodDescriptor(in), in.readInt());
+            cache.addEdge(callee, caller);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void visitMethod(Method obj) {
@@ -251,6 +286,8 @@ public class BuildStringPassthruGraph extends OpcodeStackDetector implements Non
                 MethodParameter cur = new MethodParameter(getMethodDescriptor(), i);
                 for (MethodParameter mp : list) {
                     cache.addEdge(mp, cur);
+                    classEdges.add(mp);
+                    classEdges.add(cur);
                 }
             }
         }
@@ -19,57 +19,140 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
 
 import org.apache.bcel.Const;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 
 /**
  * Detector to find private methods that are never called.
  */
-public class CalledMethods extends BytecodeScanningDetector implements NonReportingDetector {
+public class CalledMethods extends BytecodeScanningDetector implements NonReportingDetector, PersistentSummaryDetector {
+    /**
+     * A field written by the visited class. Whether an empty array was
+     * written depends on what is known about the field it was loaded from
+     * when the write is replayed, so that field is kept as well.
+     */
+    private static class FieldWrite {
+        final XField field;
+
+        final boolean emptyArray;
+
+        final @CheckForNull XField loadedFrom;
+
+        FieldWrite(XField field, boolean emptyArray, @CheckForNull XField loadedFrom) {
+            this.field = field;
+            this.emptyArray = emptyArray;
+            this.loadedFrom = loadedFrom;
+        }
+    }
+
     boolean emptyArrayOnTOS;
 
+    /** field loaded by the previous instruction, if any */
+    @CheckForNull
+    XField loadedField;
+
     HashSet<XField> emptyArray = new HashSet<>();
 
     HashSet<XField> nonEmptyArray = new HashSet<>();
 
     XFactory xFactory = AnalysisContext.currentXFactory();
 
+    /** methods called by the current class */
+    private final Set<MethodDescriptor> classCalledMethods = new LinkedHashSet<>();
+
+    /** fields written by the current class, in order */
+    private final List<FieldWrite> classFieldWrites = new ArrayList<>();
+
     public CalledMethods(BugReporter bugReporter) {
 
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        classCalledMethods.clear();
+        classFieldWrites.clear();
+        loadedField = null;
+        super.visitClassContext(classContext);
+    }
+
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        out.writeInt(classCalledMethods.size());
+        for (MethodDescriptor m : classCalledMethods) {
+            DescriptorIO.writeMethodDescriptor(out, m);
+        }
+        out.writeInt(classFieldWrites.size());
+        for (FieldWrite write : classFieldWrites) {
+            DescriptorIO.writeFieldDescriptor(out, write.field.getFieldDescriptor());
+            out.writeBoolean(write.emptyArray);
+            out.writeBoolean(write.loadedFrom != null);
+            if (write.loadedFrom != null) {
+                DescriptorIO.writeFieldDescriptor(out, write.loadedFrom.getFieldDescriptor());
+            }
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            sawCall(DescriptorIO.readMethodDescriptor(in));
+        }
+        n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            XField f = XFactory.createXField(DescriptorIO.readFieldDescriptor(in));
+            boolean empty = in.readBoolean();
+            if (in.readBoolean()) {
+                empty = isEmptyArray(XFactory.createXField(DescriptorIO.readFieldDescriptor(in)));
+            }
+            if (f.isResolved()) {
+                sawFieldWrite(f, empty);
+            }
+        }
+    }
+
     @Override
     public void sawOpcode(int seen) {
 
         if ((seen == Const.PUTFIELD || seen == Const.PUTSTATIC)) {
             XField f = getXFieldOperand();
             if (f != null) {
-                if (f.isFinal() || !f.isProtected() && !f.isPublic()) {
-                    if (emptyArrayOnTOS) {
-                        emptyArray.add(f);
-                    } else {
-                        nonEmptyArray.add(f);
-                    }
-                }
+                sawFieldWrite(f, emptyArrayOnTOS);
+                classFieldWrites.add(new FieldWrite(f, emptyArrayOnTOS && loadedField == null, loadedField));
             }
 
         }
         emptyArrayOnTOS = (seen == Const.ANEWARRAY || seen == Const.NEWARRAY || seen == Const.MULTIANEWARRAY && getIntConstant() == 1)
                 && getPrevOpcode(1) == Const.ICONST_0;
+        loadedField = null;
 
         if (seen == Const.GETSTATIC || seen == Const.GETFIELD) {
             XField f = getXFieldOperand();
-            if (emptyArray.contains(f) && !nonEmptyArray.contains(f) && f.isFinal()) {
+            loadedField = f;
+            if (isEmptyArray(f)) {
                 emptyArrayOnTOS = true;
             }
         }
@@ -78,18 +161,37 @@ public class CalledMethods extends BytecodeScanningDetector implements NonReport
         case Const.INVOKESPECIAL:
         case Const.INVOKESTATIC:
         case Const.INVOKEINTERFACE:
-            ClassDescriptor c = getClassDescriptorOperand();
-            Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
-            if (subtypes2.isApplicationClass(c)) {
-                xFactory.addCalledMethod(getMethodDescriptorOperand());
-            }
-
+            MethodDescriptor m = getMethodDescriptorOperand();
+            classCalledMethods.add(m);
+            sawCall(m);
             break;
         default:
             break;
         }
     }
 
+    private void sawCall(MethodDescriptor m) {
+        ClassDescriptor c = m.getClassDescriptor();
+        Subtypes2 subtypes2 = AnalysisContext.currentAnalysisContext().getSubtypes2();
+        if (subtypes2.isApplicationClass(c)) {
+            xFactory.addCalledMethod(m);
+        }
+    }
+
+    private void sawFieldWrite(XField f, boolean emptyArrayWritten) {
+        if (f.isFinal() || !f.isProtected() && !f.isPublic()) {
+            if (emptyArrayWritten) {
+                emptyArray.add(f);
+            } else {
+                nonEmptyArray.add(f);
+            }
+        }
+    }
+
+    private boolean isEmptyArray(@CheckForNull XField f) {
+        return f != null && emptyArray.contains(f) && !nonEmptyArray.contains(f) && f.isFinal();
+    }
+
     @Override
     public void report() {
         emptyArray.removeAll(nonEmptyArray);
@@ -19,6 +19,8 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
+
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
@@ -60,10 +62,19 @@ public class DoInsideDoPrivileged extends BytecodeScanningDetector {
         if (DumbMethods.isTestMethod(getMethod())) {
             return;
         }
+        if (!shouldVisitCode(obj)) {
+            return;
+        }
         super.visit(obj);
         bugAccumulator.reportAccumulatedBugs();
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.INVOKEVIRTUAL) || bytecodeSet.get(Const.NEW);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (seen == Const.INVOKEVIRTUAL && "setAccessible".equals(getNameConstantOperand())) {
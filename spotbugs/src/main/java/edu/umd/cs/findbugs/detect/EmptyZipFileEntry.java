@@ -19,7 +19,10 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
+
 import org.apache.bcel.Const;
+import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
@@ -55,6 +58,19 @@ public class EmptyZipFileEntry extends BytecodeScanningDetector implements State
         streamType = "";
     }
 
+    @Override
+    public void visit(Code obj) {
+        if (shouldVisitCode(obj)) {
+            super.visit(obj);
+        }
+    }
+
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.INVOKEVIRTUAL);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (seen == Const.INVOKEVIRTUAL && "putNextEntry".equals(getNameConstantOperand())) {
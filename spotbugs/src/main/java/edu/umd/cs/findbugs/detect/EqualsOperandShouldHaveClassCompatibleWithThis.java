@@ -19,6 +19,12 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Code;
 import org.apache.bcel.generic.Type;
@@ -28,17 +34,21 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.FirstPassDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.TypeAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.ba.ClassSummary;
 import edu.umd.cs.findbugs.ba.IncompatibleTypes;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
 import edu.umd.cs.findbugs.util.ClassName;
 
-public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackDetector implements FirstPassDetector {
+public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackDetector implements FirstPassDetector,
+        PersistentSummaryDetector {
 
     final BugReporter bugReporter;
 
@@ -46,6 +56,9 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
 
     final ClassSummary classSummary = new ClassSummary();
 
+    /** classes the equals method of the current class checks for */
+    private final List<ClassDescriptor> checkedClasses = new ArrayList<>();
+
     public EqualsOperandShouldHaveClassCompatibleWithThis(BugReporter bugReporter) {
         this.bugReporter = bugReporter;
         this.bugAccumulator = new BugAccumulator(bugReporter);
@@ -53,6 +66,28 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
         context.setClassSummary(classSummary);
     }
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        checkedClasses.clear();
+        super.visitClassContext(classContext);
+    }
+
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        out.writeInt(checkedClasses.size());
+        for (ClassDescriptor c : checkedClasses) {
+            DescriptorIO.writeClassDescriptor(out, c);
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            classSummary.checksForEqualTo(classDescriptor, DescriptorIO.readClassDescriptor(in));
+        }
+    }
+
     @Override
     public void visit(Code obj) {
         if ("equals".equals(getMethodName()) && "(Ljava/lang/Object;)Z".equals(getMethodSig())) {
@@ -123,6 +158,7 @@ public class EqualsOperandShouldHaveClassCompatibleWithThis extends OpcodeStackD
                 bugAccumulator.accumulateBug(new BugInstance(this, "EQ_CHECK_FOR_OPERAND_NOT_COMPATIBLE_WITH_THIS", priority)
                 .addClassAndMethod(this).addType(c).describe(TypeAnnotation.FOUND_ROLE), this);
                 classSummary.checksForEqualTo(thisClassDescriptor, c);
+                checkedClasses.add(c);
 
             } catch (ClassNotFoundException e) {
                 bugReporter.reportMissingClass(e);
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -68,6 +69,13 @@ public class FindFieldSelfAssignment extends OpcodeStackDetector implements Stat
     Set<String> initializedFields = new HashSet<>();
 
     XField possibleOverwrite;
+
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.DUP) || bytecodeSet.get(Const.PUTFIELD);
+    }
+
     @Override
     public void sawOpcode(int seen) {
 
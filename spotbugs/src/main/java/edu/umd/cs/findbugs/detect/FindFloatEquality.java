@@ -20,6 +20,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Objects;
@@ -104,6 +105,13 @@ public class FindFloatEquality extends OpcodeStackDetector implements StatelessD
         return v == 0.0;
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.FCMPG) || bytecodeSet.get(Const.FCMPL)
+                || bytecodeSet.get(Const.DCMPG) || bytecodeSet.get(Const.DCMPL);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         switch (seen) {
@@ -19,11 +19,13 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -43,16 +45,20 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.NonReportingDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.Hierarchy2;
 import edu.umd.cs.findbugs.ba.SignatureParser;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.ba.interproc.SummaryFixpoint;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
 import edu.umd.cs.findbugs.classfile.FieldDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
@@ -61,7 +67,7 @@ import edu.umd.cs.findbugs.util.ClassName;
 /**
  * @author Tagir Valeev
  */
-public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonReportingDetector {
+public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonReportingDetector, PersistentSummaryDetector {
     private static final MethodDescriptor GET_CLASS = new MethodDescriptor("java/lang/Object", "getClass", "()Ljava/lang/Class;");
     private static final MethodDescriptor ARRAY_COPY = new MethodDescriptor("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V", true);
     private static final MethodDescriptor HASH_CODE = new MethodDescriptor("java/lang/Object", "hashCode", "()I");
@@ -972,38 +978,148 @@ public class FindNoSideEffectMethods extends OpcodeStackDetector implements NonR
         return false;
     }
 
-    private void computeFinalStatus() {
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            Iterator<Entry<MethodDescriptor, List<MethodCall>>> iterator = callGraph.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<MethodDescriptor, List<MethodCall>> entry = iterator.next();
-                MethodDescriptor method = entry.getKey();
-                uselessVoidCandidate = uselessVoidCandidates.contains(method);
-                SideEffectStatus prevStatus = statusMap.get(method);
-                status = prevStatus.toSure();
-                calledMethods = new ArrayList<>();
-                for(MethodCall methodCall : entry.getValue()) {
-                    sawCall(methodCall, true);
-                    if(status == SideEffectStatus.SIDE_EFFECT) {
-                        break;
+    /**
+     * Writes the status of the methods of the class, and the calls the status
+     * of the unsure ones depends on
+     */
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException, CheckedAnalysisException {
+        XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+        List<MethodDescriptor> methods = new ArrayList<>();
+        for (XMethod method : xClass.getXMethods()) {
+            if (statusMap.containsKey(method.getMethodDescriptor())) {
+                methods.add(method.getMethodDescriptor());
+            }
+        }
+        MethodDescriptor clinit = new MethodDescriptor(classDescriptor.getClassName(), Const.STATIC_INITIALIZER_NAME, "()V", true);
+        if (xClass.findMethod(clinit) == null && statusMap.containsKey(clinit)) {
+            methods.add(clinit);
+        }
+        out.writeInt(methods.size());
+        for (MethodDescriptor method : methods) {
+            out.writeUTF(method.getName());
+            out.writeUTF(method.getSignature());
+            out.writeBoolean(method.isStatic());
+            out.writeByte(statusMap.get(method).ordinal());
+            out.writeBoolean(getStaticMethods.contains(method));
+            out.writeBoolean(uselessVoidCandidates.contains(method));
+            List<MethodCall> calls = callGraph.get(method);
+            out.writeInt(calls == null ? -1 : calls.size());
+            if (calls != null) {
+                for (MethodCall call : calls) {
+                    DescriptorIO.writeMethodDescriptor(out, call.getMethod());
+                    out.writeBoolean(call.getMethod() instanceof XMethod);
+                    FieldDescriptor target = call.getTarget();
+                    if (target == TARGET_THIS) {
+                        out.writeByte(0);
+                    } else if (target == TARGET_NEW) {
+                        out.writeByte(1);
+                    } else if (target == TARGET_OTHER) {
+                        out.writeByte(2);
+                    } else {
+                        out.writeByte(3);
+                        DescriptorIO.writeFieldDescriptor(out, target);
                     }
                 }
-                if (!uselessVoidCandidate || (status != SideEffectStatus.UNSURE && status != SideEffectStatus.NO_SIDE_EFFECT)) {
-                    uselessVoidCandidates.remove(method);
+            }
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException, CheckedAnalysisException {
+        XClass xClass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+        SideEffectStatus[] statuses = SideEffectStatus.values();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String name = in.readUTF();
+            String signature = in.readUTF();
+            boolean isStatic = in.readBoolean();
+            XMethod xMethod = xClass.findMethod(name, signature, isStatic);
+            MethodDescriptor method = xMethod != null ? xMethod.getMethodDescriptor()
+                    : new MethodDescriptor(classDescriptor.getClassName(), name, signature, isStatic);
+            statusMap.put(method, statuses[in.readByte()]);
+            if (in.readBoolean()) {
+                getStaticMethods.add(method);
+            }
+            if (in.readBoolean()) {
+                uselessVoidCandidates.add(method);
+            }
+            int nCalls = in.readInt();
+            if (nCalls < 0) {
+                continue;
+            }
+            ArrayList<MethodCall> calls = new ArrayList<>(nCalls);
+            for (int j = 0; j < nCalls; j++) {
+                MethodDescriptor called = DescriptorIO.readMethodDescriptor(in);
+                if (in.readBoolean()) {
+                    called = XFactory.createXMethod(called).getMethodDescriptor();
                 }
-                if (status != prevStatus || !entry.getValue().equals(calledMethods)) {
-                    statusMap.put(method, status);
-                    if (status.unsure()) {
-                        entry.setValue(calledMethods);
-                    } else {
-                        iterator.remove();
-                    }
-                    changed = true;
+                FieldDescriptor target;
+                switch (in.readByte()) {
+                case 0:
+                    target = TARGET_THIS;
+                    break;
+                case 1:
+                    target = TARGET_NEW;
+                    break;
+                case 2:
+                    target = TARGET_OTHER;
+                    break;
+                default:
+                    target = DescriptorIO.readFieldDescriptor(in);
+                    break;
                 }
+                calls.add(new MethodCall(called, target));
+            }
+            callGraph.put(method, calls);
+        }
+    }
+
+    /**
+     * Compute the status of an unsure method again from the status of the
+     * methods it calls
+     *
+     * @return true if the status changed
+     */
+    private boolean updateStatus(MethodDescriptor method) {
+        List<MethodCall> calls = callGraph.get(method);
+        if (calls == null) {
+            // Already sure
+            return false;
+        }
+        uselessVoidCandidate = uselessVoidCandidates.contains(method);
+        SideEffectStatus prevStatus = statusMap.get(method);
+        status = prevStatus.toSure();
+        calledMethods = new ArrayList<>();
+        for(MethodCall methodCall : calls) {
+            sawCall(methodCall, true);
+            if(status == SideEffectStatus.SIDE_EFFECT) {
+                break;
+            }
+        }
+        if (!uselessVoidCandidate || (status != SideEffectStatus.UNSURE && status != SideEffectStatus.NO_SIDE_EFFECT)) {
+            uselessVoidCandidates.remove(method);
+        }
+        if (status != prevStatus || !calls.equals(calledMethods)) {
+            statusMap.put(method, status);
+            if (status.unsure()) {
+                callGraph.put(method, calledMethods);
+            } else {
+                callGraph.remove(method);
+            }
+        }
+        return status != prevStatus;
+    }
+
+    private void computeFinalStatus() {
+        SummaryFixpoint<MethodDescriptor> fixpoint = new SummaryFixpoint<>();
+        for (Entry<MethodDescriptor, List<MethodCall>> entry : callGraph.entrySet()) {
+            fixpoint.addMethod(entry.getKey());
+            for (MethodCall methodCall : entry.getValue()) {
+                fixpoint.addCall(entry.getKey(), methodCall.getMethod());
             }
         }
+        fixpoint.solve(this::updateStatus);
         for(Entry<MethodDescriptor, List<MethodCall>> entry : callGraph.entrySet()) {
             MethodDescriptor method = entry.getKey();
             status = statusMap.get(method);
@@ -19,7 +19,12 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import javax.annotation.CheckForNull;
 
@@ -34,6 +39,7 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.FirstPassDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.SignatureParser;
@@ -44,10 +50,14 @@ import edu.umd.cs.findbugs.ba.generic.GenericSignatureParser;
 import edu.umd.cs.findbugs.ba.generic.GenericUtilities;
 import edu.umd.cs.findbugs.bcel.BCELUtil;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 
-public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetector implements FirstPassDetector {
+public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetector implements FirstPassDetector,
+        PersistentSummaryDetector {
 
     final BugReporter bugReporter;
 
@@ -63,11 +73,31 @@ public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetect
 
     boolean isInnerClass, hasNonFinalFields;
 
+    /** functions found in the current class */
+    private final List<MethodDescriptor> classFunctions = new ArrayList<>();
+
     @Override
     public void visit(JavaClass obj) {
         isInnerClass = false;
         hasNonFinalFields = false;
+        classFunctions.clear();
+    }
+
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        out.writeInt(classFunctions.size());
+        for (MethodDescriptor m : classFunctions) {
+            DescriptorIO.writeMethodDescriptor(out, m);
+        }
+    }
 
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        XFactory xFactory = AnalysisContext.currentXFactory();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            xFactory.addFunctionThatMightBeMistakenForProcedures(DescriptorIO.readMethodDescriptor(in));
+        }
     }
 
     @Override
@@ -185,6 +215,7 @@ public class FunctionsThatMightBeMistakenForProcedures extends OpcodeStackDetect
                 if (!m.isStatic()) {
                     XFactory xFactory = AnalysisContext.currentXFactory();
                     xFactory.addFunctionThatMightBeMistakenForProcedures(getMethodDescriptor());
+                    classFunctions.add(getMethodDescriptor());
                     if (inferredMethod != null) {
                         inferredMethod.setPriority(priority);
                         inferredMethod.addString(String.format("%3d %3d %5d %3d", returnOther, returnSelf, returnNew, updates));
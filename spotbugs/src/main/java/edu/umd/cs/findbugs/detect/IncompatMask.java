@@ -19,6 +19,8 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
+
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Code;
 
@@ -70,6 +72,13 @@ public class IncompatMask extends OpcodeStackDetector {
         return (Number) constValue;
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.IAND) || bytecodeSet.get(Const.LAND)
+                || bytecodeSet.get(Const.IOR) || bytecodeSet.get(Const.LOR);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         switch (seen) {
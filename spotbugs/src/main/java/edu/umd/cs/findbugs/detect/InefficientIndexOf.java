@@ -20,9 +20,11 @@
 package edu.umd.cs.findbugs.detect;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 import org.apache.bcel.Const;
+import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
@@ -59,6 +61,12 @@ public class InefficientIndexOf extends OpcodeStackDetector {
         }
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.INVOKEVIRTUAL);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (seen == Const.INVOKEVIRTUAL && stack.getStackDepth() > 0 && "java/lang/String".equals(getClassConstantOperand())) {
@@ -20,6 +20,7 @@
 package edu.umd.cs.findbugs.detect;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -145,6 +146,13 @@ public class NumberConstructor extends OpcodeStackDetector {
 
         return null;
     }
+
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.INVOKESPECIAL);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         // only acts on constructor invoke
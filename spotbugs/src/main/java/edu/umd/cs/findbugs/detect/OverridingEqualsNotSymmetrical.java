@@ -19,6 +19,9 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -35,6 +38,7 @@ import edu.umd.cs.findbugs.ClassAnnotation;
 import edu.umd.cs.findbugs.FirstPassDetector;
 import edu.umd.cs.findbugs.MethodAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.EqualsKindSummary;
@@ -45,11 +49,12 @@ import edu.umd.cs.findbugs.ba.ch.Subtypes2;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.util.Values;
 
-public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implements FirstPassDetector {
+public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implements FirstPassDetector, PersistentSummaryDetector {
 
     private static final String EQUALS_NAME = "equals";
 
@@ -204,6 +209,39 @@ public class OverridingEqualsNotSymmetrical extends OpcodeStackDetector implemen
         }
     }
 
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        ClassAnnotation classAnnotation = new ClassAnnotation(classDescriptor.toDottedClassName());
+        EqualsKindSummary.KindOfEquals kind = equalsKindSummary.get(classAnnotation);
+        MethodDescriptor method = equalsMethod.get(classAnnotation);
+        out.writeBoolean(kind != null && method != null);
+        if (kind == null || method == null) {
+            return;
+        }
+        out.writeByte(kind.ordinal());
+        DescriptorIO.writeMethodDescriptor(out, method);
+        ClassAnnotation parent = parentMap.get(classAnnotation);
+        out.writeBoolean(parent != null);
+        if (parent != null) {
+            out.writeUTF(parent.getClassName());
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return;
+        }
+        ClassAnnotation classAnnotation = new ClassAnnotation(classDescriptor.toDottedClassName());
+        EqualsKindSummary.KindOfEquals kind = EqualsKindSummary.KindOfEquals.values()[in.readByte()];
+        equalsKindSummary.put(classAnnotation, kind);
+        count(kind);
+        equalsMethod.put(classAnnotation, DescriptorIO.readMethodDescriptor(in));
+        if (in.readBoolean()) {
+            parentMap.put(classAnnotation, new ClassAnnotation(in.readUTF()));
+        }
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (getPC() == 2 && seen != Const.IF_ACMPEQ && seen != Const.IF_ACMPNE) {
@@ -19,21 +19,33 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.bcel.Const;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.PersistentSummaryDetector;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.DescriptorIO;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 
 /**
  * Detector to find private methods that are never called.
  */
-public class ReflectiveClasses extends BytecodeScanningDetector implements NonReportingDetector {
+public class ReflectiveClasses extends BytecodeScanningDetector implements NonReportingDetector, PersistentSummaryDetector {
+
+    /** reflective classes noted while visiting the current class */
+    private final List<ClassDescriptor> classReflectiveClasses = new ArrayList<>();
 
     public ReflectiveClasses(BugReporter bugReporter) {
         AnalysisContext.currentXFactory().addReflectiveClasses(DescriptorFactory.createClassDescriptor(java.lang.System.class));
@@ -41,6 +53,28 @@ public class ReflectiveClasses extends BytecodeScanningDetector implements NonRe
 
     String constantString;
 
+    @Override
+    public void visitClassContext(ClassContext classContext) {
+        classReflectiveClasses.clear();
+        super.visitClassContext(classContext);
+    }
+
+    @Override
+    public void writeSummary(ClassDescriptor classDescriptor, DataOutput out) throws IOException {
+        out.writeInt(classReflectiveClasses.size());
+        for (ClassDescriptor c : classReflectiveClasses) {
+            DescriptorIO.writeClassDescriptor(out, c);
+        }
+    }
+
+    @Override
+    public void readSummary(ClassDescriptor classDescriptor, DataInput in) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            AnalysisContext.currentXFactory().addReflectiveClasses(DescriptorIO.readClassDescriptor(in));
+        }
+    }
+
     @Override
     public void sawString(String s) {
         constantString = s;
@@ -71,6 +105,7 @@ public class ReflectiveClasses extends BytecodeScanningDetector implements NonRe
     private void process(@SlashedClassName String className) {
         ClassDescriptor d = DescriptorFactory.createClassDescriptor(className);
         AnalysisContext.currentXFactory().addReflectiveClasses(d);
+        classReflectiveClasses.add(d);
     }
 }
 
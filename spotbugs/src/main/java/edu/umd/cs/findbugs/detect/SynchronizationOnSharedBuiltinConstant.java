@@ -20,6 +20,7 @@
 package edu.umd.cs.findbugs.detect;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -77,6 +78,12 @@ public class SynchronizationOnSharedBuiltinConstant extends OpcodeStackDetector
         bugAccumulator.reportAccumulatedBugs();
     }
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.MONITORENTER);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         switch (seen) {
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.detect;
 
+import java.util.BitSet;
 import java.util.Set;
 
 import org.apache.bcel.Const;
@@ -62,6 +63,12 @@ public class SynchronizeOnClassLiteralNotGetClass extends OpcodeStackDetector {
 
     BugInstance pendingBug;
 
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        BitSet bytecodeSet = getClassContext().getBytecodeSet(getMethod());
+        return bytecodeSet == null || bytecodeSet.get(Const.MONITORENTER);
+    }
+
     @Override
     public void sawOpcode(int seen) {
         if (pendingBug != null) {
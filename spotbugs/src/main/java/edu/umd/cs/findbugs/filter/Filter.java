@@ -51,10 +51,14 @@ import edu.umd.cs.findbugs.xml.XMLOutput;
 
 public class Filter extends OrMatcher {
     private static final boolean DEBUG = SystemProperties.getBoolean("filter.debug");
+    private static final boolean USE_INDEX = SystemProperties.getBoolean("filter.index", true);
     private static final int PRIME = 31;
 
     private final IdentityHashMap<Matcher, Boolean> disabled = new IdentityHashMap<>();
 
+    /** Index of the enabled matchers, built on demand */
+    private volatile FilterIndex index;
+
     /**
      * Constructor for empty filter
      *
@@ -106,6 +110,7 @@ public class Filter extends OrMatcher {
 
     public void disable(Matcher m) {
         disabled.put(m, true);
+        index = null;
     }
 
     public boolean isEnabled(Matcher m) {
@@ -114,6 +119,7 @@ public class Filter extends OrMatcher {
 
     public void enable(Matcher m) {
         disabled.remove(m);
+        index = null;
     }
 
     public static Filter parseFilter(String fileName) throws IOException {
@@ -161,11 +167,13 @@ public class Filter extends OrMatcher {
      */
     public void softAdd(Matcher child) {
         super.addChild(child);
+        index = null;
     }
 
     @Override
     public void addChild(Matcher child) {
         super.addChild(child);
+        index = null;
         enable(child);
     }
 
@@ -173,16 +181,45 @@ public class Filter extends OrMatcher {
     public void removeChild(Matcher child) {
         enable(child);// Remove from disabled before removing it
         super.removeChild(child);
+        index = null;
     }
 
     @Override
     public void clear() {
         disabled.clear();
         super.clear();
+        index = null;
     }
 
+    /**
+     * Check whether any enabled matcher matches the bug instance. Matchers which
+     * cannot match the bug instance are skipped with an index, the result is
+     * the same as {@link #matchLinearly(BugInstance)}.
+     * <p>
+     * The index is rebuilt after the top level matchers of this filter change,
+     * but not after the children of a compound matcher already in this filter
+     * change: build compound matchers before adding them, as the parser does,
+     * or remove and add them again.
+     * </p>
+     */
     @Override
     public boolean match(BugInstance bugInstance) {
+        if (!USE_INDEX) {
+            return matchLinearly(bugInstance);
+        }
+        FilterIndex i = index;
+        if (i == null) {
+            i = new FilterIndex(this);
+            index = i;
+        }
+        return i.match(bugInstance);
+    }
+
+    /**
+     * Check whether any enabled matcher matches the bug instance, trying them
+     * in turn.
+     */
+    boolean matchLinearly(BugInstance bugInstance) {
         Iterator<Matcher> i = childIterator();
         while (i.hasNext()) {
             Matcher child = i.next();
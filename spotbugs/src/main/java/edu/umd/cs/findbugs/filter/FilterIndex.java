@@ -0,0 +1,331 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugPattern;
+import edu.umd.cs.findbugs.ClassAnnotation;
+
+/**
+ * Index of the enabled top level matchers of a {@link Filter}.
+ * <p>
+ * For each matcher, the index derives a set of keys such that the matcher can
+ * only match a bug instance having one of them: the exact name of the primary
+ * class, a literal prefix of a class name regular expression, or the type,
+ * abbreviation or category of the bug pattern. Matchers are stored in hash
+ * tables under their keys, and only the matchers found under the keys of a
+ * bug instance, plus those for which no key could be derived, are evaluated.
+ * They are evaluated in the order of the filter and the first match stops the
+ * evaluation, so the result is the same as evaluating all the matchers in
+ * turn.
+ * </p>
+ * <p>
+ * The index is a snapshot: the filter drops it when its own matchers are
+ * added, removed, enabled or disabled. Changes to the children of an
+ * {@link AndMatcher}, {@link OrMatcher} or {@link NotMatcher} already in the
+ * filter are not seen, and leave the index stale.
+ * </p>
+ */
+final class FilterIndex {
+
+    /** Kinds of keys, from the most selective to the least selective */
+    private static final int CLASS = 0;
+
+    private static final int CLASS_PREFIX = 1;
+
+    private static final int PATTERN = 2;
+
+    private static final int CODE = 3;
+
+    private static final int CATEGORY = 4;
+
+    private static final Comparator<Entry> POSITION_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return Integer.compare(e1.position, e2.position);
+        }
+    };
+
+    private static final class Entry {
+        final int position;
+
+        final Matcher matcher;
+
+        Entry(int position, Matcher matcher) {
+            this.position = position;
+            this.matcher = matcher;
+        }
+    }
+
+    private static final class Key {
+        final int kind;
+
+        final String value;
+
+        Key(int kind, String value) {
+            this.kind = kind;
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind + value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return kind == other.kind && value.equals(other.value);
+        }
+    }
+
+    /** All the enabled matchers */
+    private final List<Entry> enabled = new ArrayList<>();
+
+    /** Matchers for which no key could be derived */
+    private final List<Entry> unindexed = new ArrayList<>();
+
+    private final List<Map<String, List<Entry>>> indexes = new ArrayList<>();
+
+    /** Lengths of the class name prefixes, in increasing order */
+    private final int[] prefixLengths;
+
+    FilterIndex(Filter filter) {
+        for (int kind = CLASS; kind <= CATEGORY; kind++) {
+            indexes.add(new HashMap<String, List<Entry>>());
+        }
+        TreeSet<Integer> lengths = new TreeSet<>();
+        int position = 0;
+        Iterator<Matcher> i = filter.childIterator();
+        while (i.hasNext()) {
+            Matcher child = i.next();
+            if (!filter.isEnabled(child)) {
+                continue;
+            }
+            Entry entry = new Entry(position++, child);
+            enabled.add(entry);
+            Set<Key> keys = getKeys(child);
+            if (keys == null) {
+                unindexed.add(entry);
+                continue;
+            }
+            for (Key key : keys) {
+                Map<String, List<Entry>> index = indexes.get(key.kind);
+                List<Entry> entries = index.get(key.value);
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                    index.put(key.value, entries);
+                }
+                entries.add(entry);
+                if (key.kind == CLASS_PREFIX) {
+                    lengths.add(key.value.length());
+                }
+            }
+        }
+        prefixLengths = new int[lengths.size()];
+        int j = 0;
+        for (int length : lengths) {
+            prefixLengths[j++] = length;
+        }
+    }
+
+    /**
+     * Get keys such that the matcher can only match a bug instance having one
+     * of them.
+     *
+     * @return the keys, empty if the matcher never matches, or null if no
+     *         keys could be derived
+     */
+    private static Set<Key> getKeys(Matcher matcher) {
+        // Subclasses could match differently
+        Class<?> type = matcher.getClass();
+        if (type == ClassMatcher.class) {
+            ClassMatcher classMatcher = (ClassMatcher) matcher;
+            String role = classMatcher.getRole();
+            String spec = classMatcher.getClassName().getSpec();
+            if ((role != null && !"".equals(role)) || spec == null) {
+                return null;
+            }
+            if (!spec.startsWith("~")) {
+                return Collections.singleton(new Key(CLASS, spec));
+            }
+            String prefix = getLiteralPrefix(spec.substring(1));
+            return prefix.isEmpty() ? null : Collections.singleton(new Key(CLASS_PREFIX, prefix));
+        } else if (type == BugMatcher.class) {
+            BugMatcher bugMatcher = (BugMatcher) matcher;
+            Set<Key> keys = new LinkedHashSet<>();
+            addKeys(keys, PATTERN, bugMatcher.getPatterns());
+            addKeys(keys, CODE, bugMatcher.getCodes());
+            addKeys(keys, CATEGORY, bugMatcher.getCategories());
+            return keys;
+        } else if (type == AndMatcher.class) {
+            // Any child will do, use the most selective one
+            Set<Key> best = null;
+            for (Matcher child : ((AndMatcher) matcher).getChildren()) {
+                Set<Key> keys = getKeys(child);
+                if (keys != null && (best == null || getSelectivity(keys) < getSelectivity(best))) {
+                    best = keys;
+                }
+            }
+            return best;
+        } else if (type == OrMatcher.class) {
+            Set<Key> keys = new LinkedHashSet<>();
+            for (Matcher child : ((OrMatcher) matcher).getChildren()) {
+                Set<Key> childKeys = getKeys(child);
+                if (childKeys == null) {
+                    return null;
+                }
+                keys.addAll(childKeys);
+            }
+            return keys;
+        }
+        return null;
+    }
+
+    private static void addKeys(Set<Key> keys, int kind, StringSetMatch match) {
+        for (String value : match.getStrings()) {
+            keys.add(new Key(kind, value));
+        }
+    }
+
+    /**
+     * @return the kind of the least selective key, -1 for no key
+     */
+    private static int getSelectivity(Set<Key> keys) {
+        int result = -1;
+        for (Key key : keys) {
+            result = Math.max(result, key.kind);
+        }
+        return result;
+    }
+
+    /**
+     * Get a string which starts every string matched by the given regular
+     * expression.
+     *
+     * @return the prefix, possibly empty
+     */
+    static String getLiteralPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                literal = c;
+                next = i + 1;
+            } else if (c == '\\' && i + 1 < regex.length() && (regex.charAt(i + 1) == '.' || regex.charAt(i + 1) == '$')) {
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else {
+                break;
+            }
+            if (next < regex.length() && "?*{".indexOf(regex.charAt(next)) >= 0) {
+                // The character may be missing
+                break;
+            }
+            prefix.append(literal);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    boolean match(BugInstance bugInstance) {
+        List<List<Entry>> candidates = new ArrayList<>(4);
+        addCandidates(candidates, unindexed);
+        Map<String, List<Entry>> classes = indexes.get(CLASS);
+        Map<String, List<Entry>> classPrefixes = indexes.get(CLASS_PREFIX);
+        if (!classes.isEmpty() || !classPrefixes.isEmpty()) {
+            ClassAnnotation primaryClass = bugInstance.getPrimaryClass();
+            if (primaryClass == null) {
+                // Class matchers fail on such bug instances, keep failing the same way
+                return match(bugInstance, enabled);
+            }
+            String className = primaryClass.getClassName();
+            addCandidates(candidates, classes.get(className));
+            for (int length : prefixLengths) {
+                if (length > className.length()) {
+                    break;
+                }
+                addCandidates(candidates, classPrefixes.get(className.substring(0, length)));
+            }
+        }
+        Map<String, List<Entry>> patterns = indexes.get(PATTERN);
+        if (!patterns.isEmpty()) {
+            addCandidates(candidates, patterns.get(bugInstance.getType().trim()));
+        }
+        Map<String, List<Entry>> codes = indexes.get(CODE);
+        Map<String, List<Entry>> categories = indexes.get(CATEGORY);
+        if (!codes.isEmpty() || !categories.isEmpty()) {
+            BugPattern bugPattern = bugInstance.getBugPattern();
+            addCandidates(candidates, codes.get(bugPattern.getAbbrev().trim()));
+            addCandidates(candidates, categories.get(bugPattern.getCategory().trim()));
+        }
+
+        if (candidates.isEmpty()) {
+            return false;
+        } else if (candidates.size() == 1) {
+            return match(bugInstance, candidates.get(0));
+        }
+        List<Entry> merged = new ArrayList<>();
+        for (List<Entry> entries : candidates) {
+            merged.addAll(entries);
+        }
+        Collections.sort(merged, POSITION_ORDER);
+        return match(bugInstance, merged);
+    }
+
+    private static void addCandidates(List<List<Entry>> candidates, List<Entry> entries) {
+        if (entries != null && !entries.isEmpty()) {
+            candidates.add(entries);
+        }
+    }
+
+    /**
+     * Evaluate matchers sorted by position, skipping duplicates.
+     */
+    private static boolean match(BugInstance bugInstance, List<Entry> entries) {
+        int last = -1;
+        for (Entry entry : entries) {
+            if (entry.position != last && entry.matcher.match(bugInstance)) {
+                return true;
+            }
+            last = entry.position;
+        }
+        return false;
+    }
+}
@@ -68,6 +68,8 @@ implements DFSEdgeTypes {
 
     private SearchTreeCallback<VertexType> searchTreeCallback;
 
+    private Iterator<VertexType> rootIterator;
+
     /**
      * Color of a vertex which hasn't been visited yet.
      */
@@ -135,9 +137,13 @@ implements DFSEdgeTypes {
      * @return the next search tree root
      */
     protected VertexType getNextSearchTreeRoot() {
-        // FIXME: slow linear search, should improve
-        for (Iterator<VertexType> i = graph.vertexIterator(); i.hasNext();) {
-            VertexType vertex = i.next();
+        // The vertices scanned by a previous call have been visited since, or
+        // are not chosen, so the scan resumes after them
+        if (rootIterator == null) {
+            rootIterator = graph.vertexIterator();
+        }
+        while (rootIterator.hasNext()) {
+            VertexType vertex = rootIterator.next();
             if (visitMe(vertex)) {
                 return vertex;
             }
@@ -302,7 +308,7 @@ implements DFSEdgeTypes {
                 searchTreeCallback.startSearchTree(searchTreeRoot);
             }
 
-            ArrayList<Visit> stack = new ArrayList<>(graph.getNumVertexLabels());
+            ArrayList<Visit> stack = new ArrayList<>();
             stack.add(new Visit(searchTreeRoot));
 
             while (!stack.isEmpty()) {
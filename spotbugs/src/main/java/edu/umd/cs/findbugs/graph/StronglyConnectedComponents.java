@@ -75,15 +75,14 @@ public class StronglyConnectedComponents<GraphType extends Graph<EdgeType, Verte
         Transpose<GraphType, EdgeType, VertexType> t = new Transpose<>();
         GraphType transpose = t.transpose(g, toolkit);
 
-        // Create a set of vertices in the transposed graph,
+        // Create a list of vertices in the transposed graph,
         // in descending order of finish time in the initial
-        // depth first search.
-        VisitationTimeComparator<VertexType> comparator = new VisitationTimeComparator<>(
-                initialDFS.getFinishTimeList(), VisitationTimeComparator.DESCENDING);
-        Set<VertexType> descendingByFinishTimeSet = new TreeSet<>(comparator);
-        Iterator<VertexType> i = transpose.vertexIterator();
+        // depth first search: the order in which the search
+        // finished them, reversed.
+        ArrayList<VertexType> descendingByFinishTimeList = new ArrayList<>(g.getNumVertexLabels());
+        Iterator<VertexType> i = initialDFS.topologicalSortIterator();
         while (i.hasNext()) {
-            descendingByFinishTimeSet.add(i.next());
+            descendingByFinishTimeList.add(t.getTransposedGraphVertex(i.next()));
         }
 
         // Create a SearchTreeBuilder for transposed DFS
@@ -91,7 +90,7 @@ public class StronglyConnectedComponents<GraphType extends Graph<EdgeType, Verte
 
         // Now perform a DFS on the transpose, choosing the vertices
         // to visit in the main loop by descending finish time
-        final Iterator<VertexType> vertexIter = descendingByFinishTimeSet.iterator();
+        final Iterator<VertexType> vertexIter = descendingByFinishTimeList.iterator();
         DepthFirstSearch<GraphType, EdgeType, VertexType> transposeDFS = new DepthFirstSearch<GraphType, EdgeType, VertexType>(
                 transpose) {
             @Override
@@ -65,8 +65,8 @@ public class Transpose<GraphType extends Graph<EdgeType, VertexType>, EdgeType e
             // Make a duplicate of original vertex
             // (Ensuring that transposed graph has same labeling as original)
             VertexType dupVertex = toolkit.duplicateVertex(v);
+            trans.addVertex(dupVertex);
             dupVertex.setLabel(v.getLabel());
-            trans.addVertex(v);
 
             // Keep track of correspondence between equivalent vertices
             m_origToTransposeMap.put(v, dupVertex);
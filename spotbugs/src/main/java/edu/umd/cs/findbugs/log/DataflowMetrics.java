@@ -0,0 +1,302 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.log;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+import edu.umd.cs.findbugs.xml.XMLWriteable;
+
+/**
+ * Statistics of the dataflow analyses executed during an analysis run, if
+ * the system property {@link #METRICS_PROPERTY} is true. For each dataflow
+ * class, the number of runs, iterations, block transfers, meet
+ * operations, facts created by the solver and the time taken are summed up,
+ * and the slowest methods are kept. They are written as part of the
+ * {@link Profiler} XML.
+ * <p>
+ * If the system property {@link #METRICS_FILE_PROPERTY} names a file, the
+ * statistics are recorded too, every run is kept, and can be written as JSON with
+ * {@link #writeJSON(Writer)}.
+ *
+ * @see edu.umd.cs.findbugs.ba.Dataflow#execute()
+ */
+public class DataflowMetrics implements XMLWriteable {
+    /**
+     * Name of the system property enabling the statistics
+     */
+    public static final String METRICS_PROPERTY = "findbugs.dataflow.metrics";
+
+    /**
+     * Name of the system property naming the file all dataflow runs are
+     * written to, as JSON
+     */
+    public static final String METRICS_FILE_PROPERTY = "findbugs.dataflow.metricsFile";
+
+    private static final int SLOWEST = SystemProperties.getInt("findbugs.dataflow.metrics.slowest", 10);
+
+    private static final Comparator<Run> BY_TIME = (r1, r2) -> Long.compare(r1.nanos, r2.nanos);
+
+    /**
+     * One run of a dataflow analysis on a method.
+     */
+    public static class Run {
+        final String analysis;
+
+        final String method;
+
+        final int blocks;
+
+        final int iterations;
+
+        final long blockTransfers;
+
+        final long meets;
+
+        final long factsCreated;
+
+        final long nanos;
+
+        /**
+         * @param analysis
+         *            name of the dataflow class
+         * @param method
+         *            the method
+         * @param blocks
+         *            number of basic blocks of the CFG
+         * @param iterations
+         *            number of iterations over the blocks
+         * @param blockTransfers
+         *            number of block transfer function applications
+         * @param meets
+         *            number of meet operations
+         * @param factsCreated
+         *            number of facts created by the solver
+         * @param nanos
+         *            time taken, in nanoseconds
+         */
+        public Run(String analysis, String method, int blocks, int iterations, long blockTransfers, long meets,
+                long factsCreated, long nanos) {
+            this.analysis = analysis;
+            this.method = method;
+            this.blocks = blocks;
+            this.iterations = iterations;
+            this.blockTransfers = blockTransfers;
+            this.meets = meets;
+            this.factsCreated = factsCreated;
+            this.nanos = nanos;
+        }
+    }
+
+    private static class AnalysisStats {
+        final AtomicLong runs = new AtomicLong();
+
+        final AtomicLong iterations = new AtomicLong();
+
+        final AtomicLong blockTransfers = new AtomicLong();
+
+        final AtomicLong meets = new AtomicLong();
+
+        final AtomicLong factsCreated = new AtomicLong();
+
+        final AtomicLong nanos = new AtomicLong();
+
+        /** slowest runs, fastest first */
+        final PriorityQueue<Run> slowest = new PriorityQueue<>(BY_TIME);
+
+        void add(Run run) {
+            runs.incrementAndGet();
+            iterations.addAndGet(run.iterations);
+            blockTransfers.addAndGet(run.blockTransfers);
+            meets.addAndGet(run.meets);
+            factsCreated.addAndGet(run.factsCreated);
+            nanos.addAndGet(run.nanos);
+            synchronized (slowest) {
+                if (slowest.size() < SLOWEST) {
+                    slowest.add(run);
+                } else if (SLOWEST > 0 && slowest.peek().nanos < run.nanos) {
+                    slowest.poll();
+                    slowest.add(run);
+                }
+            }
+        }
+
+        List<Run> getSlowest() {
+            List<Run> result;
+            synchronized (slowest) {
+                result = new ArrayList<>(slowest);
+            }
+            Collections.sort(result, BY_TIME.reversed());
+            return result;
+        }
+    }
+
+    private final ConcurrentMap<String, AnalysisStats> stats = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private final Queue<Run> runs;
+
+    private final boolean enabled;
+
+    public DataflowMetrics() {
+        boolean keepRuns = SystemProperties.getProperty(METRICS_FILE_PROPERTY) != null;
+        enabled = keepRuns || SystemProperties.getBoolean(METRICS_PROPERTY);
+        runs = keepRuns ? new ConcurrentLinkedQueue<Run>() : null;
+    }
+
+    /**
+     * Create enabled statistics.
+     *
+     * @param keepRuns
+     *            true to keep every run, so that they can be written as JSON
+     */
+    public DataflowMetrics(boolean keepRuns) {
+        enabled = true;
+        runs = keepRuns ? new ConcurrentLinkedQueue<Run>() : null;
+    }
+
+    /**
+     * @return true if runs are recorded; if not, callers should not create
+     *         them
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a run of a dataflow analysis.
+     *
+     * @param run
+     *            the run
+     */
+    public void record(Run run) {
+        if (!enabled) {
+            return;
+        }
+        AnalysisStats analysisStats = stats.computeIfAbsent(run.analysis, k -> new AnalysisStats());
+        analysisStats.add(run);
+        if (runs != null) {
+            runs.add(run);
+        }
+    }
+
+    /**
+     * Clears the previously recorded runs.
+     */
+    public void clear() {
+        stats.clear();
+        if (runs != null) {
+            runs.clear();
+        }
+    }
+
+    @Override
+    public void writeXML(XMLOutput xmlOutput) throws IOException {
+        for (Map.Entry<String, AnalysisStats> e : new TreeMap<>(stats).entrySet()) {
+            AnalysisStats s = e.getValue();
+            xmlOutput.startTag("DataflowProfile");
+            xmlOutput.addAttribute("name", e.getKey());
+            xmlOutput.addAttribute("runs", String.valueOf(s.runs.get()));
+            xmlOutput.addAttribute("iterations", String.valueOf(s.iterations.get()));
+            xmlOutput.addAttribute("blockTransfers", String.valueOf(s.blockTransfers.get()));
+            xmlOutput.addAttribute("meets", String.valueOf(s.meets.get()));
+            xmlOutput.addAttribute("factsCreated", String.valueOf(s.factsCreated.get()));
+            xmlOutput.addAttribute("totalMilliseconds", String.valueOf(TimeUnit.NANOSECONDS.toMillis(s.nanos.get())));
+            xmlOutput.stopTag(false);
+            for (Run run : s.getSlowest()) {
+                xmlOutput.startTag("DataflowMethod");
+                xmlOutput.addAttribute("method", run.method);
+                xmlOutput.addAttribute("blocks", String.valueOf(run.blocks));
+                xmlOutput.addAttribute("iterations", String.valueOf(run.iterations));
+                xmlOutput.addAttribute("blockTransfers", String.valueOf(run.blockTransfers));
+                xmlOutput.addAttribute("meets", String.valueOf(run.meets));
+                xmlOutput.addAttribute("factsCreated", String.valueOf(run.factsCreated));
+                xmlOutput.addAttribute("microseconds", String.valueOf(TimeUnit.NANOSECONDS.toMicros(run.nanos)));
+                xmlOutput.stopTag(true);
+            }
+            xmlOutput.closeTag("DataflowProfile");
+        }
+    }
+
+    /**
+     * Write the totals of each dataflow class and, if every run was kept, the
+     * runs as a JSON object.
+     *
+     * @param out
+     *            the writer to write to
+     */
+    public void writeJSON(Writer out) throws IOException {
+        out.write("{\n  \"analyses\": [");
+        String separator = "\n";
+        for (Map.Entry<String, AnalysisStats> e : new TreeMap<>(stats).entrySet()) {
+            AnalysisStats s = e.getValue();
+            out.write(separator);
+            out.write("    {\"name\": " + quote(e.getKey()) + ", \"runs\": " + s.runs.get() + ", \"iterations\": "
+                    + s.iterations.get() + ", \"blockTransfers\": " + s.blockTransfers.get() + ", \"meets\": " + s.meets.get()
+                    + ", \"factsCreated\": " + s.factsCreated.get() + ", \"nanoseconds\": " + s.nanos.get() + "}");
+            separator = ",\n";
+        }
+        out.write("\n  ],\n  \"runs\": [");
+        separator = "\n";
+        if (runs != null) {
+            for (Run run : runs) {
+                out.write(separator);
+                out.write("    {\"analysis\": " + quote(run.analysis) + ", \"method\": " + quote(run.method) + ", \"blocks\": "
+                        + run.blocks + ", \"iterations\": " + run.iterations + ", \"blockTransfers\": " + run.blockTransfers
+                        + ", \"meets\": " + run.meets + ", \"factsCreated\": " + run.factsCreated + ", \"nanoseconds\": "
+                        + run.nanos + "}");
+                separator = ",\n";
+            }
+        }
+        out.write("\n  ]\n}\n");
+    }
+
+    private static String quote(String s) {
+        StringBuilder result = new StringBuilder(s.length() + 2);
+        result.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -46,8 +46,9 @@ public class Profiler implements XMLWriteable {
     final static boolean MAX_CONTEXT = SystemProperties.getBoolean("findbugs.profiler.maxcontext");
 
     public Profiler() {
-        startTimes = new Stack<>();
+        startTimes = ThreadLocal.withInitial(Stack::new);
         profile = new ConcurrentHashMap<>();
+        dataflowMetrics = new DataflowMetrics();
         if (REPORT) {
             System.err.println("Profiling activated");
         }
@@ -198,27 +199,35 @@ public class Profiler implements XMLWriteable {
 
     }
 
-    final Stack<Clock> startTimes;
+    /**
+     * Clocks and contexts are kept per thread, so that classes analyzed
+     * concurrently (see {@link edu.umd.cs.findbugs.AnalysisOptions#threads})
+     * accumulate into the same profile without corrupting each other's stacks.
+     */
+    final ThreadLocal<Stack<Clock>> startTimes;
 
     final ConcurrentMap<Class<?>, Profile> profile;
 
-    final Stack<Object> context = new Stack<>();
+    private final DataflowMetrics dataflowMetrics;
+
+    final ThreadLocal<Stack<Object>> context = ThreadLocal.withInitial(Stack::new);
 
     public void startContext(Object context) {
-        this.context.push(context);
+        this.context.get().push(context);
     }
 
     public void endContext(Object context) {
-        Object o = this.context.pop();
+        Object o = this.context.get().pop();
         assert o == context;
     }
 
     private Object getContext() {
-        if (context.size() == 0) {
+        Stack<Object> stack = context.get();
+        if (stack.size() == 0) {
             return "";
         }
         try {
-            return context.peek();
+            return stack.peek();
         } catch (EmptyStackException e) {
             return "";
         }
@@ -226,7 +235,7 @@ public class Profiler implements XMLWriteable {
     public void start(Class<?> c) {
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         if (!stack.isEmpty()) {
             stack.peek().accumulateTime(currentNanoTime);
         }
@@ -239,7 +248,7 @@ public class Profiler implements XMLWriteable {
         // System.err.println("pop " + c.getSimpleName());
         long currentNanoTime = System.nanoTime();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         Clock ending = stack.pop();
         if (ending.clazz != c) {
             throw new AssertionError("Asked to end timing for " + c + " but top of stack is " + ending.clazz
@@ -407,7 +416,16 @@ public class Profiler implements XMLWriteable {
      */
     public void clear() {
         profile.clear();
-        startTimes.clear();
+        startTimes.get().clear();
+        dataflowMetrics.clear();
+    }
+
+    /**
+     * @return statistics of the dataflow analyses executed in this analysis
+     *         run
+     */
+    public DataflowMetrics getDataflowMetrics() {
+        return dataflowMetrics;
     }
 
     public Profile getProfile(Class<?> c) {
@@ -454,6 +472,7 @@ public class Profiler implements XMLWriteable {
                 break;
             }
         }
+        dataflowMetrics.writeXML(xmlOutput);
         xmlOutput.closeTag("FindBugsProfile");
     }
 }
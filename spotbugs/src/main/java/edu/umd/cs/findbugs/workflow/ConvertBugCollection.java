@@ -0,0 +1,84 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.workflow;
+
+import java.io.IOException;
+
+import edu.umd.cs.findbugs.BinaryBugCollectionFormat;
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.config.CommandLine;
+
+/**
+ * Convert analysis results between XML and the binary format of
+ * {@link BinaryBugCollectionFormat}. The format of the input is recognized
+ * from its content, the format of the output is chosen by the extension of
+ * its file name.
+ */
+public class ConvertBugCollection {
+
+    static class ConvertCommandLine extends CommandLine {
+        boolean withMessages;
+
+        ConvertCommandLine() {
+            addSwitch("-withMessages", "Generated XML should contain msgs for external processing");
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see
+         * edu.umd.cs.findbugs.config.CommandLine#handleOption(java.lang.String,
+         * java.lang.String)
+         */
+        @Override
+        protected void handleOption(String option, String optionExtraPart) throws IOException {
+            if ("-withMessages".equals(option)) {
+                withMessages = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option : " + option);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see
+         * edu.umd.cs.findbugs.config.CommandLine#handleOptionWithArgument(java
+         * .lang.String, java.lang.String)
+         */
+        @Override
+        protected void handleOptionWithArgument(String option, String argument) throws IOException {
+            throw new IllegalArgumentException("Unknown option : " + option);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        FindBugs.setNoAnalysis();
+        ConvertCommandLine commandLine = new ConvertCommandLine();
+        int argCount = commandLine.parse(args, 2, 2, "Usage: " + ConvertBugCollection.class.getName()
+                + " [options] <input results> <output results>\n" + "  the output is binary if its name ends with "
+                + BinaryBugCollectionFormat.FILE_EXTENSION + ", gzipped XML if it ends with .gz, XML otherwise");
+
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.readXML(args[argCount++]);
+        bugCollection.setWithMessages(commandLine.withMessages);
+        bugCollection.writeXML(args[argCount]);
+    }
+}
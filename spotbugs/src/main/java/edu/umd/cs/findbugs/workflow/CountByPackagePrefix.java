@@ -17,6 +17,7 @@
  */
 package edu.umd.cs.findbugs.workflow;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
@@ -27,7 +28,7 @@ import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.PackageStats;
-import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.StreamingBugCollectionReader;
 import edu.umd.cs.findbugs.util.ClassName;
 
 /**
@@ -53,23 +54,23 @@ public class CountByPackagePrefix {
         }
 
         int prefixLength = Integer.parseInt(args[0]);
-        BugCollection origCollection = new SortedBugCollection();
-        if (args.length == 1) {
-            origCollection.readXML(System.in);
-        } else {
-            origCollection.readXML(args[1]);
-        }
         Map<String, Integer> map = new TreeMap<>();
         Map<String, Integer> ncss = new TreeMap<>();
 
-        for (BugInstance b : origCollection.getCollection()) {
-            String prefix = ClassName.extractPackagePrefix(b.getPrimaryClass().getPackageName(), prefixLength);
-            Integer v = map.get(prefix);
-            if (v == null) {
-                map.put(prefix, 1);
-            } else {
-                map.put(prefix, v + 1);
+        BugCollection origCollection;
+        try (StreamingBugCollectionReader reader = args.length == 1 ? new StreamingBugCollectionReader(System.in)
+                : new StreamingBugCollectionReader(new File(args[1]))) {
+            BugInstance b;
+            while ((b = reader.read()) != null) {
+                String prefix = ClassName.extractPackagePrefix(b.getPrimaryClass().getPackageName(), prefixLength);
+                Integer v = map.get(prefix);
+                if (v == null) {
+                    map.put(prefix, 1);
+                } else {
+                    map.put(prefix, v + 1);
+                }
             }
+            origCollection = reader.getBugCollection();
         }
         for (PackageStats ps : origCollection.getProjectStats().getPackageStats()) {
             String prefix = ClassName.extractPackagePrefix(ps.getPackageName(), prefixLength);
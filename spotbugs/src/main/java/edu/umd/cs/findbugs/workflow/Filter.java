@@ -19,6 +19,7 @@
 package edu.umd.cs.findbugs.workflow;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Date;
@@ -35,6 +36,8 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
+import javax.annotation.CheckForNull;
+
 import org.dom4j.DocumentException;
 
 import edu.umd.cs.findbugs.AppVersion;
@@ -55,6 +58,8 @@ import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SloppyBugComparator;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.SpillingBugSorter;
+import edu.umd.cs.findbugs.StreamingBugCollectionReader;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.config.CommandLine;
 import edu.umd.cs.findbugs.filter.FilterException;
@@ -693,6 +698,33 @@ public class Filter {
     static SourceSearcher sourceSearcher;
 
 
+    @CheckForNull
+    private static BugInstance nextBug(Iterator<BugInstance> bugs, @CheckForNull StreamingBugCollectionReader reader)
+            throws IOException, DocumentException {
+        if (reader != null) {
+            return reader.read();
+        }
+        return bugs.hasNext() ? bugs.next() : null;
+    }
+
+    private static Iterable<BugInstance> withoutHistory(Iterable<BugInstance> bugs) {
+        return () -> new Iterator<BugInstance>() {
+            final Iterator<BugInstance> i = bugs.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public BugInstance next() {
+                BugInstance bug = i.next();
+                bug.clearHistory();
+                return bug;
+            }
+        };
+    }
+
     public static void main(String[] args) throws Exception {
         FindBugs.setNoAnalysis();
         DetectorFactoryCollection.instance();
@@ -701,12 +733,21 @@ public class Filter {
 
         int argCount = commandLine.parse(args, 0, 2, "Usage: " + Filter.class.getName()
                 + " [options] [<orig results> [<new results>]] ");
-        SortedBugCollection origCollection = new SortedBugCollection();
-
+        SortedBugCollection origCollection;
+        File origFile = null;
         if (argCount == args.length) {
+            origCollection = new SortedBugCollection();
             origCollection.readXML(System.in);
-        } else {
+        } else if (commandLine.hashChangedSpecified || commandLine.maybeMutatedAsString != null) {
+            // These need all the warnings at once
+            origCollection = new SortedBugCollection();
             origCollection.readXML(args[argCount++]);
+        } else {
+            // Read the metadata now, and the warnings one at a time below
+            origFile = new File(args[argCount++]);
+            try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(origFile)) {
+                origCollection = reader.readMetadata();
+            }
         }
         boolean verbose = argCount < args.length;
         SortedBugCollection resultCollection = origCollection.createEmptyCollectionWithMetadata();
@@ -754,28 +795,54 @@ public class Filter {
 
         commandLine.getReady(origCollection);
 
-        for (BugInstance bug : origCollection.getCollection()) {
-            if (commandLine.accept(origCollection, bug)) {
-                if (trimToVersion >= 0) {
-                    if (bug.getFirstVersion() > trimToVersion) {
-                        dropped++;
-                        continue;
-                    } else if (bug.getLastVersion() >= trimToVersion) {
-                        bug.setLastVersion(-1);
-                        bug.setRemovedByChangeOfPersistingClass(false);
+        // When streaming, origCollection only holds the metadata
+        SpillingBugSorter resultBugs = null;
+        StreamingBugCollectionReader reader = null;
+        try {
+            if (origFile != null) {
+                resultBugs = new SpillingBugSorter(SortedBugCollection.MultiversionBugInstanceComparator.instance);
+                reader = new StreamingBugCollectionReader(origFile);
+            }
+            Iterator<BugInstance> origBugs = origCollection.getCollection().iterator();
+            BugInstance bug;
+            while ((bug = nextBug(origBugs, reader)) != null) {
+                if (commandLine.accept(origCollection, bug)) {
+                    if (trimToVersion >= 0) {
+                        if (bug.getFirstVersion() > trimToVersion) {
+                            dropped++;
+                            continue;
+                        } else if (bug.getLastVersion() >= trimToVersion) {
+                            bug.setLastVersion(-1);
+                            bug.setRemovedByChangeOfPersistingClass(false);
+                        }
                     }
+                    if (resultBugs != null) {
+                        resultCollection.addExternal(bug, false);
+                        resultBugs.add(bug);
+                    } else {
+                        resultCollection.add(bug, false);
+                    }
+                    passed++;
+                } else {
+                    dropped++;
                 }
-                resultCollection.add(bug, false);
-                passed++;
-            } else {
-                dropped++;
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
             }
         }
 
+        Iterable<BugInstance> resultIterable = resultBugs != null ? resultBugs : resultCollection.getCollection();
         if (commandLine.purgeHistorySpecified && commandLine.purgeHistory) {
             resultCollection.clearAppVersions();
-            for (BugInstance bug : resultCollection.getCollection()) {
-                bug.clearHistory();
+            if (resultBugs != null) {
+                // The warnings are only read back when written
+                resultIterable = withoutHistory(resultIterable);
+            } else {
+                for (BugInstance b : resultCollection.getCollection()) {
+                    b.clearHistory();
+                }
             }
 
 
@@ -798,12 +865,18 @@ public class Filter {
 
         }
         projectStats.recomputeFromComponents();
-        if (argCount == args.length) {
-            assert !verbose;
-            resultCollection.writeXML(System.out);
-        } else {
-            resultCollection.writeXML(args[argCount++]);
+        try {
+            if (argCount == args.length) {
+                assert !verbose;
+                resultCollection.writeXML(System.out, resultIterable);
+            } else {
+                resultCollection.writeXML(args[argCount++], resultIterable);
 
+            }
+        } finally {
+            if (resultBugs != null) {
+                resultBugs.close();
+            }
         }
 
     }
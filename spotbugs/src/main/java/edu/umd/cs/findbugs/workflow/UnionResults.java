@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.workflow;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 
@@ -31,6 +32,8 @@ import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.Project;
 import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.SpillingBugSorter;
+import edu.umd.cs.findbugs.StreamingBugCollectionReader;
 import edu.umd.cs.findbugs.config.CommandLine;
 
 /**
@@ -114,6 +117,28 @@ public class UnionResults {
         return;
     }
 
+    /**
+     * Merge the metadata of a results file into a union, like
+     * {@link #merge(HashSet, SortedBugCollection, SortedBugCollection)} does,
+     * and add its BugInstances to the given sorter.
+     */
+    private static void merge(HashSet<String> hashes, SortedBugCollection into, SpillingBugSorter bugs,
+            StreamingBugCollectionReader from) throws IOException, DocumentException {
+        BugInstance bugInstance;
+        while ((bugInstance = from.read()) != null) {
+            if (hashes.add(bugInstance.getInstanceHash())) {
+                into.addExternal(bugInstance);
+                bugs.add(bugInstance);
+            }
+        }
+        SortedBugCollection more = from.getBugCollection();
+        into.getProjectStats().addStats(more.getProjectStats());
+        into.getProject().add(more.getProject());
+        for (AnalysisError error : more.getErrors()) {
+            into.addError(error);
+        }
+    }
+
     public static void main(String[] argv) throws IOException {
 
         FindBugs.setNoAnalysis();
@@ -125,36 +150,39 @@ public class UnionResults {
         SortedBugCollection results = null;
         HashSet<String> hashes = new HashSet<>();
 
-        for (int i = argCount; i < argv.length; i++) {
-            try {
-                SortedBugCollection more = new SortedBugCollection();
-
-                more.readXML(argv[i]);
-                if (results == null) {
-                    results = more.createEmptyCollectionWithMetadata();
+        // The results are read one BugInstance at a time, and sorted on disk
+        try (SpillingBugSorter bugs = new SpillingBugSorter(SortedBugCollection.MultiversionBugInstanceComparator.instance)) {
+            for (int i = argCount; i < argv.length; i++) {
+                File file = new File(argv[i]);
+                try {
+                    if (results == null) {
+                        // The metadata of the first results comes after its BugInstances
+                        try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(file)) {
+                            results = reader.readMetadata().createEmptyCollectionWithMetadata();
+                        }
+                    }
+                    try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(file)) {
+                        merge(hashes, results, bugs, reader);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Trouble reading/parsing " + argv[i]);
+                } catch (DocumentException e) {
+                    System.err.println("Trouble reading/parsing " + argv[i]);
                 }
-
-                merge(hashes, results, more);
-
-            } catch (IOException e) {
-                System.err.println("Trouble reading/parsing " + argv[i]);
-            } catch (DocumentException e) {
-                System.err.println("Trouble reading/parsing " + argv[i]);
             }
-        }
 
-        if (results == null) {
-            System.err.println("No files successfully read");
-            System.exit(1);
-            return;
-        }
-        results.setWithMessages(commandLine.withMessages);
-        if (commandLine.outputFile == null) {
-            results.writeXML(System.out);
-        } else {
-            results.writeXML(commandLine.outputFile);
+            if (results == null) {
+                System.err.println("No files successfully read");
+                System.exit(1);
+                return;
+            }
+            results.setWithMessages(commandLine.withMessages);
+            if (commandLine.outputFile == null) {
+                results.writeXML(System.out, bugs);
+            } else {
+                results.writeXML(commandLine.outputFile, bugs);
+            }
         }
     }
 
 }
-
@@ -19,15 +19,25 @@ package edu.umd.cs.findbugs.workflow;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.annotation.CheckForNull;
 
 import org.dom4j.DocumentException;
 
@@ -38,6 +48,7 @@ import edu.umd.cs.findbugs.BugRanker;
 import edu.umd.cs.findbugs.ClassAnnotation;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.MatchingKeyComparator;
 import edu.umd.cs.findbugs.PackageStats;
 import edu.umd.cs.findbugs.PackageStats.ClassStats;
 import edu.umd.cs.findbugs.SloppyBugComparator;
@@ -67,6 +78,12 @@ public class Update {
 
     private final Map<BugInstance, Void> matchedOldBugs = new IdentityHashMap<>();
 
+    /** Number of threads matching bugs */
+    private int threads = 1;
+
+    @CheckForNull
+    private ForkJoinPool pool;
+
     boolean noPackageMoves = false;
 
     boolean useAnalysisTimes = false;
@@ -105,6 +122,7 @@ public class Update {
             addSwitch("-useAnalysisTimes", "use analysis timestamp rather than code timestamp in history");
             addSwitch("-withMessages", "Add bug description");
             addOption("-onlyMostRecent", "number", "only use the last # input files");
+            addOption("-threads", "number", "number of threads matching bugs");
         }
 
         @Override
@@ -155,6 +173,8 @@ public class Update {
                 maxRank = Integer.parseInt(argument);
             } else if ("-onlyMostRecent".equals(option)) {
                 mostRecent = Integer.parseInt(argument);
+            } else if ("-threads".equals(option)) {
+                setThreads(Integer.parseInt(argument));
             } else {
                 throw new IllegalArgumentException("Can't handle option " + option);
             }
@@ -163,6 +183,17 @@ public class Update {
 
     }
 
+    /**
+     * Set the number of threads matching bugs. With more than one thread, the
+     * bugs are matched in parallel, with the same results.
+     *
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
     VersionInsensitiveBugComparator versionInsensitiveBugComparator = new VersionInsensitiveBugComparator();
 
     VersionInsensitiveBugComparator fuzzyBugPatternMatcher = new VersionInsensitiveBugComparator();
@@ -591,64 +622,281 @@ public class Update {
 
     }
 
+    /**
+     * Match the unmatched bugs of the new collection with the unmatched old
+     * bugs which are equal according to the comparator. Bugs with different
+     * matching keys cannot be equal, so each bug is only compared with the
+     * bugs having the same key, and the bugs are split by key into
+     * independent partitions matched by different threads when more than one
+     * thread is used. The bugs are matched in the same order as with a single
+     * sorted map, so the matches are the same. The bugs sharing a key with a
+     * bug which has wildcard annotations are not sorted, since comparing them
+     * is not transitive: each new bug is compared with each of the old ones in
+     * turn.
+     */
     private void matchBugs(Comparator<BugInstance> bugInstanceComparator, BugCollection origCollection,
             BugCollection newCollection, MatchOldBugs matchOld) {
 
-        TreeMap<BugInstance, LinkedList<BugInstance>> set = new TreeMap<>(
-                bugInstanceComparator);
-        //        int oldBugs = 0;
-        //        int newBugs = 0;
-        //        int matchedBugs = 0;
+        List<BugInstance> oldBugs = new ArrayList<>();
         for (BugInstance bug : origCollection.getCollection()) {
-            if (!matchedOldBugs.containsKey(bug)) {
-                if (matchOld.match(bug)) {
-                    //                    oldBugs++;
-                    LinkedList<BugInstance> q = set.get(bug);
-                    if (q == null) {
-                        q = new LinkedList<>();
-                        set.put(bug, q);
-                    }
-                    q.add(bug);
-                }
-
+            if (!matchedOldBugs.containsKey(bug) && matchOld.match(bug)) {
+                oldBugs.add(bug);
             }
         }
-        long newVersion = origCollection.getCurrentAppVersion().getSequenceNumber() + 1;
+        if (oldBugs.isEmpty()) {
+            return;
+        }
+        List<BugInstance> newBugs = new ArrayList<>();
         for (BugInstance bug : newCollection.getCollection()) {
             if (!mapFromNewToOldBug.containsKey(bug)) {
-                //                newBugs++;
+                newBugs.add(bug);
+            }
+        }
+        long newVersion = origCollection.getCurrentAppVersion().getSequenceNumber() + 1;
+
+        ForkJoinPool pool = threads > 1 && bugInstanceComparator instanceof MatchingKeyComparator ? getPool() : null;
+        Object[] oldKeys = getMatchingKeys(bugInstanceComparator, oldBugs, pool);
+        Object[] newKeys = getMatchingKeys(bugInstanceComparator, newBugs, pool);
+        List<MatchingPartition> partitions = new ArrayList<>();
+        int numPartitions = pool == null ? 1 : threads;
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new MatchingPartition(i, numPartitions, bugInstanceComparator, oldBugs, oldKeys, newBugs, newKeys,
+                    newVersion));
+        }
+        if (pool == null) {
+            partitions.get(0).match();
+        } else {
+            invokeAll(pool, partitions);
+        }
+
+        for (MatchingPartition partition : partitions) {
+            for (int i = 0; i < partition.newMatches.size(); i++) {
+                mapFromNewToOldBug.put(partition.newMatches.get(i), partition.oldMatches.get(i));
+                matchedOldBugs.put(partition.oldMatches.get(i), null);
+            }
+            resurrected.addAll(partition.resurrectedKeys);
+        }
+    }
+
+    private static final Object NO_KEY = "";
+
+    private static Object[] getMatchingKeys(Comparator<BugInstance> bugInstanceComparator, List<BugInstance> bugs,
+            @CheckForNull ForkJoinPool pool) {
+        Object[] keys = new Object[bugs.size()];
+        if (!(bugInstanceComparator instanceof MatchingKeyComparator)) {
+            Arrays.fill(keys, NO_KEY);
+            return keys;
+        }
+        MatchingKeyComparator keyComparator = (MatchingKeyComparator) bugInstanceComparator;
+        if (pool == null) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyComparator.getMatchingKey(bugs.get(i));
+            }
+            return keys;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int chunkSize = Math.max(1, (keys.length + pool.getParallelism() - 1) / pool.getParallelism());
+        for (int start = 0; start < keys.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(keys.length, start + chunkSize);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    keys[i] = keyComparator.getMatchingKey(bugs.get(i));
+                }
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+        return keys;
+    }
+
+    private static void invokeAll(ForkJoinPool pool, List<? extends Callable<?>> tasks) {
+        List<ForkJoinTask<?>> futures = new ArrayList<>(tasks.size());
+        for (Callable<?> task : tasks) {
+            futures.add(pool.submit(task));
+        }
+        for (ForkJoinTask<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * The bugs whose matching keys fall in one partition, and their matches.
+     */
+    private class MatchingPartition implements Callable<Void> {
+        private final int partition;
+
+        private final int numPartitions;
+
+        private final Comparator<BugInstance> bugInstanceComparator;
+
+        private final List<BugInstance> oldBugs;
+
+        private final Object[] oldKeys;
+
+        private final List<BugInstance> newBugs;
+
+        private final Object[] newKeys;
+
+        private final long newVersion;
+
+        final List<BugInstance> newMatches = new ArrayList<>();
+
+        final List<BugInstance> oldMatches = new ArrayList<>();
+
+        final List<String> resurrectedKeys = new ArrayList<>();
+
+        MatchingPartition(int partition, int numPartitions, Comparator<BugInstance> bugInstanceComparator,
+                List<BugInstance> oldBugs, Object[] oldKeys, List<BugInstance> newBugs, Object[] newKeys, long newVersion) {
+            this.partition = partition;
+            this.numPartitions = numPartitions;
+            this.bugInstanceComparator = bugInstanceComparator;
+            this.oldBugs = oldBugs;
+            this.oldKeys = oldKeys;
+            this.newBugs = newBugs;
+            this.newKeys = newKeys;
+            this.newVersion = newVersion;
+        }
+
+        private boolean contains(Object key) {
+            return numPartitions == 1 || (key.hashCode() & Integer.MAX_VALUE) % numPartitions == partition;
+        }
+
+        @Override
+        public Void call() {
+            match();
+            return null;
+        }
+
+        void match() {
+            Set<Object> wildcardKeys = getWildcardKeys();
+            Map<Object, LinkedList<BugInstance>> unsorted = new HashMap<>();
+            Map<Object, TreeMap<BugInstance, LinkedList<BugInstance>>> sets = new HashMap<>();
+            for (int j = 0; j < oldBugs.size(); j++) {
+                Object key = oldKeys[j];
+                if (!contains(key)) {
+                    continue;
+                }
+                if (wildcardKeys.contains(key)) {
+                    LinkedList<BugInstance> list = unsorted.get(key);
+                    if (list == null) {
+                        list = new LinkedList<>();
+                        unsorted.put(key, list);
+                    }
+                    list.add(oldBugs.get(j));
+                    continue;
+                }
+                TreeMap<BugInstance, LinkedList<BugInstance>> set = sets.get(key);
+                if (set == null) {
+                    set = new TreeMap<>(bugInstanceComparator);
+                    sets.put(key, set);
+                }
+                BugInstance bug = oldBugs.get(j);
                 LinkedList<BugInstance> q = set.get(bug);
                 if (q == null) {
+                    q = new LinkedList<>();
+                    set.put(bug, q);
+                }
+                q.add(bug);
+            }
+            for (int j = 0; j < newBugs.size(); j++) {
+                Object key = newKeys[j];
+                if (!contains(key)) {
                     continue;
                 }
-                Iterator<BugInstance> i = q.iterator();
-                boolean foundLiveBug = false;
-                while (!foundLiveBug && i.hasNext()) {
-                    BugInstance matchedBug = i.next();
-
-                    if (matchedBug.isDead()) {
-                        if (noResurrections || matchedBug.isRemovedByChangeOfPersistingClass()
-                                && newVersion - matchedBug.getLastVersion() > maxResurrection) {
-                            continue;
+                BugInstance bug = newBugs.get(j);
+                LinkedList<BugInstance> list = unsorted.get(key);
+                if (list != null) {
+                    for (Iterator<BugInstance> i = list.iterator(); i.hasNext();) {
+                        BugInstance matchedBug = i.next();
+                        if (bugInstanceComparator.compare(bug, matchedBug) == 0 && match(bug, matchedBug)) {
+                            i.remove();
+                            break;
                         }
-                        resurrected.add(bug.getInstanceKey());
-                        // System.out.println("in version " +
-                        // newCollection.getReleaseName());
-                        // System.out.println("  resurrected " +
-                        // bug.getMessageWithoutPrefix());
                     }
-                    foundLiveBug = true;
-
-                    //                    matchedBugs++;
-                    mapFromNewToOldBug.put(bug, matchedBug);
-                    matchedOldBugs.put(matchedBug, null);
-                    i.remove();
-                    if (q.isEmpty()) {
-                        set.remove(bug);
+                    continue;
+                }
+                TreeMap<BugInstance, LinkedList<BugInstance>> set = sets.get(key);
+                if (set == null) {
+                    continue;
+                }
+                LinkedList<BugInstance> q = set.get(bug);
+                if (q == null) {
+                    continue;
+                }
+                for (Iterator<BugInstance> i = q.iterator(); i.hasNext();) {
+                    if (match(bug, i.next())) {
+                        i.remove();
+                        if (q.isEmpty()) {
+                            set.remove(bug);
+                        }
+                        break;
                     }
                 }
             }
         }
+
+        /**
+         * @return the keys in the partition of the bugs with wildcard
+         *         annotations
+         */
+        private Set<Object> getWildcardKeys() {
+            Set<Object> result = new HashSet<>();
+            if (!(bugInstanceComparator instanceof MatchingKeyComparator)) {
+                return result;
+            }
+            MatchingKeyComparator keyComparator = (MatchingKeyComparator) bugInstanceComparator;
+            for (int j = 0; j < oldBugs.size(); j++) {
+                if (contains(oldKeys[j]) && keyComparator.hasWildcards(oldBugs.get(j))) {
+                    result.add(oldKeys[j]);
+                }
+            }
+            for (int j = 0; j < newBugs.size(); j++) {
+                if (contains(newKeys[j]) && keyComparator.hasWildcards(newBugs.get(j))) {
+                    result.add(newKeys[j]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Match a new bug with an old bug equal to it, unless the old bug is
+         * dead and may not be resurrected.
+         *
+         * @return true if the bugs were matched
+         */
+        private boolean match(BugInstance bug, BugInstance matchedBug) {
+            if (matchedBug.isDead()) {
+                if (noResurrections || matchedBug.isRemovedByChangeOfPersistingClass()
+                        && newVersion - matchedBug.getLastVersion() > maxResurrection) {
+                    return false;
+                }
+                resurrectedKeys.add(bug.getInstanceKey());
+            }
+            newMatches.add(bug);
+            oldMatches.add(matchedBug);
+            return true;
+        }
     }
 
 }
@@ -0,0 +1,240 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Requests sent by {@link AnalysisDaemonClient} are answered by the
+ * {@link AnalysisDaemon}, which undoes their global changes and stops when
+ * idle.
+ */
+public class AnalysisDaemonTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File portFile;
+
+    private AnalysisDaemon daemon;
+
+    private Thread daemonThread;
+
+    private AnalysisDaemonClient client;
+
+    @After
+    public void tearDown() throws Exception {
+        if (daemon != null) {
+            daemon.stop();
+            daemonThread.join(10000);
+        }
+        for (String pluginId : new String[] { "test.daemon.a", "test.daemon.b", "test.daemon.c" }) {
+            Plugin plugin = Plugin.getByPluginId(pluginId);
+            if (plugin != null) {
+                Plugin.removeCustomPlugin(plugin);
+            }
+        }
+    }
+
+    private void startDaemon(long idleTimeout, int maxPlugins) throws Exception {
+        portFile = new File(temporaryFolder.getRoot(), "daemon.port");
+        daemon = new AnalysisDaemon(portFile, idleTimeout, maxPlugins);
+        daemonThread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "analysis daemon");
+        daemonThread.setDaemon(true);
+        daemonThread.start();
+        client = new AnalysisDaemonClient(portFile);
+    }
+
+    private AnalysisDaemonClient.Result analyze(ByteArrayOutputStream err, String... args) throws IOException {
+        return client.analyze(Arrays.asList(args), new ByteArrayOutputStream(), err);
+    }
+
+    private AnalysisDaemonClient.Result analyze(String... args) throws IOException {
+        return analyze(new ByteArrayOutputStream(), args);
+    }
+
+    /**
+     * Write a plugin jar without detectors.
+     */
+    private File writePlugin(String pluginId) throws IOException {
+        File jar = new File(temporaryFolder.getRoot(), pluginId + ".jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("findbugs.xml"));
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<FindbugsPlugin pluginid=\"" + pluginId + "\" provider=\"me\"/>\n").getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("messages.xml"));
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<MessageCollection><Plugin><ShortDescription>" + pluginId + "</ShortDescription>"
+                    + "<Details>" + pluginId + "</Details></Plugin></MessageCollection>\n").getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static boolean isKept(String pluginId) {
+        return Plugin.getByPluginId(pluginId) != null;
+    }
+
+    @Test
+    public void testRequestAndResponse() throws Exception {
+        startDaemon(0, 16);
+        assertTrue(portFile.isFile());
+
+        AnalysisDaemonClient.Result result = analyze("-version");
+        assertEquals(0, result.getExitCode());
+        assertNull(result.getFailure());
+
+        // What the analysis writes to System.err is sent to the client
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        result = analyze(err);
+        assertEquals(1, result.getExitCode());
+        assertEquals("No files to be analyzed", result.getFailure());
+        assertTrue(new String(err.toByteArray(), StandardCharsets.UTF_8).contains("No files to be analyzed"));
+
+        result = analyze("-noSuchOption");
+        assertEquals(1, result.getExitCode());
+        assertNotNull(result.getFailure());
+    }
+
+    @Test
+    public void testWrongToken() throws Exception {
+        startDaemon(0, 16);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(AnalysisDaemon.PROTOCOL_VERSION);
+            AnalysisDaemon.writeString(out, "wrong");
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        // The daemon still answers requests with the right token
+        assertEquals(0, analyze("-version").getExitCode());
+    }
+
+    @Test
+    public void testUnsupportedProtocolVersion() throws Exception {
+        startDaemon(0, 16);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(AnalysisDaemon.PROTOCOL_VERSION + 1);
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(portFile)) {
+                properties.load(in);
+            }
+            AnalysisDaemon.writeString(out, properties.getProperty(AnalysisDaemon.TOKEN_PROPERTY));
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(AnalysisDaemon.RESULT_FRAME, in.readByte());
+            assertEquals(1, in.readInt());
+        }
+    }
+
+    @Test
+    public void testGlobalSettingsRestored() throws Exception {
+        startDaemon(0, 16);
+        DetectorFactory factory = DetectorFactoryCollection.instance().getFactory("FindDeadLocalStores");
+        BugPattern pattern = DetectorFactoryCollection.instance().lookupBugPattern("DLS_DEAD_LOCAL_STORE");
+        int factoryAdjustment = factory.getPriorityAdjustment();
+        int patternAdjustment = pattern.getPriorityAdjustment();
+        String home = FindBugs.getHome();
+        boolean adjustExperimental = BugInstance.isAdjustExperimental();
+
+        // The options are applied before the request fails for lack of files
+        AnalysisDaemonClient.Result result = analyze("-adjustExperimental", "-home", temporaryFolder.getRoot().getPath(),
+                "-adjustPriority", "FindDeadLocalStores=raise,DLS_DEAD_LOCAL_STORE=lower");
+        assertEquals("No files to be analyzed", result.getFailure());
+
+        assertEquals(factoryAdjustment, factory.getPriorityAdjustment());
+        assertEquals(patternAdjustment, pattern.getPriorityAdjustment());
+        assertEquals(home, FindBugs.getHome());
+        assertEquals(adjustExperimental, BugInstance.isAdjustExperimental());
+    }
+
+    @Test
+    public void testPluginEviction() throws Exception {
+        startDaemon(0, 2);
+        File a = writePlugin("test.daemon.a");
+        File b = writePlugin("test.daemon.b");
+        File c = writePlugin("test.daemon.c");
+
+        analyze("-pluginList", a.getPath());
+        analyze("-pluginList", b.getPath());
+        assertTrue(isKept("test.daemon.a"));
+        assertTrue(isKept("test.daemon.b"));
+        // Kept plugins take no part in requests which do not list them
+        for (Plugin plugin : DetectorFactoryCollection.instance().plugins()) {
+            assertFalse(plugin.getPluginId().startsWith("test.daemon."));
+        }
+
+        // Using a makes b the least recently used plugin
+        analyze("-pluginList", a.getPath());
+        analyze("-pluginList", c.getPath());
+        assertTrue(isKept("test.daemon.a"));
+        assertFalse(isKept("test.daemon.b"));
+        assertTrue(isKept("test.daemon.c"));
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        startDaemon(200, 16);
+        assertEquals(0, analyze("-version").getExitCode());
+        daemonThread.join(10000);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(portFile.exists());
+        try {
+            analyze("-version");
+            fail("The daemon should have stopped");
+        } catch (IOException e) {
+            // expected
+        }
+        daemon = null;
+    }
+}
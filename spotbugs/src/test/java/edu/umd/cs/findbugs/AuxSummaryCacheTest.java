@@ -0,0 +1,312 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.POP;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.RETURN;
+import org.apache.bcel.generic.Type;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XFactory;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+
+/**
+ * Stored first pass summaries of an aux jar are restored in later analyses,
+ * and discarded when the jar or the classes extending its classes change.
+ */
+public class AuxSummaryCacheTest {
+
+    private static final String[] APP_CLASSES = { "App", "Sub" };
+
+    private static final String[] LIB_CLASSES = { "Lib", "Target" };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File app;
+
+    private File lib;
+
+    private File cacheDirectory;
+
+    private AuxSummaryCache summaryCache;
+
+    private boolean appMethodCalled;
+
+    private boolean targetReflective;
+
+    @Before
+    public void setUp() throws Exception {
+        app = temporaryFolder.newFolder();
+        lib = new File(temporaryFolder.getRoot(), "lib.jar");
+        cacheDirectory = new File(temporaryFolder.getRoot(), "summaries");
+        writeApp(false);
+        writeLib(true);
+    }
+
+    /**
+     * Write the application classes: <code>App</code> with a static method
+     * <code>m()</code>, and <code>Sub</code> extending <code>Target</code> of
+     * the jar.
+     */
+    private void writeApp(boolean subWithMethod) throws Exception {
+        ClassGen appClass = createClass("App", "java.lang.Object");
+        addMethod(appClass, "m", new InstructionList());
+        appClass.getJavaClass().dump(new File(app, "App.class"));
+
+        ClassGen subClass = createClass("Sub", "Target");
+        if (subWithMethod) {
+            addMethod(subClass, "n", new InstructionList());
+        }
+        subClass.getJavaClass().dump(new File(app, "Sub.class"));
+    }
+
+    /**
+     * Write the jar: <code>Lib</code> loading <code>Target</code> by
+     * reflection and optionally calling <code>App.m()</code>, and
+     * <code>Target</code>.
+     */
+    private void writeLib(boolean callApp) throws Exception {
+        ClassGen libClass = createClass("Lib", "java.lang.Object");
+        InstructionFactory factory = new InstructionFactory(libClass);
+        InstructionList il = new InstructionList();
+        il.append(new PUSH(libClass.getConstantPool(), "Target"));
+        il.append(factory.createInvoke("java.lang.Class", "forName", Type.CLASS, new Type[] { Type.STRING },
+                Const.INVOKESTATIC));
+        il.append(new POP());
+        if (callApp) {
+            il.append(factory.createInvoke("App", "m", Type.VOID, Type.NO_ARGS, Const.INVOKESTATIC));
+        }
+        addMethod(libClass, "m", il);
+
+        ClassGen targetClass = createClass("Target", "java.lang.Object");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(lib))) {
+            for (ClassGen classGen : Arrays.asList(libClass, targetClass)) {
+                out.putNextEntry(new ZipEntry(classGen.getClassName() + ".class"));
+                out.write(classGen.getJavaClass().getBytes());
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static ClassGen createClass(String name, String superclass) {
+        return new ClassGen(name, superclass, name + ".java", Const.ACC_PUBLIC | Const.ACC_SUPER, null);
+    }
+
+    private static void addMethod(ClassGen classGen, String name, InstructionList il) {
+        il.append(new RETURN());
+        MethodGen methodGen = new MethodGen(Const.ACC_PUBLIC | Const.ACC_STATIC, Type.VOID, Type.NO_ARGS, null, name,
+                classGen.getClassName(), il, classGen.getConstantPool());
+        methodGen.setMaxStack();
+        methodGen.setMaxLocals();
+        classGen.addMethod(methodGen.getMethod());
+    }
+
+    /**
+     * Apply the ReflectiveClasses and CalledMethods detectors to the classes
+     * the way the first pass of FindBugs2 does with a summary cache.
+     *
+     * @return the names of the classes visited by the detectors
+     */
+    private Set<String> analyze() throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        IClassPath classPath = classFactory.createClassPath();
+        ICodeBase appCodeBase = classFactory.createFilesystemCodeBaseLocator(app.getPath()).openCodeBase();
+        appCodeBase.setApplicationCodeBase(true);
+        classPath.addCodeBase(appCodeBase);
+        classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(lib.getPath()).openCodeBase());
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setIsRelaxed(true);
+        IAnalysisCache analysisCache = classFactory.createAnalysisCache(classPath, bugReporter);
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        try {
+            FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor> emptyList(), null);
+            List<ClassDescriptor> classes = new ArrayList<>();
+            for (String className : APP_CLASSES) {
+                ClassDescriptor c = DescriptorFactory.createClassDescriptor(className);
+                classes.add(c);
+                AnalysisContext.currentAnalysisContext().getSubtypes2()
+                        .addApplicationClass(analysisCache.getClassAnalysis(XClass.class, c));
+            }
+            for (String className : LIB_CLASSES) {
+                classes.add(DescriptorFactory.createClassDescriptor(className));
+            }
+
+            AnalysisPass pass = new AnalysisPass();
+            for (String name : new String[] { "ReflectiveClasses", "CalledMethods" }) {
+                DetectorFactory factory = DetectorFactoryCollection.instance().getFactory(name);
+                pass.addToPass(factory);
+                pass.append(factory);
+            }
+            Detector2[] detectorList = pass.instantiateDetector2sInPass(bugReporter);
+            summaryCache = new AuxSummaryCache(cacheDirectory, pass, detectorList, classPath, classes, bugReporter);
+
+            Set<String> visited = new TreeSet<>();
+            for (ClassDescriptor c : classes) {
+                boolean restored = summaryCache.restore(c);
+                for (int i = 0; i < detectorList.length; i++) {
+                    if (!restored || !summaryCache.isPersistent(i)) {
+                        detectorList[i].visitClass(c);
+                        visited.add(c.getClassName());
+                    }
+                }
+                if (!restored) {
+                    summaryCache.record(c);
+                }
+            }
+            for (Detector2 detector : detectorList) {
+                detector.finishPass();
+            }
+            summaryCache.save();
+
+            XFactory xFactory = AnalysisContext.currentXFactory();
+            appMethodCalled = xFactory.isCalled(XFactory.createXMethod("App", "m", "()V", true));
+            targetReflective = xFactory.getReflectiveClasses().contains(DescriptorFactory.createClassDescriptor("Target"));
+            return visited;
+        } finally {
+            FindBugs2.clearAnalysisContext();
+            Global.removeAnalysisCacheForCurrentThread();
+            classPath.close();
+        }
+    }
+
+    private static Set<String> classes(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    private static Set<String> allClasses() {
+        Set<String> result = classes(APP_CLASSES);
+        result.addAll(Arrays.asList(LIB_CLASSES));
+        return result;
+    }
+
+    private File[] summaryFiles() {
+        return cacheDirectory.listFiles((dir, name) -> name.endsWith(".summaries"));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertEquals(allClasses(), analyze());
+        assertTrue(appMethodCalled);
+        assertTrue(targetReflective);
+        assertEquals(1, summaryFiles().length);
+
+        // The summaries of the jar are restored instead of visiting its classes
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertEquals(LIB_CLASSES.length, summaryCache.getRestoredClasses());
+        assertTrue(appMethodCalled);
+        assertTrue(targetReflective);
+        assertEquals(classes(APP_CLASSES), analyze());
+    }
+
+    @Test
+    public void testChangedJar() throws Exception {
+        analyze();
+        writeLib(false);
+        assertEquals(allClasses(), analyze());
+        assertEquals(0, summaryCache.getRestoredClasses());
+        assertFalse(appMethodCalled);
+        assertTrue(targetReflective);
+
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertFalse(appMethodCalled);
+        assertEquals(2, summaryFiles().length);
+    }
+
+    @Test
+    public void testStoredChecksum() throws Exception {
+        analyze();
+        assertEquals(1, summaryCache.getChecksummedJars());
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertEquals(0, summaryCache.getChecksummedJars());
+
+        // A jar with another modification time is read again, but since its
+        // contents did not change its summaries are still restored
+        assertTrue(lib.setLastModified(lib.lastModified() - 10000));
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertEquals(1, summaryCache.getChecksummedJars());
+        assertEquals(LIB_CLASSES.length, summaryCache.getRestoredClasses());
+        analyze();
+        assertEquals(0, summaryCache.getChecksummedJars());
+    }
+
+    @Test
+    public void testChangedSubtypeInApplication() throws Exception {
+        analyze();
+        writeApp(true);
+        assertEquals(allClasses(), analyze());
+        assertEquals(0, summaryCache.getRestoredClasses());
+        assertTrue(appMethodCalled);
+
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertTrue(appMethodCalled);
+    }
+
+    @Test
+    public void testUnchangedApplication() throws Exception {
+        analyze();
+        // Changing the code of an application class which does not extend a
+        // class of the jar does not invalidate its summaries
+        ClassGen appClass = createClass("App", "java.lang.Object");
+        InstructionList il = new InstructionList();
+        il.append(new PUSH(appClass.getConstantPool(), 1));
+        il.append(new POP());
+        addMethod(appClass, "m", il);
+        appClass.getJavaClass().dump(new File(app, "App.class"));
+
+        assertEquals(classes(APP_CLASSES), analyze());
+        assertTrue(appMethodCalled);
+    }
+}
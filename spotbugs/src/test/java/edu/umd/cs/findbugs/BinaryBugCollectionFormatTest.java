@@ -0,0 +1,133 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinaryBugCollectionFormatTest {
+
+    private static SortedBugCollection createBugCollection() {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.setReleaseName("1.0");
+        bugCollection.setSequenceNumber(2);
+        for (int i = 0; i < 10; i++) {
+            String className = "com.example.C" + (i % 3);
+            BugInstance bug = new BugInstance("URF_UNREAD_FIELD", Priorities.NORMAL_PRIORITY)
+                    .addClass(className)
+                    .addField(new FieldAnnotation(className, "f" + i, "Ljava/util/List;", "Ljava/util/List<Ljava/lang/String;>;",
+                            false))
+                    .addMethod(className, "m", "(I)V", i % 2 == 0)
+                    .addInt(-i).describe(IntAnnotation.INT_VALUE)
+                    .addString("a < b & \"c\"")
+                    .addType("Ljava/util/Map;")
+                    .add(new LocalVariableAnnotation("local", i, 3 * i))
+                    .addSourceLine(new SourceLineAnnotation(className, "C" + (i % 3) + ".java", i, i + 2, 10 * i, 10 * i + 5));
+            ((TypeAnnotation) bug.getAnnotations().get(5)).setTypeParameters("<Ljava/lang/String;>");
+            bug.setProperty("PROP", "value " + i);
+            if (i % 4 == 1) {
+                bug.setFirstVersion(1);
+                bug.setLastVersion(1);
+                bug.setRemovedByChangeOfPersistingClass(true);
+            }
+            if (i % 4 == 2) {
+                bug.setOldInstanceHash("abc" + i);
+            }
+            bugCollection.add(bug);
+        }
+        bugCollection.add(new BugInstance("NP_ALWAYS_NULL", Priorities.HIGH_PRIORITY)
+                .addClass("com.example.D")
+                .addSourceLine(new SourceLineAnnotation("com.example.D", SourceLineAnnotation.UNKNOWN_SOURCE_FILE, -1, -1, -1, -1)));
+        bugCollection.addError("Something went wrong");
+        return bugCollection;
+    }
+
+    private static String toXML(SortedBugCollection bugCollection) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bugCollection.writeXML(out);
+        // Only the resources used by the JVM and the time spent reading differ
+        return out.toString("UTF-8").replaceAll("<FindBugsSummary [^>]*>", "")
+                .replaceAll("(?s)<FindBugsProfile>.*</FindBugsProfile>", "");
+    }
+
+    @Test
+    public void testSameAsXML() throws Exception {
+        SortedBugCollection original = createBugCollection();
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        original.writeXML(xml);
+        SortedBugCollection fromXML = new SortedBugCollection();
+        fromXML.readXML(new ByteArrayInputStream(xml.toByteArray()));
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        original.writeBinary(binary);
+        assertTrue(BinaryBugCollectionFormat.isBinary(new ByteArrayInputStream(binary.toByteArray())));
+        assertFalse(BinaryBugCollectionFormat.isBinary(new ByteArrayInputStream(xml.toByteArray())));
+        assertTrue(binary.size() < xml.size());
+        SortedBugCollection fromBinary = new SortedBugCollection();
+        fromBinary.readXML(new ByteArrayInputStream(binary.toByteArray()));
+
+        assertEquals(new ArrayList<>(fromXML.getCollection()), new ArrayList<>(fromBinary.getCollection()));
+        assertEquals(toXML(fromXML), toXML(fromBinary));
+
+        List<BugInstance> streamed = new ArrayList<>();
+        try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(
+                new ByteArrayInputStream(binary.toByteArray()))) {
+            for (BugInstance bug = reader.read(); bug != null; bug = reader.read()) {
+                streamed.add(bug);
+            }
+            assertEquals(1, reader.getBugCollection().getErrors().size());
+            assertEquals("1.0", reader.getBugCollection().getReleaseName());
+        }
+        assertEquals(new ArrayList<>(fromXML.getCollection()), streamed);
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        SortedBugCollection original = createBugCollection();
+        File file = File.createTempFile("bugs", BinaryBugCollectionFormat.FILE_EXTENSION);
+        try {
+            original.writeXML(file);
+            try (BinaryBugCollectionIndex index = new BinaryBugCollectionIndex(file)) {
+                assertEquals(original.getCollection().size(), index.getNumBugs());
+                assertEquals("[com.example.C0, com.example.C1, com.example.C2, com.example.D]",
+                        index.getClassNames().toString());
+                List<BugInstance> inC1 = index.getBugsInClass("com.example.C1");
+                assertEquals(3, inC1.size());
+                for (BugInstance bug : inC1) {
+                    assertEquals("com.example.C1", bug.getPrimaryClass().getClassName());
+                    assertEquals(bug, index.getBugsWithInstanceHash(bug.getInstanceHash()).get(0));
+                }
+                assertTrue(index.getBugsInClass("com.example.E").isEmpty());
+                assertEquals(new ArrayList<>(original.getCollection()).get(0), index.getBug(0));
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.IADD;
+import org.apache.bcel.generic.IRETURN;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.Type;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.plan.ExecutionPlan;
+
+/**
+ * Stored warnings are reused for unchanged classes, and not for classes which
+ * changed or whose dependencies changed.
+ */
+public class IncrementalAnalysisCacheTest {
+
+    private static final String[] CLASSES = { "CalleeBase", "Callee", "Caller", "Base", "Derived", "Other" };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File classes;
+
+    private File cacheFile;
+
+    private BugCollectionBugReporter bugReporter;
+
+    private IncrementalAnalysisCache incrementalCache;
+
+    @Before
+    public void setUp() throws Exception {
+        classes = temporaryFolder.newFolder();
+        cacheFile = new File(temporaryFolder.getRoot(), "incremental.cache");
+        writeClass("CalleeBase", "java.lang.Object", null, 1);
+        writeClass("Callee", "CalleeBase", null, 1);
+        writeClass("Caller", "java.lang.Object", "Callee", 1);
+        writeClass("Base", "java.lang.Object", null, 1);
+        writeClass("Derived", "Base", null, 1);
+        writeClass("Other", "java.lang.Object", null, 1);
+    }
+
+    /**
+     * Write a class with a static method <code>m()</code> returning the given
+     * value, plus what <code>m()</code> of the called class returns.
+     */
+    private void writeClass(String name, String superclass, @CheckForNull String calledClass, int value) throws Exception {
+        ClassGen classGen = new ClassGen(name, superclass, name + ".java", Const.ACC_PUBLIC | Const.ACC_SUPER, null);
+        InstructionFactory factory = new InstructionFactory(classGen);
+        InstructionList il = new InstructionList();
+        il.append(new PUSH(classGen.getConstantPool(), value));
+        if (calledClass != null) {
+            il.append(factory.createInvoke(calledClass, "m", Type.INT, Type.NO_ARGS, Const.INVOKESTATIC));
+            il.append(new IADD());
+        }
+        il.append(new IRETURN());
+        MethodGen methodGen = new MethodGen(Const.ACC_PUBLIC | Const.ACC_STATIC, Type.INT, Type.NO_ARGS, null, "m", name, il,
+                classGen.getConstantPool());
+        methodGen.setMaxStack();
+        methodGen.setMaxLocals();
+        classGen.addMethod(methodGen.getMethod());
+        classGen.getJavaClass().dump(new File(classes, name + ".class"));
+    }
+
+    private Set<String> analyze(boolean modelInstanceof) throws Exception {
+        return analyze(modelInstanceof, null);
+    }
+
+    /**
+     * Analyze the classes the way FindBugs2 does with a cache, reporting one
+     * warning for each class which is visited.
+     *
+     * @param modelInstanceof
+     *            value of an analysis feature, which is part of the
+     *            configuration of the analysis
+     * @param failingClass
+     *            name of a class for which an error is logged after reporting
+     *            its warning, or null
+     * @return the names of the visited classes
+     */
+    private Set<String> analyze(boolean modelInstanceof, @CheckForNull String failingClass) throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        IClassPath classPath = classFactory.createClassPath();
+        classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(classes.getPath()).openCodeBase());
+        bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setIsRelaxed(true);
+        IAnalysisCache analysisCache = classFactory.createAnalysisCache(classPath, bugReporter);
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        try {
+            FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor> emptyList(), null);
+            AnalysisContext.currentAnalysisContext().setBoolProperty(AnalysisFeatures.MODEL_INSTANCEOF, modelInstanceof);
+            incrementalCache = new IncrementalAnalysisCache(cacheFile, new ExecutionPlan(), bugReporter);
+            BugReporter recordingBugReporter = incrementalCache.createRecordingBugReporter(bugReporter);
+
+            Set<String> visited = new TreeSet<>();
+            for (String className : CLASSES) {
+                ClassDescriptor classDescriptor = DescriptorFactory.createClassDescriptor(className);
+                if (incrementalCache.isUnchanged(classDescriptor)) {
+                    incrementalCache.reportStoredBugs(classDescriptor, bugReporter);
+                    continue;
+                }
+                visited.add(className);
+                AnalysisContext.currentAnalysisContext().setClassBeingAnalyzed(classDescriptor);
+                incrementalCache.startRecording(classDescriptor);
+                recordingBugReporter.reportBug(new BugInstance("UUF_UNUSED_FIELD", Priorities.NORMAL_PRIORITY).addClass(className));
+                if (className.equals(failingClass)) {
+                    recordingBugReporter.logError("Exception analyzing " + className);
+                }
+                incrementalCache.stopRecording();
+                AnalysisContext.currentAnalysisContext().clearClassBeingAnalyzed();
+            }
+            incrementalCache.save();
+
+            // Every class has its warning, whether visited or reused
+            Set<String> reported = new TreeSet<>();
+            for (BugInstance bug : bugReporter.getBugCollection()) {
+                assertTrue(reported.add(bug.getPrimaryClass().getClassName()));
+            }
+            assertEquals(new TreeSet<>(Arrays.asList(CLASSES)), reported);
+            return visited;
+        } finally {
+            FindBugs2.clearAnalysisContext();
+            Global.removeAnalysisCacheForCurrentThread();
+            classPath.close();
+        }
+    }
+
+    private static Set<String> classes(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        assertFalse(cacheFile.exists());
+        assertEquals(classes(CLASSES), analyze(false));
+        assertTrue(cacheFile.isFile());
+        assertEquals(classes(), analyze(false));
+        assertEquals(CLASSES.length, incrementalCache.getReusedClasses());
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testChangedClass() throws Exception {
+        analyze(false);
+        writeClass("Other", "java.lang.Object", null, 2);
+        assertEquals(classes("Other"), analyze(false));
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testChangedCalledClass() throws Exception {
+        analyze(false);
+        writeClass("Callee", "CalleeBase", null, 2);
+        assertEquals(classes("Callee", "Caller"), analyze(false));
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testChangedSuperclassOfCalledClass() throws Exception {
+        analyze(false);
+        writeClass("CalleeBase", "java.lang.Object", null, 2);
+        assertEquals(classes("CalleeBase", "Callee", "Caller"), analyze(false));
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testChangedSupertype() throws Exception {
+        analyze(false);
+        writeClass("Base", "java.lang.Object", null, 2);
+        assertEquals(classes("Base", "Derived"), analyze(false));
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testRemovedCalledClass() throws Exception {
+        analyze(false);
+        assertTrue(new File(classes, "Callee.class").delete());
+        Set<String> visited = analyze(false);
+        assertTrue(visited.contains("Caller"));
+        assertFalse(visited.contains("Other"));
+    }
+
+    @Test
+    public void testFailedClass() throws Exception {
+        assertEquals(classes(CLASSES), analyze(false, "Other"));
+        assertEquals(classes("Other"), analyze(false));
+        assertEquals(classes(), analyze(false));
+    }
+
+    @Test
+    public void testChangedConfiguration() throws Exception {
+        analyze(false);
+        assertEquals(classes(CLASSES), analyze(true));
+        assertEquals(classes(), analyze(true));
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        try (OutputStream out = new FileOutputStream(cacheFile)) {
+            out.write("not a cache".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(classes(CLASSES), analyze(false));
+        AnalysisError error = ((SortedBugCollection) bugReporter.getBugCollection()).getErrors().iterator().next();
+        assertEquals("Unable to read incremental analysis cache " + cacheFile, error.getMessage());
+        assertEquals(classes(), analyze(false));
+    }
+}
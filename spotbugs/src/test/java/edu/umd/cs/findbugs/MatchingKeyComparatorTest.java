@@ -0,0 +1,163 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class MatchingKeyComparatorTest {
+
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "NP_ALWAYS_NULL", "DLS_DEAD_LOCAL_STORE" };
+
+    private static final String[] CLASSES = { "com.example.Foo", "com.example.Bar", "org.other.Foo" };
+
+    private static final String[] NAMES = { "a", "b", "?" };
+
+    private static List<BugInstance> randomBugs(int count) {
+        Random random = new Random(17);
+        List<BugInstance> bugs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BugInstance bug = new BugInstance(TYPES[random.nextInt(TYPES.length)], 1 + random.nextInt(2));
+            String className = CLASSES[random.nextInt(CLASSES.length)];
+            bug.addClass(className);
+            if (random.nextBoolean()) {
+                bug.addMethod(className, NAMES[random.nextInt(2)], "()V", false);
+            } else {
+                bug.addField(className, NAMES[random.nextInt(2)], "I", false);
+            }
+            switch (random.nextInt(4)) {
+            case 0:
+                bug.add(new LocalVariableAnnotation(NAMES[random.nextInt(NAMES.length)], random.nextInt(2), 0));
+                break;
+            case 1:
+                bug.addInt(random.nextInt(2));
+                break;
+            case 2:
+                bug.addString(NAMES[random.nextInt(2)]);
+                break;
+            default:
+                bug.addType("L" + CLASSES[random.nextInt(CLASSES.length)].replace('.', '/') + ";");
+                break;
+            }
+            bugs.add(bug);
+        }
+        return bugs;
+    }
+
+    private static void checkKeys(MatchingKeyComparator comparator) {
+        List<BugInstance> bugs = randomBugs(300);
+        int equal = 0;
+        for (BugInstance lhs : bugs) {
+            Object lhsKey = comparator.getMatchingKey(lhs);
+            for (BugInstance rhs : bugs) {
+                if (comparator.compare(lhs, rhs) == 0) {
+                    assertEquals(lhs + " / " + rhs, lhsKey, comparator.getMatchingKey(rhs));
+                    if (lhs != rhs) {
+                        equal++;
+                    }
+                }
+            }
+        }
+        assertTrue(equal > 0);
+    }
+
+    /**
+     * Check that comparing the bugs which share a key with no bug having
+     * wildcards is transitive, so that these bugs may be sorted.
+     */
+    private static void checkTransitive(MatchingKeyComparator comparator) {
+        Map<Object, List<BugInstance>> groups = new HashMap<>();
+        Set<Object> wildcardKeys = new HashSet<>();
+        for (BugInstance bug : randomBugs(300)) {
+            Object key = comparator.getMatchingKey(bug);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(bug);
+            if (comparator.hasWildcards(bug)) {
+                wildcardKeys.add(key);
+            }
+        }
+        for (Map.Entry<Object, List<BugInstance>> e : groups.entrySet()) {
+            if (wildcardKeys.contains(e.getKey())) {
+                continue;
+            }
+            for (BugInstance a : e.getValue()) {
+                for (BugInstance b : e.getValue()) {
+                    int ab = Integer.signum(comparator.compare(a, b));
+                    assertEquals(a + " / " + b, -ab, Integer.signum(comparator.compare(b, a)));
+                    for (BugInstance c : e.getValue()) {
+                        int bc = Integer.signum(comparator.compare(b, c));
+                        if (ab == bc) {
+                            assertEquals(a + " / " + b + " / " + c, ab, Integer.signum(comparator.compare(a, c)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVersionInsensitiveBugComparator() {
+        checkKeys(new VersionInsensitiveBugComparator());
+    }
+
+    @Test
+    public void testVersionInsensitiveBugComparatorWildcards() {
+        VersionInsensitiveBugComparator comparator = new VersionInsensitiveBugComparator();
+        BugInstance unknown = new BugInstance("DLS_DEAD_LOCAL_STORE", 1).addClass("com.example.Foo");
+        unknown.add(new LocalVariableAnnotation("?", 1, 0));
+        BugInstance known = new BugInstance("DLS_DEAD_LOCAL_STORE", 1).addClass("com.example.Foo");
+        known.add(new LocalVariableAnnotation("a", 1, 0));
+        assertTrue(comparator.hasWildcards(unknown));
+        assertFalse(comparator.hasWildcards(known));
+        checkTransitive(comparator);
+    }
+
+    @Test
+    public void testVersionInsensitiveBugComparatorOptions() {
+        VersionInsensitiveBugComparator comparator = new VersionInsensitiveBugComparator();
+        comparator.setExactBugPatternMatch(false);
+        comparator.setComparePriorities(true);
+        checkKeys(comparator);
+    }
+
+    @Test
+    public void testSloppyBugComparator() {
+        checkKeys(new SloppyBugComparator());
+    }
+
+    @Test
+    public void testFuzzyBugComparator() {
+        checkKeys(new FuzzyBugComparator());
+    }
+
+    @Test
+    public void testBugInstanceComparator() {
+        checkKeys(SortedBugCollection.BugInstanceComparator.instance);
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.generic.ALOAD;
+import org.apache.bcel.generic.ASTORE;
+import org.apache.bcel.generic.ATHROW;
+import org.apache.bcel.generic.BranchHandle;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ICONST;
+import org.apache.bcel.generic.IDIV;
+import org.apache.bcel.generic.IFEQ;
+import org.apache.bcel.generic.IINC;
+import org.apache.bcel.generic.ILOAD;
+import org.apache.bcel.generic.IRETURN;
+import org.apache.bcel.generic.ISTORE;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.JSR;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.RET;
+import org.apache.bcel.generic.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+public class OpcodeStackReplayTest {
+
+    static class Sample {
+        private int count;
+
+        int loop(int[] values) {
+            int sum = 0;
+            for (int value : values) {
+                if (value < 0) {
+                    continue;
+                }
+                sum += value;
+            }
+            return sum;
+        }
+
+        String merges(boolean b, String s, Object o) {
+            String result = String.valueOf(b ? s : o);
+            long l = b ? count : 2L;
+            return result + (s == null ? l : s.length());
+        }
+
+        String tryCatchFinally(Object o) {
+            try {
+                return o.toString();
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                return e.getMessage();
+            } finally {
+                count++;
+            }
+        }
+
+        synchronized int switches(int i, String s) {
+            switch (i) {
+            case 1:
+                return 10;
+            case 2:
+            case 1000:
+                break;
+            default:
+                throw new IllegalArgumentException();
+            }
+            switch (s) {
+            case "a":
+                return 1;
+            default:
+                synchronized (this) {
+                    count = s == null ? 0 : i;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Records the opcode stack seen before and after each instruction.
+     */
+    static class Snapshots extends OpcodeStackDetector {
+        final List<String> states = new ArrayList<>();
+
+        @Override
+        public void sawOpcode(int seen) {
+            states.add(getMethodName() + " " + getPC() + " before " + stack + " incoming " + stack.hasIncomingBranches(getPC())
+                    + " target " + stack.isJumpTarget(getPC()));
+        }
+
+        @Override
+        public void afterOpcode(int seen) {
+            super.afterOpcode(seen);
+            states.add(getMethodName() + " " + getPC() + " after " + stack);
+        }
+    }
+
+    /** Simulates the opcode stack itself, without modifying it */
+    @OpcodeStack.ModifiesStack
+    static class SimulatedSnapshots extends Snapshots {
+    }
+
+    /** Makes the pushed int constants strings */
+    @OpcodeStack.ModifiesStack
+    static class ModifyingSnapshots extends Snapshots {
+        @Override
+        public void afterOpcode(int seen) {
+            super.afterOpcode(seen);
+            if (seen >= Const.ICONST_M1 && seen <= Const.ICONST_5) {
+                stack.replaceTop(new OpcodeStack.Item("Ljava/lang/String;"));
+                states.add(getMethodName() + " " + getPC() + " replaced " + stack);
+            }
+        }
+    }
+
+    /** Modifies the opcode stack without saying so */
+    static class Replacing extends OpcodeStackDetector {
+        int replaced;
+
+        @Override
+        public void sawOpcode(int seen) {
+        }
+
+        @Override
+        public void afterOpcode(int seen) {
+            super.afterOpcode(seen);
+            if (seen == Const.ILOAD_1) {
+                stack.replaceTop(new OpcodeStack.Item("I"));
+                replaced++;
+            }
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private IClassPath classPath;
+
+    private IAnalysisCache analysisCache;
+
+    @Before
+    public void setUp() throws Exception {
+        File generated = temporaryFolder.newFolder();
+        writeJsrSample(generated);
+
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        for (Class<?> c : new Class<?>[] { OpcodeStack.class, OpcodeStackReplayTest.class }) {
+            File classes = new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+            classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(classes.getPath()).openCodeBase());
+        }
+        classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(generated.getPath()).openCodeBase());
+        analysisCache = classFactory.createAnalysisCache(classPath, new BugCollectionBugReporter(project));
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+        AnalysisContext.currentAnalysisContext().setBoolProperty(AnalysisFeatures.INTERATIVE_OPCODE_STACK_ANALYSIS, true);
+    }
+
+    @After
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+    }
+
+    /**
+     * Write a class compiled the way old compilers compiled finally blocks,
+     * with a subroutine called from the code and from an exception handler.
+     */
+    private static void writeJsrSample(File dir) throws Exception {
+        ClassGen classGen = new ClassGen("JsrSample", "java.lang.Object", "JsrSample.java", Const.ACC_PUBLIC
+                | Const.ACC_SUPER, null);
+        classGen.setMajor(46);
+        classGen.setMinor(0);
+        InstructionList il = new InstructionList();
+        MethodGen methodGen = new MethodGen(Const.ACC_PUBLIC | Const.ACC_STATIC, Type.INT, new Type[] { Type.INT },
+                new String[] { "x" }, "withFinally", "JsrSample", il, classGen.getConstantPool());
+
+        // try { result = x / 2; } finally { x++; if (x != 0) x++; } return result;
+        InstructionHandle tryStart = il.append(new ILOAD(0));
+        il.append(new ICONST(2));
+        il.append(new IDIV());
+        InstructionHandle tryEnd = il.append(new ISTORE(1));
+        BranchHandle jsr = il.append(new JSR(null));
+        il.append(new ILOAD(1));
+        il.append(new IRETURN());
+        InstructionHandle handler = il.append(new ASTORE(2));
+        BranchHandle handlerJsr = il.append(new JSR(null));
+        il.append(new ALOAD(2));
+        il.append(new ATHROW());
+        InstructionHandle subroutine = il.append(new ASTORE(3));
+        il.append(new IINC(0, 1));
+        il.append(new ILOAD(0));
+        BranchHandle ifeq = il.append(new IFEQ(null));
+        il.append(new IINC(0, 1));
+        InstructionHandle ret = il.append(new RET(3));
+        jsr.setTarget(subroutine);
+        handlerJsr.setTarget(subroutine);
+        ifeq.setTarget(ret);
+        methodGen.addExceptionHandler(tryStart, tryEnd, handler, null);
+        methodGen.setMaxStack();
+        methodGen.setMaxLocals();
+        classGen.addMethod(methodGen.getMethod());
+        classGen.getJavaClass().dump(new File(dir, "JsrSample.class"));
+    }
+
+    private List<String> visit(Snapshots detector, String className) throws Exception {
+        ClassDescriptor classDescriptor = DescriptorFactory.createClassDescriptor(className);
+        analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+        detector.visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, classDescriptor));
+        return detector.states;
+    }
+
+    private List<String> checkSameStates(String className) throws Exception {
+        Snapshots replayed = new Snapshots();
+        assertTrue(replayed.isReplayingStates());
+        SimulatedSnapshots simulated = new SimulatedSnapshots();
+        assertFalse(simulated.isReplayingStates());
+
+        List<String> expected = visit(simulated, className);
+        List<String> actual = visit(replayed, className);
+        assertFalse(expected.isEmpty());
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        assertEquals(expected.size(), actual.size());
+        return actual;
+    }
+
+    @Test
+    public void testSameStates() throws Exception {
+        checkSameStates("edu/umd/cs/findbugs/OpcodeStackReplayTest$Sample");
+        checkSameStates("edu/umd/cs/findbugs/OpcodeStack");
+        checkSameStates("edu/umd/cs/findbugs/SortedBugCollection");
+    }
+
+    @Test
+    public void testBranchMerges() throws Exception {
+        List<String> states = checkSameStates("edu/umd/cs/findbugs/OpcodeStackReplayTest$Sample");
+        int incoming = 0;
+        for (String state : states) {
+            if (state.contains("incoming true")) {
+                incoming++;
+            }
+        }
+        assertTrue(incoming > 0);
+    }
+
+    @Test
+    public void testSubroutinesAndHandlers() throws Exception {
+        List<String> states = checkSameStates("JsrSample");
+        boolean sawHandler = false;
+        boolean sawSubroutine = false;
+        for (String state : states) {
+            sawHandler |= state.startsWith("withFinally 9 ");
+            sawSubroutine |= state.startsWith("withFinally 15 ");
+        }
+        assertTrue(sawHandler);
+        assertTrue(sawSubroutine);
+    }
+
+    @Test
+    public void testModifiesStack() throws Exception {
+        String className = "edu/umd/cs/findbugs/OpcodeStackReplayTest$Sample";
+        List<String> modified = visit(new ModifyingSnapshots(), className);
+        assertNotEquals(visit(new SimulatedSnapshots(), className), modified);
+        boolean replaced = false;
+        for (String state : modified) {
+            replaced |= state.contains(" replaced ");
+        }
+        assertTrue(replaced);
+
+        // The states replayed by the other detectors are not affected
+        checkSameStates(className);
+    }
+
+    @Test
+    public void testReplacingReplayedStack() throws Exception {
+        ClassDescriptor classDescriptor = DescriptorFactory.createClassDescriptor("edu/umd/cs/findbugs/OpcodeStackReplayTest$Sample");
+        try {
+            new Replacing().visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, classDescriptor));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("@OpcodeStack.ModifiesStack"));
+        }
+    }
+
+    @Test
+    public void testNoReplayWithoutIterativeAnalysis() throws Exception {
+        AnalysisContext.currentAnalysisContext().setBoolProperty(AnalysisFeatures.INTERATIVE_OPCODE_STACK_ANALYSIS, false);
+        ClassDescriptor classDescriptor = DescriptorFactory.createClassDescriptor("edu/umd/cs/findbugs/OpcodeStackReplayTest$Sample");
+        Replacing replacing = new Replacing();
+        replacing.visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, classDescriptor));
+        assertTrue(replacing.replaced > 0);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginIndexTest {
+
+    private static final String DESCRIPTOR = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<FindbugsPlugin pluginid=\"test\" provider=\"me\">\n"
+            + "  <Detector class=\"edu.umd.cs.findbugs.detect.FindFloatEquality\" reports=\"X_ONE\"/>\n"
+            + "  <Detector class=\"edu.umd.cs.findbugs.detect.IncompatMask\" speed=\"slow\"/>\n"
+            + "  <BugPattern type=\"X_ONE\" abbrev=\"X\" category=\"CORRECTNESS\"/>\n"
+            + "</FindbugsPlugin>\n";
+
+    private static final String MESSAGES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<MessageCollection>\n"
+            + "  <Detector class=\"edu.umd.cs.findbugs.detect.FindFloatEquality\"><Details><![CDATA[<p>First <b>detector</b></p>]]></Details></Detector>\n"
+            + "  <Detector class=\"edu.umd.cs.findbugs.detect.IncompatMask\"><Details>Second é</Details></Detector>\n"
+            + "  <Detector class=\"edu.umd.cs.findbugs.detect.FindFloatEquality\"><Details>Ignored</Details></Detector>\n"
+            + "</MessageCollection>\n";
+
+    private static final String RANKS = "+1 BugPattern X_ONE\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("plugin").toFile();
+        write("findbugs.xml", DESCRIPTOR);
+        write("messages.xml", MESSAGES);
+        write(BugRanker.FILENAME, RANKS);
+        write("other.xml", "<Other/>");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(dir, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private URL url(String name) throws IOException {
+        return new File(dir, name).toURI().toURL();
+    }
+
+    private PluginIndex writeIndex() throws Exception {
+        File index = new File(dir, PluginIndex.FILENAME);
+        PluginIndex.main(new String[] { dir.getPath(), index.getPath() });
+        return PluginIndex.read(index.toURI().toURL());
+    }
+
+    @Test
+    public void testReadIndexedFiles() throws Exception {
+        PluginIndex index = writeIndex();
+
+        PluginIndex.Element descriptor = index.getDocument("findbugs.xml", url("findbugs.xml"));
+        assertNotNull(descriptor);
+        assertEquals("FindbugsPlugin", descriptor.getName());
+        assertEquals("test", descriptor.valueOf("pluginid"));
+        assertEquals("", descriptor.valueOf("website"));
+        assertEquals(2, descriptor.getChildren("Detector").size());
+        assertEquals("slow", descriptor.getChild("Detector", "class", "edu.umd.cs.findbugs.detect.IncompatMask").valueOf("speed"));
+        assertNull(descriptor.getChild("Detector", "class", "edu.umd.cs.findbugs.detect.Other"));
+
+        PluginIndex.Element messages = index.getDocument("messages.xml", url("messages.xml"));
+        assertNotNull(messages);
+        assertEquals("<p>First <b>detector</b></p>",
+                messages.getChild("Detector", "class", "edu.umd.cs.findbugs.detect.FindFloatEquality").getChild("Details").getText());
+        assertEquals("Second é", messages.getChild("Detector", "class", "edu.umd.cs.findbugs.detect.IncompatMask").getChild("Details").getText());
+
+        assertEquals(RANKS, index.getText(BugRanker.FILENAME, url(BugRanker.FILENAME)));
+        assertNull(index.getDocument("other.xml", url("other.xml")));
+    }
+
+    @Test
+    public void testSameAsParsedFile() throws Exception {
+        PluginIndex index = writeIndex();
+        PluginIndex.Element parsed = PluginIndex.parse(url("messages.xml").openStream());
+        PluginIndex.Element indexed = index.getDocument("messages.xml", url("messages.xml"));
+        assertEquals(parsed.getChildren().size(), indexed.getChildren().size());
+        for (int i = 0; i < parsed.getChildren().size(); i++) {
+            PluginIndex.Element p = parsed.getChildren().get(i);
+            PluginIndex.Element d = indexed.getChildren().get(i);
+            assertEquals(p.valueOf("class"), d.valueOf("class"));
+            assertEquals(p.getChild("Details").getText(), d.getChild("Details").getText());
+        }
+    }
+
+    @Test
+    public void testModifiedFileIsNotRead() throws Exception {
+        PluginIndex index = writeIndex();
+        write("messages.xml", MESSAGES.replace("Second", "Other"));
+        assertNull(index.getDocument("messages.xml", url("messages.xml")));
+        assertNotNull(index.getDocument("findbugs.xml", url("findbugs.xml")));
+    }
+
+    @Test
+    public void testIndexOfJar() throws Exception {
+        File jar = new File(dir, "plugin.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String name : new String[] { "findbugs.xml", "messages.xml" }) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(Files.readAllBytes(new File(dir, name).toPath()));
+                out.closeEntry();
+            }
+        }
+        File indexFile = new File(dir, PluginIndex.FILENAME);
+        PluginIndex.main(new String[] { jar.getPath(), indexFile.getPath() });
+        PluginIndex index = PluginIndex.read(indexFile.toURI().toURL());
+
+        // The CRC of jar entries is read from the jar
+        URL messages = new URL("jar:" + jar.toURI().toURL() + "!/messages.xml");
+        assertNotNull(index.getDocument("messages.xml", messages));
+        assertNotNull(index.getDocument("messages.xml", url("messages.xml")));
+        assertNull(index.getText(BugRanker.FILENAME, url(BugRanker.FILENAME)));
+    }
+
+    @Test(expected = PluginException.class)
+    public void testMissingDetectorClass() throws Exception {
+        write("findbugs.xml", DESCRIPTOR.replace("detect.IncompatMask", "detect.Missing"));
+        writeIndex();
+    }
+
+    @Test(expected = PluginException.class)
+    public void testNotADetectorClass() throws Exception {
+        write("findbugs.xml", DESCRIPTOR.replace("edu.umd.cs.findbugs.detect.IncompatMask", "java.lang.String"));
+        writeIndex();
+    }
+
+    @Test
+    public void testMissingDetectorClassOfIndexedPlugin() throws Exception {
+        write("findbugs.xml", DESCRIPTOR.replace("test", "test.missing").replace("detect.IncompatMask", "detect.Missing"));
+        File jar = new File(dir, "plugin.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            Map<String, byte[]> files = PluginIndex.readMetadataFiles(dir);
+            for (Map.Entry<String, byte[]> e : files.entrySet()) {
+                out.putNextEntry(new ZipEntry(e.getKey()));
+                out.write(e.getValue());
+                out.closeEntry();
+            }
+            // Written without checking the classes, as by an older version
+            out.putNextEntry(new ZipEntry(PluginIndex.FILENAME));
+            PluginIndex.write(files, out);
+            out.closeEntry();
+        }
+        try {
+            new PluginLoader(jar.toURI().toURL(), PluginLoader.class.getClassLoader());
+            fail();
+        } catch (PluginException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("edu.umd.cs.findbugs.detect.Missing"));
+        }
+    }
+
+    @Test
+    public void testDetailsFromNextMessageCollection() throws Exception {
+        write("findbugs.xml", DESCRIPTOR.replace("test", "test.locale"));
+        write("messages.xml", MESSAGES.replace("</MessageCollection>",
+                "  <BugPattern type=\"X_ONE\"><ShortDescription>One</ShortDescription>"
+                        + "<LongDescription>One in {1}</LongDescription><Details>One details</Details></BugPattern>\n"
+                        + "</MessageCollection>"));
+        // The translation has the detector, but not its details
+        write("messages_ja.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<MessageCollection>\n"
+                + "  <Detector class=\"edu.umd.cs.findbugs.detect.IncompatMask\"/>\n"
+                + "</MessageCollection>\n");
+        File jar = new File(dir, "plugin.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String name : new String[] { "findbugs.xml", "messages.xml", "messages_ja.xml" }) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(Files.readAllBytes(new File(dir, name).toPath()));
+                out.closeEntry();
+            }
+        }
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.JAPANESE);
+        try {
+            Plugin plugin = new PluginLoader(jar.toURI().toURL(), PluginLoader.class.getClassLoader()).getPlugin();
+            DetectorFactory factory = plugin.getFactoryByFullName("edu.umd.cs.findbugs.detect.IncompatMask");
+            assertTrue(factory.getDetailHTML(), factory.getDetailHTML().contains("Second é"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+            Plugin.removePlugin(jar.toURI());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnIndex() throws Exception {
+        File notIndex = new File(dir, PluginIndex.FILENAME);
+        try (OutputStream out = new FileOutputStream(notIndex)) {
+            out.write(MESSAGES.getBytes(StandardCharsets.UTF_8));
+        }
+        PluginIndex.read(notIndex.toURI().toURL());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class StreamingBugCollectionReaderTest {
+
+    private static SortedBugCollection createBugCollection() {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        bugCollection.setReleaseName("1.0");
+        for (int i = 0; i < 10; i++) {
+            String className = "com.example.C" + (i % 3);
+            bugCollection.add(new BugInstance("URF_UNREAD_FIELD", Priorities.NORMAL_PRIORITY)
+                    .addClass(className)
+                    .addField(className, "f" + i, "I", false)
+                    .addSourceLine(new SourceLineAnnotation(className, "C" + (i % 3) + ".java", i, i, 10 * i, 10 * i)));
+        }
+        bugCollection.addError("Something went wrong");
+        return bugCollection;
+    }
+
+    private static byte[] write(SortedBugCollection bugCollection, boolean gzip) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes;
+        bugCollection.writeXML(out);
+        return bytes.toByteArray();
+    }
+
+    private static void checkSameAsReadXML(boolean gzip) throws Exception {
+        SortedBugCollection original = createBugCollection();
+        byte[] xml = write(original, gzip);
+        SortedBugCollection expected = new SortedBugCollection();
+        expected.readXML(new ByteArrayInputStream(write(original, false)));
+
+        List<BugInstance> bugs = new ArrayList<>();
+        SortedBugCollection metadata;
+        try (StreamingBugCollectionReader reader = new StreamingBugCollectionReader(new ByteArrayInputStream(xml))) {
+            BugInstance bug = reader.read();
+            // The attributes of the document are read with the first BugInstance
+            assertEquals("1.0", reader.getBugCollection().getReleaseName());
+            while (bug != null) {
+                bugs.add(bug);
+                bug = reader.read();
+            }
+            assertNull(reader.read());
+            metadata = reader.getBugCollection();
+        }
+
+        assertEquals(new ArrayList<>(expected.getCollection()), bugs);
+        assertTrue(metadata.getCollection().isEmpty());
+        assertEquals(expected.getErrors().size(), metadata.getErrors().size());
+        assertEquals(expected.getProjectStats().getTotalBugs(), metadata.getProjectStats().getTotalBugs());
+        assertEquals(expected.getProjectStats().getNumClasses(), metadata.getProjectStats().getNumClasses());
+        // Strings are shared between the BugInstances
+        assertSame(bugs.get(0).getPrimaryClass().getClassName(), bugs.get(3).getPrimaryClass().getClassName());
+    }
+
+    @Test
+    public void testSameAsReadXML() throws Exception {
+        checkSameAsReadXML(false);
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        checkSameAsReadXML(true);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StreamingXMLBugReporterTest {
+
+    private static List<BugInstance> createBugs() {
+        List<BugInstance> bugs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String type = i % 2 == 0 ? "MS_MUTABLE_ARRAY" : "URF_UNREAD_FIELD";
+            String className = "com.example.C" + (i % 4);
+            BugInstance bug = new BugInstance(type, Priorities.NORMAL_PRIORITY)
+                    .addClass(className)
+                    .addField(className, "f" + (i % 3), "[Ljava/lang/String;", true)
+                    .addSourceLine(new SourceLineAnnotation(className, "C" + (i % 4) + ".java", i, i, 10 * i, 10 * i));
+            bugs.add(bug);
+            if (i % 5 == 0) {
+                // reported twice
+                bugs.add((BugInstance) bug.clone());
+            }
+        }
+        return bugs;
+    }
+
+    private static String writeXML(XMLBugReporter reporter, List<BugInstance> observed) {
+        reporter.setAddMessages(true);
+        reporter.addObserver(observed::add);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reporter.setOutputStream(new PrintStream(out));
+        for (BugInstance bug : createBugs()) {
+            reporter.doReportBug(bug);
+        }
+        reporter.finish();
+        String xml = out.toString();
+        // The warnings, categories, patterns and codes
+        return xml.substring(xml.indexOf("<BugInstance"), xml.indexOf("<Errors"));
+    }
+
+    @Test
+    public void testSameAsXMLBugReporter() {
+        Project project = new Project();
+        List<BugInstance> expectedObserved = new ArrayList<>();
+        String expected = writeXML(new XMLBugReporter(project), expectedObserved);
+        StreamingXMLBugReporter reporter = new StreamingXMLBugReporter(project, 4);
+        List<BugInstance> actualObserved = new ArrayList<>();
+        String actual = writeXML(reporter, actualObserved);
+        assertTrue(reporter.getNumSpillFiles() > 0);
+        assertTrue(expected.contains("instanceOccurrenceNum=\"2\""));
+        assertTrue(expected.contains("<BugPattern"));
+        assertEquals(expected, actual);
+
+        // Warnings reported twice are observed once
+        assertEquals(30, expectedObserved.size());
+        assertEquals(expectedObserved.size(), actualObserved.size());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefDataflow;
+import edu.umd.cs.findbugs.ba.npe.IsNullValueDataflow;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+public class AnalysisBudgetTest {
+
+    private IClassPath classPath;
+
+    private IAnalysisCache analysisCache;
+
+    private BugCollectionBugReporter bugReporter;
+
+    @Before
+    public void setUp() throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        File classes = new File(OpcodeStack.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(classes.getPath()).openCodeBase());
+        bugReporter = new BugCollectionBugReporter(project);
+        analysisCache = classFactory.createAnalysisCache(classPath, bugReporter);
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+    }
+
+    @After
+    public void tearDown() {
+        AnalysisBudget.setBudgets(0, 0);
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+    }
+
+    private static MethodDescriptor sawOpcode() {
+        return DescriptorFactory.instance().getMethodDescriptor("edu/umd/cs/findbugs/OpcodeStack", "sawOpcode",
+                "(Ledu/umd/cs/findbugs/visitclass/DismantleBytecode;I)V", false);
+    }
+
+    @Test
+    public void testExceededBudget() throws Exception {
+        AnalysisBudget.setBudgets(1, 0);
+        MethodDescriptor method = sawOpcode();
+        for (int i = 0; i < 2; i++) {
+            try {
+                analysisCache.getMethodAnalysis(IsNullValueDataflow.class, method);
+                fail();
+            } catch (MethodUnprofitableException e) {
+                // the budget ran out while computing the analysis or one it depends on
+            }
+        }
+        try {
+            analysisCache.getMethodAnalysis(UnconditionalValueDerefDataflow.class, method);
+            fail();
+        } catch (MethodUnprofitableException e) {
+            // expensive analyses of the method are not computed anymore
+        }
+        // Cheap analyses are still available
+        assertNotNull(analysisCache.getMethodAnalysis(CFG.class, method));
+
+        int skipped = 0;
+        for (AnalysisError error : ((SortedBugCollection) bugReporter.getBugCollection()).getErrors()) {
+            if (error.getMessage().startsWith("Skipped analyses of " + method)) {
+                skipped++;
+            }
+        }
+        assertEquals(1, skipped);
+    }
+
+    private static MethodDescriptor method(String className, String name) {
+        return DescriptorFactory.instance().getMethodDescriptor(className, name, "()V", false);
+    }
+
+    /**
+     * Spend CPU time on the analysis of a method until its budget, or the
+     * budget of its class, runs out.
+     *
+     * @return true if the budget ran out before the given time
+     */
+    private static boolean spend(MethodDescriptor method, long millis) throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long end = threadMXBean.getCurrentThreadCpuTime() + millis * 1000000L;
+        AnalysisBudget.enter(method, true);
+        try {
+            while (threadMXBean.getCurrentThreadCpuTime() < end) {
+                AnalysisBudget.check();
+            }
+            return false;
+        } catch (AnalysisBudgetExceededException e) {
+            return true;
+        } finally {
+            AnalysisBudget.exit();
+        }
+    }
+
+    @Test
+    public void testExhaustedMethodAfterOtherClass() throws Exception {
+        AnalysisBudget.setBudgets(5, 0);
+        assertTrue(spend(method("p/A", "a"), 1000));
+        assertFalse(spend(method("p/B", "b"), 1));
+        try {
+            AnalysisBudget.enter(method("p/A", "a"), true);
+            AnalysisBudget.exit();
+            fail();
+        } catch (MethodUnprofitableException e) {
+            // still exhausted
+        }
+        // Cheap analyses can still be computed
+        AnalysisBudget.enter(method("p/A", "a"), false);
+        AnalysisBudget.exit();
+    }
+
+    @Test
+    public void testClassBudgetAfterOtherClass() throws Exception {
+        AnalysisBudget.setBudgets(0, 50);
+        assertFalse(spend(method("p/A", "a1"), 30));
+        assertFalse(spend(method("p/B", "b"), 30));
+        // 30 ms more for A exceeds its budget, the time of a1 still counts
+        assertTrue(spend(method("p/A", "a2"), 30));
+        try {
+            AnalysisBudget.enter(method("p/A", "a3"), true);
+            AnalysisBudget.exit();
+            fail();
+        } catch (MethodUnprofitableException e) {
+            // the whole class is exhausted
+        }
+        assertFalse(spend(method("p/B", "b"), 1));
+    }
+
+    @Test
+    public void testUnlimitedBudget() throws Exception {
+        AnalysisBudget.setBudgets(0, 0);
+        assertNotNull(analysisCache.getMethodAnalysis(IsNullValueDataflow.class, sawOpcode()));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DataflowTest {
+
+    private static class SweepDominatorsAnalysis extends DominatorsAnalysis {
+        SweepDominatorsAnalysis(CFG cfg, DepthFirstSearch dfs) {
+            super(cfg, dfs, true);
+        }
+
+        @Override
+        public boolean useWorklistSolver() {
+            return false;
+        }
+    }
+
+    /**
+     * A chain of 20 blocks with a loop from the last block back to block 15,
+     * an exit from block 17 and a branch from block 12 to block 18.
+     */
+    private static CFG createCFG(List<BasicBlock> chain) {
+        CFG cfg = new CFG();
+        cfg.setMethodName("test");
+        BasicBlock entry = cfg.getEntry();
+        BasicBlock exit = cfg.getExit();
+        BasicBlock prev = entry;
+        for (int i = 0; i < 20; i++) {
+            BasicBlock block = cfg.allocate();
+            cfg.createEdge(prev, block, EdgeTypes.FALL_THROUGH_EDGE);
+            chain.add(block);
+            prev = block;
+        }
+        cfg.createEdge(prev, chain.get(15), EdgeTypes.GOTO_EDGE);
+        cfg.createEdge(chain.get(17), exit, EdgeTypes.IFCMP_EDGE);
+        cfg.createEdge(chain.get(12), chain.get(18), EdgeTypes.IFCMP_EDGE);
+        return cfg;
+    }
+
+    @Test
+    public void worklistComputesSameFactsAsSweep() throws DataflowAnalysisException {
+        List<BasicBlock> chain = new ArrayList<>();
+        CFG cfg = createCFG(chain);
+        DepthFirstSearch dfs = new DepthFirstSearch(cfg);
+        dfs.search();
+
+        DominatorsAnalysis worklistAnalysis = new DominatorsAnalysis(cfg, dfs, true);
+        Dataflow<BitSet, DominatorsAnalysis> worklist = new Dataflow<>(cfg, worklistAnalysis);
+        worklist.execute();
+        DominatorsAnalysis sweepAnalysis = new SweepDominatorsAnalysis(cfg, dfs);
+        Dataflow<BitSet, DominatorsAnalysis> sweep = new Dataflow<>(cfg, sweepAnalysis);
+        sweep.execute();
+
+        for (BasicBlock block : cfg.vertices()) {
+            assertEquals(sweep.getStartFact(block), worklist.getStartFact(block));
+            assertEquals(sweep.getResultFact(block), worklist.getResultFact(block));
+        }
+        BitSet dominators = worklistAnalysis.getAllDominatorsOf(chain.get(19));
+        assertTrue(dominators.get(chain.get(12).getLabel()));
+        assertFalse(dominators.get(chain.get(13).getLabel()));
+        assertTrue(dominators.get(chain.get(18).getLabel()));
+        assertTrue(worklist.getNumBlockTransfers() < sweep.getNumBlockTransfers());
+    }
+}
@@ -2,7 +2,9 @@ package edu.umd.cs.findbugs.ba;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -18,4 +20,50 @@ public class FrameTest {
         };
         assertThat(frame.toString(), is(equalTo("[value]")));
     }
+
+    private static class StringFrame extends Frame<String> {
+        StringFrame(int numLocals) {
+            super(numLocals);
+        }
+    }
+
+    @Test
+    public void testCopyIsIndependent() throws DataflowAnalysisException {
+        StringFrame frame = new StringFrame(2);
+        frame.setValid();
+        frame.setValue(0, "a");
+        frame.setValue(1, "b");
+        frame.pushValue("c");
+
+        StringFrame copy = new StringFrame(2);
+        copy.copyFrom(frame);
+        assertTrue(copy.sameAs(frame));
+
+        copy.setValue(0, "x");
+        copy.pushValue("d");
+        assertThat(frame.toString(), is(equalTo("[ab|c]")));
+        assertThat(copy.toString(), is(equalTo("[xb|cd]")));
+
+        frame.popValue();
+        frame.pushValue("e");
+        assertThat(frame.toString(), is(equalTo("[ab|e]")));
+        assertThat(copy.toString(), is(equalTo("[xb|cd]")));
+        assertFalse(copy.sameAs(frame));
+    }
+
+    @Test
+    public void testStackGrows() throws DataflowAnalysisException {
+        StringFrame frame = new StringFrame(1);
+        frame.setValid();
+        frame.setValue(0, "l");
+        for (int i = 0; i < 10; i++) {
+            frame.pushValue(Integer.toString(i));
+        }
+        assertThat(frame.getStackDepth(), is(equalTo(10)));
+        assertThat(frame.getTopValue(), is(equalTo("9")));
+        assertThat(frame.getStackValue(9), is(equalTo("0")));
+        frame.clearStack();
+        assertThat(frame.getNumSlots(), is(equalTo(1)));
+        assertThat(frame.allSlots().size(), is(equalTo(1)));
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.MethodGen;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+public class IndexedCFGBuilderTest {
+
+    static class Sample {
+        private int count;
+
+        int loop(int[] values) {
+            int sum = 0;
+            for (int value : values) {
+                if (value < 0) {
+                    continue;
+                }
+                sum += value;
+            }
+            return sum;
+        }
+
+        String tryCatchFinally(Object o) {
+            try {
+                return o.toString();
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                return e.getMessage();
+            } finally {
+                count++;
+            }
+        }
+
+        synchronized int switches(int i, String s) {
+            switch (i) {
+            case 1:
+                return 10;
+            case 2:
+            case 1000:
+                break;
+            default:
+                throw new IllegalArgumentException();
+            }
+            switch (s) {
+            case "a":
+                return 1;
+            case "b":
+                return 2;
+            default:
+                synchronized (this) {
+                    count = s == null ? 0 : i;
+                }
+            }
+            return count;
+        }
+
+        void exit(boolean fail) {
+            if (fail) {
+                System.exit(1);
+            }
+            new Runnable() {
+                @Override
+                public void run() {
+                    count++;
+                }
+            }.run();
+        }
+    }
+
+    private IClassPath classPath;
+
+    @Before
+    public void setUp() throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        IAnalysisCache analysisCache = classFactory.createAnalysisCache(classPath, new BugCollectionBugReporter(project));
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+    }
+
+    @After
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+    }
+
+    private static JavaClass parse(Class<?> c) throws IOException {
+        String fileName = c.getName().replace('.', '/') + ".class";
+        try (InputStream in = c.getClassLoader().getResourceAsStream(fileName)) {
+            return new ClassParser(in, fileName).parse();
+        }
+    }
+
+    private static String print(CFG cfg) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CFGPrinter(cfg).print(new PrintStream(out, true));
+        return out.toString();
+    }
+
+    /**
+     * Build the CFG of each method of the given class with both builders,
+     * each from its own MethodGen, and compare them.
+     */
+    private static int checkSameCFGs(Class<?> c) throws Exception {
+        JavaClass jclass = parse(c);
+        ClassGen classGen = new ClassGen(jclass);
+        int methods = 0;
+        for (Method method : jclass.getMethods()) {
+            if (method.isAbstract() || method.isNative()) {
+                continue;
+            }
+            MethodDescriptor descriptor = DescriptorFactory.instance().getMethodDescriptor(jclass, method);
+            MethodGen expectedMethodGen = new MethodGen(method, jclass.getClassName(), classGen.getConstantPool());
+            MethodGen actualMethodGen = new MethodGen(method, jclass.getClassName(), classGen.getConstantPool());
+            assertFalse(IndexedCFGBuilder.hasSubroutines(actualMethodGen));
+
+            CFGBuilder expected = new BetterCFGBuilder2(descriptor, expectedMethodGen);
+            expected.build();
+            CFGBuilder actual = new IndexedCFGBuilder(descriptor, actualMethodGen);
+            actual.build();
+            assertEquals(descriptor.toString(), print(expected.getCFG()), print(actual.getCFG()));
+            assertEquals(expected.getCFG().getNumBasicBlocks(), actual.getCFG().getNumBasicBlocks());
+            assertEquals(expected.getCFG().getMaxEdgeId(), actual.getCFG().getMaxEdgeId());
+            methods++;
+        }
+        return methods;
+    }
+
+    @Test
+    public void testSameCFGs() throws Exception {
+        assertEquals(6, checkSameCFGs(Sample.class));
+        assertEquals(2, checkSameCFGs(Class.forName(Sample.class.getName() + "$1")));
+        assertTrue(checkSameCFGs(BetterCFGBuilder2.class) > 0);
+        assertTrue(checkSameCFGs(IndexedCFGBuilder.class) > 0);
+        assertTrue(checkSameCFGs(CFGInstructionOptimizer.class) > 0);
+        assertTrue(checkSameCFGs(SortedBugCollection.class) > 0);
+        assertTrue(checkSameCFGs(OpcodeStack.class) > 0);
+    }
+}
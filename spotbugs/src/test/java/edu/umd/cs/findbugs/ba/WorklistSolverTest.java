@@ -0,0 +1,227 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.MethodGen;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ba.constant.ConstantAnalysis;
+import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+/**
+ * The analyses solved with a worklist compute the same facts as with the full
+ * sweep, on the methods of real class files.
+ */
+public class WorklistSolverTest {
+
+    static class Sample {
+        private final Object lock = new Object();
+
+        private int count;
+
+        int loops(int[] values) {
+            int sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                int value = values[i];
+                while (value > 10) {
+                    value /= 2;
+                    if (value == 12) {
+                        break;
+                    }
+                }
+                sum += value;
+            }
+            return sum;
+        }
+
+        int locks(int x) {
+            synchronized (lock) {
+                try {
+                    count += 100 / x;
+                } finally {
+                    count++;
+                }
+                for (int i = 0; i < x; i++) {
+                    synchronized (this) {
+                        if (count > i) {
+                            return i;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        String constants(boolean b) {
+            int i = 3;
+            String s = "a";
+            if (b) {
+                i = 4;
+            } else {
+                s = "b";
+            }
+            do {
+                i--;
+            } while (i > 0 && b);
+            return s + i;
+        }
+    }
+
+    private static final String[] CLASSES = { "edu/umd/cs/findbugs/ba/WorklistSolverTest$Sample",
+        "edu/umd/cs/findbugs/OpcodeStack", "edu/umd/cs/findbugs/ba/Dataflow", "edu/umd/cs/findbugs/SortedBugCollection",
+        "edu/umd/cs/findbugs/FindBugs2" };
+
+    private IClassPath classPath;
+
+    private IAnalysisCache analysisCache;
+
+    @Before
+    public void setUp() throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        for (Class<?> c : new Class<?>[] { OpcodeStack.class, WorklistSolverTest.class }) {
+            File classes = new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+            classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(classes.getPath()).openCodeBase());
+        }
+        analysisCache = classFactory.createAnalysisCache(classPath, new BugCollectionBugReporter(project));
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+    }
+
+    @After
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+    }
+
+    /**
+     * Solve the analysis with the worklist and a copy of it with the sweep,
+     * and check that every block has the same start and result facts.
+     */
+    private static <Fact, AnalysisType extends DataflowAnalysis<Fact>> void checkSameFacts(String method, CFG cfg,
+            AnalysisType worklistAnalysis, AnalysisType sweepAnalysis) throws DataflowAnalysisException {
+        String name = worklistAnalysis.getClass().getSimpleName() + " of " + method;
+        assertTrue(name, worklistAnalysis.useWorklistSolver());
+        Dataflow<Fact, AnalysisType> worklist = new Dataflow<>(cfg, worklistAnalysis);
+        worklist.execute();
+        Dataflow<Fact, AnalysisType> sweep = new Dataflow<>(cfg, sweepAnalysis);
+        sweep.execute();
+
+        for (BasicBlock block : cfg.vertices()) {
+            Fact expected = sweep.getStartFact(block);
+            Fact actual = worklist.getStartFact(block);
+            assertTrue(name + " start of block " + block.getLabel() + ": " + sweepAnalysis.factToString(expected) + " != "
+                    + worklistAnalysis.factToString(actual), sweepAnalysis.same(expected, actual));
+            expected = sweep.getResultFact(block);
+            actual = worklist.getResultFact(block);
+            assertTrue(name + " result of block " + block.getLabel() + ": " + sweepAnalysis.factToString(expected) + " != "
+                    + worklistAnalysis.factToString(actual), sweepAnalysis.same(expected, actual));
+        }
+    }
+
+    private static void checkSameFacts(ClassContext classContext, Method method) throws Exception {
+        MethodGen methodGen = classContext.getMethodGen(method);
+        String name = classContext.getJavaClass().getClassName() + "." + method.getName() + method.getSignature();
+        CFG cfg = classContext.getCFG(method);
+        DepthFirstSearch dfs = classContext.getDepthFirstSearch(method);
+        ReverseDepthFirstSearch rdfs = classContext.getReverseDepthFirstSearch(method);
+        ValueNumberDataflow vnaDataflow = classContext.getValueNumberDataflow(method);
+
+        for (boolean ignoreExceptionEdges : new boolean[] { false, true }) {
+            checkSameFacts(name, cfg, new DominatorsAnalysis(cfg, dfs, ignoreExceptionEdges),
+                    new DominatorsAnalysis(cfg, dfs, ignoreExceptionEdges) {
+                        @Override
+                        public boolean useWorklistSolver() {
+                            return false;
+                        }
+                    });
+            checkSameFacts(name, cfg, new PostDominatorsAnalysis(cfg, rdfs, dfs, ignoreExceptionEdges),
+                    new PostDominatorsAnalysis(cfg, rdfs, dfs, ignoreExceptionEdges) {
+                        @Override
+                        public boolean useWorklistSolver() {
+                            return false;
+                        }
+                    });
+        }
+        checkSameFacts(name, cfg, new LiveLocalStoreAnalysis(methodGen, rdfs, dfs),
+                new LiveLocalStoreAnalysis(methodGen, rdfs, dfs) {
+                    @Override
+                    public boolean useWorklistSolver() {
+                        return false;
+                    }
+                });
+        checkSameFacts(name, cfg, new ConstantAnalysis(methodGen, dfs), new ConstantAnalysis(methodGen, dfs) {
+            @Override
+            public boolean useWorklistSolver() {
+                return false;
+            }
+        });
+        checkSameFacts(name, cfg, new LockAnalysis(methodGen, vnaDataflow, dfs),
+                new LockAnalysis(methodGen, vnaDataflow, dfs) {
+                    @Override
+                    public boolean useWorklistSolver() {
+                        return false;
+                    }
+                });
+    }
+
+    @Test
+    public void testSameFactsAsSweep() throws Exception {
+        int methods = 0;
+        for (String className : CLASSES) {
+            ClassDescriptor classDescriptor = DescriptorFactory.createClassDescriptor(className);
+            analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+            ClassContext classContext = analysisCache.getClassAnalysis(ClassContext.class, classDescriptor);
+            for (Method method : classContext.getJavaClass().getMethods()) {
+                if (method.getCode() == null || classContext.getMethodGen(method) == null) {
+                    continue;
+                }
+                try {
+                    checkSameFacts(classContext, method);
+                } catch (MethodUnprofitableException e) {
+                    continue;
+                }
+                methods++;
+            }
+        }
+        assertTrue(methods > 50);
+    }
+}
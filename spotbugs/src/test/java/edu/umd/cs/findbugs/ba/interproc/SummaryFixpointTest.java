@@ -0,0 +1,158 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2005, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package edu.umd.cs.findbugs.ba.interproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SummaryFixpointTest {
+
+    private static List<List<Integer>> randomCalls(Random random, int numMethods, int numCalls) {
+        List<List<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < numMethods; i++) {
+            calls.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < numCalls; i++) {
+            calls.get(random.nextInt(numMethods)).add(random.nextInt(numMethods + 5));
+        }
+        return calls;
+    }
+
+    private static SummaryFixpoint<Integer> fixpoint(List<List<Integer>> calls) {
+        SummaryFixpoint<Integer> fixpoint = new SummaryFixpoint<>();
+        for (int i = 0; i < calls.size(); i++) {
+            fixpoint.addMethod(i);
+            for (Integer called : calls.get(i)) {
+                fixpoint.addCall(i, called);
+            }
+        }
+        return fixpoint;
+    }
+
+    private static Set<Integer> reachable(List<List<Integer>> calls, int from) {
+        Set<Integer> result = new HashSet<>();
+        List<Integer> stack = new ArrayList<>();
+        stack.add(from);
+        while (!stack.isEmpty()) {
+            int method = stack.remove(stack.size() - 1);
+            if (method < calls.size() && result.add(method)) {
+                stack.addAll(calls.get(method));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testComponentsBottomUp() {
+        Random random = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            int numMethods = 1 + random.nextInt(40);
+            List<List<Integer>> calls = randomCalls(random, numMethods, random.nextInt(2 * numMethods));
+            List<Set<Integer>> reachable = new ArrayList<>();
+            for (int i = 0; i < numMethods; i++) {
+                reachable.add(reachable(calls, i));
+            }
+
+            Map<Integer, Integer> componentOf = new HashMap<>();
+            List<List<Integer>> components = fixpoint(calls).getComponentsBottomUp();
+            for (int c = 0; c < components.size(); c++) {
+                for (Integer method : components.get(c)) {
+                    assertNull(componentOf.put(method, c));
+                }
+            }
+            assertEquals(numMethods, componentOf.size());
+
+            for (int i = 0; i < numMethods; i++) {
+                for (int j = 0; j < numMethods; j++) {
+                    boolean sameComponent = reachable.get(i).contains(j) && reachable.get(j).contains(i);
+                    assertEquals(i + " " + j, sameComponent, componentOf.get(i).equals(componentOf.get(j)));
+                    if (reachable.get(i).contains(j)) {
+                        assertTrue(i + " " + j, componentOf.get(j) <= componentOf.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSolveSameAsSweeping() {
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            int numMethods = 1 + random.nextInt(40);
+            final List<List<Integer>> calls = randomCalls(random, numMethods, random.nextInt(2 * numMethods));
+            final int[] own = new int[numMethods];
+            for (int i = 0; i < numMethods; i++) {
+                own[i] = random.nextInt(100);
+            }
+
+            // Summary: the largest own value of the reachable methods
+            int[] expected = own.clone();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < numMethods; i++) {
+                    for (Integer called : calls.get(i)) {
+                        if (called < numMethods && expected[called] > expected[i]) {
+                            expected[i] = expected[called];
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            final int[] summary = own.clone();
+            SummaryFixpoint<Integer> fixpoint = fixpoint(calls);
+            fixpoint.solve(method -> {
+                int prev = summary[method];
+                for (Integer called : calls.get(method)) {
+                    if (called < summary.length) {
+                        summary[method] = Math.max(summary[method], summary[called]);
+                    }
+                }
+                return summary[method] != prev;
+            });
+            for (int i = 0; i < numMethods; i++) {
+                assertEquals(expected[i], summary[i]);
+            }
+            assertTrue(fixpoint.getNumUpdates() >= numMethods);
+        }
+    }
+
+    @Test
+    public void testChainUpdatedOnce() {
+        int numMethods = 1000;
+        SummaryFixpoint<Integer> fixpoint = new SummaryFixpoint<>();
+        for (int i = 0; i < numMethods; i++) {
+            fixpoint.addCall(i, i + 1);
+        }
+        fixpoint.solve(method -> true);
+        assertEquals(numMethods, fixpoint.getNumUpdates());
+    }
+}
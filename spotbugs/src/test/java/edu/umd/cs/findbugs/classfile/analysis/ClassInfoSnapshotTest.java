@@ -0,0 +1,294 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.asm.FBClassReader;
+import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.engine.ClassParserUsingASM;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+public class ClassInfoSnapshotTest {
+
+    @interface Values {
+        int i() default 0;
+
+        long j() default 0;
+
+        double d() default 0;
+
+        char c() default ' ';
+
+        boolean z() default false;
+
+        String s() default "";
+
+        Class<?> type() default Object.class;
+
+        ElementType element() default ElementType.TYPE;
+
+        int[] ints() default {};
+
+        String[] strings() default {};
+
+        Nested nested() default @Nested;
+    }
+
+    @interface Nested {
+        String value() default "";
+    }
+
+    @Values(i = -1, j = Long.MIN_VALUE, d = 0.5, c = '€', z = true, s = "\u0000aé\ud800", type = Map.class,
+            element = ElementType.FIELD, ints = { 1, -2 }, strings = { "x", "y" }, nested = @Nested("n"))
+    static class Sample<T extends Comparable<T>> implements Callable<T> {
+        @Values(i = 1)
+        private List<T> values = new ArrayList<>();
+
+        static final String CONSTANT = "c";
+
+        @Override
+        @Values(strings = "call")
+        public T call() throws IOException, InterruptedException {
+            return values.get(0);
+        }
+
+        void fail(@Values(i = 2) int count, @Nested("p") String s) {
+            for (int i = 0; i < count; i++) {
+                values.add(null);
+            }
+            throw new UnsupportedOperationException(s);
+        }
+
+        T identity(T t) {
+            return t;
+        }
+
+        Runnable inner() {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    values.clear();
+                }
+            };
+        }
+    }
+
+    private IClassPath classPath;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        Project project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        IAnalysisCache analysisCache = classFactory.createAnalysisCache(classPath, new BugCollectionBugReporter(project));
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor>emptyList(), null);
+        file = new File(Files.createTempDirectory("snapshots").toFile(), "classes.snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+        File directory = file.getParentFile();
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    private static ClassInfo.Builder parse(Class<?> c) throws Exception {
+        String fileName = c.getName().replace('.', '/') + ".class";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = c.getClassLoader().getResourceAsStream(fileName)) {
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        ClassInfo.Builder builder = new ClassInfo.Builder();
+        new ClassParserUsingASM(new FBClassReader(bytes.toByteArray()), DescriptorFactory.createClassDescriptor(c), null)
+                .parse(builder);
+        return builder;
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof AnnotationValue) {
+            AnnotationValue annotation = (AnnotationValue) value;
+            return annotation.getAnnotationClass() + describe(new TreeMap<>(annotation.valueMap))
+                    + describe(new TreeMap<>(annotation.typeMap));
+        }
+        if (value instanceof Map) {
+            StringBuilder result = new StringBuilder("{");
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                result.append(e.getKey()).append('=').append(describe(e.getValue())).append(',');
+            }
+            return result.append('}').toString();
+        }
+        if (value instanceof Collection) {
+            List<String> result = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                result.add(describe(element));
+            }
+            Collections.sort(result);
+            return result.toString();
+        }
+        if (value instanceof Object[]) {
+            return describe(Arrays.asList((Object[]) value));
+        }
+        if (value instanceof int[]) {
+            return Arrays.toString((int[]) value);
+        }
+        return value == null ? "null" : value.getClass().getSimpleName() + ':' + value;
+    }
+
+    private static String describe(ClassInfo classInfo) {
+        StringBuilder result = new StringBuilder();
+        result.append(classInfo.getClassDescriptor()).append(' ').append(classInfo.getSuperclassDescriptor())
+                .append(Arrays.toString(classInfo.getInterfaceDescriptorList())).append(classInfo.getAccessFlags())
+                .append(' ').append(classInfo.getMajorVersion()).append('.').append(classInfo.getMinorVersion())
+                .append(' ').append(classInfo.getSource()).append(' ').append(classInfo.getSourceSignature())
+                .append(' ').append(classInfo.getImmediateEnclosingClass()).append(' ').append(classInfo.usesConcurrency())
+                .append(classInfo.hasStubs()).append(describe(classInfo.getCalledClassDescriptors()))
+                .append(describe(classInfo.getAnnotations()))
+                .append('\n');
+        for (XField field : classInfo.getXFields()) {
+            FieldInfo f = (FieldInfo) field;
+            result.append(f).append(' ').append(f.getSourceSignature()).append(' ').append(f.getAccessFlags())
+                    .append(describe(f.getAnnotations())).append('\n');
+        }
+        for (XMethod method : classInfo.getXMethods()) {
+            MethodInfo m = (MethodInfo) method;
+            result.append(m).append(' ').append(m.getSourceSignature()).append(' ').append(m.getAccessFlags())
+                    .append(Arrays.toString(m.getThrownExceptions())).append(m.isUnconditionalThrower())
+                    .append(m.isIdentity()).append(m.usesInvokeDynamic()).append(m.usesConcurrency())
+                    .append(m.hasBackBranch()).append(m.isStub()).append(m.getMethodCallCount())
+                    .append(m.variableIsSynthetic).append(' ').append(m.getAccessMethodForMethod()).append(' ')
+                    .append(m.getAccessMethodForField()).append(' ').append(m.bridgeTo()).append(' ')
+                    .append(describe(m.getAnnotations()));
+            for (int p = 0; p < m.getNumParams(); p++) {
+                result.append(describe(m.getParameterAnnotations(p)));
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testSameClassInfo() throws Exception {
+        List<Class<?>> classes = Arrays.asList(Sample.class, Class.forName(Sample.class.getName() + "$1"), Values.class,
+                ClassInfoSnapshot.class, ClassInfo.class);
+        List<String> expected = new ArrayList<>();
+        try (ClassInfoSnapshot snapshot = new ClassInfoSnapshot(file, "test")) {
+            assertEquals(0, snapshot.getNumClasses());
+            for (Class<?> c : classes) {
+                ClassInfo.Builder builder = parse(c);
+                expected.add(describe(builder.build()));
+                snapshot.add(builder);
+            }
+        }
+        assertTrue(file.isFile());
+
+        ClassInfoSnapshot snapshot = new ClassInfoSnapshot(file, "test");
+        assertEquals(classes.size(), snapshot.getNumClasses());
+        for (int i = 0; i < classes.size(); i++) {
+            ClassDescriptor descriptor = DescriptorFactory.createClassDescriptor(classes.get(i));
+            ClassInfo.Builder builder = snapshot.lookup(descriptor, null);
+            assertNotNull(builder);
+            assertEquals(expected.get(i), describe(builder.build()));
+        }
+        assertNull(snapshot.lookup(DescriptorFactory.createClassDescriptor(Nested.class), null));
+
+        // Adding classes keeps the existing ones
+        ClassInfo.Builder nested = parse(Nested.class);
+        String expectedNested = describe(nested.build());
+        snapshot.add(nested);
+        snapshot.close();
+        snapshot = new ClassInfoSnapshot(file, "test");
+        assertEquals(classes.size() + 1, snapshot.getNumClasses());
+        assertEquals(expected.get(0), describe(snapshot.lookup(DescriptorFactory.createClassDescriptor(Sample.class), null)
+                .build()));
+        assertEquals(expectedNested, describe(snapshot.lookup(DescriptorFactory.createClassDescriptor(Nested.class), null)
+                .build()));
+
+        // A snapshot of other classes is ignored
+        assertEquals(0, new ClassInfoSnapshot(file, "other").getNumClasses());
+    }
+
+    @Test
+    public void testRewriteWhileMapped() throws Exception {
+        ClassDescriptor sample = DescriptorFactory.createClassDescriptor(Sample.class);
+        ClassDescriptor nested = DescriptorFactory.createClassDescriptor(Nested.class);
+        try (ClassInfoSnapshot snapshot = new ClassInfoSnapshot(file, "test")) {
+            snapshot.add(parse(Sample.class));
+        }
+        ClassInfoSnapshot mapped = new ClassInfoSnapshot(file, "test");
+        assertNotNull(mapped.lookup(sample, null));
+
+        // Written to a new file, as the existing one is mapped
+        try (ClassInfoSnapshot snapshot = new ClassInfoSnapshot(file, "test")) {
+            snapshot.add(parse(Nested.class));
+        }
+        assertNotNull(mapped.lookup(sample, null));
+        assertNull(mapped.lookup(nested, null));
+        ClassInfoSnapshot rewritten = new ClassInfoSnapshot(file, "test");
+        assertEquals(2, rewritten.getNumClasses());
+        assertNotNull(rewritten.lookup(nested, null));
+
+        // The older generation is deleted where the file system allows it
+        assertEquals(Collections.singletonList(file.getName() + ".1"), Arrays.asList(file.getParentFile().list()));
+    }
+}
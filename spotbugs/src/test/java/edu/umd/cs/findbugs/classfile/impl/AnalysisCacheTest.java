@@ -0,0 +1,189 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.PrintingBugReporter;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+
+public class AnalysisCacheTest {
+
+    private static final long MAX_CACHED_BYTES = 1024 * 1024;
+
+    private AnalysisCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new AnalysisCache(null, new PrintingBugReporter(), MAX_CACHED_BYTES);
+    }
+
+    @Test
+    public void concurrentRequestsAreComputedOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountingEngine engine = new CountingEngine(true) {
+            @Override
+            public Object analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
+                started.countDown();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.analyze(analysisCache, descriptor);
+            }
+        };
+        engine.registerWith(cache);
+        ClassDescriptor descriptor = DescriptorFactory.createClassDescriptor("test/A");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            Callable<Object> task = () -> cache.getClassAnalysis(Object.class, descriptor);
+            results.add(executor.submit(task));
+            started.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(task));
+            }
+            Object first = results.get(0).get();
+            for (Future<Object> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, engine.count.get());
+    }
+
+    @Test
+    public void recomputableResultsAreEvictedWhenOverBudget() throws Exception {
+        CountingEngine engine = new CountingEngine(true);
+        engine.registerWith(cache);
+        for (int i = 0; i < 1000; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        assertEquals(1000, engine.count.get());
+        assertTrue(cache.getCachedBytes() <= MAX_CACHED_BYTES);
+
+        // least recently used result was evicted, most recently used is kept
+        cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C0"));
+        assertEquals(1001, engine.count.get());
+        cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C999"));
+        assertEquals(1001, engine.count.get());
+    }
+
+    @Test
+    public void otherResultsAreNeverEvicted() throws Exception {
+        CountingEngine engine = new CountingEngine(false);
+        engine.registerWith(cache);
+        for (int i = 0; i < 1000; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C0"));
+        assertEquals(1000, engine.count.get());
+        assertEquals(0, cache.getCachedBytes());
+    }
+
+    @Test
+    public void limitedResultsAreEvictedWhenOverCount() throws Exception {
+        CountingEngine engine = new CountingEngine(true);
+        engine.registerWith(cache);
+        cache.setMaxCachedResults(Object.class, 10);
+        for (int i = 0; i < 20; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        assertEquals(20, engine.count.get());
+
+        // well within the heap budget, but only the 10 most recently used are kept
+        for (int i = 10; i < 20; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        assertEquals(20, engine.count.get());
+        cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C9"));
+        assertEquals(21, engine.count.get());
+    }
+
+    @Test
+    public void pinnedResultsAreNotEvicted() throws Exception {
+        CountingEngine engine = new CountingEngine(true);
+        engine.registerWith(cache);
+        cache.setMaxCachedResults(Object.class, 10);
+        ClassDescriptor inUse = DescriptorFactory.createClassDescriptor("test/InUse");
+        cache.pinClass(inUse);
+        Object result = cache.getClassAnalysis(Object.class, inUse);
+
+        // other classes are analyzed meanwhile, over the count and heap limits
+        for (int i = 0; i < 1000; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        assertSame(result, cache.getClassAnalysis(Object.class, inUse));
+        assertEquals(1001, engine.count.get());
+
+        cache.unpinClass(inUse);
+        for (int i = 1000; i < 1010; i++) {
+            cache.getClassAnalysis(Object.class, DescriptorFactory.createClassDescriptor("test/C" + i));
+        }
+        cache.getClassAnalysis(Object.class, inUse);
+        assertEquals(1011, engine.count.get());
+    }
+
+    private static class CountingEngine implements IClassAnalysisEngine<Object> {
+        final AtomicInteger count = new AtomicInteger();
+
+        private final boolean canRecompute;
+
+        CountingEngine(boolean canRecompute) {
+            this.canRecompute = canRecompute;
+        }
+
+        @Override
+        public Object analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
+            count.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public void registerWith(IAnalysisCache analysisCache) {
+            analysisCache.registerClassAnalysisEngine(Object.class, this);
+        }
+
+        @Override
+        public boolean canRecompute() {
+            return canRecompute;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+
+public class ClassPathImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClassPathImpl classPath;
+
+    private ZipFileCodeBase first;
+
+    private ZipFileCodeBase second;
+
+    @Before
+    public void setUp() throws IOException {
+        classPath = new ClassPathImpl();
+        first = openZip("first.jar", "a/A.class", "a/B.class", "META-INF/MANIFEST.MF");
+        first.setApplicationCodeBase(true);
+        second = openZip("second.jar", "a/A.class", "a/C.class");
+        classPath.addCodeBase(first);
+        classPath.addCodeBase(second);
+    }
+
+    @After
+    public void tearDown() {
+        classPath.close();
+    }
+
+    @Test
+    public void indexedLookupKeepsClassPathOrder() throws Exception {
+        classPath.buildResourceIndex();
+        assertSame(first, classPath.lookupResource("a/A.class").getCodeBase());
+        assertSame(first, classPath.lookupResource("a/B.class").getCodeBase());
+        assertSame(second, classPath.lookupResource("a/C.class").getCodeBase());
+        assertSame(first, classPath.lookupResource("META-INF/MANIFEST.MF").getCodeBase());
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void indexedLookupOfMissingClass() throws Exception {
+        classPath.buildResourceIndex();
+        classPath.lookupResource("a/D.class");
+    }
+
+    @Test
+    public void storedNamesAreReused() throws Exception {
+        File file = new File(folder.getRoot(), "index.bin");
+        ZipResourceNameStore store = new ZipResourceNameStore(file);
+        assertEquals(new HashSet<>(Arrays.asList("a/A.class", "a/B.class")),
+                new HashSet<>(store.getClassResourceNames(first)));
+        store.save();
+        assertTrue(file.isFile());
+
+        ZipResourceNameStore reread = new ZipResourceNameStore(file);
+        assertEquals(new HashSet<>(Arrays.asList("a/A.class", "a/B.class")),
+                new HashSet<>(reread.getClassResourceNames(first)));
+    }
+
+    private ZipFileCodeBase openZip(String name, String... entries) throws IOException {
+        File file = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(0);
+                out.closeEntry();
+            }
+        }
+        return new ZipFileCodeBase(new FilesystemCodeBaseLocator(file.getPath()), file);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+
+public class MappedZipFileCodeBaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsStoredAndDeflatedEntries() throws Exception {
+        byte[] random = new byte[20000];
+        new Random(42).nextBytes(random);
+        byte[] repetitive = new byte[50000];
+        for (int i = 0; i < repetitive.length; i++) {
+            repetitive[i] = (byte) (i % 7);
+        }
+
+        File file = folder.newFile("test.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/"));
+            out.closeEntry();
+            putStored(out, "a/Stored.class", random);
+            out.putNextEntry(new ZipEntry("a/Deflated.class"));
+            out.write(repetitive);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/Empty.class"));
+            out.closeEntry();
+        }
+
+        MappedZipFileCodeBase codeBase = new MappedZipFileCodeBase(new FilesystemCodeBaseLocator(file.getPath()), file);
+        try {
+            assertArrayEquals(random, ((MappedZipFileCodeBaseEntry) codeBase.lookupResource("a/Stored.class")).getBytes());
+            assertArrayEquals(repetitive, ((MappedZipFileCodeBaseEntry) codeBase.lookupResource("a/Deflated.class")).getBytes());
+            assertEquals(0, ((MappedZipFileCodeBaseEntry) codeBase.lookupResource("a/Empty.class")).getBytes().length);
+            assertNull(codeBase.lookupResource("a/Missing.class"));
+
+            List<String> names = new ArrayList<>();
+            for (ICodeBaseIterator i = codeBase.iterator(); i.hasNext();) {
+                names.add(i.next().getResourceName());
+            }
+            assertEquals(Arrays.asList("a/Stored.class", "a/Deflated.class", "a/Empty.class"), names);
+        } finally {
+            codeBase.close();
+        }
+        assertNull(codeBase.lookupResource("a/Stored.class"));
+    }
+
+    @Test(expected = ZipException.class)
+    public void rejectsFilesWhichAreNotZipFiles() throws Exception {
+        File file = folder.newFile("test.jar");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[100]);
+        }
+        new MappedZipFileCodeBase(new FilesystemCodeBaseLocator(file.getPath()), file);
+    }
+
+    private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(data);
+        out.closeEntry();
+    }
+}
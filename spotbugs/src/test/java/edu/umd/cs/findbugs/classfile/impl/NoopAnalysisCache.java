@@ -86,6 +86,16 @@ public class NoopAnalysisCache implements IAnalysisCache {
 
     }
 
+    @Override
+    public void pinClass(ClassDescriptor classDescriptor) {
+
+    }
+
+    @Override
+    public void unpinClass(ClassDescriptor classDescriptor) {
+
+    }
+
     @Override
     public <E> void registerDatabaseFactory(Class<E> databaseClass,
             IDatabaseFactory<E> databaseFactory) {
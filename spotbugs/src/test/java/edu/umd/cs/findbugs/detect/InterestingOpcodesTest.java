@@ -0,0 +1,284 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.detect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.bcel.classfile.Code;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugCollectionBugReporter;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassFactory;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+
+/**
+ * Detectors which only visit the code of methods containing the opcodes they
+ * look for report the same warnings as when visiting all of them.
+ */
+public class InterestingOpcodesTest {
+
+    @SuppressWarnings("unused")
+    static class Sample {
+        private int x;
+
+        private float f;
+
+        private static int count;
+
+        int plain(int a) {
+            return a * 3 + x;
+        }
+
+        boolean floatEquality(float a) {
+            return f == a * 0.3f;
+        }
+
+        boolean incompatibleMask(int i) {
+            return (i & 0x10) == 0x20;
+        }
+
+        Integer numberConstructor(int i) {
+            return new Integer(i);
+        }
+
+        int inefficientIndexOf(String s) {
+            return s.indexOf("a");
+        }
+
+        int doubleAssignment(int i) {
+            int j;
+            j = j = i;
+            return j;
+        }
+
+        void sharedLock() {
+            synchronized ("lock") {
+                x++;
+            }
+        }
+
+        void getClassLock() {
+            synchronized (getClass()) {
+                count++;
+            }
+        }
+
+        String resultSet(ResultSet rs) throws SQLException {
+            return rs.getString(0);
+        }
+
+        void emptyZipEntry(OutputStream out) throws IOException {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.putNextEntry(new ZipEntry("a"));
+            zip.closeEntry();
+        }
+
+        void setAccessible(Field field) {
+            field.setAccessible(true);
+        }
+    }
+
+    private static final String SAMPLE = "edu/umd/cs/findbugs/detect/InterestingOpcodesTest$Sample";
+
+    /** Records the methods it visits, looking for float comparisons */
+    static class VisitedMethods extends FindFloatEquality {
+        final Set<String> visited = new HashSet<>();
+
+        VisitedMethods(BugReporter bugReporter) {
+            super(bugReporter);
+        }
+
+        @Override
+        public void sawOpcode(int seen) {
+            visited.add(getMethodName());
+            super.sawOpcode(seen);
+        }
+    }
+
+    private IClassPath classPath;
+
+    private IAnalysisCache analysisCache;
+
+    private Project project;
+
+    @Before
+    public void setUp() throws Exception {
+        project = new Project();
+        IClassFactory classFactory = ClassFactory.instance();
+        classPath = classFactory.createClassPath();
+        for (Class<?> c : new Class<?>[] { OpcodeStack.class, InterestingOpcodesTest.class }) {
+            File classes = new File(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+            classPath.addCodeBase(classFactory.createFilesystemCodeBaseLocator(classes.getPath()).openCodeBase());
+        }
+        analysisCache = classFactory.createAnalysisCache(classPath, new BugCollectionBugReporter(project));
+        FindBugs2.registerBuiltInAnalysisEngines(analysisCache);
+        Global.setAnalysisCacheForCurrentThread(analysisCache);
+        FindBugs2.createAnalysisContext(project, Collections.<ClassDescriptor> emptyList(), null);
+        AnalysisContext.currentAnalysisContext().setBoolProperty(AnalysisFeatures.INTERATIVE_OPCODE_STACK_ANALYSIS, true);
+    }
+
+    @After
+    public void tearDown() {
+        FindBugs2.clearAnalysisContext();
+        Global.removeAnalysisCacheForCurrentThread();
+        classPath.close();
+    }
+
+    private List<String> bugs(Function<BugReporter, Detector> detectorFactory) throws Exception {
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setIsRelaxed(true);
+        Detector detector = detectorFactory.apply(bugReporter);
+        detector.visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, DescriptorFactory.createClassDescriptor(SAMPLE)));
+        detector.report();
+        List<String> result = new ArrayList<>();
+        for (BugInstance bug : bugReporter.getBugCollection()) {
+            result.add(bug.toString() + " " + bug.getPrimarySourceLineAnnotation());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Check that a detector reports the same warnings as when it visits every
+     * method of the sample.
+     */
+    private void checkSameBugs(Function<BugReporter, Detector> detector, Function<BugReporter, Detector> visitingAll)
+            throws Exception {
+        List<String> expected = bugs(visitingAll);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, bugs(detector));
+    }
+
+    @Test
+    public void testSkipsUninterestingMethods() throws Exception {
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setIsRelaxed(true);
+        VisitedMethods detector = new VisitedMethods(bugReporter);
+        VisitedMethods visitingAll = new VisitedMethods(bugReporter) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        };
+        ClassContext classContext = analysisCache.getClassAnalysis(ClassContext.class, DescriptorFactory.createClassDescriptor(SAMPLE));
+        detector.visitClassContext(classContext);
+        visitingAll.visitClassContext(classContext);
+
+        assertEquals(Collections.singleton("floatEquality"), detector.visited);
+        assertTrue(visitingAll.visited.contains("floatEquality"));
+        assertTrue(visitingAll.visited.contains("plain"));
+    }
+
+    @Test
+    public void testSameBugs() throws Exception {
+        checkSameBugs(FindFloatEquality::new, r -> new FindFloatEquality(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(IncompatMask::new, r -> new IncompatMask(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(NumberConstructor::new, r -> new NumberConstructor(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(InefficientIndexOf::new, r -> new InefficientIndexOf(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(FindFieldSelfAssignment::new, r -> new FindFieldSelfAssignment(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(SynchronizationOnSharedBuiltinConstant::new, r -> new SynchronizationOnSharedBuiltinConstant(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(SynchronizeOnClassLiteralNotGetClass::new, r -> new SynchronizeOnClassLiteralNotGetClass(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(BadResultSetAccess::new, r -> new BadResultSetAccess(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(EmptyZipFileEntry::new, r -> new EmptyZipFileEntry(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+        checkSameBugs(DoInsideDoPrivileged::new, r -> new DoInsideDoPrivileged(r) {
+            @Override
+            public boolean shouldVisitCode(Code obj) {
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.SortedBugCollection;
+
+public class FilterIndexTest {
+
+    private static final String[] PATTERNS = { "NP_NULL_ON_SOME_PATH", "DLS_DEAD_LOCAL_STORE", "SE_BAD_FIELD",
+        "EI_EXPOSE_REP" };
+
+    private static final String[] CLASSES = { "com.example.Foo", "com.example.Foo$Inner", "com.example.sub.Bar",
+        "org.other.Baz", "Qux" };
+
+    private static final String[] METHODS = { "run", "get", "set" };
+
+    private static Filter parse(String matches) throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<FindBugsFilter>\n" + matches + "</FindBugsFilter>\n";
+        return new Filter(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static BugInstance bug(String type, String className, String methodName) {
+        BugInstance bug = new BugInstance(type, 1);
+        if (className != null) {
+            bug.addClass(className);
+            if (methodName != null) {
+                bug.addMethod(className, methodName, "()V", false);
+            }
+        }
+        return bug;
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("com.example.", FilterIndex.getLiteralPrefix("com\\.example\\.[^.]+"));
+        assertEquals("com.example.Foo$", FilterIndex.getLiteralPrefix("^com\\.example\\.Foo\\$.*"));
+        assertEquals("com.example", FilterIndex.getLiteralPrefix("com\\.examples?"));
+        assertEquals("com", FilterIndex.getLiteralPrefix("com.example"));
+        assertEquals("", FilterIndex.getLiteralPrefix("com\\.example|org\\.other"));
+        assertEquals("", FilterIndex.getLiteralPrefix("(?i)com"));
+        assertEquals("", FilterIndex.getLiteralPrefix(".*Test"));
+    }
+
+    @Test
+    public void testMatch() throws Exception {
+        Filter filter = parse("<Match><Class name=\"com.example.Foo\"/><Method name=\"run\"/></Match>\n"
+                + "<Match><Package name=\"org.other\"/><Bug pattern=\"SE_BAD_FIELD\"/></Match>\n"
+                + "<Match classregex=\".*Bar\"><Bug code=\"DLS\"/></Match>\n"
+                + "<Match><Bug category=\"MALICIOUS_CODE\"/></Match>\n"
+                + "<Match disabled=\"true\"><Class name=\"Qux\"/></Match>\n");
+
+        assertTrue(filter.match(bug("DLS_DEAD_LOCAL_STORE", "com.example.Foo", "run")));
+        assertFalse(filter.match(bug("DLS_DEAD_LOCAL_STORE", "com.example.Foo", "get")));
+        assertTrue(filter.match(bug("SE_BAD_FIELD", "org.other.Baz", null)));
+        assertFalse(filter.match(bug("SE_BAD_FIELD", "org.other.sub.Baz", null)));
+        assertTrue(filter.match(bug("DLS_DEAD_LOCAL_STORE", "com.example.sub.Bar", null)));
+        assertTrue(filter.match(bug("EI_EXPOSE_REP", "Qux", null)));
+        assertFalse(filter.match(bug("NP_NULL_ON_SOME_PATH", "Qux", null)));
+    }
+
+    @Test
+    public void testChangedFilter() throws Exception {
+        Filter filter = new Filter();
+        Matcher matcher = new ClassMatcher("Qux");
+        filter.addChild(matcher);
+        BugInstance bug = bug("NP_NULL_ON_SOME_PATH", "Qux", null);
+        assertTrue(filter.match(bug));
+
+        filter.disable(matcher);
+        assertFalse(filter.match(bug));
+        filter.enable(matcher);
+        assertTrue(filter.match(bug));
+        filter.removeChild(matcher);
+        assertFalse(filter.match(bug));
+        filter.addChild(new BugMatcher("", "NP_NULL_ON_SOME_PATH", ""));
+        assertTrue(filter.match(bug));
+        filter.clear();
+        assertFalse(filter.match(bug));
+    }
+
+    @Test
+    public void testParsedMatchers() throws Exception {
+        Filter filter = parse("<Match><Class name=\"Qux\"/></Match>\n"
+                + "<Match disabled=\"true\"><Class name=\"com.example.Foo\"/></Match>\n");
+        Iterator<Matcher> i = filter.childIterator();
+        Matcher qux = i.next();
+        Matcher foo = i.next();
+        assertTrue(filter.isEnabled(qux));
+        assertFalse(filter.isEnabled(foo));
+
+        // Matchers are complete when added, so they can be found again
+        assertTrue(filter.contains(qux));
+        filter.removeChild(qux);
+        assertFalse(filter.contains(qux));
+        assertFalse(filter.match(bug("NP_NULL_ON_SOME_PATH", "Qux", null)));
+    }
+
+    @Test
+    public void testChangedCompoundMatcher() throws Exception {
+        Filter filter = new Filter();
+        OrMatcher or = new OrMatcher();
+        or.addChild(new ClassMatcher("Qux"));
+        filter.addChild(or);
+        BugInstance bug = bug("NP_NULL_ON_SOME_PATH", "com.example.Foo", null);
+        assertFalse(filter.match(bug));
+
+        // Not seen by the index until the matcher is added again
+        or.addChild(new ClassMatcher("com.example.Foo"));
+        filter.removeChild(or);
+        filter.addChild(or);
+        assertTrue(filter.match(bug));
+    }
+
+    @Test
+    public void testSameAsLinearMatching() throws Exception {
+        Random random = new Random(42);
+        List<BugInstance> bugs = bugs();
+        int matched = checkSameAsLinearMatching(randomFilter(random), bugs);
+        assertTrue(matched > 0 && matched < bugs.size());
+    }
+
+    @Test
+    public void testSameAsLinearMatchingOnReadBugs() throws Exception {
+        SortedBugCollection bugCollection = new SortedBugCollection();
+        for (BugInstance bug : bugs()) {
+            if (bug.getPrimaryClass() != null) {
+                bugCollection.add(bug);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bugCollection.writeXML(out);
+        SortedBugCollection read = new SortedBugCollection();
+        read.readXML(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(bugCollection.getCollection().size(), read.getCollection().size());
+
+        Random random = new Random(42);
+        assertTrue(checkSameAsLinearMatching(randomFilter(random), new ArrayList<>(read.getCollection())) > 0);
+    }
+
+    private static Filter randomFilter(Random random) throws Exception {
+        StringBuilder matches = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            matches.append(random.nextInt(10) == 0 ? "<Match disabled=\"true\">" : "<Match>");
+            int clauses = 1 + random.nextInt(3);
+            for (int j = 0; j < clauses; j++) {
+                matches.append(randomClause(random));
+            }
+            matches.append("</Match>\n");
+        }
+        return parse(matches.toString());
+    }
+
+    private static List<BugInstance> bugs() {
+        List<BugInstance> bugs = new ArrayList<>();
+        for (String type : PATTERNS) {
+            bugs.add(bug(type, null, null));
+            for (String className : CLASSES) {
+                bugs.add(bug(type, className, null));
+                for (String methodName : METHODS) {
+                    bugs.add(bug(type, className, methodName));
+                }
+            }
+        }
+        return bugs;
+    }
+
+    /**
+     * @return the number of bug instances matched
+     */
+    private static int checkSameAsLinearMatching(Filter filter, List<BugInstance> bugs) {
+        int matched = 0;
+        for (BugInstance bug : bugs) {
+            boolean expected;
+            try {
+                expected = filter.matchLinearly(bug);
+            } catch (NullPointerException e) {
+                // Class matchers fail without a class
+                continue;
+            }
+            assertEquals(bug.toString(), expected, filter.match(bug));
+            if (expected) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static String randomClause(Random random) {
+        String className = CLASSES[random.nextInt(CLASSES.length)];
+        String pattern = PATTERNS[random.nextInt(PATTERNS.length)];
+        switch (random.nextInt(9)) {
+        case 0:
+            return "<Class name=\"" + className + "\"/>";
+        case 1:
+            return "<Class name=\"~" + className.substring(0, random.nextInt(className.length())).replace(".", "\\.")
+                    .replace("$", "\\$") + ".*\"/>";
+        case 2:
+            return "<Package name=\"" + className.substring(0, Math.max(0, className.lastIndexOf('.'))) + "\"/>";
+        case 3:
+            return "<Bug pattern=\"" + pattern + "\"/>";
+        case 4:
+            return "<Bug code=\"" + pattern.substring(0, pattern.indexOf('_')) + "\"/>";
+        case 5:
+            return "<Bug category=\"" + (random.nextBoolean() ? "CORRECTNESS" : "STYLE") + "\"/>";
+        case 6:
+            return "<Method name=\"" + METHODS[random.nextInt(METHODS.length)] + "\"/>";
+        case 7:
+            return "<Or><Class name=\"" + className + "\"/><Bug pattern=\"" + pattern + "\"/></Or>";
+        default:
+            return "<Not><Class name=\"~.*Foo.*\"/></Not>";
+        }
+    }
+}
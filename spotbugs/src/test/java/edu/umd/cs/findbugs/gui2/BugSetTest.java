@@ -0,0 +1,190 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.gui2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.gui2.BugAspects.SortableValue;
+
+public class BugSetTest {
+
+    private static final String[] TYPES = { "NP_NULL_ON_SOME_PATH", "DLS_DEAD_LOCAL_STORE", "SE_BAD_FIELD" };
+
+    private static final String[] CLASSES = { "com.example.Foo", "com.example.Bar", "org.other.Foo", "Qux" };
+
+    private Predicate<BugInstance> displayed;
+
+    @Before
+    public void setUp() {
+        displayed = BugSet.displayed;
+        BugSet.displayed = bug -> true;
+    }
+
+    @After
+    public void tearDown() {
+        BugSet.displayed = displayed;
+    }
+
+    private static List<BugLeafNode> randomBugs(int count) {
+        Random random = new Random(3);
+        List<BugLeafNode> bugs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BugInstance bug = new BugInstance(TYPES[random.nextInt(TYPES.length)], 1 + random.nextInt(3));
+            bug.addClass(CLASSES[random.nextInt(CLASSES.length)]);
+            bugs.add(new BugLeafNode(bug));
+        }
+        return bugs;
+    }
+
+    private static List<BugLeafNode> matching(List<BugLeafNode> bugs, BugAspects aspects) {
+        List<BugLeafNode> result = new ArrayList<>();
+        for (BugLeafNode bug : bugs) {
+            if (bug.matches(aspects)) {
+                result.add(bug);
+            }
+        }
+        return result;
+    }
+
+    private static List<BugLeafNode> toList(BugSet set) {
+        List<BugLeafNode> result = new ArrayList<>();
+        for (BugLeafNode bug : set) {
+            result.add(bug);
+        }
+        return result;
+    }
+
+    @Test
+    public void testQuerySameAsMatching() {
+        List<BugLeafNode> bugs = randomBugs(200);
+        BugSet set = new BugSet(bugs);
+        Sortables[] keys = { Sortables.PACKAGE, Sortables.TYPE, Sortables.PRIORITY, Sortables.CLASS };
+        int nonEmpty = 0;
+        for (Sortables first : keys) {
+            for (Sortables second : keys) {
+                for (BugLeafNode bug : bugs) {
+                    BugAspects aspects = new BugAspects();
+                    aspects.add(new SortableValue(first, first.getFrom(bug.getBug())));
+                    aspects.add(new SortableValue(second, second.getFrom(bug.getBug())));
+                    List<BugLeafNode> expected = matching(bugs, aspects);
+                    assertEquals(aspects.toString(), expected, toList(set.query(aspects)));
+                    nonEmpty++;
+                }
+            }
+        }
+        assertTrue(nonEmpty > 0);
+
+        BugAspects missing = new BugAspects();
+        missing.add(new SortableValue(Sortables.PACKAGE, "org.missing"));
+        assertEquals(0, set.query(missing).sizeUnfiltered());
+    }
+
+    @Test
+    public void testIndexOfUnfiltered() {
+        List<BugLeafNode> bugs = randomBugs(50);
+        bugs.add(bugs.get(3));
+        BugSet set = new BugSet(bugs);
+        for (BugLeafNode bug : bugs) {
+            assertEquals(bugs.indexOf(bug), set.indexOfUnfiltered(bug));
+            assertEquals(bugs.indexOf(bug), set.indexOfUnfiltered(new BugLeafNode(bug.getBug())));
+        }
+        assertEquals(-1, set.indexOfUnfiltered(randomBugs(1).get(0)));
+    }
+
+    @Test
+    public void testIndexOfUnfilteredAfterSort() {
+        List<BugLeafNode> bugs = randomBugs(50);
+        BugSet set = new BugSet(bugs);
+        for (BugLeafNode bug : bugs) {
+            set.indexOfUnfiltered(bug);
+        }
+        set.sortList(Arrays.asList(Sortables.CLASS, Sortables.TYPE));
+        List<BugLeafNode> sorted = toList(set);
+        assertTrue(!sorted.equals(bugs));
+        for (BugLeafNode bug : bugs) {
+            assertEquals(sorted.indexOf(bug), set.indexOfUnfiltered(bug));
+        }
+        BugAspects aspects = new BugAspects();
+        aspects.add(new SortableValue(Sortables.TYPE, TYPES[0]));
+        assertEquals(matching(sorted, aspects), toList(set.query(aspects)));
+    }
+
+    @Test
+    public void testDistinctSortableValues() {
+        BugSet set = new BugSet(randomBugs(50));
+        for (Sortables key : new Sortables[] { Sortables.PACKAGE, Sortables.TYPE, Sortables.CLASS }) {
+            String[] expected = set.getDistinctValues(key);
+            List<SortableValue> values = set.getDistinctSortableValues(key);
+            assertEquals(expected.length, values.size());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(new SortableValue(key, expected[i]), values.get(i));
+                assertEquals(i, set.indexOfDistinctValue(key, values.get(i)));
+                assertEquals(i, set.indexOfDistinctValue(key, new SortableValue(key, expected[i])));
+            }
+            assertSame(values, set.getDistinctSortableValues(key));
+            assertEquals(-1, set.indexOfDistinctValue(key, new SortableValue(key, "missing")));
+        }
+    }
+
+    @Test
+    public void testFilterChangeKeepsQueries() {
+        List<BugLeafNode> bugs = randomBugs(50);
+        BugSet set = new BugSet(bugs);
+        BugAspects aspects = new BugAspects();
+        aspects.add(new SortableValue(Sortables.PACKAGE, "com.example"));
+        BugSet queried = set.query(aspects);
+        Set<String> types = new HashSet<>();
+        for (BugLeafNode bug : matching(bugs, aspects)) {
+            types.add(bug.getBug().getType());
+        }
+        assertTrue(types.contains(TYPES[2]));
+        assertEquals(types.size(), queried.getDistinctSortableValues(Sortables.TYPE).size());
+        assertEquals(bugs.size(), set.size());
+
+        BugSet.displayed = bug -> !TYPES[2].equals(bug.getType());
+        set.clearCache();
+
+        assertSame(queried, set.query(aspects));
+        assertEquals(types.size() - 1, queried.getDistinctSortableValues(Sortables.TYPE).size());
+        assertEquals(-1, queried.indexOfDistinctValue(Sortables.TYPE, new SortableValue(Sortables.TYPE, TYPES[2])));
+        int displayedCount = 0;
+        for (BugLeafNode bug : bugs) {
+            if (!TYPES[2].equals(bug.getBug().getType())) {
+                displayedCount++;
+            }
+        }
+        assertEquals(displayedCount, set.size());
+        assertEquals(bugs.size(), set.sizeUnfiltered());
+    }
+}
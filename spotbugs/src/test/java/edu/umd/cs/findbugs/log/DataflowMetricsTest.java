@@ -0,0 +1,96 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+public class DataflowMetricsTest {
+
+    @Test
+    public void writeXMLSumsRunsPerAnalysis() throws IOException {
+        DataflowMetrics metrics = new DataflowMetrics(false);
+        metrics.record(new DataflowMetrics.Run("a.Foo", "C.m()V", 3, 2, 6, 4, 5, 3000));
+        metrics.record(new DataflowMetrics.Run("a.Foo", "C.n()V", 5, 3, 15, 10, 12, 7000));
+        metrics.record(new DataflowMetrics.Run("a.Bar", "C.m()V", 3, 1, 3, 2, 2, 1000));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        XMLOutput xmlOutput = new OutputStreamXMLOutput(outputStream);
+        metrics.writeXML(xmlOutput);
+        xmlOutput.finish();
+        String xml = outputStream.toString(StandardCharsets.UTF_8.name());
+
+        assertTrue(xml, xml.contains("<DataflowProfile name=\"a.Bar\" runs=\"1\""));
+        assertTrue(xml, xml.contains("<DataflowProfile name=\"a.Foo\" runs=\"2\" iterations=\"5\" blockTransfers=\"21\""
+                + " meets=\"14\" factsCreated=\"17\""));
+        // slowest method first
+        String foo = xml.substring(xml.indexOf("name=\"a.Foo\""));
+        assertTrue(xml, foo.indexOf("method=\"C.n()V\"") < foo.indexOf("method=\"C.m()V\""));
+    }
+
+    @Test
+    public void writeJSONListsRunsOnlyIfKept() throws IOException {
+        DataflowMetrics kept = new DataflowMetrics(true);
+        DataflowMetrics notKept = new DataflowMetrics(false);
+        DataflowMetrics.Run run = new DataflowMetrics.Run("a.Foo", "C.m(\"x\")", 3, 2, 6, 4, 5, 3000);
+        kept.record(run);
+        notKept.record(run);
+
+        String json = toJSON(kept);
+        assertTrue(json, json.contains("{\"analysis\": \"a.Foo\", \"method\": \"C.m(\\\"x\\\")\", \"blocks\": 3,"
+                + " \"iterations\": 2, \"blockTransfers\": 6, \"meets\": 4, \"factsCreated\": 5, \"nanoseconds\": 3000}"));
+
+        json = toJSON(notKept);
+        assertTrue(json, json.contains("\"name\": \"a.Foo\", \"runs\": 1"));
+        assertFalse(json, json.contains("\"analysis\""));
+    }
+
+    @Test
+    public void clearRemovesRuns() throws IOException {
+        DataflowMetrics metrics = new DataflowMetrics(true);
+        metrics.record(new DataflowMetrics.Run("a.Foo", "C.m()V", 3, 2, 6, 4, 5, 3000));
+        metrics.clear();
+        assertEquals("{\n  \"analyses\": [\n  ],\n  \"runs\": [\n  ]\n}\n", toJSON(metrics));
+    }
+
+    @Test
+    public void disabledByDefault() throws IOException {
+        DataflowMetrics metrics = new DataflowMetrics();
+        assertFalse(metrics.isEnabled());
+        metrics.record(new DataflowMetrics.Run("a.Foo", "C.m()V", 3, 2, 6, 4, 5, 3000));
+        assertFalse(toJSON(metrics).contains("a.Foo"));
+    }
+
+    private static String toJSON(DataflowMetrics metrics) throws IOException {
+        StringWriter out = new StringWriter();
+        metrics.writeJSON(out);
+        return out.toString();
+    }
+}